@@ -0,0 +1,227 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.libraries;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts every entry of an AAR except its jars (the merged jar is copied separately) directly
+ * from the AAR's input stream, so remote AARs don't need to be copied to a local file first.
+ *
+ * <p>The size and CRC-32 of each extracted entry are recorded in a checksum file. Entries whose
+ * checksum matches the record of the existing unpacked copy aren't rewritten, and files left over
+ * from a previous version of the AAR are removed.
+ */
+final class AarExtractor {
+
+  /** The file recording the size and CRC-32 of each extracted entry. */
+  static final String CHECKSUM_FILE_NAME = "aar.checksums";
+
+  /** Byte counts of the AAR entries written and skipped as unchanged. Thread-safe. */
+  static final class Stats {
+    private final AtomicLong bytesExtracted = new AtomicLong();
+    private final AtomicLong bytesSkipped = new AtomicLong();
+
+    long getBytesExtracted() {
+      return bytesExtracted.get();
+    }
+
+    long getBytesSkipped() {
+      return bytesSkipped.get();
+    }
+  }
+
+  private AarExtractor() {}
+
+  /** Returns true if the AAR entry with the given name should be extracted. */
+  static boolean shouldExtract(String entryName) {
+    return !entryName.endsWith(".jar") && !entryName.equals(CHECKSUM_FILE_NAME);
+  }
+
+  /**
+   * Extracts the relevant entries of the AAR read from {@code aar} into {@code aarDir}. Doesn't
+   * close the input stream.
+   */
+  static void extract(InputStream aar, File aarDir, FileOperationProvider ops, Stats stats)
+      throws IOException {
+    Path root = aarDir.toPath().toAbsolutePath().normalize();
+    File checksumFile = new File(aarDir, CHECKSUM_FILE_NAME);
+    Map<String, Checksum> previous = readChecksums(ops, checksumFile);
+    // remove the record while extracting, so a failed extraction doesn't leave a stale record
+    if (ops.exists(checksumFile)) {
+      ops.deleteRecursively(checksumFile);
+    }
+
+    Map<String, Checksum> extracted = new HashMap<>();
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    ZipInputStream zip = new ZipInputStream(aar);
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+      if (entry.isDirectory() || !shouldExtract(entry.getName())) {
+        continue;
+      }
+      Path target = root.resolve(entry.getName()).normalize();
+      if (!target.startsWith(root)) {
+        // ignore entries pointing outside of the unpacked AAR directory
+        continue;
+      }
+      String name = root.relativize(target).toString();
+      File file = target.toFile();
+      Checksum existing = previous.get(name);
+      if (existing != null && (!ops.isFile(file) || ops.getFileSize(file) != existing.size)) {
+        existing = null;
+      }
+      // the CRC is known up front unless the entry is followed by a data descriptor
+      if (existing != null && existing.crc == entry.getCrc() && existing.size == entry.getSize()) {
+        extracted.put(name, existing);
+        stats.bytesSkipped.addAndGet(existing.size);
+        continue;
+      }
+
+      buffer.reset();
+      int read;
+      while ((read = zip.read(chunk)) != -1) {
+        buffer.write(chunk, 0, read);
+      }
+      byte[] bytes = buffer.toByteArray();
+      Checksum checksum = new Checksum(bytes.length, getCrc(entry, bytes));
+      extracted.put(name, checksum);
+      if (checksum.equals(existing)) {
+        stats.bytesSkipped.addAndGet(bytes.length);
+        continue;
+      }
+      File parent = file.getParentFile();
+      if (!ops.isDirectory(parent) && !ops.mkdirs(parent)) {
+        throw new IOException("Could not create directory " + parent);
+      }
+      try (OutputStream out = new FileOutputStream(file)) {
+        out.write(bytes);
+      }
+      stats.bytesExtracted.addAndGet(bytes.length);
+    }
+    deleteStaleFiles(ops, root, extracted.keySet());
+    writeChecksums(checksumFile, extracted);
+  }
+
+  /** Returns the entry's CRC-32, which is set once the entry has been read. */
+  private static long getCrc(ZipEntry entry, byte[] bytes) {
+    if (entry.getCrc() != -1) {
+      return entry.getCrc();
+    }
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return crc.getValue();
+  }
+
+  /** Removes extracted files which are no longer part of the AAR. Jars are left alone. */
+  private static void deleteStaleFiles(
+      FileOperationProvider ops, Path root, Set<String> extracted) throws IOException {
+    List<Path> stale;
+    try (Stream<Path> files = Files.walk(root)) {
+      stale =
+          files
+              .filter(Files::isRegularFile)
+              .filter(path -> shouldExtract(root.relativize(path).toString()))
+              .filter(path -> !extracted.contains(root.relativize(path).toString()))
+              .collect(Collectors.toList());
+    }
+    for (Path path : stale) {
+      ops.deleteRecursively(path.toFile());
+    }
+  }
+
+  private static Map<String, Checksum> readChecksums(FileOperationProvider ops, File file) {
+    Map<String, Checksum> checksums = new HashMap<>();
+    if (!ops.exists(file)) {
+      return checksums;
+    }
+    try {
+      for (String line : ops.readAllLines(file)) {
+        // <size> <crc> <name>
+        String[] parts = line.split(" ", 3);
+        if (parts.length == 3) {
+          checksums.put(
+              parts[2], new Checksum(Long.parseLong(parts[0]), Long.parseLong(parts[1], 16)));
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      // a missing or corrupt record only means every entry is rewritten
+      checksums.clear();
+    }
+    return checksums;
+  }
+
+  private static void writeChecksums(File file, Map<String, Checksum> checksums)
+      throws IOException {
+    StringBuilder contents = new StringBuilder();
+    checksums.forEach(
+        (name, checksum) ->
+            contents
+                .append(checksum.size)
+                .append(' ')
+                .append(Long.toHexString(checksum.crc))
+                .append(' ')
+                .append(name)
+                .append('\n'));
+    Files.write(file.toPath(), contents.toString().getBytes(UTF_8));
+  }
+
+  /** The size and CRC-32 of an extracted entry. */
+  private static final class Checksum {
+    private final long size;
+    private final long crc;
+
+    Checksum(long size, long crc) {
+      this.size = size;
+      this.crc = crc;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Checksum)) {
+        return false;
+      }
+      Checksum other = (Checksum) o;
+      return size == other.size && crc == other.crc;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(size) * 31 + Long.hashCode(crc);
+    }
+  }
+}
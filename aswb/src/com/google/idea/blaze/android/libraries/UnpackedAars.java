@@ -55,8 +55,8 @@ import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.PathUtil;
-import com.intellij.util.io.ZipUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -213,7 +213,9 @@ public class UnpackedAars {
           .run();
 
       // update cache files, and remove files if required
-      List<ListenableFuture<?>> futures = new ArrayList<>(copyLocally(projectState, updatedKeys));
+      AarExtractor.Stats extractionStats = new AarExtractor.Stats();
+      List<ListenableFuture<?>> futures =
+          new ArrayList<>(copyLocally(projectState, updatedKeys, extractionStats));
       if (removeMissingFiles) {
         futures.addAll(deleteCacheEntries(removedKeys));
       }
@@ -221,6 +223,12 @@ public class UnpackedAars {
       Futures.allAsList(futures).get();
       if (!updatedKeys.isEmpty()) {
         context.output(PrintOutput.log(String.format("Copied %d AARs", updatedKeys.size())));
+        context.output(
+            PrintOutput.log(
+                String.format(
+                    "Extracted %s of AAR resources, skipped %s unchanged",
+                    StringUtil.formatFileSize(extractionStats.getBytesExtracted()),
+                    StringUtil.formatFileSize(extractionStats.getBytesSkipped()))));
       }
       if (!removedKeys.isEmpty()) {
         context.output(PrintOutput.log(String.format("Removed %d AARs", removedKeys.size())));
@@ -452,45 +460,56 @@ public class UnpackedAars {
     return cachedFiles;
   }
 
+  /**
+   * Unpacks the updated AARs and copies their merged jars. Each AAR and jar is handled by a
+   * separate task.
+   */
   private Collection<ListenableFuture<?>> copyLocally(
-      ImmutableMap<String, AarAndJar> toCache, Set<String> updatedKeys) {
+      ImmutableMap<String, AarAndJar> toCache, Set<String> updatedKeys, AarExtractor.Stats stats) {
     FileOperationProvider ops = FileOperationProvider.getInstance();
     List<ListenableFuture<?>> futures = new ArrayList<>();
-    updatedKeys.forEach(
-        key ->
-            futures.add(FetchExecutor.EXECUTOR.submit(() -> copyLocally(ops, toCache.get(key)))));
+    for (String key : updatedKeys) {
+      AarAndJar aarAndJar = toCache.get(key);
+      futures.add(FetchExecutor.EXECUTOR.submit(() -> unpackAar(ops, aarAndJar.aar, stats)));
+      futures.add(FetchExecutor.EXECUTOR.submit(() -> copyJar(ops, aarAndJar)));
+    }
     return futures;
   }
 
-  private void copyLocally(FileOperationProvider ops, AarAndJar aarAndJar) {
-    String cacheKey = cacheKeyForAar(aarAndJar.aar);
-    File aarDir = aarDirForKey(cacheKey);
+  private void unpackAar(FileOperationProvider ops, BlazeArtifact aar, AarExtractor.Stats stats) {
+    File aarDir = aarDirForKey(cacheKeyForAar(aar));
     try {
-      if (ops.exists(aarDir)) {
-        ops.deleteRecursively(aarDir, true);
+      // remove the stamp while unpacking, so a failed extraction is retried on the next sync
+      File stampFile = new File(aarDir, STAMP_FILE_NAME);
+      if (ops.exists(stampFile)) {
+        ops.deleteRecursively(stampFile);
       }
       ops.mkdirs(aarDir);
-      // TODO(brendandouglas): decompress via ZipInputStream so we don't require a local file
-      File toCopy = getOrCreateLocalFile(aarAndJar.aar);
-      ZipUtil.extract(
-          toCopy,
-          aarDir,
-          // Skip jars. The merged jar will be synchronized by JarTraits.
-          (dir, name) -> !name.endsWith(".jar"));
-
-      createStampFile(ops, aarDir, aarAndJar.aar);
-
-      // copy merged jar
-      if (aarAndJar.jar != null) {
-        try (InputStream stream = aarAndJar.jar.getInputStream()) {
-          Path destination = Paths.get(jarFileForKey(cacheKey).getPath());
-          ops.mkdirs(destination.getParent().toFile());
-          Files.copy(stream, destination, StandardCopyOption.REPLACE_EXISTING);
-        }
+      try (InputStream stream = aar.getInputStream()) {
+        AarExtractor.extract(stream, aarDir, ops, stats);
       }
+      createStampFile(ops, aarDir, aar);
+    } catch (IOException e) {
+      logger.warn(String.format("Failed to extract AAR %s to %s", aar, aarDir), e);
+    }
+  }
 
+  private void copyJar(FileOperationProvider ops, AarAndJar aarAndJar) {
+    File jarFile = jarFileForKey(cacheKeyForAar(aarAndJar.aar));
+    try {
+      if (aarAndJar.jar == null) {
+        if (ops.exists(jarFile)) {
+          ops.deleteRecursively(jarFile);
+        }
+        return;
+      }
+      try (InputStream stream = aarAndJar.jar.getInputStream()) {
+        Path destination = Paths.get(jarFile.getPath());
+        ops.mkdirs(destination.getParent().toFile());
+        Files.copy(stream, destination, StandardCopyOption.REPLACE_EXISTING);
+      }
     } catch (IOException e) {
-      logger.warn(String.format("Failed to extract AAR %s to %s", aarAndJar.aar, aarDir), e);
+      logger.warn(String.format("Failed to copy AAR jar %s to %s", aarAndJar.jar, jarFile), e);
     }
   }
 
@@ -527,20 +546,4 @@ public class UnpackedAars {
                     }))
         .collect(toImmutableList());
   }
-
-  /** Returns a locally-accessible file mirroring the contents of this {@link BlazeArtifact}. */
-  private static File getOrCreateLocalFile(BlazeArtifact artifact) throws IOException {
-    if (artifact instanceof LocalFileArtifact) {
-      return ((LocalFileArtifact) artifact).getFile();
-    }
-    File tmpFile =
-        FileUtil.createTempFile(
-            "local-aar-file",
-            Integer.toHexString(artifactKey(artifact).hashCode()),
-            /* deleteOnExit= */ true);
-    try (InputStream stream = artifact.getInputStream()) {
-      Files.copy(stream, Paths.get(tmpFile.getPath()), StandardCopyOption.REPLACE_EXISTING);
-      return tmpFile;
-    }
-  }
 }
@@ -31,26 +31,39 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Objects;
 import javax.annotation.Nullable;
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
 
-/** Parses manifests from input streams. */
+/**
+ * Parses manifests from input streams.
+ *
+ * <p>Manifests are read with a streaming pull parser. Only the root element, {@code
+ * <instrumentation>} elements and the activities declared in {@code <application>} are looked at;
+ * everything else is skipped without being materialized.
+ */
 public class ManifestParser {
   private static final Logger log = Logger.getInstance(ManifestParser.class);
 
+  private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
   public static ManifestParser getInstance(Project project) {
     return ServiceManager.getService(project, ManifestParser.class);
   }
 
   /** Container class for common manifest attributes required by the blaze plugin. */
-  public static class ParsedManifest {
+  public static class ParsedManifest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     /**
      * Package name of the application and should always be non-null in complete manifests. The
      * package name can be null for manifests that are meant to be merged together with others to
@@ -79,6 +92,25 @@ public class ManifestParser {
       this.instrumentationClassNames = instrumentationClassNames;
       this.defaultActivityClassName = defaultActivityClassName;
     }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ParsedManifest)) {
+        return false;
+      }
+      ParsedManifest that = (ParsedManifest) o;
+      return Objects.equals(packageName, that.packageName)
+          && instrumentationClassNames.equals(that.instrumentationClassNames)
+          && Objects.equals(defaultActivityClassName, that.defaultActivityClassName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(packageName, instrumentationClassNames, defaultActivityClassName);
+    }
   }
 
   /**
@@ -87,76 +119,85 @@ public class ManifestParser {
    * <p>An invalid manifest is anything that could not be parsed by the parser, such as a malformed
    * manifest.
    */
-  public static ParsedManifest parseManifestFromInputStream(InputStream inputStream)
-      throws IOException {
-    Element manifestRootElement = getManifestRootElementFromInputStream(inputStream);
-    if (manifestRootElement == null) {
-      return null;
-    }
-    return parseManifestElement(manifestRootElement);
-  }
-
   @Nullable
-  private static Element getManifestRootElementFromInputStream(InputStream input)
+  public static ParsedManifest parseManifestFromInputStream(InputStream inputStream)
       throws IOException {
     try {
-      DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-      dbf.setNamespaceAware(true);
-      DocumentBuilder db = dbf.newDocumentBuilder();
-      Document doc = db.parse(input);
-      return doc.getDocumentElement();
+      XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+      try {
+        return parseManifest(reader);
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      if (e.getNestedException() instanceof IOException) {
+        throw (IOException) e.getNestedException();
+      }
+      log.warn("Could not parse manifest XML: " + e.getMessage());
     } catch (ParserConfigurationException e) {
       log.warn("Error in manifest parser: " + e.getMessage());
-    } catch (SAXException e) {
+    } catch (DOMException e) {
       log.warn("Could not parse manifest XML: " + e.getMessage());
     }
     return null;
   }
 
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
   @Nullable
-  private static ParsedManifest parseManifestElement(Element manifestRootElement) {
-    String packageName =
-        Strings.emptyToNull(manifestRootElement.getAttributeNS(null, ATTRIBUTE_PACKAGE));
+  private static ParsedManifest parseManifest(XMLStreamReader reader)
+      throws XMLStreamException, ParserConfigurationException {
+    int event = reader.next();
+    while (event != XMLStreamConstants.START_ELEMENT) {
+      if (event == XMLStreamConstants.END_DOCUMENT) {
+        return null;
+      }
+      event = reader.next();
+    }
+    String packageName = Strings.emptyToNull(getAttribute(reader, null, ATTRIBUTE_PACKAGE));
 
     ImmutableList.Builder<String> instrumentationClassNames = ImmutableList.builder();
     ImmutableList.Builder<Element> activities = new ImmutableList.Builder<>();
     ImmutableList.Builder<Element> activityAliases = new ImmutableList.Builder<>();
-    try {
-      Node node = manifestRootElement.getFirstChild();
-      while (node != null) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-          String nodeName = node.getNodeName();
-
-          if (NODE_APPLICATION.equals(nodeName)) {
-            // Extract <activity> and <activity-alias> elements from <application>
-            Node child = node.getFirstChild();
-            while (child != null) {
-              if (child.getNodeType() == Node.ELEMENT_NODE) {
-                String childNodeName = child.getNodeName();
-
-                if (NODE_ACTIVITY.equals(childNodeName)) {
-                  activities.add((Element) child);
-                } else if (NODE_ACTIVITY_ALIAS.equals(childNodeName)) {
-                  activityAliases.add((Element) child);
-                }
-              }
-              child = child.getNextSibling();
-            }
-          } else if (NODE_INSTRUMENTATION.equals(nodeName)) {
-            // Extract instrumentation class names from <instrumentation>
-            String name = ((Element) node).getAttributeNS(ANDROID_URI, ATTR_NAME);
-            if (name != null) {
-              instrumentationClassNames.add(name);
+    // only created if there are activities, which the default activity locator needs as DOM
+    Document document = null;
+    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String nodeName = getNodeName(reader);
+      if (NODE_APPLICATION.equals(nodeName)) {
+        // Extract <activity> and <activity-alias> elements from <application>
+        while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+          if (event != XMLStreamConstants.START_ELEMENT) {
+            continue;
+          }
+          String childNodeName = getNodeName(reader);
+          boolean isActivity = NODE_ACTIVITY.equals(childNodeName);
+          if (isActivity || NODE_ACTIVITY_ALIAS.equals(childNodeName)) {
+            if (document == null) {
+              document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
             }
+            (isActivity ? activities : activityAliases).add(readElement(reader, document));
+          } else {
+            skipElement(reader);
           }
         }
-
-        node = node.getNextSibling();
+      } else if (NODE_INSTRUMENTATION.equals(nodeName)) {
+        // Extract instrumentation class names from <instrumentation>
+        instrumentationClassNames.add(
+            Strings.nullToEmpty(getAttribute(reader, ANDROID_URI, ATTR_NAME)));
+        skipElement(reader);
+      } else {
+        skipElement(reader);
       }
-    } catch (DOMException e) {
-      log.warn("Could not parse manifest XML: " + e.getMessage());
-      return null;
     }
+    // the rest of the document is irrelevant, so stop reading after the root element
 
     String defaultActivityClassName =
         DefaultActivityLocatorCompat.computeDefaultActivity(
@@ -166,4 +207,65 @@ public class ManifestParser {
     return new ParsedManifest(
         packageName, instrumentationClassNames.build(), defaultActivityClassName);
   }
+
+  /** Returns the qualified name of the current element, as DOM's {@code getNodeName} would. */
+  private static String getNodeName(XMLStreamReader reader) {
+    String prefix = reader.getPrefix();
+    return Strings.isNullOrEmpty(prefix)
+        ? reader.getLocalName()
+        : prefix + ":" + reader.getLocalName();
+  }
+
+  /**
+   * Returns the value of the attribute with the given namespace (null for no namespace) and local
+   * name on the current element, or null if there's no such attribute.
+   */
+  @Nullable
+  private static String getAttribute(
+      XMLStreamReader reader, @Nullable String namespace, String localName) {
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      if (localName.equals(reader.getAttributeLocalName(i))
+          && Objects.equals(
+              Strings.emptyToNull(namespace),
+              Strings.emptyToNull(reader.getAttributeNamespace(i)))) {
+        return reader.getAttributeValue(i);
+      }
+    }
+    return null;
+  }
+
+  /** Skips past the end of the current element. */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /** Reads the current element and its child elements into a DOM element. */
+  private static Element readElement(XMLStreamReader reader, Document document)
+      throws XMLStreamException {
+    String namespace = Strings.emptyToNull(reader.getNamespaceURI());
+    Element element = document.createElementNS(namespace, getNodeName(reader));
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String prefix = reader.getAttributePrefix(i);
+      String localName = reader.getAttributeLocalName(i);
+      element.setAttributeNS(
+          Strings.emptyToNull(reader.getAttributeNamespace(i)),
+          Strings.isNullOrEmpty(prefix) ? localName : prefix + ":" + localName,
+          reader.getAttributeValue(i));
+    }
+    int event;
+    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        element.appendChild(readElement(reader, document));
+      }
+    }
+    return element;
+  }
 }
@@ -15,30 +15,107 @@
  */
 package com.google.idea.blaze.android.manifest;
 
-import static com.google.idea.blaze.android.manifest.ManifestParser.parseManifestFromInputStream;
-
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.idea.blaze.android.manifest.ManifestParser.ParsedManifest;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
 import com.google.idea.blaze.base.sync.SyncListener;
 import com.google.idea.blaze.base.sync.SyncMode;
 import com.google.idea.blaze.base.sync.SyncResult;
+import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
+import com.google.idea.blaze.base.util.SerializationUtil;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Map;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
-/** Obtains and caches {@link ManifestParser.ParsedManifest}. */
-public class ParsedManifestService {
-  private final Map<File, ManifestParser.ParsedManifest> manifestFileToParsedManifests =
-      Maps.newHashMap();
+/**
+ * Obtains and caches {@link ManifestParser.ParsedManifest}.
+ *
+ * <p>Parsed manifests are cached by file, and by a hash of the manifest's contents. The content
+ * hash cache is persisted in the project data directory, so manifests which haven't changed don't
+ * need to be parsed again after restarting the IDE. Lookups don't take any locks.
+ *
+ * <p>The persisted cache is tagged with {@link #FORMAT_VERSION}, and discarded if it doesn't match.
+ */
+public class ParsedManifestService implements Disposable {
+  private static final Logger logger = Logger.getInstance(ParsedManifestService.class);
+
+  private static final String CACHE_FILE_NAME = "parsed_manifests.dat";
+
+  /**
+   * The version of the persisted parsed manifests. Must be incremented whenever a change to {@link
+   * ManifestParser} (or the default activity computation it uses) or to {@link ParsedManifest}
+   * could change the result of parsing a manifest.
+   */
+  @VisibleForTesting static final int FORMAT_VERSION = 1;
+
+  /** Beyond this size, only the entries still referenced by a manifest file are persisted. */
+  private static final int MAX_PERSISTED_MANIFESTS = 10_000;
+
+  @Nullable private final File cacheFile;
+  private final Parser parser;
+  private final ConcurrentMap<File, CachedManifest> manifestFileToParsedManifests =
+      new ConcurrentHashMap<>();
+  private final Supplier<ConcurrentMap<String, ParsedManifest>> contentHashToParsedManifests =
+      Suppliers.memoize(this::loadPersistedManifests);
+  private volatile boolean modified;
+
+  /** A parsed manifest, along with the state of the file it was parsed from. */
+  private static final class CachedManifest {
+    private final long timestamp;
+    private final long length;
+    private final String contentHash;
+    private final ParsedManifest parsedManifest;
+
+    CachedManifest(long timestamp, long length, String contentHash, ParsedManifest manifest) {
+      this.timestamp = timestamp;
+      this.length = length;
+      this.contentHash = contentHash;
+      this.parsedManifest = manifest;
+    }
+  }
+
+  /** Parses a manifest, returning null if it's invalid. */
+  @VisibleForTesting
+  interface Parser {
+    @Nullable
+    ParsedManifest parse(InputStream inputStream) throws IOException;
+  }
+
+  /** The persisted content hash cache, along with the format version it was written with. */
+  @VisibleForTesting
+  static final class PersistedManifests implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int version;
+    final HashMap<String, ParsedManifest> manifests;
+
+    PersistedManifests(int version, HashMap<String, ParsedManifest> manifests) {
+      this.version = version;
+      this.manifests = manifests;
+    }
+  }
 
   public static ParsedManifestService getInstance(Project project) {
     return ServiceManager.getService(project, ParsedManifestService.class);
@@ -54,22 +131,99 @@ public class ParsedManifestService {
    *     indicated by returning null.
    */
   @Nullable
-  public ManifestParser.ParsedManifest getParsedManifest(File file) throws IOException {
-    if (!manifestFileToParsedManifests.containsKey(file)) {
-      try (InputStream inputStream = new FileInputStream(file)) {
-        ManifestParser.ParsedManifest parsedManifest = parseManifestFromInputStream(inputStream);
-        if (parsedManifest == null) {
-          return null;
-        }
-        manifestFileToParsedManifests.put(file, parsedManifest);
-      }
+  public ParsedManifest getParsedManifest(File file) throws IOException {
+    long timestamp = file.lastModified();
+    long length = file.length();
+    CachedManifest cached = manifestFileToParsedManifests.get(file);
+    if (cached != null && cached.timestamp == timestamp && cached.length == length) {
+      return cached.parsedManifest;
     }
 
-    return manifestFileToParsedManifests.get(file);
+    byte[] contents = Files.readAllBytes(file.toPath());
+    String contentHash = Hashing.murmur3_128().hashBytes(contents).toString();
+    ConcurrentMap<String, ParsedManifest> parsedManifests = contentHashToParsedManifests.get();
+    ParsedManifest parsedManifest = parsedManifests.get(contentHash);
+    if (parsedManifest == null) {
+      parsedManifest = parser.parse(new ByteArrayInputStream(contents));
+      if (parsedManifest == null) {
+        return null;
+      }
+      parsedManifests.put(contentHash, parsedManifest);
+      modified = true;
+    }
+    manifestFileToParsedManifests.put(
+        file, new CachedManifest(timestamp, length, contentHash, parsedManifest));
+    return parsedManifest;
   }
 
   public void invalidateCachedManifest(File manifestFile) {
-    manifestFileToParsedManifests.keySet().remove(manifestFile);
+    manifestFileToParsedManifests.remove(manifestFile);
+  }
+
+  @Override
+  public void dispose() {
+    saveParsedManifests();
+  }
+
+  private ConcurrentMap<String, ParsedManifest> loadPersistedManifests() {
+    ConcurrentMap<String, ParsedManifest> parsedManifests = new ConcurrentHashMap<>();
+    if (cacheFile == null) {
+      return parsedManifests;
+    }
+    try {
+      Object persisted =
+          SerializationUtil.loadFromDisk(
+              cacheFile, ImmutableList.of(ParsedManifest.class.getClassLoader()));
+      if (persisted instanceof PersistedManifests
+          && ((PersistedManifests) persisted).version == FORMAT_VERSION) {
+        parsedManifests.putAll(((PersistedManifests) persisted).manifests);
+      } else if (persisted != null) {
+        logger.info("Discarding parsed manifest cache with an old format: " + cacheFile);
+        discardCacheFile(cacheFile);
+      }
+    } catch (IOException e) {
+      // e.g. the serialized form of ParsedManifest changed
+      logger.warn("Failed to load parsed manifest cache " + cacheFile, e);
+      discardCacheFile(cacheFile);
+    }
+    return parsedManifests;
+  }
+
+  private static void discardCacheFile(File cacheFile) {
+    if (!cacheFile.delete()) {
+      logger.warn("Failed to delete parsed manifest cache " + cacheFile);
+    }
+  }
+
+  /** Writes the content hash cache to disk, if it changed since it was loaded. */
+  @VisibleForTesting
+  void saveParsedManifests() {
+    if (cacheFile == null || !modified) {
+      return;
+    }
+    modified = false;
+    HashMap<String, ParsedManifest> toPersist = new HashMap<>(contentHashToParsedManifests.get());
+    if (toPersist.size() > MAX_PERSISTED_MANIFESTS) {
+      Set<String> referenced =
+          manifestFileToParsedManifests.values().stream()
+              .map(cached -> cached.contentHash)
+              .collect(Collectors.toSet());
+      toPersist.keySet().retainAll(referenced);
+    }
+    try {
+      SerializationUtil.saveToDisk(cacheFile, new PersistedManifests(FORMAT_VERSION, toPersist));
+    } catch (IOException e) {
+      logger.warn("Failed to save parsed manifest cache " + cacheFile, e);
+    }
+  }
+
+  @Nullable
+  private static File getCacheFile(Project project) {
+    BlazeImportSettings importSettings =
+        BlazeImportSettingsManager.getInstance(project).getImportSettings();
+    return importSettings != null
+        ? new File(BlazeDataStorage.getProjectDataDir(importSettings), CACHE_FILE_NAME)
+        : null;
   }
 
   static class ClearManifestParser implements SyncListener {
@@ -83,9 +237,24 @@ public class ParsedManifestService {
         BlazeProjectData blazeProjectData,
         SyncMode syncMode,
         SyncResult syncResult) {
-      getInstance(project).manifestFileToParsedManifests.clear();
+      ParsedManifestService service = getInstance(project);
+      service.saveParsedManifests();
+      service.manifestFileToParsedManifests.clear();
     }
   }
 
-  private ParsedManifestService() {}
+  private ParsedManifestService(Project project) {
+    this(getCacheFile(project));
+  }
+
+  @VisibleForTesting
+  ParsedManifestService(@Nullable File cacheFile) {
+    this(cacheFile, ManifestParser::parseManifestFromInputStream);
+  }
+
+  @VisibleForTesting
+  ParsedManifestService(@Nullable File cacheFile, Parser parser) {
+    this.cacheFile = cacheFile;
+    this.parser = parser;
+  }
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.projectsystem;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.idea.blaze.android.sync.model.AndroidResourceModuleRegistry;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.targetmaps.TransitiveDependencyMap;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
+
+/**
+ * An index from .class file paths to the class jars containing them, covering the transitive
+ * closure of every resource module's target. Built in the background after a sync completes, by
+ * reading the jars' central directories in parallel, so lookups never need to read jars which
+ * haven't changed since.
+ */
+final class JarClassIndex {
+
+  private static final Logger logger = Logger.getInstance(JarClassIndex.class);
+
+  private static final Key<JarClassIndex> INDEX_KEY = Key.create("blaze.android.jar.class.index");
+  // identifies the latest requested rebuild, so an older one finishing later is discarded
+  private static final Key<Object> REBUILD_KEY = Key.create("blaze.android.jar.class.rebuild");
+
+  /** A class jar of a blaze target. */
+  static final class IndexedJar {
+    final TargetKey target;
+    final File file;
+    // resource jars are only searched when looking up classes for their own target
+    final boolean isResourceJar;
+    // the jar's modification time when indexed, or 0 if it didn't exist
+    final long timestamp;
+    // cached VirtualFile for the jar, looked up lazily
+    @Nullable volatile VirtualFile virtualFile;
+
+    private IndexedJar(TargetKey target, File file, boolean isResourceJar, long timestamp) {
+      this.target = target;
+      this.file = file;
+      this.isResourceJar = isResourceJar;
+      this.timestamp = timestamp;
+    }
+
+    boolean isIndexed() {
+      return timestamp != 0;
+    }
+  }
+
+  private final TargetMap targetMap;
+  private final ImmutableListMultimap<String, IndexedJar> classToJars;
+  private final ImmutableListMultimap<TargetKey, IndexedJar> targetToJars;
+  // the transitive closure of each looked-up target, including the target itself. Closures of
+  // different modules overlap heavily, so they're only kept while memory allows.
+  private final LoadingCache<TargetKey, ImmutableSet<TargetKey>> closures =
+      CacheBuilder.newBuilder().softValues().build(CacheLoader.from(this::computeClosure));
+
+  private JarClassIndex(
+      TargetMap targetMap,
+      ImmutableListMultimap<String, IndexedJar> classToJars,
+      ImmutableListMultimap<TargetKey, IndexedJar> targetToJars) {
+    this.targetMap = targetMap;
+    this.classToJars = classToJars;
+    this.targetToJars = targetToJars;
+  }
+
+  /** Returns the index built after the last sync, or null if there isn't one (yet). */
+  @Nullable
+  static JarClassIndex getInstance(Project project) {
+    return project.getUserData(INDEX_KEY);
+  }
+
+  /**
+   * Rebuilds the index for the given project data in the background. Called when a sync
+   * completes; until the new index is ready, lookups fall back to searching the jars directly.
+   */
+  static void rebuild(Project project, BlazeProjectData projectData) {
+    Object rebuild = new Object();
+    synchronized (JarClassIndex.class) {
+      project.putUserData(INDEX_KEY, null);
+      project.putUserData(REBUILD_KEY, rebuild);
+    }
+    Collection<TargetKey> roots =
+        AndroidResourceModuleRegistry.getInstance(project).getTargetKeys();
+    // not run on the BlazeExecutor itself, as it waits for the jars to be read there
+    PooledThreadExecutor.INSTANCE.execute(
+        () -> {
+          if (project.isDisposed()) {
+            return;
+          }
+          JarClassIndex index =
+              build(
+                  projectData.getTargetMap(),
+                  roots,
+                  a ->
+                      OutputArtifactResolver.resolve(
+                          project, projectData.getArtifactLocationDecoder(), a),
+                  BlazeExecutor.getInstance().getExecutor());
+          synchronized (JarClassIndex.class) {
+            if (project.getUserData(REBUILD_KEY) == rebuild && !project.isDisposed()) {
+              project.putUserData(INDEX_KEY, index);
+              project.putUserData(REBUILD_KEY, null);
+            }
+          }
+        });
+  }
+
+  /** Drops the index, so lookups fall back to searching the jars directly. */
+  static void clear(Project project) {
+    synchronized (JarClassIndex.class) {
+      project.putUserData(INDEX_KEY, null);
+      project.putUserData(REBUILD_KEY, null);
+    }
+  }
+
+  @VisibleForTesting
+  static JarClassIndex build(
+      TargetMap targetMap,
+      Collection<TargetKey> roots,
+      Function<ArtifactLocation, File> resolver,
+      ListeningExecutorService executor) {
+    Stopwatch timer = Stopwatch.createStarted();
+    ImmutableSet<TargetKey> rootSet = ImmutableSet.copyOf(roots);
+    ImmutableList<IndexedJar> jars =
+        Stream.concat(
+                roots.stream(),
+                TransitiveDependencyMap.getTransitiveDependenciesStream(roots, targetMap))
+            .distinct()
+            .map(targetMap::get)
+            .filter(t -> t != null && t.getJavaIdeInfo() != null)
+            .flatMap(t -> getClassJars(t, rootSet.contains(t.getKey()), resolver))
+            .collect(toImmutableList());
+
+    List<ListenableFuture<ImmutableList<String>>> futures = new ArrayList<>();
+    for (IndexedJar jar : jars) {
+      futures.add(executor.submit(() -> readClassEntries(jar)));
+    }
+    List<ImmutableList<String>> entries;
+    try {
+      entries = Futures.allAsList(futures).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      futures.forEach(f -> f.cancel(true));
+      entries = ImmutableList.of();
+    } catch (ExecutionException e) {
+      logger.warn("Failed to index class jars", e);
+      entries = ImmutableList.of();
+    }
+
+    ImmutableListMultimap.Builder<String, IndexedJar> classToJars = ImmutableListMultimap.builder();
+    ImmutableListMultimap.Builder<TargetKey, IndexedJar> targetToJars =
+        ImmutableListMultimap.builder();
+    for (int i = 0; i < jars.size(); i++) {
+      IndexedJar jar = jars.get(i);
+      targetToJars.put(jar.target, jar);
+      if (jar.isIndexed() && i < entries.size()) {
+        entries.get(i).forEach(name -> classToJars.put(name, jar));
+      }
+    }
+    JarClassIndex index = new JarClassIndex(targetMap, classToJars.build(), targetToJars.build());
+    logger.info(
+        String.format(
+            "Indexed %d classes in %d jars in %d ms",
+            index.classToJars.keySet().size(),
+            jars.size(),
+            timer.elapsed(TimeUnit.MILLISECONDS)));
+    return index;
+  }
+
+  /**
+   * Returns the target's class jars. Resource jars are only included for resource module targets,
+   * as they're never searched from other targets.
+   */
+  private static Stream<IndexedJar> getClassJars(
+      TargetIdeInfo target, boolean isRoot, Function<ArtifactLocation, File> resolver) {
+    LibraryArtifact resourceJar =
+        target.getAndroidIdeInfo() != null ? target.getAndroidIdeInfo().getResourceJar() : null;
+    List<IndexedJar> jars = new ArrayList<>();
+    for (LibraryArtifact jar : target.getJavaIdeInfo().getJars()) {
+      boolean isResourceJar = jar.equals(resourceJar);
+      ArtifactLocation classJar = jar.getClassJar();
+      if ((isResourceJar && !isRoot) || classJar == null || classJar.isSource()) {
+        continue;
+      }
+      File file = resolver.apply(classJar);
+      if (file != null) {
+        jars.add(new IndexedJar(target.getKey(), file, isResourceJar, file.lastModified()));
+      }
+    }
+    return jars.stream();
+  }
+
+  private static ImmutableList<String> readClassEntries(IndexedJar jar) {
+    if (!jar.isIndexed()) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<String> names = ImmutableList.builder();
+    try (ZipFile zip = new ZipFile(jar.file)) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        if (name.endsWith(".class")) {
+          names.add(name);
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to read class jar: " + jar.file, e);
+    }
+    return names.build();
+  }
+
+  /**
+   * Returns the jar containing the given .class file path (e.g. 'com/foo/Bar.class') within the
+   * transitive closure of the given target, preferring the target's own jars. Resource jars are
+   * only searched for their own target, as with {@link
+   * TransitiveClosureClassFileFinder#getNonResourceJars}.
+   */
+  @Nullable
+  IndexedJar findJar(TargetKey target, String classFilePath) {
+    ImmutableList<IndexedJar> candidates = classToJars.get(classFilePath);
+    if (candidates.isEmpty()) {
+      return null;
+    }
+    IndexedJar found = null;
+    for (IndexedJar jar : candidates) {
+      if (jar.target.equals(target)) {
+        return jar;
+      }
+      if (found == null && !jar.isResourceJar && getClosure(target).contains(jar.target)) {
+        found = jar;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns all the class jars searched for the given target: those of the target itself and its
+   * transitive dependencies, excluding the dependencies' resource jars. Jars which didn't exist or
+   * have been rebuilt since the index was built need to be searched directly.
+   */
+  Stream<IndexedJar> getJarsInClosure(TargetKey target) {
+    return getClosure(target).stream()
+        .flatMap(t -> targetToJars.get(t).stream())
+        .filter(jar -> !jar.isResourceJar || jar.target.equals(target));
+  }
+
+  private ImmutableSet<TargetKey> getClosure(TargetKey target) {
+    return closures.getUnchecked(target);
+  }
+
+  private ImmutableSet<TargetKey> computeClosure(TargetKey target) {
+    return ImmutableSet.<TargetKey>builder()
+        .add(target)
+        .addAll(TransitiveDependencyMap.getTransitiveDependencies(target, targetMap))
+        .build();
+  }
+}
@@ -15,8 +15,12 @@
  */
 package com.google.idea.blaze.android.projectsystem;
 
-import com.android.tools.idea.projectsystem.ClassFileFinderUtil;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.SdkConstants;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.idea.blaze.android.sync.model.AndroidResourceModule;
 import com.google.idea.blaze.android.sync.model.AndroidResourceModuleRegistry;
@@ -35,11 +39,28 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -66,6 +87,10 @@ public class RenderJarClassFileFinder implements BlazeClassFileFinder {
 
   private static final String INTERNAL_PACKAGE = "_layoutlib_._internal_.";
 
+  /** Per-binary render JAR class tables, shared by all modules and invalidated on sync. */
+  private static final Key<CachedValue<ConcurrentMap<TargetKey, RenderJarClassTable>>>
+      CLASS_TABLES_KEY = Key.create("blaze.render.jar.class.tables");
+
   private final Module module;
   private final Project project;
 
@@ -81,6 +106,12 @@ public class RenderJarClassFileFinder implements BlazeClassFileFinder {
   // true if the current module is the .workspace Module
   private final boolean isWorkspaceModule;
 
+  // the class tables used for the last lookup; missingClasses is only valid for these tables
+  private volatile ImmutableList<RenderJarClassTable> lastClassTables = ImmutableList.of();
+
+  // classes which couldn't be found in the render JARs of binaryTargets
+  private final Set<String> missingClasses = ConcurrentHashMap.newKeySet();
+
   public RenderJarClassFileFinder(Module module) {
     this.module = module;
     this.project = module.getProject();
@@ -126,13 +157,31 @@ public class RenderJarClassFileFinder implements BlazeClassFileFinder {
     // androidResourceModule. One androidResourceModule can comprise of multiple resource targets.
     // The binaries can depend on any subset of these resource targets. Generally, we only
     // expect one, or a small number of binaries here.
-    for (TargetKey binaryTarget : binaryTargets) {
-      VirtualFile classFile = getClassFromRenderResolveJar(projectData, fqcn, binaryTarget);
+    ImmutableList<RenderJarClassTable> classTables =
+        binaryTargets.stream()
+            .map(binaryTarget -> getClassTable(projectData, binaryTarget))
+            .filter(Objects::nonNull)
+            .collect(toImmutableList());
+    if (!classTables.equals(lastClassTables)) {
+      // a render jar has been (re)built since the classes were last looked up
+      lastClassTables = classTables;
+      missingClasses.clear();
+    }
+    if (missingClasses.contains(fqcn)) {
+      return null;
+    }
+
+    for (RenderJarClassTable classTable : classTables) {
+      VirtualFile classFile = classTable.findClassFile(fqcn);
       if (classFile != null) {
+        // #as41: This call can be removed once as4.1 is paved
+        // Try to register the resource package for the found class
+        ResourceRepositoryUpdater.registerResourcePackageForClass(module, classFile, fqcn);
         return classFile;
       }
     }
 
+    missingClasses.add(fqcn);
     log.error(
         String.format(
             "Could not find %s\nModule: %s\nBinary Targets:\n  %s",
@@ -157,6 +206,7 @@ public class RenderJarClassFileFinder implements BlazeClassFileFinder {
       return binaryTargets;
     }
     lastSyncCount = currentSyncCount;
+    missingClasses.clear();
 
     AndroidResourceModule androidResourceModule =
         AndroidResourceModuleRegistry.getInstance(project).get(module);
@@ -174,12 +224,27 @@ public class RenderJarClassFileFinder implements BlazeClassFileFinder {
   }
 
   /**
-   * Returns class file for fqcn if found in the render JAR corresponding to {@code binaryTarget}.
-   * Returns null if something goes wrong or if render JAR does not contain fqcn
+   * Returns the class table for the render JAR corresponding to {@code binaryTarget}. The table is
+   * rebuilt after every sync, and whenever the render JAR is modified. Returns null if something
+   * goes wrong.
    */
   @Nullable
-  private VirtualFile getClassFromRenderResolveJar(
-      BlazeProjectData projectData, String fqcn, TargetKey binaryTarget) {
+  private RenderJarClassTable getClassTable(BlazeProjectData projectData, TargetKey binaryTarget) {
+    ConcurrentMap<TargetKey, RenderJarClassTable> classTables =
+        CachedValuesManager.getManager(project)
+            .getCachedValue(
+                project,
+                CLASS_TABLES_KEY,
+                () ->
+                    CachedValueProvider.Result.create(
+                        new ConcurrentHashMap<>(),
+                        BlazeSyncModificationTracker.getInstance(project)),
+                false);
+    RenderJarClassTable classTable = classTables.get(binaryTarget);
+    if (classTable != null && classTable.isUpToDate()) {
+      return classTable;
+    }
+
     TargetIdeInfo ideInfo = projectData.getTargetMap().get(binaryTarget);
     if (ideInfo == null) {
       return null;
@@ -211,21 +276,90 @@ public class RenderJarClassFileFinder implements BlazeClassFileFinder {
     if (renderResolveJarVF == null) {
       return null;
     }
+    VirtualFile jarRoot = getJarRootForLocalFile(renderResolveJarVF);
+    if (jarRoot == null) {
+      return null;
+    }
 
-    VirtualFile classFile = findClassInJar(renderResolveJarVF, fqcn);
-    // #as41: This call can be removed once as4.1 is paved
-    // Try to register the resource package for the found class
-    ResourceRepositoryUpdater.registerResourcePackageForClass(module, classFile, fqcn);
-    return classFile;
+    classTable = RenderJarClassTable.build(renderResolveJarVF, renderResolveJarFile, jarRoot);
+    classTables.put(binaryTarget, classTable);
+    return classTable;
   }
 
-  @Nullable
-  private static VirtualFile findClassInJar(final VirtualFile classJar, String fqcn) {
-    VirtualFile jarRoot = getJarRootForLocalFile(classJar);
-    if (jarRoot == null) {
-      return null;
+  /**
+   * The .class files in a render JAR, keyed by fully qualified class name with '$' replaced by '.',
+   * so classes can be looked up in constant time without traversing the JAR in the VFS.
+   */
+  private static final class RenderJarClassTable {
+    private final VirtualFile jar;
+    private final long timestamp;
+    private final VirtualFile jarRoot;
+    // normalized class name -> path of the .class file relative to the JAR root
+    private final ImmutableMap<String, String> classPaths;
+    private final ConcurrentMap<String, VirtualFile> classFiles = new ConcurrentHashMap<>();
+
+    private RenderJarClassTable(
+        VirtualFile jar, VirtualFile jarRoot, ImmutableMap<String, String> classPaths) {
+      this.jar = jar;
+      this.timestamp = jar.getTimeStamp();
+      this.jarRoot = jarRoot;
+      this.classPaths = classPaths;
+    }
+
+    static RenderJarClassTable build(VirtualFile jar, File jarFile, VirtualFile jarRoot) {
+      Map<String, String> classPaths = new HashMap<>();
+      Consumer<String> addClass =
+          path -> {
+            if (path.endsWith(SdkConstants.DOT_CLASS)) {
+              String name = path.substring(0, path.length() - SdkConstants.DOT_CLASS.length());
+              classPaths.putIfAbsent(name.replace('/', '.').replace('$', '.'), path);
+            }
+          };
+      if (ApplicationManager.getApplication().isUnitTestMode()) {
+        // test JARs only exist in the VFS
+        VfsUtilCore.visitChildrenRecursively(
+            jarRoot,
+            new VirtualFileVisitor<Void>() {
+              @Override
+              public boolean visitFile(VirtualFile file) {
+                if (!file.isDirectory()) {
+                  addClass.accept(VfsUtilCore.getRelativePath(file, jarRoot));
+                }
+                return true;
+              }
+            });
+      } else {
+        try (ZipFile zip = new ZipFile(jarFile)) {
+          Enumeration<? extends ZipEntry> entries = zip.entries();
+          while (entries.hasMoreElements()) {
+            addClass.accept(entries.nextElement().getName());
+          }
+        } catch (IOException e) {
+          log.warn("Could not read render resolve jar " + jarFile, e);
+        }
+      }
+      return new RenderJarClassTable(jar, jarRoot, ImmutableMap.copyOf(classPaths));
+    }
+
+    boolean isUpToDate() {
+      return jar.isValid() && jarRoot.isValid() && jar.getTimeStamp() == timestamp;
+    }
+
+    @Nullable
+    VirtualFile findClassFile(String fqcn) {
+      String path = classPaths.get(fqcn.replace('$', '.'));
+      if (path == null) {
+        return null;
+      }
+      VirtualFile classFile = classFiles.get(path);
+      if (classFile == null || !classFile.isValid()) {
+        classFile = jarRoot.findFileByRelativePath(path);
+        if (classFile != null) {
+          classFiles.put(path, classFile);
+        }
+      }
+      return classFile;
     }
-    return ClassFileFinderUtil.findClassFileInOutputRoot(jarRoot, fqcn);
   }
 
   /** Test aware method to redirect JARs to {@link VirtualFileSystemProvider} for tests */
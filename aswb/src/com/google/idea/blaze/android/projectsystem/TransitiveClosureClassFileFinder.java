@@ -18,21 +18,32 @@ package com.google.idea.blaze.android.projectsystem;
 import com.android.SdkConstants;
 import com.android.tools.idea.project.ModuleBasedClassFileFinder;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.idea.blaze.android.projectsystem.JarClassIndex.IndexedJar;
 import com.google.idea.blaze.android.sync.model.AndroidResourceModuleRegistry;
 import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.io.VirtualFileSystemProvider;
 import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.projectview.ProjectViewSet;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.sync.SyncListener;
+import com.google.idea.blaze.base.sync.SyncMode;
+import com.google.idea.blaze.base.sync.SyncResult;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
 import com.google.idea.blaze.base.targetmaps.TransitiveDependencyMap;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -52,14 +63,17 @@ import javax.annotation.Nullable;
  * jars belonging to each Blaze target in the transitive closure of the target corresponding to each
  * resource module.
  *
- * <p>TODO: Prevent duplicate checking of Blaze targets. The findClassFileInModule method gets
- * called for every module in the project since they all transitively depend on each other, and the
- * corresponding Blaze targets have many overlapping transitive dependencies.
+ * <p>Lookups go through a {@link JarClassIndex} built after each sync completes, so the
+ * overlapping transitive closures of different modules' targets aren't searched jar by jar on
+ * every lookup.
  */
 public class TransitiveClosureClassFileFinder extends ModuleBasedClassFileFinder
     implements BlazeClassFileFinder {
   public static final String CLASS_FINDER_KEY = "TransitiveClosureClassFileFinder";
 
+  private static final BoolExperiment useClassIndex =
+      new BoolExperiment("aswb.transitive.closure.class.index", true);
+
   private final AtomicBoolean pendingJarsRefresh;
 
   public TransitiveClosureClassFileFinder(Module module) {
@@ -103,6 +117,13 @@ public class TransitiveClosureClassFileFinder extends ModuleBasedClassFileFinder
 
     String classNamePath = className.replace('.', File.separatorChar) + SdkConstants.DOT_CLASS;
 
+    if (useClassIndex.getValue()) {
+      JarClassIndex index = JarClassIndex.getInstance(module.getProject());
+      if (index != null) {
+        return findClassFileWithIndex(index, target.getKey(), className, classNamePath);
+      }
+    }
+
     List<LibraryArtifact> jarsToSearch = Lists.newArrayList(target.getJavaIdeInfo().getJars());
     jarsToSearch.addAll(
         TransitiveDependencyMap.getInstance(module.getProject())
@@ -143,6 +164,58 @@ public class TransitiveClosureClassFileFinder extends ModuleBasedClassFileFinder
     return null;
   }
 
+  /**
+   * Looks up the class jar in the sync-time class index. If the class isn't found there, jars
+   * which didn't exist when the index was built, or have been rebuilt since (e.g. by a build
+   * adding new views), are searched individually.
+   */
+  @Nullable
+  private VirtualFile findClassFileWithIndex(
+      JarClassIndex index, TargetKey target, String className, String classNamePath) {
+    IndexedJar indexedJar =
+        index.findJar(target, className.replace('.', '/') + SdkConstants.DOT_CLASS);
+    if (indexedJar != null) {
+      VirtualFile classJarVF = getJarVirtualFile(indexedJar);
+      VirtualFile classFile =
+          classJarVF != null ? findClassInJar(classJarVF, classNamePath) : null;
+      if (classFile != null) {
+        return classFile;
+      }
+    }
+
+    List<File> missingClassJars = Lists.newArrayList();
+    for (IndexedJar jar : index.getJarsInClosure(target).collect(Collectors.toList())) {
+      VirtualFile classJarVF = getJarVirtualFile(jar);
+      if (classJarVF == null) {
+        if (jar.file.exists()) {
+          missingClassJars.add(jar.file);
+        }
+        continue;
+      }
+      if (jar.isIndexed() && classJarVF.getTimeStamp() == jar.timestamp) {
+        // the index is up to date for this jar
+        continue;
+      }
+      VirtualFile classFile = findClassInJar(classJarVF, classNamePath);
+      if (classFile != null) {
+        return classFile;
+      }
+    }
+
+    maybeRefreshJars(missingClassJars, pendingJarsRefresh);
+    return null;
+  }
+
+  @Nullable
+  private static VirtualFile getJarVirtualFile(IndexedJar jar) {
+    VirtualFile vf = jar.virtualFile;
+    if (vf == null || !vf.isValid()) {
+      vf = VirtualFileSystemProvider.getInstance().getSystem().findFileByIoFile(jar.file);
+      jar.virtualFile = vf;
+    }
+    return vf;
+  }
+
   public static Stream<LibraryArtifact> getNonResourceJars(TargetIdeInfo target) {
     if (target.getJavaIdeInfo() == null) {
       return null;
@@ -154,6 +227,29 @@ public class TransitiveClosureClassFileFinder extends ModuleBasedClassFileFinder
     return jars;
   }
 
+  /**
+   * Rebuilds the class index in the background when a sync completes, so it's never built during
+   * a lookup, nor holds up the sync.
+   */
+  public static class IndexSyncListener implements SyncListener {
+    @Override
+    public void onSyncComplete(
+        Project project,
+        BlazeContext context,
+        BlazeImportSettings importSettings,
+        ProjectViewSet projectViewSet,
+        ImmutableSet<Integer> buildIds,
+        BlazeProjectData blazeProjectData,
+        SyncMode syncMode,
+        SyncResult syncResult) {
+      if (useClassIndex.getValue()) {
+        JarClassIndex.rebuild(project, blazeProjectData);
+      } else {
+        JarClassIndex.clear(project);
+      }
+    }
+  }
+
   @Nullable
   private static VirtualFile findClassInJar(final VirtualFile classJar, String classNamePath) {
     VirtualFile jarRoot = getJarRootForLocalFile(classJar);
@@ -29,6 +29,7 @@ import com.google.idea.blaze.android.sync.model.BlazeAndroidImportResult;
 import com.google.idea.blaze.android.sync.model.BlazeAndroidSyncData;
 import com.google.idea.blaze.android.sync.projectstructure.BlazeAndroidProjectStructureSyncer;
 import com.google.idea.blaze.android.sync.sdk.AndroidSdkFromProjectView;
+import com.google.idea.blaze.base.command.info.BlazeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.BlazeVersionData;
@@ -108,6 +109,7 @@ public class BlazeAndroidSyncPlugin implements BlazeSyncPlugin {
       WorkspaceRoot workspaceRoot,
       ProjectViewSet projectViewSet,
       WorkspaceLanguageSettings workspaceLanguageSettings,
+      BlazeInfo blazeInfo,
       BlazeVersionData blazeVersionData,
       @Nullable WorkingSet workingSet,
       ArtifactLocationDecoder artifactLocationDecoder,
@@ -140,12 +142,14 @@ public class BlazeAndroidSyncPlugin implements BlazeSyncPlugin {
 
     BlazeAndroidWorkspaceImporter workspaceImporter =
         new BlazeAndroidWorkspaceImporter(project, context, inputs);
+    // incremental syncs only rebuild the resource modules of targets which changed
+    boolean reusePreviousResult = syncMode != SyncMode.FULL && previousSyncState != null;
     BlazeAndroidImportResult importResult =
         Scope.push(
             context,
             (childContext) -> {
               childContext.push(new TimingScope("AndroidWorkspaceImporter", EventType.Other));
-              return workspaceImporter.importWorkspace();
+              return workspaceImporter.importWorkspace(reusePreviousResult);
             });
     syncStateBuilder.put(new BlazeAndroidSyncData(importResult, androidSdkPlatform));
   }
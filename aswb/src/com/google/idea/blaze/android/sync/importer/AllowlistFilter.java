@@ -31,7 +31,7 @@ import java.util.function.Predicate;
  * retained without checking them against the allowlist.
  */
 public class AllowlistFilter implements Predicate<ArtifactLocation> {
-  final Set<ArtifactLocation> testedAgainstAllowlist = Sets.newHashSet();
+  final Set<ArtifactLocation> testedAgainstAllowlist = Sets.newConcurrentHashSet();
   private final ImmutableSet<String> allowedPaths;
   private final Predicate<ArtifactLocation> retentionFilter;
 
@@ -25,18 +25,23 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.idea.blaze.android.sync.importer.aggregators.DependencyUtil;
 import com.google.idea.blaze.android.sync.importer.problems.GeneratedResourceRetentionFilter;
 import com.google.idea.blaze.android.sync.importer.problems.GeneratedResourceWarnings;
 import com.google.idea.blaze.android.sync.model.AarLibrary;
 import com.google.idea.blaze.android.sync.model.AndroidResourceModule;
 import com.google.idea.blaze.android.sync.model.BlazeAndroidImportResult;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.ideinfo.AndroidIdeInfo;
 import com.google.idea.blaze.base.ideinfo.AndroidResFolder;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.LibraryKey;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.scope.BlazeContext;
@@ -44,8 +49,10 @@ import com.google.idea.blaze.base.scope.Output;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
 import com.google.idea.blaze.base.scope.output.IssueOutput.Category;
 import com.google.idea.blaze.base.scope.output.PerformanceWarning;
+import com.google.idea.blaze.base.sync.PreviousImportCache;
 import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.project.Project;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -53,9 +60,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
@@ -78,6 +86,14 @@ public class BlazeAndroidWorkspaceImporter {
   static final BoolExperiment workspaceOnlyResourcesEnabled =
       new BoolExperiment("aswb.attach.workspace.only.resources", true);
 
+  @VisibleForTesting
+  static final BoolExperiment incrementalResourceModulesEnabled =
+      new BoolExperiment("aswb.incremental.resource.modules", true);
+
+  /** The per-target resource module builders computed by the last import for a project. */
+  private static final PreviousImportCache<PreviousResourceModules> previousImportCache =
+      new PreviousImportCache<>("blaze.android.previous.resource.modules", "resource module data");
+
   private final Project project;
   private final Consumer<Output> context;
   private final BlazeImportInput input;
@@ -85,6 +101,13 @@ public class BlazeAndroidWorkspaceImporter {
   private final Predicate<ArtifactLocation> shouldCreateFakeAar;
   ImmutableSet<String> allowedGenResourcePaths;
   private final AllowlistFilter allowlistFilter;
+  // whether each target gets its own resource module; filled concurrently
+  private final Map<TargetKey, Boolean> targetCreatesModule = new ConcurrentHashMap<>();
+  // the previous import's results, if they can be reused by the current import
+  @Nullable private PreviousResourceModules previousResourceModules;
+  // targets for which the previous import's resource module builder was reused; filled
+  // concurrently
+  private final Set<TargetKey> reusedTargets = ConcurrentHashMap.newKeySet();
 
   public BlazeAndroidWorkspaceImporter(
       Project project, BlazeContext context, BlazeImportInput input) {
@@ -104,33 +127,72 @@ public class BlazeAndroidWorkspaceImporter {
   }
 
   public BlazeAndroidImportResult importWorkspace() {
+    return importWorkspace(/* reusePreviousResult= */ false);
+  }
+
+  /**
+   * Builds the android import result.
+   *
+   * @param reusePreviousResult if true, the resource module builders computed by this project's
+   *     previous import are reused for targets whose transitive resource dependencies haven't
+   *     changed since
+   */
+  public BlazeAndroidImportResult importWorkspace(boolean reusePreviousResult) {
     List<TargetIdeInfo> sourceTargets = BlazeImportUtil.getSourceTargets(input);
     LibraryFactory libraries = new LibraryFactory();
     ImmutableList.Builder<AndroidResourceModule> resourceModules = new ImmutableList.Builder<>();
     ImmutableList.Builder<AndroidResourceModule> workspaceResourceModules =
         new ImmutableList.Builder<>();
+
+    ImmutableList<Object> importSettings =
+        PreviousImportCache.getImportSettings(
+            input.workspaceRoot,
+            input.buildSystem,
+            input.projectViewSet,
+            workspaceOnlyResourcesEnabled.getValue());
+    previousResourceModules =
+        previousImportCache.get(
+            project,
+            reusePreviousResult && incrementalResourceModulesEnabled.getValue(),
+            importSettings);
+
+    // Deciding which targets need a resource module is independent per target
+    List<ResourceModuleKind> resourceModuleKinds =
+        runInParallel(sourceTargets, this::getResourceModuleKind);
+    List<TargetIdeInfo> moduleTargets = new ArrayList<>();
+    for (int i = 0; i < sourceTargets.size(); i++) {
+      if (resourceModuleKinds.get(i) != ResourceModuleKind.NONE) {
+        moduleTargets.add(sourceTargets.get(i));
+      }
+    }
     Map<TargetKey, AndroidResourceModule.Builder> targetKeyToAndroidResourceModuleBuilder =
-        new HashMap<>();
+        createResourceModuleBuilders(moduleTargets, libraries);
 
     ImmutableSet<String> allowedGenResourcePaths =
         BlazeImportUtil.getAllowedGenResourcePaths(input.projectViewSet);
-    for (TargetIdeInfo target : sourceTargets) {
-      if (shouldCreateModule(target.getAndroidIdeInfo())) {
-        AndroidResourceModule.Builder androidResourceModuleBuilder =
-            getOrCreateResourceModuleBuilder(
-                target, libraries, targetKeyToAndroidResourceModuleBuilder);
-        resourceModules.add(androidResourceModuleBuilder.build());
-      } else if (workspaceOnlyResourcesEnabled.getValue()
-          && dependsOnResourceDeclaringDependencies(target)) {
+    for (int i = 0; i < sourceTargets.size(); i++) {
+      TargetIdeInfo target = sourceTargets.get(i);
+      ResourceModuleKind kind = resourceModuleKinds.get(i);
+      if (kind == ResourceModuleKind.RESOURCE_MODULE) {
+        resourceModules.add(targetKeyToAndroidResourceModuleBuilder.get(target.getKey()).build());
+      } else if (kind == ResourceModuleKind.WORKSPACE_RESOURCES) {
         // Add the target to list of potential resource modules if any of target's dependencies
         // declare resources. A target is allowed to consume resources even if it does not declare
         // any of its own
-        AndroidResourceModule.Builder resourceModuleBuilder =
-            getOrCreateResourceModuleBuilder(
-                target, libraries, targetKeyToAndroidResourceModuleBuilder);
-        workspaceResourceModules.add(resourceModuleBuilder.build());
+        workspaceResourceModules.add(
+            targetKeyToAndroidResourceModuleBuilder.get(target.getKey()).build());
       }
     }
+    if (previousResourceModules != null) {
+      context.accept(
+          previousImportCache.reuseSummary(
+              reusedTargets.size(), targetKeyToAndroidResourceModuleBuilder.size()));
+    }
+    previousImportCache.put(
+        project,
+        importSettings,
+        new PreviousResourceModules(input.targetMap, targetKeyToAndroidResourceModuleBuilder));
+    previousResourceModules = null;
 
     GeneratedResourceWarnings.submit(
         context::accept,
@@ -150,33 +212,143 @@ public class BlazeAndroidWorkspaceImporter {
         BlazeImportUtil.getResourceJars(input.targetMap.targets()));
   }
 
+  private enum ResourceModuleKind {
+    NONE,
+    RESOURCE_MODULE,
+    WORKSPACE_RESOURCES,
+  }
+
+  private ResourceModuleKind getResourceModuleKind(TargetIdeInfo target) {
+    if (shouldCreateModule(target)) {
+      return ResourceModuleKind.RESOURCE_MODULE;
+    }
+    if (workspaceOnlyResourcesEnabled.getValue()
+        && dependsOnResourceDeclaringDependencies(target)) {
+      return ResourceModuleKind.WORKSPACE_RESOURCES;
+    }
+    return ResourceModuleKind.NONE;
+  }
+
+  /** Returns the targets for which the previous import's results were reused. */
+  @VisibleForTesting
+  ImmutableSet<TargetKey> getReusedTargets() {
+    return ImmutableSet.copyOf(reusedTargets);
+  }
+
+  /**
+   * Runs the function for each item on the shared blaze executor, returning the results in the
+   * items' order.
+   */
+  private static <T, R> List<R> runInParallel(List<T> items, Function<T, R> function) {
+    ListeningExecutorService executor = BlazeExecutor.getInstance().getExecutor();
+    List<ListenableFuture<R>> futures = new ArrayList<>(items.size());
+    for (T item : items) {
+      futures.add(executor.submit(() -> function.apply(item)));
+    }
+    return Futures.getUnchecked(Futures.allAsList(futures));
+  }
+
+  /**
+   * Creates and populates an AndroidResourceModule.Builder for each of the given targets and their
+   * transitive resource dependencies.
+   *
+   * <p>Each target's own resources are collected serially, in depth-first order, as aar libraries
+   * are registered by the first target using them. The aggregation over transitive dependencies
+   * then runs in parallel, one dependency level at a time, so a target's dependencies are always
+   * complete before it's aggregated.
+   */
+  private Map<TargetKey, AndroidResourceModule.Builder> createResourceModuleBuilders(
+      List<TargetIdeInfo> targets, LibraryFactory libraryFactory) {
+    Map<TargetKey, AndroidResourceModule.Builder> resourceModuleBuilders =
+        new ConcurrentHashMap<>();
+    Map<TargetKey, Integer> levels = new HashMap<>();
+    List<List<TargetIdeInfo>> targetsByLevel = new ArrayList<>();
+    for (TargetIdeInfo target : targets) {
+      createLocalResourceModuleBuilder(
+          target, libraryFactory, resourceModuleBuilders, levels, targetsByLevel);
+    }
+    for (List<TargetIdeInfo> level : targetsByLevel) {
+      runInParallel(
+          level,
+          target -> {
+            aggregateResourceModuleBuilder(target, resourceModuleBuilders);
+            return null;
+          });
+    }
+    return resourceModuleBuilders;
+  }
+
   /**
-   * Creates and populates an AndroidResourceModule.Builder for the given target by recursively
-   * aggregating the AndroidResourceModule.Builders of its transitive dependencies, or reuses an
-   * existing builder if it's cached in resourceModuleBuilderCache.
+   * Creates the builders of the target and its transitive resource dependencies with their own
+   * resources, returning the target's dependency level: 0 for targets without resource
+   * dependencies, otherwise one more than its deepest dependency.
    */
-  private AndroidResourceModule.Builder getOrCreateResourceModuleBuilder(
+  private int createLocalResourceModuleBuilder(
       TargetIdeInfo target,
       LibraryFactory libraryFactory,
-      Map<TargetKey, AndroidResourceModule.Builder> resourceModuleBuilderCache) {
+      Map<TargetKey, AndroidResourceModule.Builder> resourceModuleBuilders,
+      Map<TargetKey, Integer> levels,
+      List<List<TargetIdeInfo>> targetsByLevel) {
     TargetKey targetKey = target.getKey();
-    if (resourceModuleBuilderCache.containsKey(targetKey)) {
-      return resourceModuleBuilderCache.get(targetKey);
+    Integer existingLevel = levels.get(targetKey);
+    if (existingLevel != null) {
+      return existingLevel;
     }
-    AndroidResourceModule.Builder targetResourceModule =
-        createResourceModuleBuilder(target, libraryFactory);
-    resourceModuleBuilderCache.put(targetKey, targetResourceModule);
+    resourceModuleBuilders.put(targetKey, createResourceModuleBuilder(target, libraryFactory));
+    // so dependency cycles terminate
+    levels.put(targetKey, -1);
+    int level = 0;
     for (TargetKey dep : DependencyUtil.getResourceDependencies(target)) {
       TargetIdeInfo depIdeInfo = input.targetMap.get(dep);
-      reduce(
-          targetKey,
-          targetResourceModule,
-          dep,
-          depIdeInfo,
-          libraryFactory,
-          resourceModuleBuilderCache);
+      if (depIdeInfo != null) {
+        int depLevel =
+            createLocalResourceModuleBuilder(
+                depIdeInfo, libraryFactory, resourceModuleBuilders, levels, targetsByLevel);
+        level = Math.max(level, depLevel + 1);
+      }
+    }
+    levels.put(targetKey, level);
+    while (targetsByLevel.size() <= level) {
+      targetsByLevel.add(new ArrayList<>());
+    }
+    targetsByLevel.get(level).add(target);
+    return level;
+  }
+
+  /**
+   * Aggregates the resource module builders of the target's resource dependencies into its own
+   * builder.
+   *
+   * <p>If the target and its transitive resource dependencies are unchanged since the previous
+   * import, the previously aggregated builder is reused instead.
+   */
+  private void aggregateResourceModuleBuilder(
+      TargetIdeInfo target, Map<TargetKey, AndroidResourceModule.Builder> resourceModuleBuilders) {
+    TargetKey targetKey = target.getKey();
+    List<TargetKey> dependencies = DependencyUtil.getResourceDependencies(target);
+
+    AndroidResourceModule.Builder previousResourceModule =
+        previousResourceModules != null ? previousResourceModules.get(target) : null;
+    if (previousResourceModule != null) {
+      boolean dependenciesUnchanged = true;
+      for (TargetKey dep : dependencies) {
+        dependenciesUnchanged &=
+            input.targetMap.contains(dep)
+                ? reusedTargets.contains(dep)
+                : !previousResourceModules.contains(dep);
+      }
+      if (dependenciesUnchanged) {
+        resourceModuleBuilders.put(targetKey, previousResourceModule);
+        reusedTargets.add(targetKey);
+        return;
+      }
+    }
+
+    AndroidResourceModule.Builder targetResourceModule = resourceModuleBuilders.get(targetKey);
+    for (TargetKey dep : dependencies) {
+      TargetIdeInfo depIdeInfo = input.targetMap.get(dep);
+      reduce(targetKey, targetResourceModule, dep, depIdeInfo, resourceModuleBuilders);
     }
-    return targetResourceModule;
   }
 
   protected void reduce(
@@ -184,23 +356,32 @@ public class BlazeAndroidWorkspaceImporter {
       AndroidResourceModule.Builder targetResourceModule,
       TargetKey depKey,
       TargetIdeInfo depIdeInfo,
-      LibraryFactory libraryFactory,
-      Map<TargetKey, AndroidResourceModule.Builder> resourceModuleBuilderCache) {
+      Map<TargetKey, AndroidResourceModule.Builder> resourceModuleBuilders) {
     if (depIdeInfo != null) {
-      AndroidResourceModule.Builder depTargetResourceModule =
-          getOrCreateResourceModuleBuilder(depIdeInfo, libraryFactory, resourceModuleBuilderCache);
+      AndroidResourceModule.Builder depTargetResourceModule = resourceModuleBuilders.get(depKey);
       targetResourceModule.addTransitiveResources(depTargetResourceModule.getTransitiveResources());
       targetResourceModule.addResourceLibraryKeys(depTargetResourceModule.getResourceLibraryKeys());
-      targetResourceModule.addTransitiveResourceDependencies(
-          depTargetResourceModule.getTransitiveResourceDependencies().stream()
-              .filter(key -> !targetKey.equals(key))
-              .collect(Collectors.toList()));
-      if (shouldCreateModule(depIdeInfo.getAndroidIdeInfo()) && !depKey.equals(targetKey)) {
+      for (TargetKey key : depTargetResourceModule.getTransitiveResourceDependencies()) {
+        if (!targetKey.equals(key)) {
+          targetResourceModule.addTransitiveResourceDependency(key);
+        }
+      }
+      if (shouldCreateModule(depIdeInfo) && !depKey.equals(targetKey)) {
         targetResourceModule.addTransitiveResourceDependency(depKey);
       }
     }
   }
 
+  /** Returns whether the target gets its own resource module. Memoized per target. */
+  private boolean shouldCreateModule(TargetIdeInfo target) {
+    Boolean createModule = targetCreatesModule.get(target.getKey());
+    if (createModule == null) {
+      createModule = shouldCreateModule(target.getAndroidIdeInfo());
+      targetCreatesModule.put(target.getKey(), createModule);
+    }
+    return createModule;
+  }
+
   private boolean shouldCreateModule(@Nullable AndroidIdeInfo androidIdeInfo) {
     if (androidIdeInfo == null) {
       return false;
@@ -211,17 +392,19 @@ public class BlazeAndroidWorkspaceImporter {
 
   /** Returns true if any direct dependency of `androidIdeInfo` declares resources. */
   private boolean dependsOnResourceDeclaringDependencies(TargetIdeInfo androidIdeInfo) {
-    List<TargetKey> dependencies = DependencyUtil.getResourceDependencies(androidIdeInfo);
-    return dependencies.stream()
-        .map(input.targetMap::get)
-        .filter(Objects::nonNull)
-        .anyMatch(d -> shouldCreateModule(d.getAndroidIdeInfo()));
+    for (TargetKey dependency : DependencyUtil.getResourceDependencies(androidIdeInfo)) {
+      TargetIdeInfo target = input.targetMap.get(dependency);
+      if (target != null && shouldCreateModule(target)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
    * Helper function to create an AndroidResourceModule.Builder with initial resource information.
    * The builder is incomplete since it doesn't contain information about dependencies. {@link
-   * #getOrCreateResourceModuleBuilder} will aggregate AndroidResourceModule.Builder over its
+   * #aggregateResourceModuleBuilder} will aggregate AndroidResourceModule.Builder over its
    * transitive dependencies.
    */
   protected AndroidResourceModule.Builder createResourceModuleBuilder(
@@ -255,7 +438,7 @@ public class BlazeAndroidWorkspaceImporter {
             androidResourceModule.addResourceLibraryKey(libraryKey);
           }
         } else {
-          if (shouldCreateModule(androidIdeInfo)) {
+          if (shouldCreateModule(target)) {
             androidResourceModule.addResource(artifactLocation);
           }
           androidResourceModule.addTransitiveResource(artifactLocation);
@@ -442,6 +625,37 @@ public class BlazeAndroidWorkspaceImporter {
     return moduleBuilder.build();
   }
 
+  /**
+   * The resource module builders aggregated by an import, along with the targets they were computed
+   * from. The persisted {@link com.google.idea.blaze.android.sync.model.BlazeAndroidSyncData} only
+   * contains the final, merged modules, so these are kept in memory.
+   */
+  private static final class PreviousResourceModules {
+    private final TargetMap targetMap;
+    private final ImmutableMap<TargetKey, AndroidResourceModule.Builder> builders;
+
+    PreviousResourceModules(
+        TargetMap targetMap, Map<TargetKey, AndroidResourceModule.Builder> builders) {
+      this.targetMap = targetMap;
+      this.builders = ImmutableMap.copyOf(builders);
+    }
+
+    boolean contains(TargetKey key) {
+      return targetMap.contains(key);
+    }
+
+    /** Returns the previous builder for the target, if the target itself is unchanged. */
+    @Nullable
+    AndroidResourceModule.Builder get(TargetIdeInfo target) {
+      TargetIdeInfo previousTarget = targetMap.get(target.getKey());
+      if (previousTarget == null
+          || (previousTarget != target && !previousTarget.equals(target))) {
+        return null;
+      }
+      return builders.get(target.getKey());
+    }
+  }
+
   static class LibraryFactory {
     private Map<String, AarLibrary> aarLibraries = new HashMap<>();
 
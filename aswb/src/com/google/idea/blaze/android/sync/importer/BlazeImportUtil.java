@@ -130,7 +130,7 @@ public class BlazeImportUtil {
    * Returns the stream of {@link TargetIdeInfo} corresponding to targets that should be considered
    * source targets in the given {@link TargetMap}.
    */
-  static Stream<TargetIdeInfo> getSourceTargetsStream(
+  public static Stream<TargetIdeInfo> getSourceTargetsStream(
       TargetMap targetMap, ProjectViewTargetImportFilter importFilter) {
     return targetMap.targets().stream()
         .filter(target -> target.getKind().hasLanguage(LanguageClass.ANDROID))
@@ -17,6 +17,7 @@ package com.google.idea.blaze.android.sync.model;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.intellij.openapi.components.ServiceManager;
@@ -50,6 +51,11 @@ public class AndroidResourceModuleRegistry {
     return target == null ? null : targetToResourceModule.get(target);
   }
 
+  /** Returns the targets of all registered resource modules. */
+  public ImmutableSet<TargetKey> getTargetKeys() {
+    return ImmutableSet.copyOf(moduleToTarget.values());
+  }
+
   public Module getModule(TargetKey target) {
     return moduleToTarget.inverse().get(target);
   }
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.targetmaps;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.idea.blaze.base.ideinfo.Dependency;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A precomputed index of the targets each android binary transitively depends on.
+ *
+ * <p>Every target is given an integer id, and the transitive closure of each binary is stored as a
+ * {@link BitSet} of those ids, so finding the binaries which depend on a set of targets is a bitset
+ * intersection per binary. Dependencies are followed the same way as {@link
+ * com.google.idea.blaze.base.targetmaps.TransitiveDependencyMap}.
+ *
+ * <p>Instances are immutable. {@link #update} reuses the closures of binaries which can't have
+ * been affected by changes to the target map. Ids of targets which are no longer in the target map
+ * are kept, so the reused closures stay valid, until they outnumber the live ids, at which point
+ * the index is rebuilt from scratch.
+ */
+final class BinaryReachabilityIndex {
+
+  private final TargetMap targetMap;
+  /**
+   * Target ids. Only appended to across updates, so existing closures stay valid, until the index
+   * is rebuilt.
+   */
+  private final Map<TargetKey, Integer> targetIds;
+
+  private final ImmutableList<TargetKey> binaries;
+  /** The transitive closure of each binary, including the binary itself. */
+  private final ImmutableList<BitSet> closures;
+
+  private BinaryReachabilityIndex(
+      TargetMap targetMap,
+      Map<TargetKey, Integer> targetIds,
+      ImmutableList<TargetKey> binaries,
+      ImmutableList<BitSet> closures) {
+    this.targetMap = targetMap;
+    this.targetIds = targetIds;
+    this.binaries = binaries;
+    this.closures = closures;
+  }
+
+  /**
+   * Builds an index for the given target map and binaries, computing the closures in parallel on
+   * the given executor.
+   */
+  static BinaryReachabilityIndex create(
+      TargetMap targetMap, Collection<TargetKey> binaries, ListeningExecutorService executor) {
+    return update(
+        new BinaryReachabilityIndex(
+            new TargetMap(ImmutableMap.of()),
+            Collections.emptyMap(),
+            ImmutableList.of(),
+            ImmutableList.of()),
+        targetMap,
+        binaries,
+        executor);
+  }
+
+  /**
+   * Returns an index for the given target map and binaries. The closures of binaries which don't
+   * depend on any target whose dependencies changed are reused from {@code previous}, unless most
+   * of its target ids are stale, in which case the index is rebuilt with a compact id space.
+   */
+  static BinaryReachabilityIndex update(
+      BinaryReachabilityIndex previous,
+      TargetMap targetMap,
+      Collection<TargetKey> binaries,
+      ListeningExecutorService executor) {
+    Set<TargetKey> liveTargets = new LinkedHashSet<>();
+    for (TargetIdeInfo target : targetMap.targets()) {
+      liveTargets.add(target.getKey());
+      for (Dependency dep : target.getDependencies()) {
+        liveTargets.add(toPlainTarget(dep));
+      }
+    }
+    liveTargets.addAll(binaries);
+    if (countStaleIds(previous, liveTargets) > liveTargets.size()) {
+      return create(targetMap, binaries, executor);
+    }
+
+    Map<TargetKey, Integer> targetIds = new HashMap<>(previous.targetIds);
+    liveTargets.forEach(key -> assignId(targetIds, key));
+
+    // targets whose dependencies changed, or were removed
+    BitSet changed = new BitSet();
+    for (Map.Entry<TargetKey, TargetIdeInfo> entry : previous.targetMap.map().entrySet()) {
+      TargetIdeInfo target = targetMap.get(entry.getKey());
+      TargetIdeInfo previousTarget = entry.getValue();
+      if (target == null
+          || (target != previousTarget
+              && !target.getDependencies().equals(previousTarget.getDependencies()))) {
+        changed.set(previous.targetIds.get(entry.getKey()));
+      }
+    }
+    for (TargetKey key : targetMap.map().keySet()) {
+      Integer id = previous.targetIds.get(key);
+      if (id != null && !previous.targetMap.contains(key)) {
+        // previously only known as a dependency, but now has dependencies of its own
+        changed.set(id);
+      }
+    }
+
+    Map<TargetKey, BitSet> previousClosures = new HashMap<>();
+    for (int i = 0; i < previous.binaries.size(); i++) {
+      BitSet closure = previous.closures.get(i);
+      if (!closure.intersects(changed)) {
+        previousClosures.put(previous.binaries.get(i), closure);
+      }
+    }
+
+    ImmutableList<TargetKey> binaryList = ImmutableList.copyOf(binaries);
+    List<TargetKey> toCompute =
+        binaryList.stream()
+            .filter(binary -> !previousClosures.containsKey(binary))
+            .collect(Collectors.toList());
+    if (!toCompute.isEmpty()) {
+      int[][] dependencies = getDependencyIds(targetMap, targetIds);
+      List<ListenableFuture<BitSet>> futures = new ArrayList<>(toCompute.size());
+      for (TargetKey binary : toCompute) {
+        int id = targetIds.get(binary);
+        futures.add(executor.submit(() -> computeClosure(id, dependencies)));
+      }
+      List<BitSet> computed = Futures.getUnchecked(Futures.allAsList(futures));
+      for (int i = 0; i < toCompute.size(); i++) {
+        previousClosures.put(toCompute.get(i), computed.get(i));
+      }
+    }
+    ImmutableList<BitSet> closures =
+        binaryList.stream().map(previousClosures::get).collect(ImmutableList.toImmutableList());
+    return new BinaryReachabilityIndex(
+        targetMap, Collections.unmodifiableMap(targetIds), binaryList, closures);
+  }
+
+  /** Returns the binaries which are, or transitively depend on, any of the given targets. */
+  ImmutableSet<TargetKey> getBinariesDependingOn(Collection<TargetKey> targetKeys) {
+    BitSet query = new BitSet();
+    for (TargetKey key : targetKeys) {
+      Integer id = targetIds.get(key);
+      if (id != null) {
+        query.set(id);
+      }
+    }
+    if (query.isEmpty()) {
+      return ImmutableSet.of();
+    }
+    ImmutableSet.Builder<TargetKey> result = ImmutableSet.builder();
+    for (int i = 0; i < binaries.size(); i++) {
+      if (closures.get(i).intersects(query)) {
+        result.add(binaries.get(i));
+      }
+    }
+    return result.build();
+  }
+
+  ImmutableSet<TargetKey> getBinaries() {
+    return ImmutableSet.copyOf(binaries);
+  }
+
+  @VisibleForTesting
+  TargetMap getTargetMap() {
+    return targetMap;
+  }
+
+  @VisibleForTesting
+  int getIdCount() {
+    return targetIds.size();
+  }
+
+  /** Returns the number of ids in the previous index which no longer belong to any target. */
+  private static int countStaleIds(BinaryReachabilityIndex previous, Set<TargetKey> liveTargets) {
+    int live = 0;
+    for (TargetKey key : liveTargets) {
+      if (previous.targetIds.containsKey(key)) {
+        live++;
+      }
+    }
+    return previous.targetIds.size() - live;
+  }
+
+  private static void assignId(Map<TargetKey, Integer> targetIds, TargetKey key) {
+    targetIds.putIfAbsent(key, targetIds.size());
+  }
+
+  private static TargetKey toPlainTarget(Dependency dep) {
+    return TargetKey.forPlainTarget(dep.getTargetKey().getLabel());
+  }
+
+  private static int[][] getDependencyIds(TargetMap targetMap, Map<TargetKey, Integer> targetIds) {
+    int[][] dependencies = new int[targetIds.size()][];
+    for (TargetIdeInfo target : targetMap.targets()) {
+      ImmutableList<Dependency> deps = target.getDependencies();
+      int[] ids = new int[deps.size()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = targetIds.get(toPlainTarget(deps.get(i)));
+      }
+      dependencies[targetIds.get(target.getKey())] = ids;
+    }
+    return dependencies;
+  }
+
+  private static BitSet computeClosure(int binary, int[][] dependencies) {
+    BitSet closure = new BitSet();
+    closure.set(binary);
+    int[] queue = new int[16];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = binary;
+    while (head < tail) {
+      int[] deps = dependencies[queue[head++]];
+      if (deps == null) {
+        continue;
+      }
+      for (int dep : deps) {
+        if (!closure.get(dep)) {
+          closure.set(dep);
+          if (tail == queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+          }
+          queue[tail++] = dep;
+        }
+      }
+    }
+    return closure;
+  }
+}
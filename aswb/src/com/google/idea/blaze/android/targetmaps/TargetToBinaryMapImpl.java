@@ -15,112 +15,113 @@
  */
 package com.google.idea.blaze.android.targetmaps;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.idea.blaze.android.sync.importer.BlazeImportUtil;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.primitives.RuleType;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.settings.BlazeImportSettings;
 import com.google.idea.blaze.base.sync.SyncListener;
 import com.google.idea.blaze.base.sync.SyncMode;
 import com.google.idea.blaze.base.sync.SyncResult;
-import com.google.idea.blaze.base.targetmaps.TransitiveDependencyMap;
+import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
+import com.google.idea.blaze.base.sync.projectview.ProjectViewTargetImportFilter;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.project.Project;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 
-/** Implementation of {@link TargetToBinaryMap} */
+/**
+ * Implementation of {@link TargetToBinaryMap}.
+ *
+ * <p>Backed by a {@link BinaryReachabilityIndex}, which is rebuilt when a sync completes (reusing
+ * the results for binaries unaffected by the sync), or lazily on first use.
+ */
 public class TargetToBinaryMapImpl implements TargetToBinaryMap {
+  private static final BoolExperiment buildIndexOnSync =
+      new BoolExperiment("aswb.target.to.binary.index.on.sync", true);
 
   private final Project project;
-  private final Map<TargetKey, ImmutableSet<TargetKey>> targetToBinaries;
-  @Nullable private ImmutableSet<TargetKey> sourceBinaries;
+  @Nullable private volatile BinaryReachabilityIndex index;
 
   public TargetToBinaryMapImpl(Project project) {
     this.project = project;
-    this.targetToBinaries = new HashMap<>();
-    this.sourceBinaries = null;
   }
 
   @Override
-  public synchronized ImmutableSet<TargetKey> getBinariesDependingOn(
-      Collection<TargetKey> targetKeys) {
-    ImmutableSet<TargetKey> uncachedKeys =
-        targetKeys.stream()
-            .filter(t -> !targetToBinaries.containsKey(t))
-            .collect(ImmutableSet.toImmutableSet());
-    if (!uncachedKeys.isEmpty()) {
-      cacheBinariesForTargetKeys(uncachedKeys);
-    }
-    return targetKeys.stream()
-        .flatMap(k -> targetToBinaries.getOrDefault(k, ImmutableSet.of()).stream())
-        .collect(ImmutableSet.toImmutableSet());
+  public ImmutableSet<TargetKey> getBinariesDependingOn(Collection<TargetKey> targetKeys) {
+    return getIndex().getBinariesDependingOn(targetKeys);
   }
 
-  /**
-   * Calculates the android binary targets that depend on each target in {@code targetKeys}, and
-   * caches the calculation in {@link #targetToBinaries}. If there is already an entry in {@link
-   * #targetToBinaries} for a target, it will be overwritten with the new calculation.
-   *
-   * <p>The calculation is performed by traversing the build tree of each binary once to look for
-   * every target in {@code targetKeys}
-   */
-  private void cacheBinariesForTargetKeys(ImmutableSet<TargetKey> targetKeys) {
-    // builder map to hold intermediate values before putting the entries in targetToBinaries
-    Map<TargetKey, ImmutableSet.Builder<TargetKey>> builderMap =
-        targetKeys.stream().collect(Collectors.toMap(t -> t, t -> ImmutableSet.builder()));
-
-    Set<TargetKey> sourceBinaries = getSourceBinaryTargets();
+  @Override
+  public ImmutableSet<TargetKey> getSourceBinaryTargets() {
+    return getIndex().getBinaries();
+  }
 
-    // Ask TransitiveDependencyMap if the binary is dependant on any of the targetKeys
-    // This operation can be expensive.
-    TransitiveDependencyMap transitiveDepsMap = TransitiveDependencyMap.getInstance(project);
-    for (TargetKey sourceBinary : sourceBinaries) {
-      // Add to map if a target is itself a binary
-      if (targetKeys.contains(sourceBinary)) {
-        builderMap.get(sourceBinary).add(sourceBinary);
+  private BinaryReachabilityIndex getIndex() {
+    BinaryReachabilityIndex index = this.index;
+    if (index != null) {
+      return index;
+    }
+    synchronized (this) {
+      if (this.index == null) {
+        BlazeProjectData projectData =
+            BlazeProjectDataManager.getInstance(project).getBlazeProjectData();
+        TargetMap targetMap =
+            projectData != null ? projectData.getTargetMap() : new TargetMap(ImmutableMap.of());
+        // Note: BlazeImportUtil.getSourceTargetsStream already filters non-android targets
+        this.index =
+            BinaryReachabilityIndex.create(
+                targetMap,
+                getBinaries(BlazeImportUtil.getSourceTargetsStream(project)),
+                BlazeExecutor.getInstance().getExecutor());
       }
-      transitiveDepsMap
-          .filterPossibleTransitiveDeps(sourceBinary, targetKeys)
-          .forEach(k -> builderMap.get(k).add(sourceBinary));
+      return this.index;
     }
-
-    builderMap.forEach((target, builder) -> targetToBinaries.put(target, builder.build()));
   }
 
-  @Override
-  public synchronized ImmutableSet<TargetKey> getSourceBinaryTargets() {
-    if (sourceBinaries != null) {
-      return sourceBinaries;
-    }
-
-    // Get all android source targets and filter out non-binary targets
-    // Note: BlazeImportUtil.getSourceTargetsStream already filters non-android targets
-    Stream<TargetIdeInfo> sourceTargetsStream = BlazeImportUtil.getSourceTargetsStream(project);
-
-    sourceBinaries =
-        sourceTargetsStream
-            .filter(t -> RuleType.BINARY.equals(t.getKind().getRuleType()))
-            .map(TargetIdeInfo::getKey)
-            .collect(ImmutableSet.toImmutableSet());
-    return sourceBinaries;
+  private static ImmutableSet<TargetKey> getBinaries(Stream<TargetIdeInfo> sourceTargets) {
+    return sourceTargets
+        .filter(t -> RuleType.BINARY.equals(t.getKind().getRuleType()))
+        .map(TargetIdeInfo::getKey)
+        .collect(ImmutableSet.toImmutableSet());
   }
 
-  /** Clears cache to trigger recalculation */
-  private synchronized void invalidateCache() {
-    sourceBinaries = null;
-    targetToBinaries.clear();
+  private synchronized void onSyncComplete(
+      BlazeImportSettings importSettings,
+      ProjectViewSet projectViewSet,
+      BlazeProjectData projectData,
+      SyncMode syncMode) {
+    BinaryReachabilityIndex previous = index;
+    index = null;
+    if (!buildIndexOnSync.getValue()) {
+      return;
+    }
+    ProjectViewTargetImportFilter importFilter =
+        new ProjectViewTargetImportFilter(
+            importSettings.getBuildSystem(),
+            WorkspaceRoot.fromImportSettings(importSettings),
+            projectViewSet);
+    TargetMap targetMap = projectData.getTargetMap();
+    ImmutableSet<TargetKey> binaries =
+        getBinaries(BlazeImportUtil.getSourceTargetsStream(targetMap, importFilter));
+    ListeningExecutorService executor = BlazeExecutor.getInstance().getExecutor();
+    index =
+        previous != null && syncMode != SyncMode.FULL
+            ? BinaryReachabilityIndex.update(previous, targetMap, binaries, executor)
+            : BinaryReachabilityIndex.create(targetMap, binaries, executor);
   }
 
-  /** Adapter to listen for project syncs and clear caches where required */
+  /** Adapter to listen for project syncs and rebuild the index */
   public static class Adapter implements SyncListener {
     @Override
     public void onSyncComplete(
@@ -134,7 +135,8 @@ public class TargetToBinaryMapImpl implements TargetToBinaryMap {
         SyncResult syncResult) {
       TargetToBinaryMap instance = TargetToBinaryMap.getInstance(project);
       if (instance instanceof TargetToBinaryMapImpl) {
-        ((TargetToBinaryMapImpl) instance).invalidateCache();
+        ((TargetToBinaryMapImpl) instance)
+            .onSyncComplete(importSettings, projectViewSet, blazeProjectData, syncMode);
       }
     }
   }
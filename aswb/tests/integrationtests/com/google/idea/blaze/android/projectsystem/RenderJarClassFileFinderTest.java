@@ -33,6 +33,7 @@ import com.google.idea.blaze.base.model.MockBlazeProjectDataManager;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.settings.BlazeImportSettings;
 import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
+import com.google.idea.blaze.base.sync.BlazeSyncModificationTracker;
 import com.google.idea.blaze.base.sync.BlazeSyncPlugin.ModuleEditor;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
 import com.google.idea.blaze.base.sync.projectstructure.ModuleEditorProvider;
@@ -42,6 +43,7 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.StdModuleTypes;
+import com.intellij.openapi.util.SimpleModificationTracker;
 import java.io.File;
 import java.util.HashMap;
 import java.util.Objects;
@@ -94,6 +96,28 @@ public class RenderJarClassFileFinderTest extends BlazeAndroidIntegrationTestCas
     createBinaryJars();
   }
 
+  /** Tests that render JAR class tables are rebuilt after a sync. */
+  @Test
+  public void classTables_invalidatedOnSync() {
+    Module workspaceModule =
+        ModuleManager.getInstance(getProject()).findModuleByName(WORKSPACE_MODULE_NAME);
+    assertThat(workspaceModule).isNotNull();
+
+    RenderJarClassFileFinder classFileFinder = new RenderJarClassFileFinder(workspaceModule);
+    assertThat(classFileFinder.findClassFile("com.google.example.simple.src_a.SrcA")).isNotNull();
+
+    String newClassPath =
+        BLAZE_BIN
+            + "/com/google/example/simple/bin_a.jar!"
+            + "/com/google/example/simple/src_a/SrcANew.class";
+    fileSystem.createFile(newClassPath);
+    ((SimpleModificationTracker) BlazeSyncModificationTracker.getInstance(getProject()))
+        .incModificationCount();
+
+    assertThat(classFileFinder.findClassFile("com.google.example.simple.src_a.SrcANew"))
+        .isEqualTo(fileSystem.findFile(newClassPath));
+  }
+
   /** Tests that .workspace module can find classes from all binaries in the projectview. */
   @Test
   public void workspaceModule_canFindAllClassesInAllBinaries() {
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.libraries;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AarExtractor}. */
+@RunWith(JUnit4.class)
+public class AarExtractorTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final FileOperationProvider ops = new FileOperationProvider();
+
+  @Test
+  public void extract_extractsEverythingButJars() throws IOException {
+    File aarDir = folder.newFolder("unpacked.aar");
+    byte[] aar =
+        createAar(
+            "AndroidManifest.xml", "<manifest/>",
+            "R.txt", "int string app_name 0x7f010001",
+            "res/values/strings.xml", "<resources/>",
+            "classes.jar", "not a jar",
+            "proguard.txt", "-keep class *",
+            "assets/data.bin", "data",
+            "../outside.txt", "escaped");
+
+    AarExtractor.Stats stats = new AarExtractor.Stats();
+    AarExtractor.extract(new ByteArrayInputStream(aar), aarDir, ops, stats);
+
+    assertThat(aarDir.list())
+        .asList()
+        .containsExactly(
+            "AndroidManifest.xml",
+            "R.txt",
+            "res",
+            "proguard.txt",
+            "assets",
+            AarExtractor.CHECKSUM_FILE_NAME);
+    assertThat(readFile(new File(aarDir, "res/values/strings.xml"))).isEqualTo("<resources/>");
+    assertThat(new File(aarDir.getParentFile(), "outside.txt").exists()).isFalse();
+    assertThat(stats.getBytesExtracted())
+        .isEqualTo(
+            "<manifest/>".length()
+                + "int string app_name 0x7f010001".length()
+                + "<resources/>".length()
+                + "-keep class *".length()
+                + "data".length());
+    assertThat(stats.getBytesSkipped()).isEqualTo(0);
+  }
+
+  @Test
+  public void extract_skipsUnchangedEntriesAndRemovesStaleFiles() throws IOException {
+    File aarDir = folder.newFolder("unpacked.aar");
+    AarExtractor.extract(
+        new ByteArrayInputStream(
+            createAar(
+                "R.txt", "int string a 0x7f010001",
+                "res/values/strings.xml", "<resources/>",
+                "res/values/colors.xml", "<resources></resources>")),
+        aarDir,
+        ops,
+        new AarExtractor.Stats());
+    File strings = new File(aarDir, "res/values/strings.xml");
+    strings.setLastModified(1000);
+    // the merged jar is copied into the unpacked directory separately
+    File mergedJar = new File(aarDir, "jars/classes_and_libs_merged.jar");
+    mergedJar.getParentFile().mkdirs();
+    mergedJar.createNewFile();
+
+    AarExtractor.Stats stats = new AarExtractor.Stats();
+    AarExtractor.extract(
+        new ByteArrayInputStream(
+            createAar(
+                "res/values/strings.xml", "<resources/>",
+                "res/values/colors.xml", "<resources><color/></resources>")),
+        aarDir,
+        ops,
+        stats);
+
+    assertThat(strings.lastModified()).isEqualTo(1000);
+    assertThat(readFile(new File(aarDir, "res/values/colors.xml")))
+        .isEqualTo("<resources><color/></resources>");
+    assertThat(new File(aarDir, "R.txt").exists()).isFalse();
+    assertThat(mergedJar.exists()).isTrue();
+    assertThat(stats.getBytesSkipped()).isEqualTo("<resources/>".length());
+    assertThat(stats.getBytesExtracted()).isEqualTo("<resources><color/></resources>".length());
+  }
+
+  @Test
+  public void extract_rewritesFilesChangedSinceExtraction() throws IOException {
+    File aarDir = folder.newFolder("unpacked.aar");
+    byte[] aar = createAar("res/values/strings.xml", "<resources/>");
+    AarExtractor.extract(new ByteArrayInputStream(aar), aarDir, ops, new AarExtractor.Stats());
+    File strings = new File(aarDir, "res/values/strings.xml");
+    Files.write(strings.toPath(), "<changed/>".getBytes(UTF_8));
+
+    AarExtractor.Stats stats = new AarExtractor.Stats();
+    AarExtractor.extract(new ByteArrayInputStream(aar), aarDir, ops, stats);
+
+    assertThat(readFile(strings)).isEqualTo("<resources/>");
+    assertThat(stats.getBytesExtracted()).isEqualTo("<resources/>".length());
+  }
+
+  private static byte[] createAar(String... namesAndContents) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(out)) {
+      for (int i = 0; i < namesAndContents.length; i += 2) {
+        zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+        zip.write(namesAndContents[i + 1].getBytes(UTF_8));
+        zip.closeEntry();
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static String readFile(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), UTF_8);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.manifest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.idea.blaze.android.manifest.ManifestParser.ParsedManifest;
+import com.google.idea.blaze.base.util.SerializationUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ParsedManifestService}. */
+@RunWith(JUnit4.class)
+public class ParsedManifestServiceTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void getParsedManifest_reparsesChangedFile() throws IOException {
+    ParsedManifestService service = new ParsedManifestService(/* cacheFile= */ null);
+    File manifest = writeManifest("AndroidManifest.xml", "com.example.one");
+    assertThat(service.getParsedManifest(manifest).packageName).isEqualTo("com.example.one");
+
+    Files.write(manifest.toPath(), manifestContents("com.example.other").getBytes(UTF_8));
+    manifest.setLastModified(manifest.lastModified() + 2000);
+    assertThat(service.getParsedManifest(manifest).packageName).isEqualTo("com.example.other");
+  }
+
+  @Test
+  public void getParsedManifest_invalidManifestReturnsNull() throws IOException {
+    ParsedManifestService service = new ParsedManifestService(/* cacheFile= */ null);
+    File manifest = folder.newFile("AndroidManifest.xml");
+    Files.write(manifest.toPath(), "hello world".getBytes(UTF_8));
+    assertThat(service.getParsedManifest(manifest)).isNull();
+  }
+
+  @Test
+  public void parsedManifests_persistedAcrossInstances() throws IOException {
+    File cacheFile = new File(folder.getRoot(), "parsed_manifests.dat");
+    File manifest = writeManifest("AndroidManifest.xml", "com.example.app");
+
+    ParsedManifestService service = new ParsedManifestService(cacheFile);
+    ParsedManifest parsed = service.getParsedManifest(manifest);
+    service.saveParsedManifests();
+    assertThat(cacheFile.exists()).isTrue();
+
+    // the manifest was deleted, but a manifest with identical contents is found in the cache
+    assertThat(manifest.delete()).isTrue();
+    File copy = writeManifest("CopiedManifest.xml", "com.example.app");
+    CountingParser parser = new CountingParser();
+    ParsedManifestService restarted = new ParsedManifestService(cacheFile, parser);
+    assertThat(restarted.getParsedManifest(copy)).isEqualTo(parsed);
+    assertThat(parser.count).isEqualTo(0);
+  }
+
+  @Test
+  public void parsedManifests_oldFormatVersionDiscarded() throws IOException {
+    File cacheFile = new File(folder.getRoot(), "parsed_manifests.dat");
+    File manifest = writeManifest("AndroidManifest.xml", "com.example.app");
+    String contentHash =
+        Hashing.murmur3_128().hashBytes(Files.readAllBytes(manifest.toPath())).toString();
+    // a stale result from an older parser, which must not be served
+    HashMap<String, ParsedManifest> stale = new HashMap<>();
+    stale.put(contentHash, new ParsedManifest("com.example.stale", ImmutableList.of(), null));
+    SerializationUtil.saveToDisk(
+        cacheFile,
+        new ParsedManifestService.PersistedManifests(
+            ParsedManifestService.FORMAT_VERSION - 1, stale));
+
+    CountingParser parser = new CountingParser();
+    ParsedManifestService service = new ParsedManifestService(cacheFile, parser);
+    assertThat(service.getParsedManifest(manifest).packageName).isEqualTo("com.example.app");
+    assertThat(parser.count).isEqualTo(1);
+  }
+
+  private static class CountingParser implements ParsedManifestService.Parser {
+    int count;
+
+    @Override
+    public ParsedManifest parse(InputStream inputStream) throws IOException {
+      count++;
+      return ManifestParser.parseManifestFromInputStream(inputStream);
+    }
+  }
+
+  private File writeManifest(String fileName, String packageName) throws IOException {
+    File file = folder.newFile(fileName);
+    Files.write(file.toPath(), manifestContents(packageName).getBytes(UTF_8));
+    return file;
+  }
+
+  private static String manifestContents(String packageName) {
+    return "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+        + "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n"
+        + "    package=\""
+        + packageName
+        + "\">\n"
+        + "  <application/>\n"
+        + "</manifest>";
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.projectsystem;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.android.projectsystem.JarClassIndex.IndexedJar;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.ideinfo.AndroidIdeInfo;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.JavaIdeInfo;
+import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Kind.Provider;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.java.AndroidBlazeRules;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link JarClassIndex}. */
+@RunWith(JUnit4.class)
+public class JarClassIndexTest extends BlazeTestCase {
+
+  private static final TargetKey APP = TargetKey.forPlainTarget(Label.create("//app:app"));
+  private static final TargetKey LIB = TargetKey.forPlainTarget(Label.create("//lib:lib"));
+  private static final TargetKey OTHER = TargetKey.forPlainTarget(Label.create("//other:other"));
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private JarClassIndex index;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    ExtensionPointImpl<Provider> ep =
+        registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class);
+    ep.registerExtension(new AndroidBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+  }
+
+  @Before
+  public void buildIndex() throws IOException {
+    writeJar("app/app.jar", "app/Main.class", "app/Main$Inner.class");
+    writeJar("app/app_resources.jar", "app/R.class");
+    writeJar("lib/lib.jar", "lib/Lib.class", "lib/Shared.class");
+    writeJar("lib/lib_resources.jar", "lib/R.class");
+    writeJar("other/other.jar", "other/Other.class", "lib/Shared.class");
+
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(
+                androidLibrary("//app:app", "app/app.jar", "app/app_resources.jar")
+                    .addDependency("//lib:lib")
+                    .addDependency("//missing:missing"))
+            .addTarget(androidLibrary("//lib:lib", "lib/lib.jar", "lib/lib_resources.jar"))
+            .addTarget(androidLibrary("//missing:missing", "missing/missing.jar", null))
+            .addTarget(androidLibrary("//other:other", "other/other.jar", null))
+            .build();
+
+    index =
+        JarClassIndex.build(
+            targetMap,
+            ImmutableList.of(APP, OTHER),
+            artifact -> new File(folder.getRoot(), artifact.getRelativePath()),
+            MoreExecutors.newDirectExecutorService());
+  }
+
+  @Test
+  public void testFindClassInOwnJar() {
+    assertThat(jarPath(index.findJar(APP, "app/Main.class"))).isEqualTo("app/app.jar");
+    assertThat(jarPath(index.findJar(APP, "app/Main$Inner.class"))).isEqualTo("app/app.jar");
+  }
+
+  @Test
+  public void testFindClassInTransitiveDependency() {
+    assertThat(jarPath(index.findJar(APP, "lib/Lib.class"))).isEqualTo("lib/lib.jar");
+  }
+
+  @Test
+  public void testClassesOutsideClosureNotFound() {
+    assertThat(index.findJar(APP, "other/Other.class")).isNull();
+    assertThat(index.findJar(OTHER, "lib/Lib.class")).isNull();
+    assertThat(index.findJar(APP, "app/Missing.class")).isNull();
+  }
+
+  @Test
+  public void testDuplicateClassResolvedWithinClosure() {
+    assertThat(jarPath(index.findJar(APP, "lib/Shared.class"))).isEqualTo("lib/lib.jar");
+    assertThat(jarPath(index.findJar(OTHER, "lib/Shared.class"))).isEqualTo("other/other.jar");
+  }
+
+  @Test
+  public void testResourceJarsOnlySearchedForOwnTarget() {
+    assertThat(jarPath(index.findJar(APP, "app/R.class"))).isEqualTo("app/app_resources.jar");
+    assertThat(index.findJar(APP, "lib/R.class")).isNull();
+  }
+
+  @Test
+  public void testJarsInClosure() {
+    List<IndexedJar> jars = index.getJarsInClosure(APP).collect(Collectors.toList());
+    assertThat(jars.stream().map(JarClassIndexTest::jarPath).collect(Collectors.toList()))
+        .containsExactly(
+            "app/app.jar", "app/app_resources.jar", "lib/lib.jar", "missing/missing.jar");
+    assertThat(
+            jars.stream()
+                .filter(jar -> !jar.isIndexed())
+                .map(JarClassIndexTest::jarPath)
+                .collect(Collectors.toList()))
+        .containsExactly("missing/missing.jar");
+    assertThat(
+            index.getJarsInClosure(OTHER)
+                .map(JarClassIndexTest::jarPath)
+                .collect(Collectors.toList()))
+        .containsExactly("other/other.jar");
+  }
+
+  private static String jarPath(IndexedJar jar) {
+    return jar == null ? null : jar.file.getParentFile().getName() + "/" + jar.file.getName();
+  }
+
+  private static TargetIdeInfo.Builder androidLibrary(
+      String label, String classJar, String resourceJar) {
+    JavaIdeInfo.Builder javaInfo = JavaIdeInfo.builder().addJar(jar(classJar));
+    AndroidIdeInfo.Builder androidInfo = AndroidIdeInfo.builder();
+    if (resourceJar != null) {
+      javaInfo.addJar(jar(resourceJar));
+      androidInfo.setResourceJar(jar(resourceJar));
+    }
+    return TargetIdeInfo.builder()
+        .setLabel(label)
+        .setKind(AndroidBlazeRules.RuleTypes.ANDROID_LIBRARY.getKind())
+        .setJavaInfo(javaInfo)
+        .setAndroidInfo(androidInfo);
+  }
+
+  private static LibraryArtifact.Builder jar(String relativePath) {
+    return LibraryArtifact.builder()
+        .setClassJar(ArtifactLocation.builder().setRelativePath(relativePath).build());
+  }
+
+  private void writeJar(String relativePath, String... entries) throws IOException {
+    File jar = new File(folder.getRoot(), relativePath);
+    jar.getParentFile().mkdirs();
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (String entry : entries) {
+        out.putNextEntry(new ZipEntry(entry));
+        out.closeEntry();
+      }
+    }
+  }
+}
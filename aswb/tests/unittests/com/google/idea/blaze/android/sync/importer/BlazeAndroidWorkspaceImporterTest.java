@@ -136,6 +136,8 @@ public class BlazeAndroidWorkspaceImporterTest extends BlazeTestCase {
       new WorkspaceLanguageSettings(
           WorkspaceType.ANDROID, ImmutableSet.of(LanguageClass.ANDROID, LanguageClass.JAVA));
   private ExtensionPointImpl<GeneratedResourceRetentionFilter> retentionFilterEp;
+  // the targets whose results were reused by the last importWorkspace call
+  private ImmutableSet<TargetKey> reusedTargets;
   private MockExperimentService experimentService;
 
   @Override
@@ -198,6 +200,15 @@ public class BlazeAndroidWorkspaceImporterTest extends BlazeTestCase {
 
   private BlazeAndroidImportResult importWorkspace(
       WorkspaceRoot workspaceRoot, TargetMapBuilder targetMapBuilder, ProjectView projectView) {
+    return importWorkspace(
+        workspaceRoot, targetMapBuilder, projectView, /* reusePreviousResult= */ false);
+  }
+
+  private BlazeAndroidImportResult importWorkspace(
+      WorkspaceRoot workspaceRoot,
+      TargetMapBuilder targetMapBuilder,
+      ProjectView projectView,
+      boolean reusePreviousResult) {
     ProjectViewSet projectViewSet = ProjectViewSet.builder().add(projectView).build();
     TargetMap targetMap = targetMapBuilder.build();
     BlazeAndroidWorkspaceImporter workspaceImporter =
@@ -207,7 +218,9 @@ public class BlazeAndroidWorkspaceImporterTest extends BlazeTestCase {
             BlazeImportInput.forProject(
                 project, workspaceRoot, projectViewSet, targetMap, FAKE_ARTIFACT_DECODER));
 
-    return workspaceImporter.importWorkspace();
+    BlazeAndroidImportResult result = workspaceImporter.importWorkspace(reusePreviousResult);
+    reusedTargets = workspaceImporter.getReusedTargets();
+    return result;
   }
 
   private BlazeJavaImportResult importJavaWorkspace(
@@ -2080,6 +2093,110 @@ public class BlazeAndroidWorkspaceImporterTest extends BlazeTestCase {
         .containsExactly("com.google.android.assets.quantum");
   }
 
+  @Test
+  public void testIncrementalImport_matchesFullImport() {
+    ProjectView projectView =
+        ProjectView.builder()
+            .add(
+                ListSection.builder(DirectorySection.KEY)
+                    .add(DirectoryEntry.include(new WorkspacePath("java/example"))))
+            .build();
+
+    TargetIdeInfo.Builder app =
+        TargetIdeInfo.builder()
+            .setLabel("//java/example/app:app")
+            .setBuildFile(source("java/example/app/BUILD"))
+            .setKind("android_binary")
+            .setAndroidInfo(
+                AndroidIdeInfo.builder()
+                    .setManifestFile(source("java/example/app/AndroidManifest.xml"))
+                    .addResource(source("java/example/app/res"))
+                    .setGenerateResourceClass(true)
+                    .setResourceJavaPackage("com.google.android.example.app"))
+            .addDependency("//java/example/lib:lib")
+            .addDependency("//java/example/other:other");
+    TargetIdeInfo.Builder lib =
+        TargetIdeInfo.builder()
+            .setLabel("//java/example/lib:lib")
+            .setBuildFile(source("java/example/lib/BUILD"))
+            .setKind("android_library")
+            .setAndroidInfo(
+                AndroidIdeInfo.builder()
+                    .setManifestFile(source("java/example/lib/AndroidManifest.xml"))
+                    .addResource(source("java/example/lib/res"))
+                    .setGenerateResourceClass(true)
+                    .setResourceJavaPackage("com.google.android.example.lib"))
+            .addDependency("//java/example/base:base");
+    TargetIdeInfo.Builder other =
+        TargetIdeInfo.builder()
+            .setLabel("//java/example/other:other")
+            .setBuildFile(source("java/example/other/BUILD"))
+            .setKind("android_library")
+            .setAndroidInfo(
+                AndroidIdeInfo.builder()
+                    .setManifestFile(source("java/example/other/AndroidManifest.xml"))
+                    .addResource(source("java/example/other/res"))
+                    .setGenerateResourceClass(true)
+                    .setResourceJavaPackage("com.google.android.example.other"));
+    TargetIdeInfo.Builder base =
+        TargetIdeInfo.builder()
+            .setLabel("//java/example/base:base")
+            .setBuildFile(source("java/example/base/BUILD"))
+            .setKind("android_library")
+            .setAndroidInfo(
+                AndroidIdeInfo.builder()
+                    .setManifestFile(source("java/example/base/AndroidManifest.xml"))
+                    .addResource(source("java/example/base/res"))
+                    .setGenerateResourceClass(true)
+                    .setResourceJavaPackage("com.google.android.example.base"));
+    importWorkspace(
+        workspaceRoot,
+        TargetMapBuilder.builder().addTarget(app).addTarget(lib).addTarget(other).addTarget(base),
+        projectView,
+        /* reusePreviousResult= */ true);
+
+    // change a leaf target's resources; its reverse dependencies need to be recomputed
+    TargetIdeInfo.Builder changedBase =
+        TargetIdeInfo.builder()
+            .setLabel("//java/example/base:base")
+            .setBuildFile(source("java/example/base/BUILD"))
+            .setKind("android_library")
+            .setAndroidInfo(
+                AndroidIdeInfo.builder()
+                    .setManifestFile(source("java/example/base/AndroidManifest.xml"))
+                    .addResource(source("java/example/base/res"))
+                    .addResource(source("java/example/base/more_res"))
+                    .setGenerateResourceClass(true)
+                    .setResourceJavaPackage("com.google.android.example.base"));
+    TargetMapBuilder changedTargetMap =
+        TargetMapBuilder.builder()
+            .addTarget(app)
+            .addTarget(lib)
+            .addTarget(other)
+            .addTarget(changedBase);
+    BlazeAndroidImportResult incrementalResult =
+        importWorkspace(
+            workspaceRoot, changedTargetMap, projectView, /* reusePreviousResult= */ true);
+    // only the target outside the changed target's reverse dependencies is reused
+    assertThat(reusedTargets)
+        .containsExactly(TargetKey.forPlainTarget(Label.create("//java/example/other:other")));
+    BlazeAndroidImportResult fullResult =
+        importWorkspace(
+            workspaceRoot, changedTargetMap, projectView, /* reusePreviousResult= */ false);
+
+    errorCollector.assertNoIssues();
+    assertThat(incrementalResult.androidResourceModules)
+        .containsExactlyElementsIn(fullResult.androidResourceModules);
+    assertThat(incrementalResult.aarLibraries).isEqualTo(fullResult.aarLibraries);
+    TargetKey appKey = TargetKey.forPlainTarget(Label.create("//java/example/app:app"));
+    assertThat(
+            incrementalResult.androidResourceModules.stream()
+                .filter(m -> m.targetKey.equals(appKey))
+                .flatMap(m -> m.transitiveResources.stream())
+                .collect(Collectors.toList()))
+        .contains(source("java/example/base/more_res"));
+  }
+
   /**
    * Mock provider to satisfy directory listing queries from {@link
    * com.google.idea.blaze.android.sync.importer.problems.GeneratedResourceClassifier}.
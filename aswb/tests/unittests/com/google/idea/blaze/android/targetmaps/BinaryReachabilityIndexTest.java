@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.targetmaps;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.primitives.Label;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BinaryReachabilityIndex}. */
+@RunWith(JUnit4.class)
+public class BinaryReachabilityIndexTest {
+
+  private static final TargetKey BIN_A = key("//app:bin_a");
+  private static final TargetKey BIN_B = key("//app:bin_b");
+  private static final TargetKey LIB_A = key("//lib:lib_a");
+  private static final TargetKey LIB_B = key("//lib:lib_b");
+  private static final TargetKey SHARED = key("//lib:shared");
+  private static final TargetKey EXTERNAL = key("//third_party:external");
+
+  private static final ListeningExecutorService EXECUTOR = MoreExecutors.newDirectExecutorService();
+
+  @Test
+  public void getBinariesDependingOn_followsTransitiveDeps() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(target(BIN_A, LIB_A))
+            .addTarget(target(BIN_B, LIB_B))
+            .addTarget(target(LIB_A, SHARED))
+            .addTarget(target(LIB_B, SHARED))
+            .addTarget(target(SHARED, EXTERNAL))
+            .build();
+    BinaryReachabilityIndex index =
+        BinaryReachabilityIndex.create(targetMap, ImmutableList.of(BIN_A, BIN_B), EXECUTOR);
+
+    assertThat(index.getBinaries()).containsExactly(BIN_A, BIN_B);
+    assertThat(index.getBinariesDependingOn(ImmutableList.of(BIN_A))).containsExactly(BIN_A);
+    assertThat(index.getBinariesDependingOn(ImmutableList.of(LIB_A))).containsExactly(BIN_A);
+    assertThat(index.getBinariesDependingOn(ImmutableList.of(LIB_A, LIB_B)))
+        .containsExactly(BIN_A, BIN_B);
+    assertThat(index.getBinariesDependingOn(ImmutableList.of(EXTERNAL)))
+        .containsExactly(BIN_A, BIN_B);
+    assertThat(index.getBinariesDependingOn(ImmutableList.of(key("//unknown:target")))).isEmpty();
+  }
+
+  @Test
+  public void update_matchesFullRebuild() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(target(BIN_A, LIB_A))
+            .addTarget(target(BIN_B, LIB_B))
+            .addTarget(target(LIB_A, SHARED))
+            .addTarget(target(LIB_B))
+            .addTarget(target(SHARED))
+            .build();
+    BinaryReachabilityIndex index =
+        BinaryReachabilityIndex.create(targetMap, ImmutableList.of(BIN_A, BIN_B), EXECUTOR);
+
+    // lib_a no longer depends on shared, lib_b now does, and the previously unknown external
+    // target is added as a dependency of shared
+    TargetMap updatedTargetMap =
+        TargetMapBuilder.builder()
+            .addTarget(targetMap.get(BIN_A))
+            .addTarget(targetMap.get(BIN_B))
+            .addTarget(target(LIB_A))
+            .addTarget(target(LIB_B, SHARED))
+            .addTarget(target(SHARED, EXTERNAL))
+            .build();
+    BinaryReachabilityIndex updated =
+        BinaryReachabilityIndex.update(
+            index, updatedTargetMap, ImmutableList.of(BIN_A, BIN_B), EXECUTOR);
+    BinaryReachabilityIndex rebuilt =
+        BinaryReachabilityIndex.create(updatedTargetMap, ImmutableList.of(BIN_A, BIN_B), EXECUTOR);
+
+    for (TargetKey key : ImmutableList.of(BIN_A, BIN_B, LIB_A, LIB_B, SHARED, EXTERNAL)) {
+      assertThat(updated.getBinariesDependingOn(ImmutableList.of(key)))
+          .containsExactlyElementsIn(rebuilt.getBinariesDependingOn(ImmutableList.of(key)));
+    }
+    assertThat(updated.getBinariesDependingOn(ImmutableList.of(SHARED))).containsExactly(BIN_B);
+  }
+
+  @Test
+  public void update_addsAndRemovesBinaries() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(target(BIN_A, LIB_A))
+            .addTarget(target(BIN_B, LIB_A))
+            .addTarget(target(LIB_A))
+            .build();
+    BinaryReachabilityIndex index =
+        BinaryReachabilityIndex.create(targetMap, ImmutableList.of(BIN_A), EXECUTOR);
+
+    BinaryReachabilityIndex updated =
+        BinaryReachabilityIndex.update(index, targetMap, ImmutableList.of(BIN_B), EXECUTOR);
+
+    assertThat(updated.getBinaries()).containsExactly(BIN_B);
+    assertThat(updated.getBinariesDependingOn(ImmutableList.of(LIB_A))).containsExactly(BIN_B);
+  }
+
+  @Test
+  public void update_compactsIdsOnceMostAreStale() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(target(BIN_A, LIB_A))
+            .addTarget(target(BIN_B, LIB_B))
+            .addTarget(target(LIB_A, SHARED))
+            .addTarget(target(LIB_B, SHARED))
+            .addTarget(target(SHARED, EXTERNAL))
+            .build();
+    BinaryReachabilityIndex index =
+        BinaryReachabilityIndex.create(targetMap, ImmutableList.of(BIN_A, BIN_B), EXECUTOR);
+    assertThat(index.getIdCount()).isEqualTo(6);
+
+    // while only a few ids are stale, they're kept and new targets are appended
+    TargetKey newLib = key("//lib:new");
+    TargetMap withoutBinB =
+        TargetMapBuilder.builder()
+            .addTarget(targetMap.get(BIN_A))
+            .addTarget(targetMap.get(LIB_A))
+            .addTarget(target(SHARED, newLib))
+            .addTarget(target(newLib))
+            .build();
+    index = BinaryReachabilityIndex.update(index, withoutBinB, ImmutableList.of(BIN_A), EXECUTOR);
+    assertThat(index.getIdCount()).isEqualTo(7);
+
+    // once the stale ids outnumber the live ones, the id space is rebuilt
+    TargetMap onlyNewLib = TargetMapBuilder.builder().addTarget(target(BIN_A, newLib)).build();
+    index = BinaryReachabilityIndex.update(index, onlyNewLib, ImmutableList.of(BIN_A), EXECUTOR);
+    assertThat(index.getIdCount()).isEqualTo(2);
+    assertThat(index.getBinariesDependingOn(ImmutableList.of(newLib))).containsExactly(BIN_A);
+    assertThat(index.getBinariesDependingOn(ImmutableList.of(LIB_A))).isEmpty();
+  }
+
+  private static TargetKey key(String label) {
+    return TargetKey.forPlainTarget(Label.create(label));
+  }
+
+  private static TargetIdeInfo target(TargetKey key, TargetKey... deps) {
+    TargetIdeInfo.Builder builder = TargetIdeInfo.builder().setLabel(key.getLabel());
+    for (TargetKey dep : deps) {
+      builder.addDependency(dep.getLabel());
+    }
+    return builder.build();
+  }
+}
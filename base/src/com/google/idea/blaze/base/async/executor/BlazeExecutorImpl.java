@@ -18,6 +18,7 @@ package com.google.idea.blaze.base.async.executor;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.logging.trace.TraceRecorder;
 import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.concurrent.Callable;
 
@@ -26,7 +27,9 @@ public class BlazeExecutorImpl extends BlazeExecutor {
 
   private final ListeningExecutorService executorService =
       MoreExecutors.listeningDecorator(
-          AppExecutorUtil.createBoundedApplicationPoolExecutor("BlazeExecutor", 16));
+          TraceRecorder.traceTasks(
+              "BlazeExecutor task",
+              AppExecutorUtil.createBoundedApplicationPoolExecutor("BlazeExecutor", 16)));
 
   @Override
   public <T> ListenableFuture<T> submit(Callable<T> callable) {
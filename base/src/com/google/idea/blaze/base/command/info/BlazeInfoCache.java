@@ -0,0 +1,302 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.command.info;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.settings.BuildSystem;
+import com.google.idea.blaze.base.util.SerializationUtil;
+import com.intellij.execution.configurations.PathEnvironmentVariableUtil;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.EnvironmentUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * Caches the output of a full {@code blaze info} call, keyed by a fingerprint of its inputs: the
+ * blaze binary, the environment variables selecting the actual binary behind a wrapper such as
+ * bazelisk, the flags, the workspace and the rc files it reads. Entries are also written to
+ * disk, so they're reused after restarting the IDE.
+ *
+ * <p>A cached entry is only returned if its output base and execution root still exist.
+ */
+final class BlazeInfoCache {
+  private static final Logger logger = Logger.getInstance(BlazeInfoCache.class);
+
+  private static final int MAX_PERSISTED_ENTRIES = 20;
+
+  /** Workspace-relative files which affect blaze info. */
+  private static final ImmutableList<String> WORKSPACE_FILES =
+      ImmutableList.of(
+          ".bazelrc",
+          ".blazerc",
+          "tools/bazel.rc",
+          ".bazelversion",
+          ".bazeliskrc",
+          "tools/bazel");
+
+  private static final ImmutableList<String> HOME_RC_FILES =
+      ImmutableList.of(".bazelrc", ".blazerc");
+  private static final String SYSTEM_RC_FILE = "/etc/bazel.bazelrc";
+
+  /** Flags naming additional rc files. */
+  private static final ImmutableList<String> RC_FILE_FLAGS =
+      ImmutableList.of("--bazelrc=", "--blazerc=");
+
+  /**
+   * Prefixes of the environment variables read by wrappers such as bazelisk to pick the binary
+   * they run.
+   */
+  private static final ImmutableList<String> BINARY_ENVIRONMENT_PREFIXES =
+      ImmutableList.of("USE_BAZEL_", "BAZELISK_", "BAZEL_REAL");
+
+  @Nullable private final File cacheDir;
+  private final ConcurrentMap<String, ImmutableMap<String, String>> entries =
+      new ConcurrentHashMap<>();
+
+  BlazeInfoCache() {
+    this(new File(PathManager.getSystemPath(), "blaze/info_cache"));
+  }
+
+  @VisibleForTesting
+  BlazeInfoCache(@Nullable File cacheDir) {
+    this.cacheDir = cacheDir;
+  }
+
+  /**
+   * Returns the fingerprint of the inputs to blaze info, or null if they can't be determined (for
+   * example, if the blaze binary isn't found).
+   */
+  @Nullable
+  static String fingerprint(
+      BuildSystem buildSystem,
+      String binaryPath,
+      WorkspaceRoot workspaceRoot,
+      List<String> blazeFlags) {
+    return fingerprint(
+        buildSystem, binaryPath, workspaceRoot, blazeFlags, EnvironmentUtil.getEnvironmentMap());
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static String fingerprint(
+      BuildSystem buildSystem,
+      String binaryPath,
+      WorkspaceRoot workspaceRoot,
+      List<String> blazeFlags,
+      Map<String, String> environment) {
+    File binary = resolveBinary(binaryPath);
+    if (binary == null) {
+      return null;
+    }
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(buildSystem.name(), UTF_8);
+    hasher.putString(binary.getAbsolutePath(), UTF_8);
+    hasher.putLong(binary.lastModified());
+    hasher.putLong(binary.length());
+    hasher.putString(workspaceRoot.directory().getAbsolutePath(), UTF_8);
+    for (String flag : blazeFlags) {
+      hasher.putString(flag, UTF_8).putByte((byte) 0);
+    }
+    new TreeMap<>(environment)
+        .forEach(
+            (name, value) -> {
+              if (BINARY_ENVIRONMENT_PREFIXES.stream().anyMatch(name::startsWith)) {
+                hasher.putString(name, UTF_8).putByte((byte) 0);
+                hasher.putString(value, UTF_8).putByte((byte) 0);
+              }
+            });
+
+    Deque<File> toVisit = new ArrayDeque<>(getRcFileFlags(blazeFlags, workspaceRoot));
+    for (String path : WORKSPACE_FILES) {
+      toVisit.add(new File(workspaceRoot.directory(), path));
+    }
+    String home = System.getProperty("user.home");
+    if (home != null) {
+      for (String rcFile : HOME_RC_FILES) {
+        toVisit.add(new File(home, rcFile));
+      }
+    }
+    toVisit.add(new File(SYSTEM_RC_FILE));
+    Set<File> visited = new HashSet<>();
+    while (!toVisit.isEmpty()) {
+      File file = toVisit.removeFirst();
+      if (!visited.add(file)) {
+        continue;
+      }
+      hasher.putString(file.getPath(), UTF_8);
+      if (!file.isFile()) {
+        hasher.putBoolean(false);
+        continue;
+      }
+      byte[] contents;
+      try {
+        contents = Files.readAllBytes(file.toPath());
+      } catch (IOException e) {
+        return null;
+      }
+      hasher.putBoolean(true).putBytes(contents);
+      if (file.getName().endsWith("rc")) {
+        toVisit.addAll(getImports(new String(contents, UTF_8), workspaceRoot));
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Returns the rc files passed with {@code --bazelrc=} flags. */
+  @VisibleForTesting
+  static ImmutableList<File> getRcFileFlags(List<String> blazeFlags, WorkspaceRoot workspaceRoot) {
+    ImmutableList.Builder<File> rcFiles = ImmutableList.builder();
+    for (String flag : blazeFlags) {
+      for (String rcFileFlag : RC_FILE_FLAGS) {
+        if (flag.startsWith(rcFileFlag)) {
+          File file = new File(flag.substring(rcFileFlag.length()));
+          // relative paths are resolved against the directory blaze is run from
+          rcFiles.add(
+              file.isAbsolute() ? file : new File(workspaceRoot.directory(), file.getPath()));
+        }
+      }
+    }
+    return rcFiles.build();
+  }
+
+  /** Returns the files imported by an rc file's {@code import} and {@code try-import} lines. */
+  @VisibleForTesting
+  static ImmutableList<File> getImports(String rcContents, WorkspaceRoot workspaceRoot) {
+    ImmutableList.Builder<File> imports = ImmutableList.builder();
+    for (String line : rcContents.split("\n")) {
+      line = line.trim();
+      String path;
+      if (line.startsWith("import ")) {
+        path = line.substring("import ".length()).trim();
+      } else if (line.startsWith("try-import ")) {
+        path = line.substring("try-import ".length()).trim();
+      } else {
+        continue;
+      }
+      path = path.replace("%workspace%", workspaceRoot.directory().getPath());
+      if (!path.isEmpty()) {
+        imports.add(new File(path));
+      }
+    }
+    return imports.build();
+  }
+
+  @Nullable
+  private static File resolveBinary(String binaryPath) {
+    if (binaryPath.indexOf(File.separatorChar) >= 0) {
+      File binary = new File(binaryPath);
+      return binary.isFile() ? binary : null;
+    }
+    return PathEnvironmentVariableUtil.findInPath(
+        binaryPath, EnvironmentUtil.getValue("PATH"), /* filter= */ null);
+  }
+
+  /** Returns the cached blaze info for the given fingerprint, if it's still valid. */
+  @Nullable
+  ImmutableMap<String, String> get(String fingerprint) {
+    ImmutableMap<String, String> info = entries.get(fingerprint);
+    if (info == null) {
+      info = load(fingerprint);
+    }
+    if (info == null) {
+      return null;
+    }
+    if (!isValid(info)) {
+      entries.remove(fingerprint);
+      return null;
+    }
+    entries.put(fingerprint, info);
+    return info;
+  }
+
+  void put(String fingerprint, ImmutableMap<String, String> info) {
+    entries.put(fingerprint, info);
+    if (cacheDir == null) {
+      return;
+    }
+    try {
+      SerializationUtil.saveToDisk(new File(cacheDir, fingerprint), new HashMap<>(info));
+    } catch (IOException e) {
+      logger.warn("Failed to write blaze info cache", e);
+    }
+    pruneCacheDir();
+  }
+
+  /** Checks that the output base and execution root are still there. */
+  private static boolean isValid(ImmutableMap<String, String> info) {
+    FileOperationProvider fileOps = FileOperationProvider.getInstance();
+    String outputBase = info.get(BlazeInfo.OUTPUT_BASE_KEY);
+    String executionRoot = info.get(BlazeInfo.EXECUTION_ROOT_KEY);
+    return outputBase != null
+        && executionRoot != null
+        && fileOps.isDirectory(new File(outputBase.trim()))
+        && fileOps.isDirectory(new File(executionRoot.trim()));
+  }
+
+  @Nullable
+  private ImmutableMap<String, String> load(String fingerprint) {
+    if (cacheDir == null) {
+      return null;
+    }
+    File file = new File(cacheDir, fingerprint);
+    try {
+      @SuppressWarnings("unchecked")
+      Map<String, String> info =
+          (Map<String, String>)
+              SerializationUtil.loadFromDisk(
+                  file, ImmutableList.of(BlazeInfoCache.class.getClassLoader()));
+      return info != null ? ImmutableMap.copyOf(info) : null;
+    } catch (IOException e) {
+      logger.warn("Failed to read blaze info cache " + file, e);
+      return null;
+    }
+  }
+
+  /** Deletes the least recently written entries, beyond {@link #MAX_PERSISTED_ENTRIES}. */
+  private void pruneCacheDir() {
+    File[] files = cacheDir.listFiles();
+    if (files == null || files.length <= MAX_PERSISTED_ENTRIES) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+    for (int i = MAX_PERSISTED_ENTRIES; i < files.length; i++) {
+      files[i].delete();
+    }
+  }
+}
@@ -25,12 +25,19 @@ import com.google.idea.blaze.base.command.BlazeCommand;
 import com.google.idea.blaze.base.command.BlazeCommandName;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.scope.output.PrintOutput;
 import com.google.idea.blaze.base.settings.BuildSystem;
+import com.google.idea.common.experiments.BoolExperiment;
 import java.io.ByteArrayOutputStream;
 import java.util.List;
 import javax.annotation.Nullable;
 
 class BlazeInfoRunnerImpl extends BlazeInfoRunner {
+  private static final BoolExperiment useInfoCache =
+      new BoolExperiment("blaze.info.cache", true);
+
+  private final BlazeInfoCache infoCache = new BlazeInfoCache();
+
   @Override
   public ListenableFuture<String> runBlazeInfo(
       BlazeContext context,
@@ -68,12 +75,29 @@ class BlazeInfoRunnerImpl extends BlazeInfoRunner {
     return BlazeExecutor.getInstance()
         .submit(
             () -> {
+              String fingerprint =
+                  useInfoCache.getValue()
+                      ? BlazeInfoCache.fingerprint(
+                          buildSystem, binaryPath, workspaceRoot, blazeFlags)
+                      : null;
+              if (fingerprint != null) {
+                ImmutableMap<String, String> cached = infoCache.get(fingerprint);
+                if (cached != null) {
+                  context.output(
+                      PrintOutput.log("Inputs to blaze info unchanged, reusing previous result"));
+                  return BlazeInfo.create(buildSystem, cached);
+                }
+              }
               String blazeInfoString =
                   runBlazeInfo(binaryPath, workspaceRoot, /* key= */ null, blazeFlags, context)
                       .toString()
                       .trim();
               ImmutableMap<String, String> blazeInfoMap = parseBlazeInfoResult(blazeInfoString);
-              return BlazeInfo.create(buildSystem, blazeInfoMap);
+              BlazeInfo blazeInfo = BlazeInfo.create(buildSystem, blazeInfoMap);
+              if (fingerprint != null) {
+                infoCache.put(fingerprint, blazeInfoMap);
+              }
+              return blazeInfo;
             });
   }
 
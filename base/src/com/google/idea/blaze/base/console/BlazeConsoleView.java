@@ -15,6 +15,7 @@
  */
 package com.google.idea.blaze.base.console;
 
+import com.google.idea.blaze.base.console.ConsoleOutputBuffer.Chunk;
 import com.google.idea.blaze.base.run.filter.BlazeTargetFilter;
 import com.intellij.codeEditor.printing.PrintAction;
 import com.intellij.execution.filters.ConsoleDependentFilterProvider;
@@ -37,6 +38,7 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
@@ -47,13 +49,17 @@ import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.awt.Component;
 import java.awt.Container;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.swing.JComponent;
 import javax.swing.LayoutFocusTraversalPolicy;
@@ -68,11 +74,25 @@ public class BlazeConsoleView implements Disposable {
     PrintAction.class
   };
 
+  /** How often buffered output is printed to the console. */
+  private static final Duration FLUSH_INTERVAL = Duration.ofMillis(100);
+
+  /** The maximum number of lines printed to the console per flush. */
+  private static final int MAX_LINES_PER_FLUSH = 2000;
+
+  /** The maximum number of lines waiting to be printed, beyond which the oldest are omitted. */
+  private static final int MAX_BUFFERED_LINES = 50_000;
+
   private final Project project;
   private final ConsoleViewImpl consoleView;
   private final CompositeFilter customFilters = new CompositeFilter();
+  private final ConsoleOutputBuffer outputBuffer = new ConsoleOutputBuffer(MAX_BUFFERED_LINES);
+  private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+  /** Guards printing buffered output, so clearing the console can't interleave with a flush. */
+  private final Object flushLock = new Object();
 
   private volatile Runnable stopHandler;
+  private volatile boolean disposed;
 
   public BlazeConsoleView(Project project) {
     this.project = project;
@@ -204,19 +224,64 @@ public class BlazeConsoleView implements Disposable {
   }
 
   public void clear() {
-    consoleView.clear();
+    synchronized (flushLock) {
+      outputBuffer.clear();
+      consoleView.clear();
+    }
   }
 
+  /**
+   * Prints the text to the console. Output is buffered, and printed in batches on a background
+   * thread, so chatty commands don't flood the console (and the event thread) line by line.
+   */
   public void print(String text, ConsoleViewContentType contentType) {
-    consoleView.print(text, contentType);
+    outputBuffer.add(text, contentType);
+    scheduleFlush();
   }
 
   public void printHyperlink(String text, HyperlinkInfo hyperlinkInfo) {
-    consoleView.printHyperlink(text, hyperlinkInfo);
+    outputBuffer.addHyperlink(text, hyperlinkInfo);
+    scheduleFlush();
+  }
+
+  private void scheduleFlush() {
+    if (flushScheduled.compareAndSet(false, true)) {
+      // the scheduled executor's single timer thread is shared application-wide, so only use it to
+      // hand the flush off to a pooled thread
+      AppExecutorUtil.getAppScheduledExecutorService()
+          .schedule(
+              () -> ApplicationManager.getApplication().executeOnPooledThread(this::flush),
+              FLUSH_INTERVAL.toMillis(),
+              TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void flush() {
+    // reset first, so output arriving while we print schedules another flush
+    flushScheduled.set(false);
+    if (disposed) {
+      return;
+    }
+    synchronized (flushLock) {
+      // printing goes via ConsoleViewImpl, which runs the hyperlink filters over the printed lines
+      for (Chunk chunk : outputBuffer.drain(MAX_LINES_PER_FLUSH)) {
+        if (chunk.hyperlinkInfo != null) {
+          consoleView.printHyperlink(chunk.text, chunk.hyperlinkInfo);
+        } else {
+          consoleView.print(chunk.text, chunk.contentType);
+        }
+      }
+    }
+    if (!outputBuffer.isEmpty()) {
+      scheduleFlush();
+    }
   }
 
   @Override
-  public void dispose() {}
+  public void dispose() {
+    disposed = true;
+    outputBuffer.clear();
+  }
 
   private class StopAction extends DumbAwareAction {
     public StopAction() {
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.console;
+
+import com.google.common.collect.ImmutableList;
+import com.intellij.execution.filters.HyperlinkInfo;
+import com.intellij.execution.ui.ConsoleViewContentType;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Buffers console output so it can be printed in bounded chunks, rather than a line at a time.
+ * Adjacent output of the same content type is merged into a single chunk.
+ *
+ * <p>If output arrives faster than it's drained, the oldest buffered lines beyond a cap are folded
+ * into a single line noting how many lines were omitted.
+ *
+ * <p>Thread-safe.
+ */
+final class ConsoleOutputBuffer {
+
+  /** A run of output with a single content type, or a hyperlink. */
+  static final class Chunk {
+    final String text;
+    final ConsoleViewContentType contentType;
+    @Nullable final HyperlinkInfo hyperlinkInfo;
+
+    private Chunk(
+        String text, ConsoleViewContentType contentType, @Nullable HyperlinkInfo hyperlinkInfo) {
+      this.text = text;
+      this.contentType = contentType;
+      this.hyperlinkInfo = hyperlinkInfo;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Chunk)) {
+        return false;
+      }
+      Chunk chunk = (Chunk) o;
+      return text.equals(chunk.text)
+          && contentType.equals(chunk.contentType)
+          && Objects.equals(hyperlinkInfo, chunk.hyperlinkInfo);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(text, contentType, hyperlinkInfo);
+    }
+
+    @Override
+    public String toString() {
+      return contentType + ": " + text;
+    }
+  }
+
+  /** A mutable run of buffered output. */
+  private static final class Segment {
+    final StringBuilder text = new StringBuilder();
+    final ConsoleViewContentType contentType;
+    @Nullable final HyperlinkInfo hyperlinkInfo;
+    int lines;
+
+    Segment(ConsoleViewContentType contentType, @Nullable HyperlinkInfo hyperlinkInfo) {
+      this.contentType = contentType;
+      this.hyperlinkInfo = hyperlinkInfo;
+    }
+
+    void append(String text, int lines) {
+      this.text.append(text);
+      this.lines += lines;
+    }
+
+    /** Removes and returns the text up to and including the given number of line breaks. */
+    String removeLines(int count) {
+      int end = indexAfterLineBreak(text, count);
+      String removed = text.substring(0, end);
+      text.delete(0, end);
+      lines -= count;
+      return removed;
+    }
+
+    Chunk toChunk(String text) {
+      return new Chunk(text, contentType, hyperlinkInfo);
+    }
+  }
+
+  private final int maxBufferedLines;
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private int bufferedLines;
+  private int foldedLines;
+
+  /**
+   * @param maxBufferedLines the number of complete lines to retain before folding the oldest
+   */
+  ConsoleOutputBuffer(int maxBufferedLines) {
+    this.maxBufferedLines = maxBufferedLines;
+  }
+
+  synchronized void add(String text, ConsoleViewContentType contentType) {
+    if (text.isEmpty()) {
+      return;
+    }
+    Segment last = segments.peekLast();
+    if (last == null || last.hyperlinkInfo != null || !last.contentType.equals(contentType)) {
+      last = new Segment(contentType, /* hyperlinkInfo= */ null);
+      segments.addLast(last);
+    }
+    append(last, text);
+  }
+
+  synchronized void addHyperlink(String text, @Nullable HyperlinkInfo hyperlinkInfo) {
+    Segment segment = new Segment(ConsoleViewContentType.NORMAL_OUTPUT, hyperlinkInfo);
+    segments.addLast(segment);
+    append(segment, text);
+  }
+
+  private void append(Segment segment, String text) {
+    int lines = countLines(text);
+    segment.append(text, lines);
+    bufferedLines += lines;
+    if (bufferedLines > maxBufferedLines) {
+      fold(bufferedLines - maxBufferedLines);
+    }
+  }
+
+  /** Drops the oldest {@code count} lines, recording that they were omitted. */
+  private void fold(int count) {
+    foldedLines += count;
+    bufferedLines -= count;
+    while (count > 0) {
+      Segment first = segments.getFirst();
+      if (first.lines <= count) {
+        // segments without a line break are part of a folded line
+        segments.removeFirst();
+        count -= first.lines;
+      } else {
+        first.removeLines(count);
+        count = 0;
+      }
+    }
+  }
+
+  synchronized boolean isEmpty() {
+    return segments.isEmpty() && foldedLines == 0;
+  }
+
+  synchronized void clear() {
+    segments.clear();
+    bufferedLines = 0;
+    foldedLines = 0;
+  }
+
+  /**
+   * Removes and returns the buffered output, in order, stopping after the given number of line
+   * breaks.
+   */
+  synchronized ImmutableList<Chunk> drain(int maxLines) {
+    ImmutableList.Builder<Chunk> chunks = ImmutableList.builder();
+    int remainingLines = maxLines;
+    if (foldedLines > 0) {
+      chunks.add(
+          new Chunk(
+              String.format("[... %d lines of output omitted ...]\n", foldedLines),
+              ConsoleViewContentType.SYSTEM_OUTPUT,
+              /* hyperlinkInfo= */ null));
+      foldedLines = 0;
+      remainingLines--;
+    }
+    while (remainingLines > 0 && !segments.isEmpty()) {
+      Segment first = segments.getFirst();
+      if (first.lines <= remainingLines) {
+        segments.removeFirst();
+        remainingLines -= first.lines;
+        bufferedLines -= first.lines;
+        chunks.add(first.toChunk(first.text.toString()));
+      } else {
+        bufferedLines -= remainingLines;
+        chunks.add(first.toChunk(first.removeLines(remainingLines)));
+        remainingLines = 0;
+      }
+    }
+    return chunks.build();
+  }
+
+  private static int countLines(CharSequence text) {
+    int lines = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        lines++;
+      }
+    }
+    return lines;
+  }
+
+  /** Returns the index after the {@code count}-th line break. */
+  private static int indexAfterLineBreak(CharSequence text, int count) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n' && --count == 0) {
+        return i + 1;
+      }
+    }
+    throw new IllegalArgumentException("Fewer than " + count + " line breaks");
+  }
+}
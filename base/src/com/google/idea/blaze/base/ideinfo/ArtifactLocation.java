@@ -81,7 +81,8 @@ public final class ArtifactLocation
         .build();
   }
 
-  private String getRootExecutionPathFragment() {
+  /** The path from the execution root to the artifact's root. */
+  public String getRootExecutionPathFragment() {
     return rootExecutionPathFragment;
   }
 
@@ -17,10 +17,20 @@ package com.google.idea.blaze.base.lang.buildfile.lexer;
 
 import com.google.idea.blaze.base.lang.buildfile.lexer.BuildLexerBase.LexerMode;
 import com.intellij.lexer.LexerBase;
-import java.util.Iterator;
 import java.util.List;
+import javax.annotation.Nullable;
 
-/** Implementation of LexerBase using BuildLexerBase to tokenize the input. */
+/**
+ * Implementation of LexerBase using BuildLexerBase to tokenize the input.
+ *
+ * <p>Tokens are generated on demand, so callers which only need part of the input (e.g. the editor
+ * highlighter relexing around an edit) don't pay for lexing the remainder of the file.
+ *
+ * <p>In {@link LexerMode#SyntaxHighlighting} mode, lexing from the start of any token gives the
+ * same tokens as lexing the whole file, so every token boundary is reported as a restartable
+ * (zero) state. In {@link LexerMode#Parsing} mode, the state is the number of unclosed parens at
+ * the start of the current token.
+ */
 public class BuildLexer extends LexerBase {
 
   private final LexerMode mode;
@@ -28,9 +38,10 @@ public class BuildLexer extends LexerBase {
   private int offsetEnd;
   private int offsetStart;
   private CharSequence buffer;
-  private Iterator<Token> tokens;
-  private Token currentToken;
-  private int currentState;
+  private BuildLexerBase lexer;
+  private int tokenIndex;
+  @Nullable private Token currentToken;
+  private int parenDepth;
 
   public BuildLexer(LexerMode mode) {
     this.mode = mode;
@@ -42,40 +53,71 @@ public class BuildLexer extends LexerBase {
     this.offsetEnd = endOffset;
     this.offsetStart = startOffset;
 
-    BuildLexerBase lexer =
-        new BuildLexerBase(charSequence.subSequence(startOffset, endOffset), initialState, mode);
-    checkNoCharactersMissing(
-        charSequence.subSequence(startOffset, endOffset).length(), lexer.getTokens());
-    tokens = lexer.getTokens().iterator();
+    lexer =
+        new BuildLexerBase(
+            charSequence.subSequence(startOffset, endOffset),
+            initialState,
+            mode,
+            /* tokenizeEagerly= */ false);
+    tokenIndex = -1;
     currentToken = null;
-    if (tokens.hasNext()) {
-      currentToken = tokens.next();
+    parenDepth = initialState;
+    nextToken();
+  }
+
+  /** Moves to the next token, tokenizing more of the input if necessary. */
+  private void nextToken() {
+    List<Token> tokens = lexer.getTokens();
+    int index = tokenIndex + 1;
+    while (index >= tokens.size() && lexer.tokenizeNext()) {
+      // keep going until there's a new token, or we reach the end of the input
+    }
+    int expectedStart = currentToken != null ? currentToken.right : 0;
+    if (index >= tokens.size()) {
+      checkNoCharactersMissing(expectedStart, offsetEnd - offsetStart);
+      currentToken = null;
+      return;
+    }
+    Token token = tokens.get(index);
+    if (token.left != expectedStart) {
+      throw new RuntimeException("Gap/inconsistency at: " + expectedStart);
     }
-    currentState = lexer.getOpenParenStackDepth();
+    tokenIndex = index;
+    currentToken = token;
   }
 
   /** Temporary debugging code. We need to tokenize every character in the input string. */
-  private void checkNoCharactersMissing(int totalLength, List<Token> tokens) {
-    if (!tokens.isEmpty() && tokens.get(tokens.size() - 1).right != totalLength) {
+  private static void checkNoCharactersMissing(int tokenizedLength, int totalLength) {
+    if (tokenizedLength != totalLength && tokenizedLength != 0) {
       String error =
-          String.format(
-              "Lengths don't match: %s instead of %s",
-              tokens.get(tokens.size() - 1).right, totalLength);
+          String.format("Lengths don't match: %s instead of %s", tokenizedLength, totalLength);
       throw new RuntimeException(error);
     }
-    int start = 0;
-    for (int i = 0; i < tokens.size(); i++) {
-      Token token = tokens.get(i);
-      if (token.left != start) {
-        throw new RuntimeException("Gap/inconsistency at: " + start);
-      }
-      start = token.right;
+  }
+
+  /** Tracks the open paren depth in the same way as {@link BuildLexerBase}. */
+  private void updateParenDepth(TokenKind kind) {
+    switch (kind) {
+      case LPAREN:
+      case LBRACE:
+      case LBRACKET:
+        parenDepth++;
+        break;
+      case RPAREN:
+      case RBRACE:
+      case RBRACKET:
+        if (parenDepth > 0) {
+          parenDepth--;
+        }
+        break;
+      default:
+        break;
     }
   }
 
   @Override
   public int getState() {
-    return currentState;
+    return mode == LexerMode.SyntaxHighlighting ? 0 : parenDepth;
   }
 
   @Override
@@ -104,11 +146,11 @@ public class BuildLexer extends LexerBase {
 
   @Override
   public void advance() {
-    if (tokens.hasNext()) {
-      currentToken = tokens.next();
-    } else {
-      currentToken = null;
+    if (currentToken == null) {
+      return;
     }
+    updateParenDepth(currentToken.kind);
+    nextToken();
   }
 
   public TokenKind getTokenKind() {
@@ -78,6 +78,15 @@ public class BuildLexerBase {
    * lexing are reported on "handler".
    */
   public BuildLexerBase(CharSequence input, int initialStackDepth, LexerMode mode) {
+    this(input, initialStackDepth, mode, /* tokenizeEagerly= */ true);
+  }
+
+  /**
+   * If tokenizeEagerly is false, no tokens are generated up-front, and callers must drive
+   * tokenization via {@link #tokenizeNext()}.
+   */
+  BuildLexerBase(
+      CharSequence input, int initialStackDepth, LexerMode mode, boolean tokenizeEagerly) {
     this.buffer = input.toString().toCharArray();
     // Empirical measurements show roughly 1 token per 8 characters in buffer.
     this.tokens = Lists.newArrayListWithExpectedSize(buffer.length / 8);
@@ -86,7 +95,9 @@ public class BuildLexerBase {
     this.mode = mode;
 
     indentStack.push(0);
-    tokenize();
+    if (tokenizeEagerly) {
+      tokenize();
+    }
   }
 
   /** The number of unclosed open-parens ("(", '{', '[') at the end of this string. */
@@ -299,7 +310,7 @@ public class BuildLexerBase {
         case '\\':
           if (pos == buffer.length) {
             error("unterminated string literal at eof", oldPos, pos);
-            addToken(TokenKind.STRING, oldPos, pos - 1, literal.toString());
+            addToken(TokenKind.STRING, oldPos, pos, literal.toString());
             return;
           }
           if (isRaw) {
@@ -432,7 +443,9 @@ public class BuildLexerBase {
         case '\\':
           if (isRaw) {
             // skip the next character
-            pos++;
+            if (pos < buffer.length) {
+              pos++;
+            }
             break;
           }
           // oops, hit an escape, need to start over & build a new string buffer
@@ -642,7 +655,9 @@ public class BuildLexerBase {
    * @return true if it tokenized an operator
    */
   private boolean tokenizeTwoChars() {
-    if (pos + 2 >= buffer.length) {
+    // two-char operators at the very end of the input are still recognized, so the tokens don't
+    // depend on where the lexed range ends
+    if (pos + 1 >= buffer.length) {
       return false;
     }
     char c1 = buffer[pos];
@@ -667,142 +682,152 @@ public class BuildLexerBase {
 
   /** Performs tokenization of the character buffer of file contents provided to the constructor. */
   private void tokenize() {
-    while (pos < buffer.length) {
-      if (tokenizeTwoChars()) {
-        pos += 2;
-        continue;
-      }
-      char c = buffer[pos];
-      pos++;
-      switch (c) {
-        case '{':
-          addToken(TokenKind.LBRACE, pos - 1, pos);
-          openParenStackDepth++;
-          break;
-        case '}':
-          addToken(TokenKind.RBRACE, pos - 1, pos);
-          popParen();
-          break;
-        case '(':
-          addToken(TokenKind.LPAREN, pos - 1, pos);
-          openParenStackDepth++;
-          break;
-        case ')':
-          addToken(TokenKind.RPAREN, pos - 1, pos);
-          popParen();
-          break;
-        case '[':
-          addToken(TokenKind.LBRACKET, pos - 1, pos);
-          openParenStackDepth++;
-          break;
-        case ']':
-          addToken(TokenKind.RBRACKET, pos - 1, pos);
-          popParen();
-          break;
-        case '>':
-          addToken(TokenKind.GREATER, pos - 1, pos);
-          break;
-        case '<':
-          addToken(TokenKind.LESS, pos - 1, pos);
-          break;
-        case ':':
-          addToken(TokenKind.COLON, pos - 1, pos);
-          break;
-        case ',':
-          addToken(TokenKind.COMMA, pos - 1, pos);
-          break;
-        case '+':
-          addToken(TokenKind.PLUS, pos - 1, pos);
-          break;
-        case '-':
-          addToken(TokenKind.MINUS, pos - 1, pos);
-          break;
-        case '|':
-          addToken(TokenKind.PIPE, pos - 1, pos);
-          break;
-        case '=':
-          addToken(TokenKind.EQUALS, pos - 1, pos);
-          break;
-        case '%':
-          addToken(TokenKind.PERCENT, pos - 1, pos);
-          break;
-        case '/':
-          if (lookaheadIs(0, '/') && lookaheadIs(1, '=')) {
-            addToken(TokenKind.SLASH_SLASH_EQUALS, pos - 1, pos + 2);
-            pos += 2;
-          } else if (lookaheadIs(0, '/')) {
-            addToken(TokenKind.SLASH_SLASH, pos - 1, pos + 1);
-            pos++;
+    while (tokenizeNext()) {}
+  }
+
+  /**
+   * Tokenizes the next lexical element, adding one or more tokens to {@link #getTokens()}. Returns
+   * false if the end of the input had already been reached.
+   */
+  boolean tokenizeNext() {
+    if (pos >= buffer.length) {
+      return false;
+    }
+    if (tokenizeTwoChars()) {
+      pos += 2;
+      return true;
+    }
+    char c = buffer[pos];
+    pos++;
+    switch (c) {
+      case '{':
+        addToken(TokenKind.LBRACE, pos - 1, pos);
+        openParenStackDepth++;
+        break;
+      case '}':
+        addToken(TokenKind.RBRACE, pos - 1, pos);
+        popParen();
+        break;
+      case '(':
+        addToken(TokenKind.LPAREN, pos - 1, pos);
+        openParenStackDepth++;
+        break;
+      case ')':
+        addToken(TokenKind.RPAREN, pos - 1, pos);
+        popParen();
+        break;
+      case '[':
+        addToken(TokenKind.LBRACKET, pos - 1, pos);
+        openParenStackDepth++;
+        break;
+      case ']':
+        addToken(TokenKind.RBRACKET, pos - 1, pos);
+        popParen();
+        break;
+      case '>':
+        addToken(TokenKind.GREATER, pos - 1, pos);
+        break;
+      case '<':
+        addToken(TokenKind.LESS, pos - 1, pos);
+        break;
+      case ':':
+        addToken(TokenKind.COLON, pos - 1, pos);
+        break;
+      case ',':
+        addToken(TokenKind.COMMA, pos - 1, pos);
+        break;
+      case '+':
+        addToken(TokenKind.PLUS, pos - 1, pos);
+        break;
+      case '-':
+        addToken(TokenKind.MINUS, pos - 1, pos);
+        break;
+      case '|':
+        addToken(TokenKind.PIPE, pos - 1, pos);
+        break;
+      case '=':
+        addToken(TokenKind.EQUALS, pos - 1, pos);
+        break;
+      case '%':
+        addToken(TokenKind.PERCENT, pos - 1, pos);
+        break;
+      case '/':
+        if (lookaheadIs(0, '/') && lookaheadIs(1, '=')) {
+          addToken(TokenKind.SLASH_SLASH_EQUALS, pos - 1, pos + 2);
+          pos += 2;
+        } else if (lookaheadIs(0, '/')) {
+          addToken(TokenKind.SLASH_SLASH, pos - 1, pos + 1);
+          pos++;
+        } else {
+          // /= is handled by tokenizeTwoChars.
+          addToken(TokenKind.SLASH, pos - 1, pos);
+        }
+        break;
+      case ';':
+        addToken(TokenKind.SEMI, pos - 1, pos);
+        break;
+      case '.':
+        addToken(TokenKind.DOT, pos - 1, pos);
+        break;
+      case '*':
+        addToken(TokenKind.STAR, pos - 1, pos);
+        break;
+      case ' ':
+      case '\t':
+      case '\r':
+        addWhitespace();
+        break;
+      case '\\':
+        // Backslash character is valid only at the end of a line (or in a string)
+        if (lookaheadIs(0, '\n')) {
+          // treat end of line backslash and newline char as whitespace
+          // (they're ignored by the parser)
+          pos++;
+          addToken(TokenKind.WHITESPACE, pos - 2, pos, Character.toString(c));
+        } else {
+          addToken(TokenKind.ILLEGAL, pos - 1, pos, Character.toString(c));
+        }
+        break;
+      case '\n':
+        newline();
+        break;
+      case '#':
+        int oldPos = pos - 1;
+        while (pos < buffer.length) {
+          c = buffer[pos];
+          if (c == '\n') {
+            break;
           } else {
-            // /= is handled by tokenizeTwoChars.
-            addToken(TokenKind.SLASH, pos - 1, pos);
-          }
-          break;
-        case ';':
-          addToken(TokenKind.SEMI, pos - 1, pos);
-          break;
-        case '.':
-          addToken(TokenKind.DOT, pos - 1, pos);
-          break;
-        case '*':
-          addToken(TokenKind.STAR, pos - 1, pos);
-          break;
-        case ' ':
-        case '\t':
-        case '\r':
-          addWhitespace();
-          break;
-        case '\\':
-          // Backslash character is valid only at the end of a line (or in a string)
-          if (lookaheadIs(0, '\n')) {
-            // treat end of line backslash and newline char as whitespace
-            // (they're ignored by the parser)
             pos++;
-            addToken(TokenKind.WHITESPACE, pos - 2, pos, Character.toString(c));
-          } else {
-            addToken(TokenKind.ILLEGAL, pos - 1, pos, Character.toString(c));
           }
+        }
+        addToken(TokenKind.COMMENT, oldPos, pos, bufferSlice(oldPos, pos));
+        break;
+      case '\'':
+      case '\"':
+        addStringLiteral(c, false);
+        break;
+      default:
+        // detect raw strings, e.g. r"str"
+        if (c == 'r' && (lookaheadIs(0, '\'') || lookaheadIs(0, '\"'))) {
+          c = buffer[pos];
+          pos++;
+          addStringLiteral(c, true);
           break;
-        case '\n':
-          newline();
-          break;
-        case '#':
-          int oldPos = pos - 1;
-          while (pos < buffer.length) {
-            c = buffer[pos];
-            if (c == '\n') {
-              break;
-            } else {
-              pos++;
-            }
-          }
-          addToken(TokenKind.COMMENT, oldPos, pos, bufferSlice(oldPos, pos));
-          break;
-        case '\'':
-        case '\"':
-          addStringLiteral(c, false);
-          break;
-        default:
-          // detect raw strings, e.g. r"str"
-          if (c == 'r' && (lookaheadIs(0, '\'') || lookaheadIs(0, '\"'))) {
-            c = buffer[pos];
-            pos++;
-            addStringLiteral(c, true);
-            break;
-          }
+        }
 
-          if (Character.isDigit(c)) {
-            addInteger();
-          } else if (Character.isJavaIdentifierStart(c) && c != '$') {
-            addIdentifierOrKeyword();
-          } else {
-            // Some characters in Python are not recognized in Blaze syntax (e.g. '!')
-            addToken(TokenKind.ILLEGAL, pos - 1, pos, Character.toString(c));
-            error("invalid character: '" + c + "'");
-          }
-          break;
-      } // switch
-    } // while
+        if (Character.isDigit(c)) {
+          addInteger();
+        } else if (Character.isJavaIdentifierStart(c) && c != '$') {
+          addIdentifierOrKeyword();
+        } else {
+          // Some characters in Python are not recognized in Blaze syntax (e.g. '!')
+          addToken(TokenKind.ILLEGAL, pos - 1, pos, Character.toString(c));
+          error("invalid character: '" + c + "'");
+        }
+        break;
+    } // switch
+    return true;
   }
 
   /**
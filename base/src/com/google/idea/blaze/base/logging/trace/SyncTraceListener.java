@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.logging.trace;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.scope.output.PrintOutput;
+import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
+import com.google.idea.blaze.base.sync.SyncListener;
+import com.google.idea.blaze.base.sync.SyncMode;
+import com.google.idea.blaze.base.sync.SyncResult;
+import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Records a trace of each sync (timing scopes and executor tasks), and writes it to the project
+ * data directory in the Chrome trace event format once the sync finishes.
+ */
+public class SyncTraceListener implements SyncListener {
+
+  private static final Logger logger = Logger.getInstance(SyncTraceListener.class);
+
+  private static final BoolExperiment recordSyncTrace =
+      new BoolExperiment("blaze.sync.trace", false);
+
+  private static final String TRACE_FILE_NAME = "sync_trace.json";
+
+  @Override
+  public void onSyncStart(Project project, BlazeContext context, SyncMode syncMode) {
+    if (recordSyncTrace.getValue()) {
+      TraceScope.startRecording(project);
+    }
+  }
+
+  @Override
+  public void afterSync(
+      Project project,
+      BlazeContext context,
+      SyncMode syncMode,
+      SyncResult syncResult,
+      ImmutableSet<Integer> buildIds) {
+    TraceRecorder recorder = TraceScope.stopRecording(project);
+    if (recorder == null) {
+      return;
+    }
+    BlazeImportSettings importSettings =
+        BlazeImportSettingsManager.getInstance(project).getImportSettings();
+    if (importSettings == null) {
+      return;
+    }
+    File traceFile = new File(BlazeDataStorage.getProjectDataDir(importSettings), TRACE_FILE_NAME);
+    try (Writer writer = Files.newBufferedWriter(traceFile.toPath(), StandardCharsets.UTF_8)) {
+      recorder.writeChromeTrace(writer);
+      context.output(PrintOutput.log("Sync trace written to " + traceFile.getPath()));
+    } catch (IOException e) {
+      logger.warn("Failed to write sync trace", e);
+    }
+  }
+}
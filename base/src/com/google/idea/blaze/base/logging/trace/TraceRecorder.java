@@ -0,0 +1,286 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.logging.trace;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Records nested begin / end events for a single operation (e.g. a sync), and writes them out in
+ * the Chrome trace event format (loadable in chrome://tracing, Perfetto, etc.).
+ *
+ * <p>Each operation records into its own instance, so concurrent operations don't interfere. The
+ * recorder of the operation running on a thread is carried over to the executor tasks it submits,
+ * and when there is none, tracing costs a single thread-local read and allocates nothing.
+ */
+public final class TraceRecorder {
+
+  private static final ThreadLocal<TraceRecorder> currentRecorder = new ThreadLocal<>();
+
+  /** An open span, ended with {@link #end()}. */
+  public static final class Span {
+    private final TraceRecorder recorder;
+    private final String name;
+    private final String category;
+    private final long threadId;
+
+    private Span(TraceRecorder recorder, String name, String category, long threadId) {
+      this.recorder = recorder;
+      this.name = name;
+      this.category = category;
+      this.threadId = threadId;
+    }
+
+    /**
+     * Ends this span. The end event is attributed to the thread which began the span, so that
+     * begin / end events remain properly nested per thread even if a scope is closed elsewhere.
+     */
+    public void end() {
+      recorder.record(new Event(Phase.END, name, category, recorder.now(), threadId));
+    }
+  }
+
+  /** The trace event phase. */
+  @VisibleForTesting
+  enum Phase {
+    BEGIN("B"),
+    END("E");
+
+    final String code;
+
+    Phase(String code) {
+      this.code = code;
+    }
+  }
+
+  /** A single recorded trace event. */
+  @VisibleForTesting
+  static final class Event {
+    final Phase phase;
+    final String name;
+    final String category;
+    final long timestampMicros;
+    final long threadId;
+
+    Event(Phase phase, String name, String category, long timestampMicros, long threadId) {
+      this.phase = phase;
+      this.name = name;
+      this.category = category;
+      this.timestampMicros = timestampMicros;
+      this.threadId = threadId;
+    }
+  }
+
+  private final long startNanos = System.nanoTime();
+  private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+  private final Map<Long, String> threadNames = Collections.synchronizedMap(new LinkedHashMap<>());
+
+  public TraceRecorder() {}
+
+  /**
+   * Returns the recorder which executor tasks submitted from the current thread are recorded into,
+   * or null if the current thread isn't part of a recorded operation.
+   */
+  @Nullable
+  public static TraceRecorder current() {
+    return currentRecorder.get();
+  }
+
+  /**
+   * Sets the recorder which executor tasks submitted from the current thread are recorded into,
+   * returning the previous one.
+   */
+  @Nullable
+  public static TraceRecorder setCurrent(@Nullable TraceRecorder recorder) {
+    TraceRecorder previous = currentRecorder.get();
+    if (recorder == null) {
+      currentRecorder.remove();
+    } else {
+      currentRecorder.set(recorder);
+    }
+    return previous;
+  }
+
+  /** Begins a span on the current thread. */
+  public Span begin(String name, String category) {
+    Thread thread = Thread.currentThread();
+    long threadId = thread.getId();
+    threadNames.putIfAbsent(threadId, thread.getName());
+    record(new Event(Phase.BEGIN, name, category, now(), threadId));
+    return new Span(this, name, category, threadId);
+  }
+
+  /**
+   * Returns an {@link ExecutorService} which records a span around each task it runs, into the
+   * recorder {@link #current() current} when the task was submitted.
+   */
+  public static ExecutorService traceTasks(String name, ExecutorService delegate) {
+    return new TracingExecutorService(name, delegate);
+  }
+
+  private long now() {
+    return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+  }
+
+  private void record(Event event) {
+    events.add(event);
+  }
+
+  @VisibleForTesting
+  ImmutableList<Event> getEvents() {
+    return ImmutableList.copyOf(events);
+  }
+
+  /** Writes the recorded events as a Chrome trace JSON object. */
+  public void writeChromeTrace(Writer writer) throws IOException {
+    List<Map.Entry<Long, String>> threads;
+    synchronized (threadNames) {
+      threads = new ArrayList<>(threadNames.entrySet());
+    }
+    writer.write("{\"traceEvents\":[");
+    boolean first = true;
+    for (Map.Entry<Long, String> thread : threads) {
+      first = writeSeparator(writer, first);
+      writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+      writer.write(Long.toString(thread.getKey()));
+      writer.write(",\"args\":{\"name\":");
+      writeString(writer, thread.getValue());
+      writer.write("}}");
+    }
+    for (Event event : events) {
+      first = writeSeparator(writer, first);
+      writer.write("{\"name\":");
+      writeString(writer, event.name);
+      writer.write(",\"cat\":");
+      writeString(writer, event.category);
+      writer.write(",\"ph\":\"");
+      writer.write(event.phase.code);
+      writer.write("\",\"ts\":");
+      writer.write(Long.toString(event.timestampMicros));
+      writer.write(",\"pid\":1,\"tid\":");
+      writer.write(Long.toString(event.threadId));
+      writer.write("}");
+    }
+    writer.write("],\"displayTimeUnit\":\"ms\"}");
+    writer.flush();
+  }
+
+  private static boolean writeSeparator(Writer writer, boolean first) throws IOException {
+    if (!first) {
+      writer.write(",\n");
+    }
+    return false;
+  }
+
+  private static void writeString(Writer writer, String value) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          writer.write("\\\"");
+          break;
+        case '\\':
+          writer.write("\\\\");
+          break;
+        case '\n':
+          writer.write("\\n");
+          break;
+        case '\r':
+          writer.write("\\r");
+          break;
+        case '\t':
+          writer.write("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            writer.write(String.format("\\u%04x", (int) c));
+          } else {
+            writer.write(c);
+          }
+      }
+    }
+    writer.write('"');
+  }
+
+  /** Wraps each task in a span, if it was submitted while recording. */
+  private static final class TracingExecutorService extends AbstractExecutorService {
+    private final String name;
+    private final ExecutorService delegate;
+
+    TracingExecutorService(String name, ExecutorService delegate) {
+      this.name = name;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      TraceRecorder recorder = currentRecorder.get();
+      if (recorder == null) {
+        delegate.execute(command);
+        return;
+      }
+      delegate.execute(
+          () -> {
+            TraceRecorder previous = setCurrent(recorder);
+            Span span = recorder.begin(name, "executor");
+            try {
+              command.run();
+            } finally {
+              span.end();
+              setCurrent(previous);
+            }
+          });
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+  }
+}
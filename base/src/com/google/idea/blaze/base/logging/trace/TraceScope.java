@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.logging.trace;
+
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.scope.BlazeScope;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import javax.annotation.Nullable;
+
+/**
+ * Attaches a project's sync trace recording to a sync context, so that timing scopes within the
+ * context record into that project's trace, and not into one belonging to another project's sync.
+ */
+public final class TraceScope implements BlazeScope {
+
+  private static final Key<TraceRecorder> RECORDER_KEY = Key.create("blaze.sync.trace.recorder");
+
+  private final Project project;
+
+  public TraceScope(Project project) {
+    this.project = project;
+  }
+
+  /**
+   * Returns the recorder for the given context: the recording of the project the context belongs
+   * to, or if the context has no {@link TraceScope}, the recorder current for this thread.
+   */
+  @Nullable
+  public static TraceRecorder getRecorder(BlazeContext context) {
+    TraceScope scope = context.getScope(TraceScope.class);
+    return scope != null ? scope.project.getUserData(RECORDER_KEY) : TraceRecorder.current();
+  }
+
+  /**
+   * Starts recording a trace for the given project, unless it's already recording. Returns the
+   * project's recorder in either case.
+   */
+  static synchronized TraceRecorder startRecording(Project project) {
+    TraceRecorder recorder = project.getUserData(RECORDER_KEY);
+    if (recorder == null) {
+      recorder = new TraceRecorder();
+      project.putUserData(RECORDER_KEY, recorder);
+    }
+    return recorder;
+  }
+
+  /**
+   * Stops recording a trace for the given project, returning its recorder, or null if the project
+   * wasn't recording.
+   */
+  @Nullable
+  static synchronized TraceRecorder stopRecording(Project project) {
+    TraceRecorder recorder = project.getUserData(RECORDER_KEY);
+    project.putUserData(RECORDER_KEY, null);
+    return recorder;
+  }
+}
@@ -17,6 +17,7 @@ package com.google.idea.blaze.base.prefetch;
 
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.logging.trace.TraceRecorder;
 import com.intellij.util.concurrency.AppExecutorUtil;
 
 /** Shared executors for any prefetch/copy operations. */
@@ -24,5 +25,7 @@ public class FetchExecutor {
   private static final int MAX_THREADS = 128;
   public static final ListeningExecutorService EXECUTOR =
       MoreExecutors.listeningDecorator(
-          AppExecutorUtil.createBoundedApplicationPoolExecutor("FetchExecutor", MAX_THREADS));
+          TraceRecorder.traceTasks(
+              "FetchExecutor task",
+              AppExecutorUtil.createBoundedApplicationPoolExecutor("FetchExecutor", MAX_THREADS)));
 }
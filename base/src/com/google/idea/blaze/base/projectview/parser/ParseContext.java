@@ -36,6 +36,7 @@ public class ParseContext {
   @Nullable private String currentRawLine;
   private int currentLineIndex;
   private int savedPosition = -1;
+  private boolean hasIssues;
 
   /** A line that is being parsed */
   public static class Line {
@@ -122,6 +123,11 @@ public class ParseContext {
     return file;
   }
 
+  /** Whether any errors or warnings have been reported while parsing. */
+  boolean hasIssues() {
+    return hasIssues;
+  }
+
   public void addErrors(List<BlazeValidationError> errors) {
     for (BlazeValidationError error : errors) {
       addError(error.getError());
@@ -129,10 +135,12 @@ public class ParseContext {
   }
 
   public void addError(String error) {
+    hasIssues = true;
     IssueOutput.error(error).inFile(file).onLine(currentLineIndex + 1).submit(context);
   }
 
   public void addWarning(String error) {
+    hasIssues = true;
     IssueOutput.warn(error).inFile(file).onLine(currentLineIndex + 1).submit(context);
   }
 }
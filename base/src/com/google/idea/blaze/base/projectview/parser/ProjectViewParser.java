@@ -15,25 +15,46 @@
  */
 package com.google.idea.blaze.base.projectview.parser;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.idea.blaze.base.projectview.ProjectView;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.projectview.ProjectViewStorageManager;
 import com.google.idea.blaze.base.projectview.section.Section;
 import com.google.idea.blaze.base.projectview.section.SectionParser;
+import com.google.idea.blaze.base.projectview.section.sections.BazelBinarySection;
 import com.google.idea.blaze.base.projectview.section.sections.Sections;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
 import com.google.idea.blaze.base.sync.workspace.WorkspacePathResolver;
+import com.google.idea.common.experiments.BoolExperiment;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /** Parses and writes project views. */
 public class ProjectViewParser {
 
+  private static final BoolExperiment parseCacheEnabled =
+      new BoolExperiment("blaze.projectview.parse.cache", true);
+
+  /**
+   * Parsed project view files, reused while their contents are unchanged. Imported files are
+   * looked up individually, so an edit only re-parses the file that changed.
+   */
+  private static final ConcurrentMap<File, CachedProjectView> parseCache =
+      new ConcurrentHashMap<>();
+
   private final BlazeContext context;
   private final WorkspacePathResolver workspacePathResolver;
   private final boolean recursive;
@@ -41,6 +62,9 @@ public class ProjectViewParser {
   Set<File> encounteredProjectViewFiles = Sets.newHashSet();
   ImmutableList.Builder<ProjectViewSet.ProjectViewFile> projectViewFiles = ImmutableList.builder();
 
+  /** The files imported by each project view file currently being parsed, innermost last. */
+  private final Deque<List<File>> imports = new ArrayDeque<>();
+
   public ProjectViewParser(BlazeContext context, WorkspacePathResolver workspacePathResolver) {
     this.context = context;
     this.workspacePathResolver = workspacePathResolver;
@@ -48,6 +72,9 @@ public class ProjectViewParser {
   }
 
   public void parseProjectView(File projectViewFile) {
+    if (!imports.isEmpty()) {
+      imports.getLast().add(projectViewFile);
+    }
     if (!encounteredProjectViewFiles.add(projectViewFile)) {
       return;
     }
@@ -63,8 +90,46 @@ public class ProjectViewParser {
           .submit(context);
       return;
     }
-    parseProjectView(
-        new ParseContext(context, workspacePathResolver, projectViewFile, projectViewText));
+    HashCode contentHash = Hashing.sha256().hashString(projectViewText, UTF_8);
+    ImmutableList<SectionParser> sectionParsers = ImmutableList.copyOf(Sections.getParsers());
+    CachedProjectView cached =
+        parseCacheEnabled.getValue() ? parseCache.get(projectViewFile) : null;
+    if (cached != null && cached.isValid(contentHash, workspacePathResolver, sectionParsers)) {
+      imports.addLast(new ArrayList<>());
+      try {
+        cached.imports.forEach(this::parseProjectView);
+      } finally {
+        imports.removeLast();
+      }
+      projectViewFiles.add(new ProjectViewSet.ProjectViewFile(cached.projectView, projectViewFile));
+      return;
+    }
+
+    List<File> fileImports = new ArrayList<>();
+    ParseContext parseContext =
+        new ParseContext(context, workspacePathResolver, projectViewFile, projectViewText);
+    ProjectView projectView;
+    imports.addLast(fileImports);
+    try {
+      projectView = parseProjectView(parseContext);
+    } finally {
+      imports.removeLast();
+    }
+    // files with issues are always re-parsed, so their issues are reported again. bazel_binary
+    // is validated against the file system, so can't be cached on the file's contents alone.
+    if (!parseContext.hasIssues()
+        && projectView.getSectionsOfType(BazelBinarySection.KEY).isEmpty()) {
+      parseCache.put(
+          projectViewFile,
+          new CachedProjectView(
+              contentHash,
+              workspacePathResolver,
+              sectionParsers,
+              projectView,
+              ImmutableList.copyOf(fileImports)));
+    } else {
+      parseCache.remove(projectViewFile);
+    }
   }
 
   public void parseProjectView(String text) {
@@ -76,7 +141,7 @@ public class ProjectViewParser {
     parseProjectView(new ParseContext(context, workspacePathResolver, null, text));
   }
 
-  private void parseProjectView(ParseContext parseContext) {
+  private ProjectView parseProjectView(ParseContext parseContext) {
     ImmutableList.Builder<Section<?>> sections = ImmutableList.builder();
 
     List<SectionParser> sectionParsers = Sections.getParsers();
@@ -108,6 +173,7 @@ public class ProjectViewParser {
     ProjectView projectView = new ProjectView(sections.build());
     projectViewFiles.add(
         new ProjectViewSet.ProjectViewFile(projectView, parseContext.getProjectViewFile()));
+    return projectView;
   }
 
   /** Skips all lines until the next unindented, non-empty line. */
@@ -147,4 +213,35 @@ public class ProjectViewParser {
     }
     return sb.toString();
   }
+
+  /** A parsed project view file, along with the inputs it was parsed from. */
+  private static class CachedProjectView {
+    final HashCode contentHash;
+    final WorkspacePathResolver workspacePathResolver;
+    final ImmutableList<SectionParser> sectionParsers;
+    final ProjectView projectView;
+    final ImmutableList<File> imports;
+
+    CachedProjectView(
+        HashCode contentHash,
+        WorkspacePathResolver workspacePathResolver,
+        ImmutableList<SectionParser> sectionParsers,
+        ProjectView projectView,
+        ImmutableList<File> imports) {
+      this.contentHash = contentHash;
+      this.workspacePathResolver = workspacePathResolver;
+      this.sectionParsers = sectionParsers;
+      this.projectView = projectView;
+      this.imports = imports;
+    }
+
+    boolean isValid(
+        HashCode contentHash,
+        WorkspacePathResolver workspacePathResolver,
+        ImmutableList<SectionParser> sectionParsers) {
+      return this.contentHash.equals(contentHash)
+          && this.workspacePathResolver.equals(workspacePathResolver)
+          && this.sectionParsers.equals(sectionParsers);
+    }
+  }
 }
@@ -37,7 +37,7 @@ public class BlazeQueryLabelKindParser implements LineProcessingOutputStream.Lin
     public final String ruleType;
     public final String label;
 
-    private RuleTypeAndLabel(String ruleType, String label) {
+    RuleTypeAndLabel(String ruleType, String label) {
       this.ruleType = ruleType;
       this.label = label;
     }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.query;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Rule;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+import com.google.idea.blaze.base.dependencies.TargetInfo;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.google.idea.blaze.base.query.BlazeQueryLabelKindParser.RuleTypeAndLabel;
+import com.google.repackaged.bazel.protobuf.CodedInputStream;
+import com.google.repackaged.bazel.protobuf.WireFormat;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link OutputStream} which collects the blaze targets output by 'blaze query
+ * --output=streamed_proto "targets"', decoding each length-delimited {@link Target} as soon as it
+ * has been fully written.
+ *
+ * <p>Only the name and rule class of each rule are read. All other fields (in particular the rule
+ * attributes) are skipped without being parsed, so memory use is bounded by the size of the largest
+ * single target rather than the size of the query output.
+ */
+public class BlazeQueryStreamedProtoParser extends OutputStream {
+
+  private static final Logger logger = Logger.getInstance(BlazeQueryStreamedProtoParser.class);
+
+  private static final int INITIAL_BUFFER_SIZE = 8192;
+
+  private final ImmutableList.Builder<TargetInfo> outputList = ImmutableList.builder();
+  private final Predicate<RuleTypeAndLabel> targetFilter;
+
+  // bytes written but not yet parsed, because they don't contain a complete message
+  private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+  private int bufferLength = 0;
+  private boolean truncated = false;
+
+  /** @param targetFilter Ignore targets failing this predicate. */
+  public BlazeQueryStreamedProtoParser(Predicate<RuleTypeAndLabel> targetFilter) {
+    this.targetFilter = targetFilter;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (bufferLength + len > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferLength + len));
+    }
+    System.arraycopy(b, off, buffer, bufferLength, len);
+    bufferLength += len;
+    parseCompleteMessages();
+  }
+
+  /**
+   * Discards any trailing bytes which don't form a complete message (e.g. if the query was
+   * cancelled or crashed mid-output). This doesn't throw, since the stream is closed quietly by
+   * {@link com.google.idea.blaze.base.async.process.ExternalTask}; callers should check {@link
+   * #isTruncated()} instead.
+   */
+  @Override
+  public void close() {
+    if (bufferLength != 0) {
+      logger.warn(String.format("Query output ended with %d unparsed bytes", bufferLength));
+      truncated = true;
+      bufferLength = 0;
+      buffer = new byte[0];
+    }
+  }
+
+  /** Returns true if the query output ended part way through a message. */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  /** Returns all targets parsed to this point. */
+  public ImmutableList<TargetInfo> getTargets() {
+    return outputList.build();
+  }
+
+  public ImmutableList<TargetExpression> getTargetLabels() {
+    return outputList.build().stream().map(info -> info.label).collect(toImmutableList());
+  }
+
+  private void parseCompleteMessages() throws IOException {
+    int position = 0;
+    while (position < bufferLength) {
+      // each message is preceded by its size, encoded as a varint
+      long size = 0;
+      int shift = 0;
+      int messageStart = position;
+      boolean sizeComplete = false;
+      while (messageStart < bufferLength) {
+        byte b = buffer[messageStart++];
+        size |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          sizeComplete = true;
+          break;
+        }
+        shift += 7;
+        if (shift >= 64) {
+          throw new IOException("Malformed message size in query output");
+        }
+      }
+      if (!sizeComplete || bufferLength - messageStart < size) {
+        break;
+      }
+      parseTarget(CodedInputStream.newInstance(buffer, messageStart, (int) size));
+      position = messageStart + (int) size;
+    }
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, bufferLength - position);
+      bufferLength -= position;
+    }
+  }
+
+  private void parseTarget(CodedInputStream input) throws IOException {
+    while (!input.isAtEnd()) {
+      int tag = input.readTag();
+      if (WireFormat.getTagFieldNumber(tag) != Target.RULE_FIELD_NUMBER) {
+        input.skipField(tag);
+        continue;
+      }
+      int oldLimit = input.pushLimit(input.readRawVarint32());
+      TargetInfo target = parseRule(input);
+      input.popLimit(oldLimit);
+      if (target != null) {
+        outputList.add(target);
+      }
+    }
+  }
+
+  @Nullable
+  private TargetInfo parseRule(CodedInputStream input) throws IOException {
+    String name = null;
+    String ruleClass = null;
+    while (!input.isAtEnd() && (name == null || ruleClass == null)) {
+      int tag = input.readTag();
+      switch (WireFormat.getTagFieldNumber(tag)) {
+        case Rule.NAME_FIELD_NUMBER:
+          name = input.readString();
+          break;
+        case Rule.RULE_CLASS_FIELD_NUMBER:
+          ruleClass = input.readString();
+          break;
+        default:
+          input.skipField(tag);
+      }
+    }
+    // skip the remaining fields of this rule
+    input.skipRawBytes(input.getBytesUntilLimit());
+    if (name == null || ruleClass == null) {
+      return null;
+    }
+    if (!targetFilter.test(new RuleTypeAndLabel(ruleClass, name))) {
+      return null;
+    }
+    Label label = Label.createIfValid(name);
+    return label != null ? TargetInfo.builder(label, ruleClass).build() : null;
+  }
+}
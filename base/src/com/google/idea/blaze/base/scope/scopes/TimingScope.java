@@ -18,6 +18,8 @@ package com.google.idea.blaze.base.scope.scopes;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.idea.blaze.base.logging.trace.TraceRecorder;
+import com.google.idea.blaze.base.logging.trace.TraceScope;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.BlazeScope;
 import com.google.idea.blaze.base.scope.scopes.TimingScopeListener.TimedEvent;
@@ -54,6 +56,10 @@ public class TimingScope implements BlazeScope {
 
   private final List<TimingScope> children = Lists.newArrayList();
 
+  @Nullable private TraceRecorder.Span traceSpan;
+
+  @Nullable private TraceRecorder previousRecorder;
+
   public TimingScope(String name, EventType eventType) {
     this.name = name;
     this.eventType = eventType;
@@ -62,6 +68,11 @@ public class TimingScope implements BlazeScope {
   @Override
   public void onScopeBegin(BlazeContext context) {
     startTime = Instant.now();
+    TraceRecorder recorder = TraceScope.getRecorder(context);
+    if (recorder != null) {
+      traceSpan = recorder.begin(name, eventType.name());
+      previousRecorder = TraceRecorder.setCurrent(recorder);
+    }
     parentScope = context.getParentScope(this);
 
     if (parentScope != null) {
@@ -71,6 +82,12 @@ public class TimingScope implements BlazeScope {
 
   @Override
   public void onScopeEnd(BlazeContext context) {
+    if (traceSpan != null) {
+      traceSpan.end();
+      traceSpan = null;
+      TraceRecorder.setCurrent(previousRecorder);
+      previousRecorder = null;
+    }
     if (context.isCancelled()) {
       duration = Optional.of(Duration.ZERO);
       return;
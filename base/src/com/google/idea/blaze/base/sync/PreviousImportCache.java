@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.projectview.ProjectViewSet;
+import com.google.idea.blaze.base.scope.output.PrintOutput;
+import com.google.idea.blaze.base.settings.BuildSystem;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the per-target results of a sync importer's last run in project user data, so the next
+ * incremental import can reuse the results of unchanged targets.
+ *
+ * <p>Results are only kept in memory, so the first import after a restart computes everything. A
+ * previous result is only handed back if it was computed with the same import settings: the
+ * inputs other than the target map which affect every target's result.
+ */
+public final class PreviousImportCache<T> {
+
+  private final Key<PreviousImport<T>> key;
+  private final String description;
+
+  /**
+   * @param keyName the name of the project user data key
+   * @param description what is reused, used when logging the number of reused targets
+   */
+  public PreviousImportCache(String keyName, String description) {
+    this.key = Key.create(keyName);
+    this.description = description;
+  }
+
+  /**
+   * Returns the import settings shared by all importers (workspace root, build system and project
+   * views), followed by the given importer-specific settings.
+   */
+  public static ImmutableList<Object> getImportSettings(
+      WorkspaceRoot workspaceRoot,
+      BuildSystem buildSystem,
+      ProjectViewSet projectViewSet,
+      Object... otherSettings) {
+    return ImmutableList.builder()
+        .add(workspaceRoot, buildSystem)
+        .add(
+            projectViewSet.getProjectViewFiles().stream()
+                .map(f -> f.projectView)
+                .collect(ImmutableList.toImmutableList()))
+        .addAll(Arrays.asList(otherSettings))
+        .build();
+  }
+
+  /**
+   * Returns the result of the project's previous import, or null if reuse is disabled or the
+   * result was computed with different import settings.
+   */
+  @Nullable
+  public T get(Project project, boolean reusePreviousResult, ImmutableList<Object> importSettings) {
+    if (!reusePreviousResult) {
+      return null;
+    }
+    PreviousImport<T> previous = project.getUserData(key);
+    return previous != null && previous.importSettings.equals(importSettings)
+        ? previous.result
+        : null;
+  }
+
+  /** Stores the result of the current import, for the next import to reuse. */
+  public void put(Project project, ImmutableList<Object> importSettings, T result) {
+    project.putUserData(key, new PreviousImport<>(importSettings, result));
+  }
+
+  /** Returns a log message summarizing how many targets' results were reused. */
+  public PrintOutput reuseSummary(int reusedTargets, int totalTargets) {
+    return PrintOutput.log(
+        String.format(
+            "Reused %s for %d of %d targets", description, reusedTargets, totalTargets));
+  }
+
+  private static final class PreviousImport<T> {
+    private final ImmutableList<Object> importSettings;
+    private final T result;
+
+    private PreviousImport(ImmutableList<Object> importSettings, T result) {
+      this.importSettings = importSettings;
+      this.result = result;
+    }
+  }
+}
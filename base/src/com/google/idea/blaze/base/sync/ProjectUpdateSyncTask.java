@@ -183,6 +183,7 @@ final class ProjectUpdateSyncTask {
                 workspaceRoot,
                 projectState.getProjectViewSet(),
                 projectState.getLanguageSettings(),
+                projectState.getBlazeInfo(),
                 projectState.getBlazeVersionData(),
                 projectState.getWorkingSet(),
                 artifactLocationDecoder,
@@ -31,6 +31,7 @@ import com.google.idea.blaze.base.experiments.ExperimentScope;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.issueparser.IssueOutputFilter;
 import com.google.idea.blaze.base.logging.EventLoggingService;
+import com.google.idea.blaze.base.logging.trace.TraceScope;
 import com.google.idea.blaze.base.logging.utils.SyncStats;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.ProjectTargetData;
@@ -579,6 +580,7 @@ final class SyncPhaseCoordinator {
     boolean notifyFinished = phase != SyncPhase.BUILD;
 
     context.push(new ExperimentScope());
+    context.push(new TraceScope(project));
     if (BlazeUserSettings.getInstance().getShowPerformanceWarnings()) {
       context.push(new PerformanceWarningScope());
     }
@@ -17,6 +17,7 @@ package com.google.idea.blaze.base.sync.autosync;
 
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableSet;
 import com.google.idea.blaze.base.logging.EventLoggingService;
@@ -46,7 +47,9 @@ import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.VirtualFileMoveEvent;
 import com.intellij.openapi.vfs.VirtualFilePropertyEvent;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -144,18 +147,95 @@ public class AutoSyncHandler implements ProjectComponent {
     if (!autoSyncEnabled.getValue()) {
       return;
     }
-    BlazeSyncParams autoSyncParams = null;
+    List<BlazeSyncParams> fileSyncParams = new ArrayList<>();
     for (AutoSyncProvider provider : AutoSyncProvider.EP_NAME.getExtensions()) {
       for (VirtualFile file : changedFiles) {
-        autoSyncParams = combineSyncParams(autoSyncParams, getSyncParams(provider, file));
+        BlazeSyncParams params = getSyncParams(provider, file);
+        if (params != null) {
+          fileSyncParams.add(params);
+        }
       }
     }
-    autoSyncParams = filterTargets(autoSyncParams);
+    BlazeSyncParams autoSyncParams = filterTargets(coalesceSyncParams(fileSyncParams));
     if (autoSyncParams != null) {
       queueSync(autoSyncParams);
     }
   }
 
+  /**
+   * Combines the sync params for a batch of changed files into a single sync.
+   *
+   * <p>If any change requires a project-wide sync (e.g. a project view or WORKSPACE file change),
+   * the project-wide syncs are combined and returned on their own, since they cover all the other
+   * changes. A full sync takes priority over an incremental one. Otherwise the targets affected by
+   * all the changes are synced together in a single partial sync.
+   */
+  @VisibleForTesting
+  @Nullable
+  static BlazeSyncParams coalesceSyncParams(List<BlazeSyncParams> fileSyncParams) {
+    BlazeSyncParams projectWideParams = null;
+    BlazeSyncParams otherParams = null;
+    List<BlazeSyncParams> partialParams = new ArrayList<>();
+    for (BlazeSyncParams params : fileSyncParams) {
+      if (isProjectWide(params.syncMode())) {
+        projectWideParams = combineSyncParams(projectWideParams, params);
+      } else if (params.syncMode() == SyncMode.PARTIAL) {
+        partialParams.add(params);
+      } else {
+        otherParams = combineSyncParams(otherParams, params);
+      }
+    }
+    if (projectWideParams != null) {
+      return projectWideParams;
+    }
+    return combineSyncParams(otherParams, combinePartialSyncParams(partialParams));
+  }
+
+  /**
+   * Combines partial syncs in a single pass, rather than pairwise, so large batches of changes
+   * don't repeatedly copy the accumulated targets.
+   */
+  @Nullable
+  private static BlazeSyncParams combinePartialSyncParams(List<BlazeSyncParams> partialParams) {
+    if (partialParams.isEmpty()) {
+      return null;
+    }
+    if (partialParams.size() == 1) {
+      return partialParams.get(0);
+    }
+    BlazeSyncParams last = partialParams.get(partialParams.size() - 1);
+    BlazeSyncParams.Builder builder =
+        BlazeSyncParams.builder()
+            .setTitle(AutoSyncProvider.AUTO_SYNC_TITLE)
+            .setSyncMode(SyncMode.PARTIAL)
+            .setBlazeBuildParams(last.blazeBuildParams());
+    boolean backgroundSync = true;
+    boolean addWorkingSet = false;
+    boolean addProjectViewTargets = false;
+    String origin = null;
+    for (BlazeSyncParams params : partialParams) {
+      builder.addTargetExpressions(params.targetExpressions());
+      backgroundSync &= params.backgroundSync();
+      addWorkingSet |= params.addWorkingSet();
+      addProjectViewTargets |= params.addProjectViewTargets();
+      if (origin == null) {
+        origin = params.syncOrigin();
+      } else if (!origin.equals(params.syncOrigin())) {
+        origin = AutoSyncProvider.AUTO_SYNC_REASON + ".Combined";
+      }
+    }
+    return builder
+        .setSyncOrigin(origin)
+        .setBackgroundSync(backgroundSync)
+        .setAddWorkingSet(addWorkingSet)
+        .setAddProjectViewTargets(addProjectViewTargets)
+        .build();
+  }
+
+  private static boolean isProjectWide(SyncMode mode) {
+    return mode == SyncMode.INCREMENTAL || mode == SyncMode.FULL;
+  }
+
   /** Filters a list of targets to be synced, for example removing currently-syncing targets. */
   @Nullable
   private BlazeSyncParams filterTargets(@Nullable BlazeSyncParams params) {
@@ -248,7 +328,7 @@ public class AutoSyncHandler implements ProjectComponent {
     @Override
     public void onSyncStart(Project project, BlazeContext context, SyncMode syncMode) {
       // cancel any pending auto-syncs if we're doing a project-wide sync
-      if (syncMode == SyncMode.INCREMENTAL || syncMode == SyncMode.FULL) {
+      if (isProjectWide(syncMode)) {
         AutoSyncHandler.getInstance(project)
             .pendingChangesHandler
             .clearQueueAndIgnoreChangesForDuration(THROTTLE_AFTER_FULL_SYNC);
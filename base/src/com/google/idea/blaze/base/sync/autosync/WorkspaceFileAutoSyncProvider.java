@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.autosync;
+
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.settings.Blaze;
+import com.google.idea.blaze.base.settings.BlazeUserSettings;
+import com.google.idea.blaze.base.sync.BlazeBuildParams;
+import com.google.idea.blaze.base.sync.BlazeSyncParams;
+import com.google.idea.blaze.base.sync.SyncMode;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import javax.annotation.Nullable;
+
+/** Runs a project-wide sync in response to changes to the workspace's WORKSPACE file. */
+class WorkspaceFileAutoSyncProvider implements AutoSyncProvider {
+
+  @Override
+  public boolean isSyncSensitiveFile(Project project, VirtualFile file) {
+    if (!Blaze.getBuildSystemProvider(project)
+        .possibleWorkspaceFileNames()
+        .contains(file.getName())) {
+      return false;
+    }
+    WorkspaceRoot workspaceRoot = WorkspaceRoot.fromProjectSafe(project);
+    VirtualFile parent = file.getParent();
+    return workspaceRoot != null
+        && parent != null
+        && workspaceRoot.directory().getPath().equals(parent.getPath());
+  }
+
+  @Nullable
+  @Override
+  public BlazeSyncParams getAutoSyncParamsForFile(Project project, VirtualFile modifiedFile) {
+    if (!AutoSyncSettings.getInstance().autoSyncOnBuildChanges
+        || !isSyncSensitiveFile(project, modifiedFile)) {
+      return null;
+    }
+    // external repositories may have changed, affecting any target in the project
+    return BlazeSyncParams.builder()
+        .setTitle(AUTO_SYNC_TITLE)
+        .setSyncMode(SyncMode.INCREMENTAL)
+        .setSyncOrigin(AUTO_SYNC_REASON + ".WorkspaceFileAutoSyncProvider")
+        .setBlazeBuildParams(BlazeBuildParams.fromProject(project))
+        .setAddProjectViewTargets(true)
+        .setAddWorkingSet(BlazeUserSettings.getInstance().getExpandSyncToWorkingSet())
+        .setBackgroundSync(true)
+        .build();
+  }
+}
@@ -33,8 +33,10 @@ import com.google.idea.blaze.base.prefetch.PrefetchService;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.query.BlazeQueryLabelKindParser;
 import com.google.idea.blaze.base.query.BlazeQueryLabelKindParser.RuleTypeAndLabel;
+import com.google.idea.blaze.base.query.BlazeQueryStreamedProtoParser;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.Scope;
+import com.google.idea.blaze.base.scope.output.PrintOutput;
 import com.google.idea.blaze.base.scope.output.StatusOutput;
 import com.google.idea.blaze.base.scope.scopes.TimingScope;
 import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
@@ -47,6 +49,7 @@ import com.google.idea.blaze.base.sync.workspace.WorkspacePathResolver;
 import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.project.Project;
 import java.io.File;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +64,13 @@ public class WildcardTargetExpander {
   private static final BoolExperiment filterByRuleType =
       new BoolExperiment("blaze.build.filter.by.rule.type", true);
 
+  /**
+   * Whether to expand targets with '--output=streamed_proto', decoding results as they arrive
+   * rather than parsing '--output=label_kind' text line by line.
+   */
+  private static final BoolExperiment queryStreamedProto =
+      new BoolExperiment("blaze.sync.expand.targets.streamed.proto", false);
+
   static class ExpandedTargetsResult {
     final List<TargetExpression> singleTargets;
     final BuildResult buildResult;
@@ -208,10 +218,11 @@ public class WildcardTargetExpander {
       // will be empty if there are no non-excluded targets
       return new ExpandedTargetsResult(ImmutableList.of(), BuildResult.SUCCESS);
     }
+    boolean streamedProto = queryStreamedProto.getValue();
     BlazeCommand.Builder builder =
         BlazeCommand.builder(buildParams.blazeBinaryPath(), BlazeCommandName.QUERY)
             .addBlazeFlags(BlazeFlags.KEEP_GOING)
-            .addBlazeFlags("--output=label_kind")
+            .addBlazeFlags(streamedProto ? "--output=streamed_proto" : "--output=label_kind")
             .addBlazeFlags(query);
 
     // it's fine to include wildcards here; they're guaranteed not to clash with actual labels.
@@ -222,21 +233,41 @@ public class WildcardTargetExpander {
             ? t -> true
             : t -> handledRulesPredicate.test(t.ruleType) || explicitTargets.contains(t.label);
 
+    if (streamedProto) {
+      BlazeQueryStreamedProtoParser outputProcessor = new BlazeQueryStreamedProtoParser(filter);
+      int retVal = runQuery(context, workspaceRoot, builder.build(), outputProcessor);
+      BuildResult buildResult = BuildResult.fromExitCode(retVal);
+      if (outputProcessor.isTruncated()) {
+        context.output(PrintOutput.error("Blaze query output was truncated"));
+        buildResult = BuildResult.combine(buildResult, BuildResult.FATAL_ERROR);
+      }
+      return new ExpandedTargetsResult(outputProcessor.getTargetLabels(), buildResult);
+    }
     BlazeQueryLabelKindParser outputProcessor = new BlazeQueryLabelKindParser(filter);
-
     int retVal =
-        ExternalTask.builder(workspaceRoot)
-            .addBlazeCommand(builder.build())
-            .context(context)
-            .stdout(LineProcessingOutputStream.of(outputProcessor))
-            .stderr(
-                LineProcessingOutputStream.of(
-                    BlazeConsoleLineProcessorProvider.getAllStderrLineProcessors(context)))
-            .build()
-            .run();
+        runQuery(
+            context,
+            workspaceRoot,
+            builder.build(),
+            LineProcessingOutputStream.of(outputProcessor));
+    return new ExpandedTargetsResult(
+        outputProcessor.getTargetLabels(), BuildResult.fromExitCode(retVal));
+  }
 
-    BuildResult buildResult = BuildResult.fromExitCode(retVal);
-    return new ExpandedTargetsResult(outputProcessor.getTargetLabels(), buildResult);
+  private static int runQuery(
+      BlazeContext context,
+      WorkspaceRoot workspaceRoot,
+      BlazeCommand command,
+      OutputStream stdout) {
+    return ExternalTask.builder(workspaceRoot)
+        .addBlazeCommand(command)
+        .context(context)
+        .stdout(stdout)
+        .stderr(
+            LineProcessingOutputStream.of(
+                BlazeConsoleLineProcessorProvider.getAllStderrLineProcessors(context)))
+        .build()
+        .run();
   }
 
   private static Predicate<String> handledRuleTypes(ProjectViewSet projectViewSet) {
@@ -15,6 +15,8 @@
  */
 package com.google.idea.blaze.base.sync.workspace;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
 import com.google.idea.blaze.base.command.buildresult.LocalFileOutputArtifact;
 import com.google.idea.blaze.base.command.buildresult.SourceArtifact;
@@ -25,12 +27,16 @@ import com.intellij.openapi.util.io.FileUtil;
 import java.io.File;
 import java.nio.file.Paths;
 import java.util.Objects;
+import javax.annotation.Nullable;
 
 /** Decodes intellij_ide_info.proto ArtifactLocation file paths */
 public final class ArtifactLocationDecoderImpl implements ArtifactLocationDecoder {
   private final BlazeInfo blazeInfo;
   private final WorkspacePathResolver pathResolver;
   private final RemoteOutputArtifacts remoteOutputs;
+  // decoded exec-root paths, sharing parent directories and File instances. Null if the execution
+  // root isn't a unix-style path, in which case every path is canonicalized individually.
+  private final Supplier<CanonicalPathTrie> execRootPaths;
 
   public ArtifactLocationDecoderImpl(
       BlazeInfo blazeInfo,
@@ -39,6 +45,11 @@ public final class ArtifactLocationDecoderImpl implements ArtifactLocationDecode
     this.blazeInfo = blazeInfo;
     this.pathResolver = pathResolver;
     this.remoteOutputs = remoteOutputs;
+    this.execRootPaths =
+        Suppliers.memoize(
+            () ->
+                CanonicalPathTrie.create(
+                    FileUtil.toCanonicalPath(blazeInfo.getExecutionRoot().getPath())));
   }
 
   @Override
@@ -65,6 +76,10 @@ public final class ArtifactLocationDecoderImpl implements ArtifactLocationDecode
     if (artifactLocation.isMainWorkspaceSourceArtifact()) {
       return pathResolver.resolveToFile(artifactLocation.getRelativePath());
     }
+    File file = decodeFromTrie(artifactLocation);
+    if (file != null) {
+      return file;
+    }
     String path =
         Paths.get(
                 blazeInfo.getExecutionRoot().getPath(),
@@ -74,6 +89,15 @@ public final class ArtifactLocationDecoderImpl implements ArtifactLocationDecode
     return new File(FileUtil.toCanonicalPath(path));
   }
 
+  @Nullable
+  private File decodeFromTrie(ArtifactLocation artifactLocation) {
+    CanonicalPathTrie trie = execRootPaths.get();
+    return trie != null
+        ? trie.resolve(
+            artifactLocation.getRootExecutionPathFragment(), artifactLocation.getRelativePath())
+        : null;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
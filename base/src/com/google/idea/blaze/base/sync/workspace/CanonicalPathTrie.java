@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.workspace;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Resolves relative paths against a root directory, sharing the parent directories of resolved
+ * paths.
+ *
+ * <p>Only directories are interned: the trie holds a node per distinct parent directory, and
+ * returns a new {@link File} for the last segment of each resolved path. Decoders live as long as
+ * the project data, so interning every leaf would retain one entry per artifact ever decoded.
+ *
+ * <p>Paths are resolved lexically, without file system access: '.' segments and repeated
+ * separators are ignored, and '..' segments move to the parent directory. For paths using '/'
+ * separators this matches {@link com.intellij.openapi.util.io.FileUtil#toCanonicalPath}, without
+ * building and re-parsing a new path string for every lookup.
+ *
+ * <p>Thread-safe.
+ */
+final class CanonicalPathTrie {
+
+  private final Node root;
+
+  private CanonicalPathTrie(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Creates a trie rooted at the given canonical absolute path, or returns null if the path isn't
+   * a unix-style absolute path.
+   */
+  @Nullable
+  static CanonicalPathTrie create(String canonicalRootPath) {
+    if (!canonicalRootPath.startsWith("/") || canonicalRootPath.indexOf('\\') >= 0) {
+      return null;
+    }
+    Node fileSystemRoot = new Node(/* parent= */ null, new File("/"));
+    Node root = walk(fileSystemRoot, canonicalRootPath, canonicalRootPath.length());
+    return root != null ? new CanonicalPathTrie(root) : null;
+  }
+
+  /**
+   * Returns the file at {@code root/first/second}, or null if the path can't be resolved
+   * lexically (e.g. it contains a backslash, or '..' goes above the file system root).
+   */
+  @Nullable
+  File resolve(String first, String second) {
+    if (second.indexOf('\\') >= 0) {
+      return null;
+    }
+    Node node = walk(root, first, first.length());
+    int lastSeparator = second.lastIndexOf('/');
+    if (node != null && lastSeparator >= 0) {
+      node = walk(node, second, lastSeparator);
+    }
+    if (node == null) {
+      return null;
+    }
+    String name = second.substring(lastSeparator + 1);
+    if (name.isEmpty() || name.equals(".")) {
+      return node.file;
+    }
+    if (name.equals("..")) {
+      return node.parent != null ? node.parent.file : null;
+    }
+    return new File(node.file, name);
+  }
+
+  /** Walks the directory nodes for the first {@code length} characters of {@code path}. */
+  @Nullable
+  private static Node walk(Node node, String path, int length) {
+    if (path.indexOf('\\') >= 0) {
+      return null;
+    }
+    int start = 0;
+    while (start < length) {
+      int end = path.indexOf('/', start);
+      if (end == -1 || end > length) {
+        end = length;
+      }
+      int segmentLength = end - start;
+      if (segmentLength == 0 || (segmentLength == 1 && path.charAt(start) == '.')) {
+        // repeated separator or '.'
+      } else if (segmentLength == 2 && path.startsWith("..", start)) {
+        node = node.parent;
+        if (node == null) {
+          return null;
+        }
+      } else {
+        node = node.child(path.substring(start, end));
+      }
+      start = end + 1;
+    }
+    return node;
+  }
+
+  private static final class Node {
+    @Nullable private final Node parent;
+    private final File file;
+    // created lazily, since directories containing only files have no child nodes
+    @Nullable private volatile ConcurrentHashMap<String, Node> children;
+
+    Node(@Nullable Node parent, File file) {
+      this.parent = parent;
+      this.file = file;
+    }
+
+    Node child(String name) {
+      ConcurrentHashMap<String, Node> children = this.children;
+      if (children == null) {
+        synchronized (this) {
+          children = this.children;
+          if (children == null) {
+            children = new ConcurrentHashMap<>();
+            this.children = children;
+          }
+        }
+      }
+      Node child = children.get(name);
+      return child != null
+          ? child
+          : children.computeIfAbsent(name, n -> new Node(this, new File(file, n)));
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.benchmarks;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.command.info.BlazeInfo;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.model.RemoteOutputArtifacts;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoderImpl;
+import com.google.idea.blaze.base.sync.workspace.WorkspacePathResolverImpl;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures decoding of a mix of source and generated artifact locations, comparing the decoder
+ * against canonicalizing each execution-root-relative path individually.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ArtifactLocationDecoderBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int size;
+
+  private BenchmarkApplication application;
+  private BlazeInfo blazeInfo;
+  private WorkspacePathResolverImpl pathResolver;
+  private ArtifactLocationDecoder decoder;
+  private ImmutableList<ArtifactLocation> artifacts;
+
+  @Setup
+  public void setUp() {
+    application = BenchmarkApplication.create();
+    blazeInfo =
+        BlazeInfo.createMockBlazeInfo(
+            "/output_base",
+            "/execroot",
+            "/execroot/bazel-out/k8-fastbuild/bin",
+            "/execroot/bazel-out/k8-fastbuild/genfiles",
+            "/execroot/bazel-out/k8-fastbuild/testlogs");
+    pathResolver = new WorkspacePathResolverImpl(new WorkspaceRoot(new File("/workspace")));
+    decoder = new ArtifactLocationDecoderImpl(blazeInfo, pathResolver, RemoteOutputArtifacts.EMPTY);
+    artifacts =
+        SyncBenchmarkData.artifactLocations(size).stream()
+            .map(ArtifactLocation::fromProto)
+            .collect(toImmutableList());
+  }
+
+  @TearDown
+  public void tearDown() {
+    application.close();
+  }
+
+  @Benchmark
+  public void decode(Blackhole blackhole) {
+    for (ArtifactLocation artifact : artifacts) {
+      blackhole.consume(decoder.decode(artifact));
+    }
+  }
+
+  /** Decodes with a new decoder, so none of the resolved paths are shared with earlier runs. */
+  @Benchmark
+  public void decodeColdDecoder(Blackhole blackhole) {
+    ArtifactLocationDecoder decoder =
+        new ArtifactLocationDecoderImpl(blazeInfo, pathResolver, RemoteOutputArtifacts.EMPTY);
+    for (ArtifactLocation artifact : artifacts) {
+      blackhole.consume(decoder.decode(artifact));
+    }
+  }
+
+  /** The previous implementation, canonicalizing a newly built path string per artifact. */
+  @Benchmark
+  public void decodeLegacy(Blackhole blackhole) {
+    String executionRoot = blazeInfo.getExecutionRoot().getPath();
+    for (ArtifactLocation artifact : artifacts) {
+      if (artifact.isMainWorkspaceSourceArtifact()) {
+        blackhole.consume(pathResolver.resolveToFile(artifact.getRelativePath()));
+        continue;
+      }
+      String path = Paths.get(executionRoot, artifact.getExecutionRootRelativePath()).toString();
+      blackhole.consume(new File(FileUtil.toCanonicalPath(path)));
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.benchmarks;
+
+import com.google.idea.blaze.base.TestUtils;
+import com.google.idea.blaze.base.command.buildresult.OutputArtifactParser;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.intellij.mock.MockComponentManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.extensions.Extensions;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import com.intellij.openapi.extensions.impl.ExtensionsAreaImpl;
+import com.intellij.openapi.util.Disposer;
+
+/**
+ * A minimal mock application for benchmarks, with the extension points and services required by
+ * the sync code paths under measurement.
+ */
+public final class BenchmarkApplication implements Disposable {
+
+  private BenchmarkApplication() {}
+
+  /** Creates and installs the mock application. Dispose the result when the benchmark is done. */
+  public static BenchmarkApplication create() {
+    BenchmarkApplication disposable = new BenchmarkApplication();
+    TestUtils.createMockApplication(disposable);
+    ExtensionsAreaImpl extensionsArea = (ExtensionsAreaImpl) Extensions.getRootArea();
+
+    extensionsArea.registerExtensionPoint(
+        Kind.Provider.EP_NAME.getName(), Kind.Provider.class.getName());
+    ExtensionPointImpl<Kind.Provider> kindProviders =
+        extensionsArea.getExtensionPoint(Kind.Provider.EP_NAME.getName());
+    kindProviders.registerExtension(new GenericBlazeRules());
+
+    extensionsArea.registerExtensionPoint(
+        OutputArtifactParser.EP_NAME.getName(), OutputArtifactParser.class.getName());
+    ExtensionPointImpl<OutputArtifactParser> parsers =
+        extensionsArea.getExtensionPoint(OutputArtifactParser.EP_NAME.getName());
+    parsers.registerExtension(new OutputArtifactParser.LocalFileParser());
+
+    ((MockComponentManager) ApplicationManager.getApplication())
+        .registerService(Kind.ApplicationState.class, new Kind.ApplicationState(), disposable);
+    return disposable;
+  }
+
+  @Override
+  public void dispose() {}
+
+  /** Tears down the mock application. */
+  public void close() {
+    Disposer.dispose(this);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.ideinfo.ProjectDataInterner;
+import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
+import com.google.idea.blaze.base.model.primitives.Label;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures interning of freshly deserialized, already-interned values: the common case when
+ * reloading or re-syncing a project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ProjectDataInternerBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int size;
+
+  private BenchmarkApplication application;
+  private ImmutableList<String> paths;
+  private ImmutableList<Label> labels;
+  // keeps the interned instances strongly reachable, as the project data would
+  private ImmutableList<ExecutionRootPath> internedPaths;
+
+  @Setup
+  public void setUp() {
+    application = BenchmarkApplication.create();
+    ImmutableList<String> labelStrings = SyncBenchmarkData.labels(size);
+    ImmutableList.Builder<String> pathsBuilder = ImmutableList.builderWithExpectedSize(size);
+    ImmutableList.Builder<Label> labelsBuilder = ImmutableList.builderWithExpectedSize(size);
+    ImmutableList.Builder<ExecutionRootPath> internedBuilder =
+        ImmutableList.builderWithExpectedSize(size);
+    for (String label : labelStrings) {
+      String path = "bazel-out/k8-fastbuild/bin/" + label.substring(2).replace(':', '/');
+      pathsBuilder.add(path);
+      internedBuilder.add(ProjectDataInterner.intern(new ExecutionRootPath(path)));
+      labelsBuilder.add(Label.create(label));
+    }
+    paths = pathsBuilder.build();
+    labels = labelsBuilder.build();
+    internedPaths = internedBuilder.build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    application.close();
+  }
+
+  @Benchmark
+  public void internLabels(Blackhole blackhole) {
+    for (Label label : labels) {
+      blackhole.consume(ProjectDataInterner.intern(label));
+    }
+  }
+
+  @Benchmark
+  public void internExecutionRootPaths(Blackhole blackhole) {
+    for (String path : paths) {
+      blackhole.consume(ProjectDataInterner.intern(new ExecutionRootPath(path)));
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEvent;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.ConfigurationId;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.NamedSetOfFilesId;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.TargetCompletedId;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.Configuration;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.NamedSetOfFiles;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.OutputGroup;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.TargetComplete;
+import com.google.devtools.intellij.aspect.Common;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.devtools.intellij.model.ProjectData;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic sync inputs, shaped roughly like a large java monorepo: about ten targets
+ * per package, a handful of deps per target, and a mix of source and generated artifacts.
+ */
+public final class SyncBenchmarkData {
+
+  private static final long SEED = 42;
+  private static final int TARGETS_PER_PACKAGE = 10;
+  private static final int DEPS_PER_TARGET = 5;
+  private static final String CONFIG_ID = "k8-fastbuild";
+  private static final String BIN_FRAGMENT = "bazel-out/k8-fastbuild/bin";
+
+  private SyncBenchmarkData() {}
+
+  /** The label string of the target with the given index. */
+  public static String label(int index) {
+    return "//" + packagePath(index / TARGETS_PER_PACKAGE) + ":target" + index;
+  }
+
+  /** Returns {@code count} distinct label strings. */
+  public static ImmutableList<String> labels(int count) {
+    ImmutableList.Builder<String> labels = ImmutableList.builderWithExpectedSize(count);
+    for (int i = 0; i < count; i++) {
+      labels.add(label(i));
+    }
+    return labels.build();
+  }
+
+  /** Returns {@code count} artifact locations, alternating between source and generated files. */
+  public static ImmutableList<Common.ArtifactLocation> artifactLocations(int count) {
+    ImmutableList.Builder<Common.ArtifactLocation> artifacts =
+        ImmutableList.builderWithExpectedSize(count);
+    for (int i = 0; i < count; i++) {
+      String relativePath = packagePath(i / TARGETS_PER_PACKAGE) + "/File" + i + ".java";
+      artifacts.add(
+          i % 2 == 0 ? sourceArtifact(relativePath) : generatedArtifact(relativePath + ".jar"));
+    }
+    return artifacts.build();
+  }
+
+  /** Returns {@code count} target protos, each depending on up to five earlier targets. */
+  public static ImmutableList<IntellijIdeInfo.TargetIdeInfo> targets(int count) {
+    Random random = new Random(SEED);
+    ImmutableList.Builder<IntellijIdeInfo.TargetIdeInfo> targets =
+        ImmutableList.builderWithExpectedSize(count);
+    for (int i = 0; i < count; i++) {
+      targets.add(target(i, random));
+    }
+    return targets.build();
+  }
+
+  /** Returns a serialized target map of {@code count} targets, as stored in the project data. */
+  public static ProjectData.TargetMap targetMap(int count) {
+    return ProjectData.TargetMap.newBuilder().addAllTargets(targets(count)).build();
+  }
+
+  /**
+   * Returns a delimited BEP stream for a build of {@code count} targets, each producing one named
+   * set of output files.
+   */
+  public static byte[] bepStream(int count) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      BuildEvent.newBuilder()
+          .setId(
+              BuildEventId.newBuilder()
+                  .setConfiguration(ConfigurationId.newBuilder().setId(CONFIG_ID)))
+          .setConfiguration(Configuration.newBuilder().setMnemonic(CONFIG_ID))
+          .build()
+          .writeDelimitedTo(output);
+      for (int i = 0; i < count; i++) {
+        String setId = Integer.toString(i);
+        String outputDir = "/execroot/" + BIN_FRAGMENT + "/" + packagePath(i / TARGETS_PER_PACKAGE);
+        NamedSetOfFiles.Builder files = NamedSetOfFiles.newBuilder();
+        for (String suffix : new String[] {".jar", "-src.jar", ".intellij-info.txt"}) {
+          String path = outputDir + "/target" + i + suffix;
+          files.addFiles(
+              BuildEventStreamProtos.File.newBuilder().setUri("file://" + path).setName(path));
+        }
+        BuildEvent.newBuilder()
+            .setId(
+                BuildEventId.newBuilder().setNamedSet(NamedSetOfFilesId.newBuilder().setId(setId)))
+            .setNamedSetOfFiles(files)
+            .build()
+            .writeDelimitedTo(output);
+        BuildEvent.newBuilder()
+            .setId(
+                BuildEventId.newBuilder()
+                    .setTargetCompleted(
+                        TargetCompletedId.newBuilder()
+                            .setLabel(label(i))
+                            .setConfiguration(ConfigurationId.newBuilder().setId(CONFIG_ID))))
+            .setCompleted(
+                TargetComplete.newBuilder()
+                    .addOutputGroup(
+                        OutputGroup.newBuilder()
+                            .setName("intellij-resolve-java")
+                            .addFileSets(NamedSetOfFilesId.newBuilder().setId(setId))))
+            .build()
+            .writeDelimitedTo(output);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return output.toByteArray();
+  }
+
+  private static IntellijIdeInfo.TargetIdeInfo target(int index, Random random) {
+    String packagePath = packagePath(index / TARGETS_PER_PACKAGE);
+    IntellijIdeInfo.TargetIdeInfo.Builder target =
+        IntellijIdeInfo.TargetIdeInfo.newBuilder()
+            .setKindString("proto_library")
+            .setKey(IntellijIdeInfo.TargetKey.newBuilder().setLabel(label(index)))
+            .setBuildFileArtifactLocation(sourceArtifact(packagePath + "/BUILD"))
+            .addTags("synthetic");
+    int depCount = Math.min(index, DEPS_PER_TARGET);
+    for (int i = 0; i < depCount; i++) {
+      target.addDeps(
+          IntellijIdeInfo.Dependency.newBuilder()
+              .setTarget(
+                  IntellijIdeInfo.TargetKey.newBuilder().setLabel(label(random.nextInt(index)))));
+    }
+    String jarPath = packagePath + "/libtarget" + index;
+    target.setJavaIdeInfo(
+        IntellijIdeInfo.JavaIdeInfo.newBuilder()
+            .addSources(sourceArtifact(packagePath + "/Target" + index + ".java"))
+            .addSources(sourceArtifact(packagePath + "/Target" + index + "Util.java"))
+            .addJars(
+                IntellijIdeInfo.LibraryArtifact.newBuilder()
+                    .setJar(generatedArtifact(jarPath + ".jar"))
+                    .setInterfaceJar(generatedArtifact(jarPath + "-hjar.jar"))
+                    .addSourceJars(generatedArtifact(jarPath + "-src.jar"))));
+    return target.build();
+  }
+
+  private static String packagePath(int packageIndex) {
+    return "java/com/google/project" + (packageIndex % 100) + "/pkg" + packageIndex;
+  }
+
+  private static Common.ArtifactLocation sourceArtifact(String relativePath) {
+    return Common.ArtifactLocation.newBuilder()
+        .setRelativePath(relativePath)
+        .setIsSource(true)
+        .build();
+  }
+
+  private static Common.ArtifactLocation generatedArtifact(String relativePath) {
+    return Common.ArtifactLocation.newBuilder()
+        .setRelativePath(relativePath)
+        .setRootExecutionPathFragment(BIN_FRAGMENT)
+        .build();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.benchmarks;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TargetMap} construction, both from already-converted targets (as at the end of
+ * the build phase) and from the serialized project data (as on project load).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class TargetMapBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int size;
+
+  private BenchmarkApplication application;
+  private ProjectData.TargetMap proto;
+  private ImmutableList<TargetIdeInfo> targets;
+
+  @Setup
+  public void setUp() {
+    application = BenchmarkApplication.create();
+    proto = SyncBenchmarkData.targetMap(size);
+    targets =
+        proto.getTargetsList().stream().map(TargetIdeInfo::fromProto).collect(toImmutableList());
+  }
+
+  @TearDown
+  public void tearDown() {
+    application.close();
+  }
+
+  @Benchmark
+  public TargetMap build() {
+    ImmutableMap.Builder<TargetKey, TargetIdeInfo> builder =
+        ImmutableMap.builderWithExpectedSize(targets.size());
+    for (TargetIdeInfo target : targets) {
+      builder.put(target.getKey(), target);
+    }
+    return new TargetMap(builder.build());
+  }
+
+  @Benchmark
+  public TargetMap fromProto() {
+    return TargetMap.fromProto(proto);
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.command.info;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.settings.BuildSystem;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link BlazeInfoCache}. */
+@RunWith(JUnit4.class)
+public class BlazeInfoCacheTest extends BlazeTestCase {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Override
+  protected void initTest(
+      @NotNull Container applicationServices, @NotNull Container projectServices) {
+    applicationServices.register(FileOperationProvider.class, new FileOperationProvider());
+  }
+
+  @Test
+  public void fingerprint_changesWithFlagsAndRcFiles() throws IOException {
+    File binary = folder.newFile("bazel");
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(folder.newFolder("workspace"));
+    File importedRc = new File(workspaceRoot.directory(), "tools/common.bazelrc");
+    importedRc.getParentFile().mkdirs();
+    write(importedRc, "build --jobs=10");
+    write(
+        new File(workspaceRoot.directory(), ".bazelrc"),
+        "try-import %workspace%/tools/common.bazelrc");
+
+    String fingerprint = fingerprint(binary, workspaceRoot, "--config=a");
+    assertThat(fingerprint).isNotNull();
+    assertThat(fingerprint(binary, workspaceRoot, "--config=a")).isEqualTo(fingerprint);
+    assertThat(fingerprint(binary, workspaceRoot, "--config=b")).isNotEqualTo(fingerprint);
+
+    write(importedRc, "build --jobs=20");
+    assertThat(fingerprint(binary, workspaceRoot, "--config=a")).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void fingerprint_changesWithBazelrcFlagContents() throws IOException {
+    File binary = folder.newFile("bazel");
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(folder.newFolder("workspace"));
+    File userRc = new File(workspaceRoot.directory(), "user.bazelrc");
+    write(userRc, "build --jobs=10");
+
+    String fingerprint = fingerprint(binary, workspaceRoot, "--bazelrc=user.bazelrc");
+    assertThat(fingerprint(binary, workspaceRoot, "--bazelrc=user.bazelrc"))
+        .isEqualTo(fingerprint);
+
+    write(userRc, "build --jobs=20");
+    assertThat(fingerprint(binary, workspaceRoot, "--bazelrc=user.bazelrc"))
+        .isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void fingerprint_changesWithBinarySelectingEnvironment() throws IOException {
+    File binary = folder.newFile("bazel");
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(folder.newFolder("workspace"));
+
+    String fingerprint = fingerprint(binary, workspaceRoot, ImmutableMap.of("HOME", "/home/a"));
+    assertThat(fingerprint(binary, workspaceRoot, ImmutableMap.of("HOME", "/home/b")))
+        .isEqualTo(fingerprint);
+    assertThat(fingerprint(binary, workspaceRoot, ImmutableMap.of("USE_BAZEL_VERSION", "4.0.0")))
+        .isNotEqualTo(fingerprint);
+    assertThat(
+            fingerprint(binary, workspaceRoot, ImmutableMap.of("BAZELISK_BASE_URL", "http://a")))
+        .isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void getRcFileFlags_resolvesWorkspaceRelativePaths() {
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(new File("/workspace"));
+    assertThat(
+            BlazeInfoCache.getRcFileFlags(
+                ImmutableList.of("--config=a", "--bazelrc=user.bazelrc", "--bazelrc=/etc/b.rc"),
+                workspaceRoot))
+        .containsExactly(new File("/workspace/user.bazelrc"), new File("/etc/b.rc"))
+        .inOrder();
+  }
+
+  @Test
+  public void fingerprint_missingBinary_isNull() throws IOException {
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(folder.newFolder("workspace"));
+    assertThat(
+            BlazeInfoCache.fingerprint(
+                BuildSystem.Bazel,
+                new File(folder.getRoot(), "missing/bazel").getPath(),
+                workspaceRoot,
+                ImmutableList.of()))
+        .isNull();
+  }
+
+  @Test
+  public void getImports_resolvesWorkspaceRelativePaths() {
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(new File("/workspace"));
+    assertThat(
+            BlazeInfoCache.getImports(
+                "build --jobs=10\n"
+                    + "import %workspace%/tools/a.bazelrc\n"
+                    + "  try-import /etc/b.bazelrc\n",
+                workspaceRoot))
+        .containsExactly(new File("/workspace/tools/a.bazelrc"), new File("/etc/b.bazelrc"))
+        .inOrder();
+  }
+
+  @Test
+  public void get_persistedAcrossInstances() throws IOException {
+    File cacheDir = folder.newFolder("cache");
+    ImmutableMap<String, String> info = blazeInfo(folder.newFolder("output_base"));
+    new BlazeInfoCache(cacheDir).put("fingerprint", info);
+
+    assertThat(new BlazeInfoCache(cacheDir).get("fingerprint")).isEqualTo(info);
+    assertThat(new BlazeInfoCache(cacheDir).get("other")).isNull();
+  }
+
+  @Test
+  public void get_missingExecutionRoot_returnsNull() throws IOException {
+    BlazeInfoCache cache = new BlazeInfoCache(/* cacheDir= */ null);
+    File outputBase = folder.newFolder("output_base");
+    cache.put("fingerprint", blazeInfo(outputBase));
+    assertThat(cache.get("fingerprint")).isNotNull();
+
+    Files.delete(new File(outputBase, "execroot").toPath());
+    assertThat(cache.get("fingerprint")).isNull();
+  }
+
+  private static String fingerprint(File binary, WorkspaceRoot workspaceRoot, String flag) {
+    return BlazeInfoCache.fingerprint(
+        BuildSystem.Bazel, binary.getPath(), workspaceRoot, ImmutableList.of(flag));
+  }
+
+  private static String fingerprint(
+      File binary, WorkspaceRoot workspaceRoot, ImmutableMap<String, String> environment) {
+    return BlazeInfoCache.fingerprint(
+        BuildSystem.Bazel, binary.getPath(), workspaceRoot, ImmutableList.of(), environment);
+  }
+
+  private static ImmutableMap<String, String> blazeInfo(File outputBase) {
+    File executionRoot = new File(outputBase, "execroot");
+    executionRoot.mkdirs();
+    return ImmutableMap.of(
+        BlazeInfo.OUTPUT_BASE_KEY, outputBase.getPath(),
+        BlazeInfo.EXECUTION_ROOT_KEY, executionRoot.getPath());
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    Files.write(file.toPath(), contents.getBytes(UTF_8));
+  }
+}
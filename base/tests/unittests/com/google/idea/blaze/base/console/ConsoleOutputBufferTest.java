@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.console;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.console.ConsoleOutputBuffer.Chunk;
+import com.intellij.execution.filters.HyperlinkInfo;
+import com.intellij.execution.ui.ConsoleViewContentType;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ConsoleOutputBuffer}. */
+@RunWith(JUnit4.class)
+public class ConsoleOutputBufferTest extends BlazeTestCase {
+
+  private static final ConsoleViewContentType STDOUT = ConsoleViewContentType.NORMAL_OUTPUT;
+  private static final ConsoleViewContentType STDERR = ConsoleViewContentType.ERROR_OUTPUT;
+
+  @Test
+  public void testAdjacentOutputOfSameTypeMerged() {
+    ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(100);
+    buffer.add("line 1\n", STDOUT);
+    buffer.add("line 2\n", STDOUT);
+    buffer.add("error\n", STDERR);
+    buffer.add("line 3\n", STDOUT);
+
+    List<Chunk> chunks = buffer.drain(100);
+    assertThat(chunks).hasSize(3);
+    assertThat(chunks.get(0).text).isEqualTo("line 1\nline 2\n");
+    assertThat(chunks.get(0).contentType).isEqualTo(STDOUT);
+    assertThat(chunks.get(1).text).isEqualTo("error\n");
+    assertThat(chunks.get(1).contentType).isEqualTo(STDERR);
+    assertThat(chunks.get(2).text).isEqualTo("line 3\n");
+    assertThat(buffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testHyperlinksKeptInOrder() {
+    HyperlinkInfo link = project -> {};
+    ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(100);
+    buffer.add("see ", STDOUT);
+    buffer.addHyperlink("here", link);
+    buffer.add("\n", STDOUT);
+
+    List<Chunk> chunks = buffer.drain(100);
+    assertThat(chunks).hasSize(3);
+    assertThat(chunks.get(0).text).isEqualTo("see ");
+    assertThat(chunks.get(1).text).isEqualTo("here");
+    assertThat(chunks.get(1).hyperlinkInfo).isSameAs(link);
+    assertThat(chunks.get(2).text).isEqualTo("\n");
+    assertThat(chunks.get(2).hyperlinkInfo).isNull();
+  }
+
+  @Test
+  public void testDrainIsBoundedByLineCount() {
+    ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(100);
+    buffer.add("1\n2\n3\n", STDOUT);
+    buffer.add("4\n5", STDERR);
+
+    assertThat(text(buffer.drain(2))).isEqualTo("1\n2\n");
+    assertThat(buffer.isEmpty()).isFalse();
+    assertThat(text(buffer.drain(1))).isEqualTo("3\n");
+    assertThat(text(buffer.drain(2))).isEqualTo("4\n5");
+    assertThat(buffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testOverflowIsFolded() {
+    ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(3);
+    for (int i = 1; i <= 10; i++) {
+      buffer.add(i + "\n", i % 2 == 0 ? STDOUT : STDERR);
+    }
+
+    List<Chunk> chunks = buffer.drain(100);
+    assertThat(chunks.get(0).text).isEqualTo("[... 7 lines of output omitted ...]\n");
+    assertThat(chunks.get(0).contentType).isEqualTo(ConsoleViewContentType.SYSTEM_OUTPUT);
+    assertThat(text(chunks.subList(1, chunks.size()))).isEqualTo("8\n9\n10\n");
+    assertThat(buffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testOverflowFoldsWithinSegment() {
+    ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(2);
+    buffer.add("1\n2\n3\n4\n", STDOUT);
+
+    assertThat(text(buffer.drain(100))).isEqualTo("[... 2 lines of output omitted ...]\n3\n4\n");
+  }
+
+  @Test
+  public void testClearDropsBufferedOutput() {
+    ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(1);
+    buffer.add("1\n2\n3\n", STDOUT);
+    buffer.clear();
+
+    assertThat(buffer.isEmpty()).isTrue();
+    assertThat(buffer.drain(100)).isEmpty();
+  }
+
+  private static String text(List<Chunk> chunks) {
+    StringBuilder text = new StringBuilder();
+    chunks.forEach(c -> text.append(c.text));
+    return text.toString();
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.lang.buildfile.lexer;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.idea.blaze.base.lang.buildfile.lexer.BuildLexerBase.LexerMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that relexing an edited region with {@link BuildLexer}, the way the editor highlighter
+ * does, gives the same tokens as lexing the entire file.
+ */
+@RunWith(JUnit4.class)
+public class IncrementalLexingTest {
+
+  private static final String[] FRAGMENTS = {
+    "(", ")", "[", "]", "{", "}", "\n", "\n\n", "  ", "    ", "\t", "#", "# comment\n", "'", "\"",
+    "\"\"\"", "'''", "r", "r'", "\\", "\\\n", "+", "=", "+=", "-", "*", "**", "/", "//", "//=",
+    "!", "<", ">=", "1", "0x1f", "017", ".", ",", ":", ";", "foo", "name", "if", "cc_library(",
+    "x = 1\n", "def f():\n    return x\n", "    srcs = glob([\"*.cc\"]),\n", "\"\\n\"", "$",
+  };
+
+  @Test
+  public void testRandomEditsMatchFullRelex() {
+    Random random = new Random(0);
+    for (int i = 0; i < 100; i++) {
+      String text = randomText(random, 30);
+      List<LexedToken> tokens = lex(text, LexerMode.SyntaxHighlighting);
+      for (int j = 0; j < 50; j++) {
+        int editStart = random.nextInt(text.length() + 1);
+        int removedLength = random.nextInt(Math.min(6, text.length() - editStart + 1));
+        String inserted = random.nextInt(3) == 0 ? "" : randomText(random, 2);
+        String newText =
+            text.substring(0, editStart) + inserted + text.substring(editStart + removedLength);
+
+        List<LexedToken> relexed =
+            relex(tokens, newText, editStart, removedLength, inserted.length());
+        assertEquals(
+            String.format("Edit at %s of '%s' -> '%s'", editStart, text, newText),
+            lex(newText, LexerMode.SyntaxHighlighting),
+            relexed);
+        text = newText;
+        tokens = relexed;
+      }
+    }
+  }
+
+  @Test
+  public void testOnDemandLexingMatchesEagerLexing() {
+    Random random = new Random(0);
+    for (LexerMode mode : LexerMode.values()) {
+      for (int i = 0; i < 500; i++) {
+        String text = randomText(random, 30);
+        List<LexedToken> expected = new ArrayList<>();
+        for (Token token : new BuildLexerBase(text, 0, mode).getTokens()) {
+          expected.add(new LexedToken(token.kind, token.left, token.right, 0));
+        }
+        List<LexedToken> actual = new ArrayList<>();
+        for (LexedToken token : lex(text, mode)) {
+          actual.add(new LexedToken(token.kind, token.start, token.end, 0));
+        }
+        assertEquals(text, expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void testParsingModeStateIsParenDepthAtTokenStart() {
+    List<LexedToken> tokens = lex("f(a[1])", LexerMode.Parsing);
+    int[] states = tokens.stream().mapToInt(t -> t.state).toArray();
+    assertEquals("[0, 0, 1, 1, 2, 2, 1]", Arrays.toString(states));
+  }
+
+  /**
+   * Relexes after an edit in the same way as the editor highlighter: restarting from the last token
+   * in the initial state starting before the edit, and stopping at the first token after the edit
+   * which matches a previous token.
+   */
+  private static List<LexedToken> relex(
+      List<LexedToken> oldTokens,
+      String newText,
+      int editStart,
+      int removedLength,
+      int insertedLength) {
+    int restartIndex = 0;
+    for (int i = 0; i < oldTokens.size() && oldTokens.get(i).start < editStart; i++) {
+      if (oldTokens.get(i).state == 0) {
+        restartIndex = i;
+      }
+    }
+    int restartOffset = restartIndex < oldTokens.size() ? oldTokens.get(restartIndex).start : 0;
+    int shift = insertedLength - removedLength;
+    Map<Integer, Integer> oldTokenAtOffset = new HashMap<>();
+    for (int i = restartIndex; i < oldTokens.size(); i++) {
+      oldTokenAtOffset.put(oldTokens.get(i).start, i);
+    }
+
+    List<LexedToken> result = new ArrayList<>(oldTokens.subList(0, restartIndex));
+    BuildLexer lexer = new BuildLexer(LexerMode.SyntaxHighlighting);
+    lexer.start(newText, restartOffset, newText.length(), 0);
+    while (lexer.getTokenType() != null) {
+      LexedToken token = currentToken(lexer);
+      if (token.start >= editStart + insertedLength) {
+        Integer oldIndex = oldTokenAtOffset.get(token.start - shift);
+        if (oldIndex != null && oldTokens.get(oldIndex).shift(shift).equals(token)) {
+          // the remaining tokens are unchanged
+          for (LexedToken oldToken : oldTokens.subList(oldIndex, oldTokens.size())) {
+            result.add(oldToken.shift(shift));
+          }
+          return result;
+        }
+      }
+      result.add(token);
+      lexer.advance();
+    }
+    return result;
+  }
+
+  private static List<LexedToken> lex(String text, LexerMode mode) {
+    List<LexedToken> tokens = new ArrayList<>();
+    BuildLexer lexer = new BuildLexer(mode);
+    lexer.start(text, 0, text.length(), 0);
+    while (lexer.getTokenType() != null) {
+      tokens.add(currentToken(lexer));
+      lexer.advance();
+    }
+    return tokens;
+  }
+
+  private static LexedToken currentToken(BuildLexer lexer) {
+    return new LexedToken(
+        lexer.getTokenKind(), lexer.getTokenStart(), lexer.getTokenEnd(), lexer.getState());
+  }
+
+  private static String randomText(Random random, int maxFragments) {
+    StringBuilder text = new StringBuilder();
+    int fragments = random.nextInt(maxFragments + 1);
+    for (int i = 0; i < fragments; i++) {
+      text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+    }
+    return text.toString();
+  }
+
+  private static class LexedToken {
+    final TokenKind kind;
+    final int start;
+    final int end;
+    final int state;
+
+    LexedToken(TokenKind kind, int start, int end, int state) {
+      this.kind = kind;
+      this.start = start;
+      this.end = end;
+      this.state = state;
+    }
+
+    LexedToken shift(int delta) {
+      return new LexedToken(kind, start + delta, end + delta, state);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof LexedToken)) {
+        return false;
+      }
+      LexedToken that = (LexedToken) o;
+      return kind == that.kind && start == that.start && end == that.end && state == that.state;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, start, end, state);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s[%s,%s):%s", kind, start, end, state);
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.logging.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.TestUtils;
+import com.google.idea.blaze.base.logging.trace.TraceRecorder.Event;
+import com.google.idea.blaze.base.logging.trace.TraceRecorder.Phase;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.scope.Scope;
+import com.google.idea.blaze.base.scope.scopes.TimingScope;
+import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
+import com.intellij.mock.MockProject;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TraceRecorder}. */
+@RunWith(JUnit4.class)
+public class TraceRecorderTest extends BlazeTestCase {
+
+  @After
+  public void stopRecording() {
+    TraceScope.stopRecording(project);
+  }
+
+  @Test
+  public void testNothingRecordedWhenNotRecording() {
+    Scope.root(
+        context -> {
+          context.push(new TraceScope(project));
+          assertThat(TraceScope.getRecorder(context)).isNull();
+          context.push(new TimingScope("Sync", EventType.Other));
+          assertThat(TraceRecorder.current()).isNull();
+        });
+  }
+
+  @Test
+  public void testConcurrentSyncs_recordIntoTheirOwnProjectsTrace() {
+    MockProject otherProject = TestUtils.mockProject(null, testDisposable);
+    TraceRecorder recorder = TraceScope.startRecording(project);
+    TraceRecorder otherRecorder = TraceScope.startRecording(otherProject);
+    assertThat(otherRecorder).isNotSameAs(recorder);
+
+    Scope.root(
+        context -> {
+          context.push(new TraceScope(project));
+          context.push(new TimingScope("Sync", EventType.Other));
+          // the other project's sync finishing doesn't stop this sync's recording
+          assertThat(TraceScope.stopRecording(otherProject)).isSameAs(otherRecorder);
+          runChild(context, "Build phase", () -> {});
+        });
+    assertThat(TraceScope.stopRecording(project)).isSameAs(recorder);
+
+    assertThat(recorder.getEvents()).hasSize(4);
+    assertProperlyNested(recorder.getEvents());
+    assertThat(otherRecorder.getEvents()).isEmpty();
+    assertThat(TraceRecorder.current()).isNull();
+  }
+
+  @Test
+  public void testSyntheticSync_eventsNestedPerThread() throws Exception {
+    ListeningExecutorService executor =
+        MoreExecutors.listeningDecorator(
+            TraceRecorder.traceTasks("task", Executors.newFixedThreadPool(4)));
+    TraceRecorder recorder = TraceScope.startRecording(project);
+    try {
+      Scope.root(
+          context -> {
+            context.push(new TraceScope(project));
+            context.push(new TimingScope("Sync", EventType.Other));
+            runChild(context, "Build phase", () -> runShardedBuild(executor));
+            runChild(context, "Project update phase", () -> {});
+          });
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(TraceScope.stopRecording(project)).isSameAs(recorder);
+
+    List<Event> events = recorder.getEvents();
+    assertProperlyNested(events);
+
+    List<String> names = new ArrayList<>();
+    Set<Long> threadIds = new HashSet<>();
+    for (Event event : events) {
+      if (event.phase == Phase.BEGIN) {
+        names.add(event.name);
+      }
+      threadIds.add(event.threadId);
+    }
+    assertThat(names.subList(0, 2)).containsExactly("Sync", "Build phase").inOrder();
+    assertThat(names).containsAllOf("Project update phase", "task", "Blaze build shard");
+    assertThat(names.stream().filter("task"::equals).count()).isEqualTo(8);
+    assertThat(threadIds.size()).isGreaterThan(1);
+
+    StringWriter json = new StringWriter();
+    recorder.writeChromeTrace(json);
+    assertThat(json.toString()).startsWith("{\"traceEvents\":[");
+    assertThat(json.toString()).contains("\"name\":\"Build phase\",\"cat\":\"Other\",\"ph\":\"B\"");
+    assertThat(json.toString()).contains("\"name\":\"thread_name\"");
+  }
+
+  private static void runChild(BlazeContext parent, String name, Runnable runnable) {
+    Scope.push(
+        parent,
+        context -> {
+          context.push(new TimingScope(name, EventType.Other));
+          runnable.run();
+        });
+  }
+
+  private static void runShardedBuild(ListeningExecutorService executor) {
+    List<ListenableFuture<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(
+          executor.submit(
+              () ->
+                  Scope.root(
+                      context -> {
+                        context.push(
+                            new TimingScope("Blaze build shard", EventType.BlazeInvocation));
+                      })));
+    }
+    try {
+      Futures.allAsList(futures).get();
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static void assertProperlyNested(List<Event> events) {
+    Map<Long, Deque<String>> stacks = new HashMap<>();
+    Map<Long, Long> lastTimestamps = new HashMap<>();
+    for (Event event : events) {
+      Deque<String> stack = stacks.computeIfAbsent(event.threadId, t -> new ArrayDeque<>());
+      Long last = lastTimestamps.put(event.threadId, event.timestampMicros);
+      if (last != null && last > event.timestampMicros) {
+        fail("Events out of order on thread " + event.threadId);
+      }
+      if (event.phase == Phase.BEGIN) {
+        stack.push(event.name);
+        continue;
+      }
+      if (stack.isEmpty()) {
+        fail("Unmatched end event: " + event.name);
+      }
+      assertThat(stack.pop()).isEqualTo(event.name);
+    }
+    for (Deque<String> stack : stacks.values()) {
+      assertThat(stack).isEmpty();
+    }
+  }
+}
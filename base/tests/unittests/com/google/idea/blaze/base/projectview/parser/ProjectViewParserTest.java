@@ -257,6 +257,92 @@ public class ProjectViewParserTest extends BlazeTestCase {
         .inOrder();
   }
 
+  @Test
+  public void testUnchangedFilesAreNotReparsed() {
+    projectViewStorageManager.add("/cached_parent.blazeproject", "directories:", "  parent");
+    projectViewStorageManager.add(
+        "/cached_child.blazeproject",
+        "import cached_parent.blazeproject",
+        "directories:",
+        "  child");
+    File child = new File("/cached_child.blazeproject");
+    ProjectViewSet first = parse(child);
+    ProjectViewSet second = parse(child);
+    errorCollector.assertNoIssues();
+
+    assertThat(second.getProjectViewFiles()).hasSize(2);
+    for (int i = 0; i < 2; i++) {
+      assertThat(second.getProjectViewFiles().get(i).projectView)
+          .isSameAs(first.getProjectViewFiles().get(i).projectView);
+    }
+
+    projectViewStorageManager.add("/cached_parent.blazeproject", "directories:", "  parent2");
+    ProjectViewSet third = parse(child);
+    errorCollector.assertNoIssues();
+
+    assertThat(third.getProjectViewFiles().get(0).projectView)
+        .isNotSameAs(first.getProjectViewFiles().get(0).projectView);
+    assertThat(third.getTopLevelProjectViewFile().projectView)
+        .isSameAs(first.getTopLevelProjectViewFile().projectView);
+    assertThat(third.listItems(DirectorySection.KEY))
+        .containsExactly(
+            DirectoryEntry.include(new WorkspacePath("parent2")),
+            DirectoryEntry.include(new WorkspacePath("child")))
+        .inOrder();
+  }
+
+  @Test
+  public void testRepeatedParseOfMultipleImportsPreservesOrder() {
+    projectViewStorageManager.add("/cached_grandparent.blazeproject", "directories:", "  gp");
+    projectViewStorageManager.add(
+        "/cached_mother.blazeproject",
+        "import cached_grandparent.blazeproject",
+        "directories:",
+        "  mother");
+    projectViewStorageManager.add(
+        "/cached_father.blazeproject",
+        "import cached_grandparent.blazeproject",
+        "directories:",
+        "  father");
+    projectViewStorageManager.add(
+        "/cached_multiple.blazeproject",
+        "import cached_mother.blazeproject",
+        "import cached_father.blazeproject",
+        "directories:",
+        "  child");
+    File child = new File("/cached_multiple.blazeproject");
+    ProjectViewSet first = parse(child);
+    ProjectViewSet second = parse(child);
+    errorCollector.assertNoIssues();
+
+    assertThat(second.getProjectViewFiles()).hasSize(4);
+    assertThat(second.listItems(DirectorySection.KEY))
+        .containsExactlyElementsIn(first.listItems(DirectorySection.KEY))
+        .inOrder();
+  }
+
+  @Test
+  public void testIssuesReportedOnRepeatedParse() {
+    projectViewStorageManager.add(
+        "/cached_invalid.blazeproject", "nosuchsection:", "  java/com/google");
+    File file = new File("/cached_invalid.blazeproject");
+    parse(file);
+    errorCollector.assertIssues("Could not parse: 'nosuchsection:'");
+
+    context = new BlazeContext();
+    errorCollector = new ErrorCollector();
+    context.addOutputSink(IssueOutput.class, errorCollector);
+    parse(file);
+    errorCollector.assertIssues("Could not parse: 'nosuchsection:'");
+  }
+
+  private ProjectViewSet parse(File projectViewFile) {
+    ProjectViewParser parser =
+        new ProjectViewParser(context, new WorkspacePathResolverImpl(workspaceRoot));
+    parser.parseProjectView(projectViewFile);
+    return parser.getResult();
+  }
+
   @Test
   public void testTestSources() throws Exception {
     projectViewStorageManager.add(
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.query;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Attribute;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Rule;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.SourceFile;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+import com.google.idea.blaze.base.dependencies.TargetInfo;
+import com.google.idea.blaze.base.model.primitives.Label;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BlazeQueryStreamedProtoParser}. */
+@RunWith(JUnit4.class)
+public class BlazeQueryStreamedProtoParserTest {
+
+  @Test
+  public void testParsesRules() throws IOException {
+    byte[] output =
+        streamedProto(
+            rule("css_library", "//java/com/google/foo/styles:global"),
+            rule("java_library", "//java/com/google/bar/console:runtime_deps"));
+
+    BlazeQueryStreamedProtoParser parser = new BlazeQueryStreamedProtoParser(x -> true);
+    parser.write(output);
+    parser.close();
+
+    assertThat(parser.getTargets())
+        .containsExactly(
+            TargetInfo.builder(Label.create("//java/com/google/foo/styles:global"), "css_library")
+                .build(),
+            TargetInfo.builder(
+                    Label.create("//java/com/google/bar/console:runtime_deps"), "java_library")
+                .build());
+  }
+
+  @Test
+  public void testIgnoresNonRules() throws IOException {
+    byte[] output =
+        streamedProto(
+            Target.newBuilder()
+                .setType(Target.Discriminator.SOURCE_FILE)
+                .setSourceFile(
+                    SourceFile.newBuilder()
+                        .setName("//java/com/google/foo:BUILD")
+                        .setLocation("/path/to/java/com/google/foo/BUILD:1:1"))
+                .build());
+
+    BlazeQueryStreamedProtoParser parser = new BlazeQueryStreamedProtoParser(x -> true);
+    parser.write(output);
+    parser.close();
+
+    assertThat(parser.getTargets()).isEmpty();
+  }
+
+  @Test
+  public void testFilterRuleTypes() throws IOException {
+    ImmutableSet<String> acceptedRuleTypes = ImmutableSet.of("java_library", "sh_test");
+    byte[] output =
+        streamedProto(
+            rule("css_library", "//java/com/google/foo/styles:global"),
+            rule("java_library", "//java/com/google/bar/console:runtime_deps"),
+            rule("java_test", "//java/com/google/bar/console:test1"),
+            rule("sh_test", "//java/com/google/bar/console:sh_test"));
+
+    BlazeQueryStreamedProtoParser parser =
+        new BlazeQueryStreamedProtoParser(t -> acceptedRuleTypes.contains(t.ruleType));
+    parser.write(output);
+    parser.close();
+
+    assertThat(parser.getTargets())
+        .containsExactly(
+            TargetInfo.builder(
+                    Label.create("//java/com/google/bar/console:runtime_deps"), "java_library")
+                .build(),
+            TargetInfo.builder(Label.create("//java/com/google/bar/console:sh_test"), "sh_test")
+                .build());
+  }
+
+  @Test
+  public void testMessagesSplitAcrossWrites() throws IOException {
+    byte[] output =
+        streamedProto(
+            rule("java_library", "//foo:lib"),
+            rule("java_test", "//foo:test"),
+            rule("java_binary", "//foo:bin"));
+
+    BlazeQueryStreamedProtoParser parser = new BlazeQueryStreamedProtoParser(x -> true);
+    for (int i = 0; i < output.length; i += 3) {
+      parser.write(output, i, Math.min(3, output.length - i));
+    }
+    parser.close();
+
+    assertThat(parser.getTargetLabels())
+        .containsExactly(
+            Label.create("//foo:lib"), Label.create("//foo:test"), Label.create("//foo:bin"))
+        .inOrder();
+  }
+
+  @Test
+  public void testTruncatedOutput() throws IOException {
+    byte[] output =
+        streamedProto(rule("java_library", "//foo:lib"), rule("java_test", "//foo:test"));
+
+    BlazeQueryStreamedProtoParser parser = new BlazeQueryStreamedProtoParser(x -> true);
+    parser.write(output, 0, output.length - 1);
+    parser.close();
+
+    assertThat(parser.isTruncated()).isTrue();
+    assertThat(parser.getTargetLabels()).containsExactly(Label.create("//foo:lib"));
+  }
+
+  @Test
+  public void testCompleteOutputNotTruncated() throws IOException {
+    byte[] output = streamedProto(rule("java_library", "//foo:lib"));
+
+    BlazeQueryStreamedProtoParser parser = new BlazeQueryStreamedProtoParser(x -> true);
+    parser.write(output, 0, output.length);
+    parser.close();
+
+    assertThat(parser.isTruncated()).isFalse();
+  }
+
+  private static Target rule(String ruleClass, String name) {
+    return Target.newBuilder()
+        .setType(Target.Discriminator.RULE)
+        .setRule(
+            Rule.newBuilder()
+                .setName(name)
+                .setRuleClass(ruleClass)
+                .addAttribute(
+                    Attribute.newBuilder()
+                        .setName("tags")
+                        .setType(Attribute.Discriminator.STRING_LIST)
+                        .addStringListValue("manual")))
+        .build();
+  }
+
+  private static byte[] streamedProto(Target... targets) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (Target target : targets) {
+      target.writeDelimitedTo(out);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.autosync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.google.idea.blaze.base.settings.BuildBinaryType;
+import com.google.idea.blaze.base.sync.BlazeBuildParams;
+import com.google.idea.blaze.base.sync.BlazeSyncParams;
+import com.google.idea.blaze.base.sync.SyncMode;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AutoSyncHandler}. */
+@RunWith(JUnit4.class)
+public class AutoSyncHandlerTest extends BlazeTestCase {
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(ExperimentService.class, new MockExperimentService());
+  }
+
+  @Test
+  public void testPartialSyncsCombinedIntoSingleSync() {
+    BlazeSyncParams params =
+        AutoSyncHandler.coalesceSyncParams(
+            ImmutableList.of(
+                packageSync("foo", "BuildFileAutoSyncProvider"),
+                packageSync("bar", "BuildFileAutoSyncProvider"),
+                packageSync("foo", "BuildFileAutoSyncProvider")));
+
+    assertThat(params.syncMode()).isEqualTo(SyncMode.PARTIAL);
+    assertThat(params.syncOrigin()).isEqualTo("AutoSync.BuildFileAutoSyncProvider");
+    assertThat(params.backgroundSync()).isTrue();
+    assertThat(params.targetExpressions())
+        .containsExactly(
+            TargetExpression.allFromPackageNonRecursive(new WorkspacePath("foo")),
+            TargetExpression.allFromPackageNonRecursive(new WorkspacePath("bar")));
+  }
+
+  @Test
+  public void testDifferentOriginsAreCombined() {
+    BlazeSyncParams params =
+        AutoSyncHandler.coalesceSyncParams(
+            ImmutableList.of(
+                packageSync("foo", "BuildFileAutoSyncProvider"),
+                packageSync("bar", "ProtoAutoSyncProvider")));
+
+    assertThat(params.syncMode()).isEqualTo(SyncMode.PARTIAL);
+    assertThat(params.syncOrigin()).isEqualTo("AutoSync.Combined");
+    assertThat(params.targetExpressions()).hasSize(2);
+  }
+
+  @Test
+  public void testProjectWideSyncSupersedesPartialSyncs() {
+    BlazeSyncParams projectWide =
+        BlazeSyncParams.builder()
+            .setTitle(AutoSyncProvider.AUTO_SYNC_TITLE)
+            .setSyncMode(SyncMode.INCREMENTAL)
+            .setSyncOrigin("AutoSync.ProjectViewAutoSyncProvider")
+            .setBlazeBuildParams(buildParams())
+            .setAddProjectViewTargets(true)
+            .setBackgroundSync(true)
+            .build();
+
+    BlazeSyncParams params =
+        AutoSyncHandler.coalesceSyncParams(
+            ImmutableList.of(
+                packageSync("foo", "BuildFileAutoSyncProvider"),
+                projectWide,
+                packageSync("bar", "BuildFileAutoSyncProvider")));
+
+    assertThat(params).isEqualTo(projectWide);
+  }
+
+  @Test
+  public void testProjectWideSyncsCombinedWithHighestPriorityMode() {
+    BlazeSyncParams incremental = projectWideSync(SyncMode.INCREMENTAL);
+    BlazeSyncParams full = projectWideSync(SyncMode.FULL);
+
+    BlazeSyncParams params =
+        AutoSyncHandler.coalesceSyncParams(
+            ImmutableList.of(
+                incremental, packageSync("foo", "BuildFileAutoSyncProvider"), full, incremental));
+
+    assertThat(params.syncMode()).isEqualTo(SyncMode.FULL);
+    assertThat(params.addProjectViewTargets()).isTrue();
+    assertThat(params.backgroundSync()).isTrue();
+  }
+
+  @Test
+  public void testNoChangesResultsInNoSync() {
+    assertThat(AutoSyncHandler.coalesceSyncParams(ImmutableList.of())).isNull();
+  }
+
+  private static BlazeSyncParams packageSync(String packagePath, String provider) {
+    return BlazeSyncParams.builder()
+        .setTitle(AutoSyncProvider.AUTO_SYNC_TITLE)
+        .setSyncMode(SyncMode.PARTIAL)
+        .setSyncOrigin(AutoSyncProvider.AUTO_SYNC_REASON + "." + provider)
+        .setBlazeBuildParams(buildParams())
+        .addTargetExpression(
+            TargetExpression.allFromPackageNonRecursive(new WorkspacePath(packagePath)))
+        .setBackgroundSync(true)
+        .build();
+  }
+
+  private static BlazeSyncParams projectWideSync(SyncMode syncMode) {
+    return BlazeSyncParams.builder()
+        .setTitle(AutoSyncProvider.AUTO_SYNC_TITLE)
+        .setSyncMode(syncMode)
+        .setSyncOrigin("AutoSync.ProjectViewAutoSyncProvider")
+        .setBlazeBuildParams(buildParams())
+        .setAddProjectViewTargets(true)
+        .setBackgroundSync(true)
+        .build();
+  }
+
+  private static BlazeBuildParams buildParams() {
+    return BlazeBuildParams.builder()
+        .setBlazeBinaryPath("bazel")
+        .setBlazeBinaryType(BuildBinaryType.BAZEL)
+        .build();
+  }
+}
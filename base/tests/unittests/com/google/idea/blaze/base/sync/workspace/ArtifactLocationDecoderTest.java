@@ -22,6 +22,9 @@ import com.google.idea.blaze.base.BlazeTestCase;
 import com.google.idea.blaze.base.command.info.BlazeInfo;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.model.RemoteOutputArtifacts;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
+import java.nio.file.Paths;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -177,4 +180,61 @@ public class ArtifactLocationDecoderTest extends BlazeTestCase {
     assertThat(decoder.decode(artifactLocation).getPath())
         .isEqualTo(OUTPUT_BASE + "/execroot/repo_name/blaze-out/crosstool/bin/com/google/Bla.java");
   }
+
+  @Test
+  public void testRepeatedDecodesReturnEqualFiles() {
+    ArtifactLocationDecoder decoder = createDecoder();
+    ArtifactLocation artifactLocation =
+        ArtifactLocation.builder()
+            .setRootExecutionPathFragment("blaze-out/bin")
+            .setRelativePath("com/google/Bla.java")
+            .setIsSource(false)
+            .build();
+
+    File file = decoder.decode(artifactLocation);
+    assertThat(file.getPath()).isEqualTo(EXECUTION_ROOT + "/blaze-out/bin/com/google/Bla.java");
+    assertThat(decoder.decode(artifactLocation)).isEqualTo(file);
+    ArtifactLocation copy = ArtifactLocation.Builder.copy(artifactLocation).build();
+    assertThat(decoder.decode(copy)).isEqualTo(file);
+    // only parent directories are retained by the decoder, not the decoded files themselves
+    assertThat(decoder.decode(copy)).isNotSameAs(file);
+  }
+
+  @Test
+  public void testNonCanonicalPathsMatchCanonicalizedPath() {
+    ArtifactLocationDecoder decoder = createDecoder();
+    String[][] fragmentsAndPaths = {
+      {"blaze-out/bin/", "com/google/Bla.java"},
+      {"./blaze-out//bin", "com/./google/Bla.java"},
+      {"blaze-out/bin/../genfiles", "com/google/../Bla.java"},
+      {"blaze-out/bin", "com/google/"},
+      {"../repo_name/blaze-out/bin", "../../../external/Bla.java"},
+      {"", "../../../../../../../../Bla.java"},
+    };
+    for (String[] fragmentAndPath : fragmentsAndPaths) {
+      ArtifactLocation artifactLocation =
+          ArtifactLocation.builder()
+              .setRootExecutionPathFragment(fragmentAndPath[0])
+              .setRelativePath(fragmentAndPath[1])
+              .setIsSource(false)
+              .build();
+      String expected =
+          FileUtil.toCanonicalPath(
+              Paths.get(EXECUTION_ROOT, artifactLocation.getExecutionRootRelativePath())
+                  .toString());
+      assertThat(decoder.decode(artifactLocation).getPath()).isEqualTo(expected);
+    }
+  }
+
+  private static ArtifactLocationDecoder createDecoder() {
+    return new ArtifactLocationDecoderImpl(
+        BlazeInfo.createMockBlazeInfo(
+            OUTPUT_BASE,
+            EXECUTION_ROOT,
+            EXECUTION_ROOT + "/blaze-out/crosstool/bin",
+            EXECUTION_ROOT + "/blaze-out/crosstool/genfiles",
+            EXECUTION_ROOT + "/blaze-out/crosstool/testlogs"),
+        null,
+        RemoteOutputArtifacts.EMPTY);
+  }
 }
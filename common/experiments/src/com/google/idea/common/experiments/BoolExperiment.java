@@ -17,15 +17,16 @@ package com.google.idea.common.experiments;
 
 /** Boolean-valued experiment. */
 public class BoolExperiment extends Experiment {
-  private final boolean defaultValue;
+  private final CachedExperimentValue<Boolean> value;
 
   public BoolExperiment(String key, boolean defaultValue) {
     super(key);
-    this.defaultValue = defaultValue;
+    this.value =
+        new CachedExperimentValue<>(service -> service.getExperiment(this, defaultValue));
   }
 
   public boolean getValue() {
-    return ExperimentService.getInstance().getExperiment(this, defaultValue);
+    return value.get();
   }
 
   @Override
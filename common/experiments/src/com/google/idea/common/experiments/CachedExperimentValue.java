@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.common.experiments;
+
+import com.google.common.collect.MapMaker;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * The value of an experiment as last read from the {@link ExperimentService}, so that experiments
+ * checked on hot code paths cost a single volatile read rather than a service lookup.
+ *
+ * <p>Values are only cached while the production {@link ExperimentServiceImpl} is installed, and
+ * all cached values are invalidated together whenever it reloads its experiments.
+ */
+final class CachedExperimentValue<T> {
+
+  /** Every cache, so they can be invalidated in bulk. Weak, since experiments can be transient. */
+  private static final Set<CachedExperimentValue<?>> allCaches =
+      Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+
+  /**
+   * Marks a slot with no valid value. Each invalidation installs a new instance, so a value read
+   * from experiments which have since been reloaded is never published.
+   */
+  private static final class Stale {}
+
+  private final Function<ExperimentService, T> loader;
+  private final AtomicReference<Object> slot = new AtomicReference<>(new Stale());
+
+  CachedExperimentValue(Function<ExperimentService, T> loader) {
+    this.loader = loader;
+    allCaches.add(this);
+  }
+
+  @SuppressWarnings("unchecked") // only values returned by the loader are stored in the slot
+  T get() {
+    Object cached = slot.get();
+    if (!(cached instanceof Stale)) {
+      return (T) cached;
+    }
+    ExperimentService service = ExperimentService.getInstance();
+    T value = loader.apply(service);
+    if (service instanceof ExperimentServiceImpl) {
+      slot.compareAndSet(cached, value);
+    }
+    return value;
+  }
+
+  private void invalidate() {
+    slot.set(new Stale());
+  }
+
+  /** Drops all cached values. Called whenever the set of experiments may have changed. */
+  static void invalidateAll() {
+    allCaches.forEach(CachedExperimentValue::invalidate);
+  }
+}
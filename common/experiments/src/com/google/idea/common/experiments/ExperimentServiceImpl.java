@@ -159,6 +159,7 @@ public class ExperimentServiceImpl implements ApplicationComponent, ExperimentSe
             .flatMap(service -> service.getExperiments().entrySet().stream())
             .collect(
                 Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first));
+    CachedExperimentValue.invalidateAll();
   }
 
   @Override
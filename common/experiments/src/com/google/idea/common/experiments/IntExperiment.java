@@ -17,15 +17,16 @@ package com.google.idea.common.experiments;
 
 /** Integer valued experiment. */
 public class IntExperiment extends Experiment {
-  private final int defaultValue;
+  private final CachedExperimentValue<Integer> value;
 
   public IntExperiment(String key, int defaultValue) {
     super(key);
-    this.defaultValue = defaultValue;
+    this.value =
+        new CachedExperimentValue<>(service -> service.getExperimentInt(this, defaultValue));
   }
 
   public int getValue() {
-    return ExperimentService.getInstance().getExperimentInt(this, defaultValue);
+    return value.get();
   }
 
   @Override
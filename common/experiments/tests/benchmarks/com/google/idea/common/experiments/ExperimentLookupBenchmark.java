@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.common.experiments;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.mock.MockApplication;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Disposer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.picocontainer.MutablePicoContainer;
+
+/**
+ * Measures experiment lookups as done on hot code paths, through the cached experiment value and
+ * directly through the {@link ExperimentService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExperimentLookupBenchmark {
+
+  private static final int EXPERIMENT_COUNT = 100;
+
+  private Disposable disposable;
+  private ImmutableList<BoolExperiment> boolExperiments;
+  private ImmutableList<IntExperiment> intExperiments;
+
+  @Setup
+  public void setUp() {
+    disposable = Disposer.newDisposable();
+    ApplicationManager.setApplication(new MockApplication(disposable), disposable);
+
+    ImmutableList.Builder<BoolExperiment> boolBuilder = ImmutableList.builder();
+    ImmutableList.Builder<IntExperiment> intBuilder = ImmutableList.builder();
+    ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+    for (int i = 0; i < EXPERIMENT_COUNT; i++) {
+      boolBuilder.add(new BoolExperiment("benchmark.bool." + i, false));
+      intBuilder.add(new IntExperiment("benchmark.int." + i, 0));
+      // only half the experiments are overridden, so both hits and defaults are measured
+      if (i % 2 == 0) {
+        values.put("benchmark.bool." + i, "1");
+        values.put("benchmark.int." + i, String.valueOf(i));
+      }
+    }
+    boolExperiments = boolBuilder.build();
+    intExperiments = intBuilder.build();
+
+    ExperimentService service =
+        new ExperimentServiceImpl(new FixedExperimentLoader(values.build()));
+    ((MutablePicoContainer) ApplicationManager.getApplication().getPicoContainer())
+        .registerComponentInstance(ExperimentService.class.getName(), service);
+  }
+
+  @TearDown
+  public void tearDown() {
+    Disposer.dispose(disposable);
+  }
+
+  @Benchmark
+  public void boolGetValue(Blackhole blackhole) {
+    for (BoolExperiment experiment : boolExperiments) {
+      blackhole.consume(experiment.getValue());
+    }
+  }
+
+  @Benchmark
+  public void boolServiceLookup(Blackhole blackhole) {
+    for (BoolExperiment experiment : boolExperiments) {
+      blackhole.consume(ExperimentService.getInstance().getExperiment(experiment, false));
+    }
+  }
+
+  @Benchmark
+  public void intGetValue(Blackhole blackhole) {
+    for (IntExperiment experiment : intExperiments) {
+      blackhole.consume(experiment.getValue());
+    }
+  }
+
+  @Benchmark
+  public void intServiceLookup(Blackhole blackhole) {
+    for (IntExperiment experiment : intExperiments) {
+      blackhole.consume(ExperimentService.getInstance().getExperimentInt(experiment, 0));
+    }
+  }
+
+  private static class FixedExperimentLoader extends HashingExperimentLoader {
+    private final ImmutableMap<String, String> experiments;
+
+    FixedExperimentLoader(ImmutableMap<String, String> experiments) {
+      this.experiments = experiments;
+    }
+
+    @Override
+    ImmutableMap<String, String> getUnhashedExperiments() {
+      return experiments;
+    }
+
+    @Override
+    public void initialize() {}
+  }
+}
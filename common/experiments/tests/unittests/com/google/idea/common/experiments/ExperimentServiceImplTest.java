@@ -30,6 +30,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.picocontainer.MutablePicoContainer;
 
 /** Tests for {@link ExperimentServiceImpl}. */
 @RunWith(JUnit4.class)
@@ -179,6 +180,41 @@ public class ExperimentServiceImplTest {
         .isEqualTo("two");
   }
 
+  @Test
+  public void testExperimentValuesAreUpdatedWhenExperimentsReload() {
+    MapExperimentLoader experimentLoader = new MapExperimentLoader(BOOL_EXPERIMENT.getKey(), "0");
+    ExperimentService experimentService = new ExperimentServiceImpl(experimentLoader);
+    registerExperimentService(experimentService);
+    assertThat(BOOL_EXPERIMENT.getValue()).isFalse();
+    assertThat(INT_EXPERIMENT.getValue()).isEqualTo(0);
+
+    experimentLoader.map.put(BOOL_EXPERIMENT.getKey(), "1");
+    experimentService.startExperimentScope();
+    assertThat(BOOL_EXPERIMENT.getValue()).isTrue();
+    assertThat(INT_EXPERIMENT.getValue()).isEqualTo(1);
+    experimentService.endExperimentScope();
+  }
+
+  @Test
+  public void testExperimentValuesAreNotCachedForMockService() {
+    registerExperimentService(
+        new ExperimentServiceImpl(new MapExperimentLoader(BOOL_EXPERIMENT.getKey(), "1")));
+    assertThat(BOOL_EXPERIMENT.getValue()).isTrue();
+
+    MockExperimentService experimentService = new MockExperimentService();
+    registerExperimentService(experimentService);
+    assertThat(BOOL_EXPERIMENT.getValue()).isFalse();
+    experimentService.setExperiment(BOOL_EXPERIMENT, true);
+    assertThat(BOOL_EXPERIMENT.getValue()).isTrue();
+  }
+
+  private static void registerExperimentService(ExperimentService experimentService) {
+    MutablePicoContainer container =
+        (MutablePicoContainer) ApplicationManager.getApplication().getPicoContainer();
+    container.unregisterComponent(ExperimentService.class.getName());
+    container.registerComponentInstance(ExperimentService.class.getName(), experimentService);
+  }
+
   private static class MapExperimentLoader extends HashingExperimentLoader {
 
     private final Map<String, String> map;
@@ -25,6 +25,11 @@ public class MockExperimentService implements ExperimentService {
 
   private final Map<String, Object> experiments = new HashMap<>();
 
+  public MockExperimentService() {
+    // values cached while another service was installed no longer apply
+    CachedExperimentValue.invalidateAll();
+  }
+
   @Override
   public void startExperimentScope() {}
 
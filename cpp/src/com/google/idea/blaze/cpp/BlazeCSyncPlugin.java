@@ -16,7 +16,11 @@
 package com.google.idea.blaze.cpp;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.command.info.BlazeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.BlazeVersionData;
+import com.google.idea.blaze.base.model.SyncState;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.model.primitives.WorkspaceType;
@@ -25,11 +29,17 @@ import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.Scope;
 import com.google.idea.blaze.base.scope.scopes.TimingScope;
 import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
+import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.sync.BlazeSyncPlugin;
 import com.google.idea.blaze.base.sync.SyncMode;
+import com.google.idea.blaze.base.sync.projectview.ProjectViewTargetImportFilter;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.blaze.base.sync.workspace.WorkingSet;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 final class BlazeCSyncPlugin implements BlazeSyncPlugin {
   @Override
@@ -40,6 +50,37 @@ final class BlazeCSyncPlugin implements BlazeSyncPlugin {
     return ImmutableSet.of();
   }
 
+  @Override
+  public void updateSyncState(
+      Project project,
+      BlazeContext context,
+      WorkspaceRoot workspaceRoot,
+      ProjectViewSet projectViewSet,
+      WorkspaceLanguageSettings workspaceLanguageSettings,
+      BlazeInfo blazeInfo,
+      BlazeVersionData blazeVersionData,
+      @Nullable WorkingSet workingSet,
+      ArtifactLocationDecoder artifactLocationDecoder,
+      TargetMap targetMap,
+      SyncState.Builder syncStateBuilder,
+      @Nullable SyncState previousSyncState,
+      SyncMode syncMode) {
+    if (!workspaceLanguageSettings.isLanguageActive(LanguageClass.C)) {
+      return;
+    }
+    ProjectViewTargetImportFilter projectViewFilter =
+        new ProjectViewTargetImportFilter(
+            Blaze.getBuildSystem(project), workspaceRoot, projectViewSet);
+    HeaderRootState headerRootState =
+        HeaderRootTrimmer.computeHeaderRootState(
+            context,
+            blazeInfo,
+            targetMap,
+            BlazeConfigurationResolver.getTargetFilter(projectViewFilter),
+            previousSyncState != null ? previousSyncState.get(HeaderRootState.class) : null);
+    syncStateBuilder.put(headerRootState);
+  }
+
   @Override
   public void updateInMemoryState(
       Project project,
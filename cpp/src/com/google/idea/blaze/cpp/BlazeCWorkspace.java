@@ -20,7 +20,13 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.model.BlazeProjectData;
@@ -40,6 +46,7 @@ import com.intellij.openapi.application.TransactionGuard;
 import com.intellij.openapi.components.ProjectComponent;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
@@ -67,14 +74,19 @@ import com.jetbrains.cidr.lang.workspace.compiler.CompilerInfoCache.Session;
 import com.jetbrains.cidr.lang.workspace.compiler.OCCompilerKind;
 import com.jetbrains.cidr.lang.workspace.compiler.TempFilesPool;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /** Main entry point for C/CPP configuration data. */
 public final class BlazeCWorkspace implements ProjectComponent {
@@ -91,6 +103,11 @@ public final class BlazeCWorkspace implements ProjectComponent {
   private final Project project;
   private final CidrToolEnvironment toolEnvironment = new CidrToolEnvironment();
 
+  // Compiler options calculated during the previous sync, reused for unchanged configurations.
+  private ImmutableMap<BlazeResolveConfigurationData, ConfigurationOpts> cachedConfigurationOpts =
+      ImmutableMap.of();
+  @Nullable private File cachedExecutionRoot;
+
   private BlazeCWorkspace(Project project) {
     this.configurationResolver = new BlazeConfigurationResolver(project);
     this.resolverResult = BlazeConfigurationResolverResult.empty();
@@ -140,7 +157,12 @@ public final class BlazeCWorkspace implements ProjectComponent {
                   indicator.setFraction(0.0);
                   OCWorkspaceImpl.ModifiableModel model =
                       calculateConfigurations(
-                          blazeProjectData, workspaceRoot, newResult, indicator);
+                          blazeProjectData,
+                          workspaceRoot,
+                          oldResult,
+                          newResult,
+                          syncMode,
+                          indicator);
                   ImmutableList<String> issues =
                       commit(model, SERIALIZATION_VERSION, toolEnvironment);
                   logger.info(
@@ -159,7 +181,9 @@ public final class BlazeCWorkspace implements ProjectComponent {
   private OCWorkspaceImpl.ModifiableModel calculateConfigurations(
       BlazeProjectData blazeProjectData,
       WorkspaceRoot workspaceRoot,
+      BlazeConfigurationResolverResult oldResult,
       BlazeConfigurationResolverResult configResolveData,
+      SyncMode syncMode,
       ProgressIndicator indicator) {
 
     OCWorkspaceImpl.ModifiableModel workspaceModifiable =
@@ -173,125 +197,189 @@ public final class BlazeCWorkspace implements ProjectComponent {
             blazeProjectData.getBlazeInfo().getExecutionRoot(),
             blazeProjectData.getWorkspacePathResolver());
 
-    int progress = 0;
-
+    // Include directories are resolved relative to the execution root and filtered by the valid
+    // header roots, so previously computed options can only be reused if both are unchanged.
+    File executionRoot = executionRootPathResolver.getExecutionRoot();
+    boolean canReuse =
+        !syncMode.equals(SyncMode.FULL)
+            && executionRoot.equals(cachedExecutionRoot)
+            && oldResult.isEquivalentHeaderRoots(configResolveData);
+    ImmutableMap<BlazeResolveConfigurationData, ConfigurationOpts> previousOpts =
+        canReuse ? cachedConfigurationOpts : ImmutableMap.of();
+
+    SharedSwitches sharedSwitches = new SharedSwitches(executionRootPathResolver);
+    AtomicInteger progress = new AtomicInteger();
+    AtomicInteger reused = new AtomicInteger();
+    List<ListenableFuture<ConfigurationOpts>> futures = new ArrayList<>();
     for (BlazeResolveConfiguration resolveConfiguration : configurations) {
-      indicator.setText2(resolveConfiguration.getDisplayName());
-      indicator.setFraction(((double) progress) / configurations.size());
-      BlazeCompilerSettings compilerSettings = resolveConfiguration.getCompilerSettings();
-      Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages = new HashMap<>();
-      Map<VirtualFile, PerFileCompilerOpts> configSourceFiles = new HashMap<>();
-      for (TargetKey targetKey : resolveConfiguration.getTargets()) {
-        TargetIdeInfo targetIdeInfo = blazeProjectData.getTargetMap().get(targetKey);
-        if (targetIdeInfo == null || targetIdeInfo.getcIdeInfo() == null) {
-          continue;
-        }
+      ConfigurationOpts previous = previousOpts.get(resolveConfiguration.getConfigurationData());
+      if (previous != null
+          && previous.resolveConfiguration.isEquivalentConfigurations(resolveConfiguration)) {
+        reused.incrementAndGet();
+        futures.add(Futures.immediateFuture(previous));
+        continue;
+      }
+      futures.add(
+          BlazeExecutor.getInstance()
+              .submit(
+                  () -> {
+                    ConfigurationOpts opts =
+                        calculateConfiguration(
+                            blazeProjectData,
+                            configResolveData,
+                            resolveConfiguration,
+                            sharedSwitches);
+                    indicator.setText2(resolveConfiguration.getDisplayName());
+                    indicator.setFraction(
+                        ((double) progress.incrementAndGet()) / configurations.size());
+                    return opts;
+                  }));
+    }
+
+    List<ConfigurationOpts> allOpts;
+    try {
+      allOpts = Futures.allAsList(futures).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Could not calculate C configurations", e.getCause());
+    }
+    logger.info(
+        String.format(
+            "Reused %d of %d C configurations from the previous sync",
+            reused.get(), configurations.size()));
+
+    // The modifiable model isn't thread-safe, so configurations are added serially.
+    ImmutableMap.Builder<BlazeResolveConfigurationData, ConfigurationOpts> newOpts =
+        ImmutableMap.builder();
+    for (ConfigurationOpts opts : allOpts) {
+      String id = opts.resolveConfiguration.getDisplayName();
+      addConfiguration(
+          workspaceModifiable,
+          id,
+          id,
+          workspaceRoot.directory(),
+          opts.configLanguages,
+          opts.configSourceFiles);
+      newOpts.put(opts.resolveConfiguration.getConfigurationData(), opts);
+    }
+    cachedConfigurationOpts = newOpts.build();
+    cachedExecutionRoot = executionRoot;
+    return workspaceModifiable;
+  }
 
-        // defines and include directories are the same for all sources in a given target, so lets
-        // collect them once and reuse for each source file's options
-
-        UnfilteredCompilerOptions coptsExtractor =
-            UnfilteredCompilerOptions.builder()
-                .registerSingleOrSplitOption("-I")
-                .build(targetIdeInfo.getcIdeInfo().getLocalCopts());
-        ImmutableList<String> plainLocalCopts =
-            filterIncompatibleFlags(coptsExtractor.getUninterpretedOptions());
-        ImmutableList<ExecutionRootPath> localIncludes =
-            coptsExtractor.getExtractedOptionValues("-I").stream()
-                .map(ExecutionRootPath::new)
-                .collect(toImmutableList());
-
-        // transitiveDefines are sourced from a target's (and transitive deps) "defines" attribute
-        ImmutableList<String> transitiveDefineOptions =
-            targetIdeInfo.getcIdeInfo().getTransitiveDefines().stream()
-                .map(s -> "-D" + s)
-                .collect(toImmutableList());
-
-        Function<ExecutionRootPath, Stream<File>> resolver =
-            executionRootPath ->
-                executionRootPathResolver.resolveToIncludeDirectories(executionRootPath).stream();
-        // localIncludes are sourced from -I options in a target's "copts" attribute. They  can be
-        // arbitrarily declared and may not exist in configResolveData.
-        // transitiveIncludeDirectories are sourced from CcSkylarkApiProvider.include_directories
-
-        ImmutableList<String> iOptionIncludeDirectories =
+  private ConfigurationOpts calculateConfiguration(
+      BlazeProjectData blazeProjectData,
+      BlazeConfigurationResolverResult configResolveData,
+      BlazeResolveConfiguration resolveConfiguration,
+      SharedSwitches sharedSwitches) {
+    BlazeCompilerSettings compilerSettings = resolveConfiguration.getCompilerSettings();
+    BlazeResolveConfigurationData configurationData = resolveConfiguration.getConfigurationData();
+
+    // All targets in a configuration share the same BlazeResolveConfigurationData, so defines and
+    // include directories are the same for all sources in the configuration. Collect them once
+    // and reuse them for each source file's options.
+
+    UnfilteredCompilerOptions coptsExtractor =
+        UnfilteredCompilerOptions.builder()
+            .registerSingleOrSplitOption("-I")
+            .build(configurationData.localCopts);
+    ImmutableList<String> plainLocalCopts =
+        filterIncompatibleFlags(coptsExtractor.getUninterpretedOptions());
+    ImmutableList<ExecutionRootPath> localIncludes =
+        coptsExtractor.getExtractedOptionValues("-I").stream()
+            .map(ExecutionRootPath::new)
+            .collect(toImmutableList());
+
+    // transitiveDefines are sourced from a target's (and transitive deps) "defines" attribute
+    ImmutableList<String> transitiveDefineOptions =
+        configurationData.transitiveDefines.stream()
+            .map(s -> "-D" + s)
+            .collect(toImmutableList());
+
+    // localIncludes are sourced from -I options in a target's "copts" attribute. They  can be
+    // arbitrarily declared and may not exist in configResolveData.
+    // transitiveIncludeDirectories are sourced from CcSkylarkApiProvider.include_directories
+
+    ImmutableList<String> iOptionIncludeDirectories =
+        sharedSwitches.intern(
             Stream.concat(
-                    localIncludes.stream().flatMap(resolver),
-                    targetIdeInfo.getcIdeInfo().getTransitiveIncludeDirectories().stream()
-                        .flatMap(resolver)
+                    localIncludes.stream().flatMap(sharedSwitches::resolve),
+                    configurationData.transitiveIncludeDirectories.stream()
+                        .flatMap(sharedSwitches::resolve)
                         .filter(configResolveData::isValidHeaderRoot))
                 .map(file -> "-I" + file.getAbsolutePath())
-                .collect(toImmutableList());
-
-        // transitiveQuoteIncludeDirectories are sourced from
-        // CcSkylarkApiProvider.quote_include_directories
-        ImmutableList<String> iquoteOptionIncludeDirectories =
-            targetIdeInfo.getcIdeInfo().getTransitiveQuoteIncludeDirectories().stream()
-                .flatMap(resolver)
+                .collect(toImmutableList()));
+
+    // transitiveQuoteIncludeDirectories are sourced from
+    // CcSkylarkApiProvider.quote_include_directories
+    ImmutableList<String> iquoteOptionIncludeDirectories =
+        sharedSwitches.intern(
+            configurationData.transitiveQuoteIncludeDirectories.stream()
+                .flatMap(sharedSwitches::resolve)
                 .filter(configResolveData::isValidHeaderRoot)
                 .map(file -> "-iquote" + file.getAbsolutePath())
-                .collect(toImmutableList());
-        // transitiveSystemIncludeDirectories are sourced from
-        // CcSkylarkApiProvider.system_include_directories
-        // Note: We would ideally use -isystem here, but it interacts badly with the switches
-        // that get built by ClangUtils::addIncludeDirectories (it uses -I for system libraries).
-        ImmutableList<String> isystemOptionIncludeDirectories =
-            targetIdeInfo.getcIdeInfo().getTransitiveSystemIncludeDirectories().stream()
-                .flatMap(resolver)
+                .collect(toImmutableList()));
+    // transitiveSystemIncludeDirectories are sourced from
+    // CcSkylarkApiProvider.system_include_directories
+    // Note: We would ideally use -isystem here, but it interacts badly with the switches
+    // that get built by ClangUtils::addIncludeDirectories (it uses -I for system libraries).
+    ImmutableList<String> isystemOptionIncludeDirectories =
+        sharedSwitches.intern(
+            configurationData.transitiveSystemIncludeDirectories.stream()
+                .flatMap(sharedSwitches::resolve)
                 .filter(configResolveData::isValidHeaderRoot)
                 .map(file -> "-I" + file.getAbsolutePath())
-                .collect(toImmutableList());
-
-        for (VirtualFile vf : resolveConfiguration.getSources(targetKey)) {
-          OCLanguageKind kind = resolveConfiguration.getDeclaredLanguageKind(vf);
-          if (kind == null) {
-            kind = CLanguageKind.CPP;
-          }
-
-          CidrSwitchBuilder fileSpecificSwitchBuilder = new CidrSwitchBuilder();
-
-          ImmutableList<String> baseSwitches = compilerSettings.getCompilerSwitches(kind, vf);
-          fileSpecificSwitchBuilder.addAllRaw(baseSwitches);
-          fileSpecificSwitchBuilder.addAllRaw(transitiveDefineOptions);
-          fileSpecificSwitchBuilder.addAllRaw(iquoteOptionIncludeDirectories);
-          fileSpecificSwitchBuilder.addAllRaw(iOptionIncludeDirectories);
-          fileSpecificSwitchBuilder.addAllRaw(isystemOptionIncludeDirectories);
-          fileSpecificSwitchBuilder.addAllRaw(plainLocalCopts);
-
-          PerFileCompilerOpts perFileCompilerOpts =
-              new PerFileCompilerOpts(kind, fileSpecificSwitchBuilder.build());
-          configSourceFiles.put(vf, perFileCompilerOpts);
-          if (!configLanguages.containsKey(kind)) {
-            addConfigLanguageSwitches(
-                configLanguages, compilerSettings,
-                // If a file isn't found in configSourceFiles (newly created files), CLion uses the
-                // configLanguages switches. We want some basic header search roots (genfiles),
-                // which are part of every target's iquote directories. See:
-                // https://github.com/bazelbuild/bazel/blob/2c493e8a2132d54f4b2fb8046f6bcef11e92cd22/src/main/java/com/google/devtools/build/lib/rules/cpp/CcCompilationHelper.java#L911
-                iquoteOptionIncludeDirectories, kind);
-          }
-        }
+                .collect(toImmutableList()));
+
+    Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages = new HashMap<>();
+    Map<VirtualFile, PerFileCompilerOpts> configSourceFiles = new HashMap<>();
+    // The base switches only depend on the language kind, so every source file of a given kind
+    // shares the same switches.
+    Map<OCLanguageKind, PerFileCompilerOpts> fileOptsByKind = new HashMap<>();
+    for (TargetKey targetKey : resolveConfiguration.getTargets()) {
+      TargetIdeInfo targetIdeInfo = blazeProjectData.getTargetMap().get(targetKey);
+      if (targetIdeInfo == null || targetIdeInfo.getcIdeInfo() == null) {
+        continue;
       }
-
-      for (OCLanguageKind language : supportedLanguages) {
-        if (!configLanguages.containsKey(language)) {
+      for (VirtualFile vf : resolveConfiguration.getSources(targetKey)) {
+        OCLanguageKind kind = resolveConfiguration.getDeclaredLanguageKind(vf);
+        if (kind == null) {
+          kind = CLanguageKind.CPP;
+        }
+        PerFileCompilerOpts perFileCompilerOpts =
+            fileOptsByKind.computeIfAbsent(
+                kind,
+                k -> {
+                  CidrSwitchBuilder fileSpecificSwitchBuilder = new CidrSwitchBuilder();
+                  fileSpecificSwitchBuilder.addAllRaw(compilerSettings.getCompilerSwitches(k, vf));
+                  fileSpecificSwitchBuilder.addAllRaw(transitiveDefineOptions);
+                  fileSpecificSwitchBuilder.addAllRaw(iquoteOptionIncludeDirectories);
+                  fileSpecificSwitchBuilder.addAllRaw(iOptionIncludeDirectories);
+                  fileSpecificSwitchBuilder.addAllRaw(isystemOptionIncludeDirectories);
+                  fileSpecificSwitchBuilder.addAllRaw(plainLocalCopts);
+                  return new PerFileCompilerOpts(k, fileSpecificSwitchBuilder.build());
+                });
+        configSourceFiles.put(vf, perFileCompilerOpts);
+        if (!configLanguages.containsKey(kind)) {
           addConfigLanguageSwitches(
-              configLanguages, compilerSettings, ImmutableList.of(), language);
+              configLanguages, compilerSettings,
+              // If a file isn't found in configSourceFiles (newly created files), CLion uses the
+              // configLanguages switches. We want some basic header search roots (genfiles),
+              // which are part of every target's iquote directories. See:
+              // https://github.com/bazelbuild/bazel/blob/2c493e8a2132d54f4b2fb8046f6bcef11e92cd22/src/main/java/com/google/devtools/build/lib/rules/cpp/CcCompilationHelper.java#L911
+              iquoteOptionIncludeDirectories, kind);
         }
       }
+    }
 
-      String id = resolveConfiguration.getDisplayName();
-
-      addConfiguration(
-          workspaceModifiable,
-          id,
-          id,
-          workspaceRoot.directory(),
-          configLanguages,
-          configSourceFiles);
-      progress++;
+    for (OCLanguageKind language : supportedLanguages) {
+      if (!configLanguages.containsKey(language)) {
+        addConfigLanguageSwitches(configLanguages, compilerSettings, ImmutableList.of(), language);
+      }
     }
-    return workspaceModifiable;
+    return new ConfigurationOpts(resolveConfiguration, configLanguages, configSourceFiles);
   }
 
   private static void addConfiguration(
@@ -332,6 +420,47 @@ public final class BlazeCWorkspace implements ProjectComponent {
     }
   }
 
+  /** Compiler options for all languages and source files of a single resolve configuration. */
+  private static class ConfigurationOpts {
+    final BlazeResolveConfiguration resolveConfiguration;
+    final Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages;
+    final Map<VirtualFile, PerFileCompilerOpts> configSourceFiles;
+
+    private ConfigurationOpts(
+        BlazeResolveConfiguration resolveConfiguration,
+        Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages,
+        Map<VirtualFile, PerFileCompilerOpts> configSourceFiles) {
+      this.resolveConfiguration = resolveConfiguration;
+      this.configLanguages = configLanguages;
+      this.configSourceFiles = configSourceFiles;
+    }
+  }
+
+  /**
+   * Caches shared between all configurations calculated during a single update. Resolves each
+   * include directory only once, and shares identical switch lists between configurations.
+   */
+  private static class SharedSwitches {
+    private final ExecutionRootPathResolver executionRootPathResolver;
+    private final ConcurrentMap<ExecutionRootPath, ImmutableList<File>> resolvedIncludes =
+        new ConcurrentHashMap<>();
+    private final Interner<ImmutableList<String>> switchInterner = Interners.newStrongInterner();
+
+    private SharedSwitches(ExecutionRootPathResolver executionRootPathResolver) {
+      this.executionRootPathResolver = executionRootPathResolver;
+    }
+
+    Stream<File> resolve(ExecutionRootPath path) {
+      return resolvedIncludes
+          .computeIfAbsent(path, executionRootPathResolver::resolveToIncludeDirectories)
+          .stream();
+    }
+
+    ImmutableList<String> intern(ImmutableList<String> switches) {
+      return switchInterner.intern(switches);
+    }
+  }
+
   /** Group compiler options for a specific language. */
   private static class PerLanguageCompilerOpts {
     final OCCompilerKind kind;
@@ -101,7 +101,7 @@ final class BlazeConfigurationResolver {
     return builder.build();
   }
 
-  private static Predicate<TargetIdeInfo> getTargetFilter(
+  static Predicate<TargetIdeInfo> getTargetFilter(
       ProjectViewTargetImportFilter projectViewFilter) {
     return target ->
         target.getcIdeInfo() != null
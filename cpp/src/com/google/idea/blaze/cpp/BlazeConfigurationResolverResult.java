@@ -73,6 +73,10 @@ final class BlazeConfigurationResolverResult {
         return false;
       }
     }
+    return isEquivalentHeaderRoots(other);
+  }
+
+  boolean isEquivalentHeaderRoots(BlazeConfigurationResolverResult other) {
     return validHeaderRoots.equals(other.validHeaderRoots);
   }
 
@@ -151,6 +151,10 @@ final class BlazeResolveConfiguration {
     return configurationData.localCopts;
   }
 
+  BlazeResolveConfigurationData getConfigurationData() {
+    return configurationData;
+  }
+
   BlazeCompilerSettings getCompilerSettings() {
     return configurationData.compilerSettings;
   }
@@ -34,7 +34,7 @@ final class BlazeResolveConfigurationData {
   // These should all be for the entire transitive closure.
   final ImmutableList<ExecutionRootPath> transitiveIncludeDirectories;
   final ImmutableList<ExecutionRootPath> transitiveQuoteIncludeDirectories;
-  private final ImmutableList<String> transitiveDefines;
+  final ImmutableList<String> transitiveDefines;
   final ImmutableList<ExecutionRootPath> transitiveSystemIncludeDirectories;
 
   static BlazeResolveConfigurationData create(
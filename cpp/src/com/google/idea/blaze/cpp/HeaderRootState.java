@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.model.SyncData;
+import java.io.File;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Whether blaze output header roots may contain headers, serialized along with the sync data.
+ *
+ * <p>Each verdict is keyed by the root directory and its last modified time. Roots found to
+ * contain headers aren't searched again until they're modified; all other roots are searched on
+ * every sync. See {@link HeaderRootTrimmer}.
+ */
+final class HeaderRootState implements SyncData<ProjectData.HeaderRootState> {
+
+  /** The cached verdict for a single header root. */
+  static final class Entry {
+    final long lastModified;
+    final boolean mayContainHeaders;
+
+    Entry(long lastModified, boolean mayContainHeaders) {
+      this.lastModified = lastModified;
+      this.mayContainHeaders = mayContainHeaders;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry that = (Entry) o;
+      return lastModified == that.lastModified && mayContainHeaders == that.mayContainHeaders;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(lastModified, mayContainHeaders);
+    }
+  }
+
+  private final ImmutableMap<String, Entry> entries;
+
+  HeaderRootState(Map<String, Entry> entries) {
+    this.entries = ImmutableMap.copyOf(entries);
+  }
+
+  /**
+   * Returns whether the given output directory may contain headers, or null if there's no verdict
+   * for that directory.
+   */
+  @Nullable
+  Boolean mayContainHeaders(File directory) {
+    Entry entry = entries.get(directory.getPath());
+    return entry != null ? entry.mayContainHeaders : null;
+  }
+
+  /**
+   * Returns the cached verdict for the given directory if it can be reused by a later sync,
+   * otherwise null.
+   *
+   * <p>Only positive verdicts whose directory hasn't been modified since are reused. Headers can be
+   * added to a nested subdirectory without changing the root's modified time, so a negative
+   * verdict is only valid for the sync which computed it.
+   */
+  @Nullable
+  Entry getReusableEntry(File directory, long lastModified) {
+    Entry entry = entries.get(directory.getPath());
+    return entry != null && entry.mayContainHeaders && entry.lastModified == lastModified
+        ? entry
+        : null;
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private static HeaderRootState fromProto(ProjectData.HeaderRootState proto) {
+    ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+    for (ProjectData.HeaderRootState.Entry entry : proto.getEntriesList()) {
+      entries.put(
+          entry.getPath(), new Entry(entry.getLastModified(), entry.getMayContainHeaders()));
+    }
+    return new HeaderRootState(entries.build());
+  }
+
+  @Override
+  public ProjectData.HeaderRootState toProto() {
+    ProjectData.HeaderRootState.Builder builder = ProjectData.HeaderRootState.newBuilder();
+    entries.forEach(
+        (path, entry) ->
+            builder.addEntries(
+                ProjectData.HeaderRootState.Entry.newBuilder()
+                    .setPath(path)
+                    .setLastModified(entry.lastModified)
+                    .setMayContainHeaders(entry.mayContainHeaders)));
+    return builder.build();
+  }
+
+  @Override
+  public void insert(ProjectData.SyncState.Builder builder) {
+    builder.setHeaderRootState(toProto());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    HeaderRootState that = (HeaderRootState) o;
+    return Objects.equals(entries, that.entries);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(entries);
+  }
+
+  static class Extractor implements SyncData.Extractor<HeaderRootState> {
+    @Nullable
+    @Override
+    public HeaderRootState extract(ProjectData.SyncState syncState) {
+      return syncState.hasHeaderRootState()
+          ? HeaderRootState.fromProto(syncState.getHeaderRootState())
+          : null;
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.google.idea.blaze.cpp;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -41,17 +42,22 @@ import com.google.idea.blaze.base.scope.scopes.TimingScope;
 import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
 import com.google.idea.blaze.base.sync.workspace.ExecutionRootPathResolver;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
 import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import javax.annotation.Nullable;
 
 /**
  * Collects possible -I, -isystem, -iquote search roots and determines which are actually viable.
@@ -84,13 +90,92 @@ final class HeaderRootTrimmer {
                   collectExecutionRootPaths(
                       blazeProjectData.getTargetMap(), targetFilter, toolchainLookupMap);
               return doCollectHeaderRoots(
-                  context, blazeProjectData, paths, executionRootPathResolver);
+                  context,
+                  blazeProjectData,
+                  blazeProjectData.getSyncState().get(HeaderRootState.class),
+                  paths,
+                  executionRootPathResolver);
             });
   }
 
+  /**
+   * Determines which blaze output header roots may contain headers, reusing the positive verdicts
+   * from the previous sync for roots which haven't been modified since.
+   */
+  static HeaderRootState computeHeaderRootState(
+      BlazeContext parentContext,
+      BlazeInfo blazeInfo,
+      TargetMap targetMap,
+      Predicate<TargetIdeInfo> targetFilter,
+      @Nullable HeaderRootState previousState) {
+    // Type specification needed to avoid incorrect type inference during command line build.
+    return Scope.push(
+        parentContext,
+        (ScopedFunction<HeaderRootState>)
+            context -> {
+              context.push(new TimingScope("Check output header roots", EventType.Other));
+              ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap =
+                  BlazeConfigurationToolchainResolver.buildToolchainLookupMap(context, targetMap);
+              Set<File> roots = new HashSet<>();
+              for (ExecutionRootPath path :
+                  collectExecutionRootPaths(targetMap, targetFilter, toolchainLookupMap)) {
+                if (!path.isAbsolute() && isOutputArtifact(blazeInfo, path)) {
+                  roots.add(path.getFileRootedAt(blazeInfo.getExecutionRoot()));
+                }
+              }
+              return doComputeHeaderRootState(context, roots, previousState);
+            });
+  }
+
+  @VisibleForTesting
+  static HeaderRootState doComputeHeaderRootState(
+      BlazeContext context, Set<File> roots, @Nullable HeaderRootState previousState) {
+    Map<String, HeaderRootState.Entry> entries = new ConcurrentHashMap<>();
+    List<ListenableFuture<Void>> futures = Lists.newArrayListWithCapacity(roots.size());
+    AtomicInteger reusedVerdicts = new AtomicInteger();
+    for (File root : roots) {
+      futures.add(
+          submit(
+              () -> {
+                long lastModified = FileOperationProvider.getInstance().getFileModifiedTime(root);
+                if (lastModified == 0) {
+                  // the directory doesn't exist
+                  return null;
+                }
+                HeaderRootState.Entry entry =
+                    previousState != null
+                        ? previousState.getReusableEntry(root, lastModified)
+                        : null;
+                if (entry != null) {
+                  reusedVerdicts.incrementAndGet();
+                } else {
+                  entry = new HeaderRootState.Entry(lastModified, genRootMayContainHeaders(root));
+                }
+                entries.put(root.getPath(), entry);
+                return null;
+              }));
+    }
+    try {
+      Futures.allAsList(futures).get();
+      logger.info(
+          String.format(
+              "CheckOutputHeaderRoots: %s output roots, %s reused from previous sync",
+              entries.size(), reusedVerdicts.get()));
+      return new HeaderRootState(entries);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      context.setCancelled();
+    } catch (ExecutionException e) {
+      IssueOutput.error("Error checking output header roots: " + e).submit(context);
+      logger.error("Error checking output header roots", e);
+    }
+    return new HeaderRootState(ImmutableMap.of());
+  }
+
   private static ImmutableSet<File> doCollectHeaderRoots(
       BlazeContext context,
       BlazeProjectData projectData,
+      @Nullable HeaderRootState headerRootState,
       Set<ExecutionRootPath> rootPaths,
       ExecutionRootPathResolver pathResolver) {
     Set<File> validRoots = Sets.newConcurrentHashSet();
@@ -107,6 +192,20 @@ final class HeaderRootTrimmer {
                   logger.info(String.format("Couldn't resolve include root: %s", path));
                 }
                 for (File file : possibleDirectories) {
+                  Boolean mayContainHeaders =
+                      headerRootState != null && isOutputArtifact(projectData.getBlazeInfo(), path)
+                          ? headerRootState.mayContainHeaders(file)
+                          : null;
+                  if (mayContainHeaders != null) {
+                    // Already checked during this sync, no need to look at the file system again.
+                    if (mayContainHeaders) {
+                      genRootsWithHeaders.incrementAndGet();
+                      validRoots.add(file);
+                    } else {
+                      genRootsWithoutHeaders.incrementAndGet();
+                    }
+                    continue;
+                  }
                   VirtualFile vf = VfsUtils.resolveVirtualFile(file, /* refreshIfNeeded= */ true);
                   if (vf != null) {
                     // Check gen directories to see if they actually contain headers and not just
@@ -177,6 +276,42 @@ final class HeaderRootTrimmer {
     return false;
   }
 
+  /**
+   * Equivalent to {@link #genRootMayContainHeaders(VirtualFile)}, but reads the file system
+   * directly rather than going through the VFS.
+   */
+  private static boolean genRootMayContainHeaders(File directory) {
+    FileOperationProvider fileOperationProvider = FileOperationProvider.getInstance();
+    int totalDirectoriesChecked = 0;
+    Queue<File> worklist = new ArrayDeque<>();
+    worklist.add(directory);
+    while (!worklist.isEmpty()) {
+      totalDirectoriesChecked++;
+      if (totalDirectoriesChecked > GEN_HEADER_ROOT_SEARCH_LIMIT) {
+        return true;
+      }
+      File[] children = fileOperationProvider.listFiles(worklist.poll());
+      if (children == null) {
+        continue;
+      }
+      for (File child : children) {
+        if (fileOperationProvider.isDirectory(child)) {
+          worklist.add(child);
+          continue;
+        }
+        String fileExtension = FileUtilRt.getExtension(child.getName());
+        if (fileExtension.isEmpty()) {
+          // Conservatively allow extension-less headers, as above.
+          return true;
+        }
+        if (CFileExtensions.HEADER_EXTENSIONS.contains(fileExtension)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   private static boolean isOutputArtifact(BlazeInfo blazeInfo, ExecutionRootPath path) {
     return ExecutionRootPath.isAncestor(blazeInfo.getBlazeGenfiles(), path, false)
         || ExecutionRootPath.isAncestor(blazeInfo.getBlazeBin(), path, false);
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.async.executor.MockBlazeExecutor;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HeaderRootState}. */
+@RunWith(JUnit4.class)
+public class HeaderRootStateTest extends BlazeTestCase {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final BlazeContext context = new BlazeContext();
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(BlazeExecutor.class, new MockBlazeExecutor());
+    applicationServices.register(FileOperationProvider.class, new FileOperationProvider());
+  }
+
+  @Test
+  public void testProtoRoundTrip() {
+    HeaderRootState state =
+        new HeaderRootState(
+            ImmutableMap.of(
+                "/execroot/bazel-out/k8/genfiles/foo", new HeaderRootState.Entry(1234L, true),
+                "/execroot/bazel-out/k8/bin/bar", new HeaderRootState.Entry(5678L, false)));
+
+    ProjectData.SyncState.Builder syncState = ProjectData.SyncState.newBuilder();
+    state.insert(syncState);
+    HeaderRootState restored = new HeaderRootState.Extractor().extract(syncState.build());
+
+    assertThat(restored).isEqualTo(state);
+    assertThat(restored.mayContainHeaders(new File("/execroot/bazel-out/k8/genfiles/foo")))
+        .isTrue();
+    assertThat(restored.mayContainHeaders(new File("/execroot/bazel-out/k8/bin/bar"))).isFalse();
+    assertThat(restored.mayContainHeaders(new File("/execroot/bazel-out/k8/bin/baz"))).isNull();
+  }
+
+  @Test
+  public void testMissingStateIsNotExtracted() {
+    assertThat(new HeaderRootState.Extractor().extract(ProjectData.SyncState.getDefaultInstance()))
+        .isNull();
+  }
+
+  @Test
+  public void testPositiveVerdictReusedOnlyWhileUnmodified() {
+    File root = new File("/execroot/bazel-out/k8/genfiles/foo");
+    HeaderRootState state =
+        new HeaderRootState(ImmutableMap.of(root.getPath(), new HeaderRootState.Entry(1L, true)));
+
+    assertThat(state.getReusableEntry(root, 1L)).isNotNull();
+    assertThat(state.getReusableEntry(root, 2L)).isNull();
+    assertThat(state.getReusableEntry(new File("/execroot/other"), 1L)).isNull();
+  }
+
+  @Test
+  public void testNegativeVerdictNeverReused() {
+    File root = new File("/execroot/bazel-out/k8/genfiles/foo");
+    HeaderRootState state =
+        new HeaderRootState(ImmutableMap.of(root.getPath(), new HeaderRootState.Entry(1L, false)));
+
+    assertThat(state.getReusableEntry(root, 1L)).isNull();
+  }
+
+  @Test
+  public void testHeaderAddedToNestedDirectoryIsFound() throws IOException {
+    File root = folder.newFolder("genfiles");
+    File nested = new File(root, "foo/bar");
+    assertThat(nested.mkdirs()).isTrue();
+    assertThat(new File(nested, "module.cppmap").createNewFile()).isTrue();
+    long rootModified = root.lastModified();
+
+    HeaderRootState first =
+        HeaderRootTrimmer.doComputeHeaderRootState(context, ImmutableSet.of(root), null);
+    assertThat(first.mayContainHeaders(root)).isFalse();
+
+    // adding a file to a nested directory doesn't change the root's modified time
+    assertThat(new File(nested, "generated.h").createNewFile()).isTrue();
+    assertThat(root.lastModified()).isEqualTo(rootModified);
+
+    HeaderRootState second =
+        HeaderRootTrimmer.doComputeHeaderRootState(context, ImmutableSet.of(root), first);
+    assertThat(second.mayContainHeaders(root)).isTrue();
+  }
+
+  @Test
+  public void testModifiedRootIsSearchedAgain() throws IOException {
+    File root = folder.newFolder("bin");
+    assertThat(new File(root, "generated.h").createNewFile()).isTrue();
+
+    HeaderRootState first =
+        HeaderRootTrimmer.doComputeHeaderRootState(context, ImmutableSet.of(root), null);
+    assertThat(first.mayContainHeaders(root)).isTrue();
+
+    assertThat(new File(root, "generated.h").delete()).isTrue();
+    assertThat(root.setLastModified(root.lastModified() + 10_000)).isTrue();
+
+    HeaderRootState second =
+        HeaderRootTrimmer.doComputeHeaderRootState(context, ImmutableSet.of(root), first);
+    assertThat(second.mayContainHeaders(root)).isFalse();
+  }
+}
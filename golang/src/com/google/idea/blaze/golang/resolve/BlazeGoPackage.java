@@ -28,7 +28,6 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Streams;
 import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
-import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
@@ -39,12 +38,12 @@ import com.google.idea.blaze.base.lang.buildfile.references.BuildReferenceManage
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
 import com.google.idea.blaze.base.model.primitives.Label;
-import com.google.idea.blaze.base.model.primitives.LanguageClass;
-import com.google.idea.blaze.base.model.primitives.RuleType;
 import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
 import com.google.idea.blaze.base.sync.workspace.WorkspaceHelper;
 import com.google.idea.blaze.base.targetmaps.ReverseDependencyMap;
 import com.google.idea.blaze.golang.GoBlazeRules.RuleTypes;
+import com.google.idea.blaze.golang.sync.BlazeGoSyncData;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
@@ -67,7 +66,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import one.util.streamex.StreamEx;
 
@@ -87,6 +85,7 @@ import one.util.streamex.StreamEx;
 public class BlazeGoPackage extends GoPackage {
   private static final Logger logger = Logger.getInstance(BlazeGoPackage.class);
   private static final String GO_TARGET_TO_FILE_MAP_KEY = "BlazeGoTargetToFileMap";
+  private static final String GO_FALLBACK_SYNC_DATA_KEY = "BlazeGoFallbackSyncData";
 
   private final Label label;
   private final String importPath;
@@ -101,7 +100,7 @@ public class BlazeGoPackage extends GoPackage {
         project,
         importPath,
         replaceProtoLibrary(project, projectData, target.getKey()).getLabel(),
-        getTargetToFileMap(project, projectData).get(target.getKey().getLabel()));
+        getSourceFiles(target, project, projectData, getSyncData(project, projectData)));
   }
 
   BlazeGoPackage(Project project, String importPath, Label label, Collection<File> files) {
@@ -151,55 +150,54 @@ public class BlazeGoPackage extends GoPackage {
 
   public static ImmutableMultimap<Label, File> getUncachedTargetToFileMap(
       Project project, BlazeProjectData projectData) {
-    ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap = buildLibraryToTestMap(projectData);
+    BlazeGoSyncData syncData = getSyncData(project, projectData);
     ImmutableMultimap.Builder<Label, File> builder = ImmutableMultimap.builder();
     for (TargetIdeInfo target : projectData.getTargetMap().targets()) {
       if (target.getGoIdeInfo() == null) {
         continue;
       }
       builder.putAll(
-          target.getKey().getLabel(),
-          getSourceFiles(target, project, projectData, libraryToTestMap));
+          target.getKey().getLabel(), getSourceFiles(target, project, projectData, syncData));
     }
     return builder.build();
   }
 
+  /**
+   * Returns the sync-time go index, falling back to building it from the target map for project
+   * data synced without one. The fallback is built once per sync.
+   */
+  static BlazeGoSyncData getSyncData(Project project, BlazeProjectData projectData) {
+    BlazeGoSyncData syncData = BlazeGoSyncData.get(projectData);
+    if (syncData != null) {
+      return syncData;
+    }
+    if (BlazeProjectDataManager.getInstance(project).getBlazeProjectData() != projectData) {
+      // SyncCache only holds values derived from the saved project data. This isn't it, e.g. during
+      // sync before the new project data is saved.
+      return BlazeGoSyncData.build(projectData.getTargetMap());
+    }
+    syncData =
+        SyncCache.getInstance(project)
+            .get(
+                GO_FALLBACK_SYNC_DATA_KEY,
+                (unused, data) -> BlazeGoSyncData.build(data.getTargetMap()));
+    return syncData != null ? syncData : BlazeGoSyncData.build(projectData.getTargetMap());
+  }
+
   private static ImmutableSet<File> getSourceFiles(
       TargetIdeInfo target,
       Project project,
       BlazeProjectData projectData,
-      ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap) {
+      BlazeGoSyncData syncData) {
     if (target.getKind() == RuleTypes.GO_WRAP_CC.getKind()) {
       return getWrapCcGoFiles(project, projectData, target);
     }
-    return Stream.concat(
-            Stream.of(target.getGoIdeInfo()),
-            libraryToTestMap.get(target.getKey().getLabel()).stream())
-        .map(GoIdeInfo::getSources)
-        .flatMap(Collection::stream)
+    return syncData.getSources(target.getKey().getLabel()).stream()
         .map(a -> resolveArtifact(project, projectData, a))
         .filter(Objects::nonNull)
         .collect(toImmutableSet());
   }
 
-  private static ImmutableMultimap<Label, GoIdeInfo> buildLibraryToTestMap(
-      BlazeProjectData projectData) {
-    TargetMap targetMap = projectData.getTargetMap();
-    ImmutableMultimap.Builder<Label, GoIdeInfo> builder = ImmutableMultimap.builder();
-    for (TargetIdeInfo target : targetMap.targets()) {
-      if (!target.getKind().hasLanguage(LanguageClass.GO)
-          || target.getKind().getRuleType() != RuleType.TEST
-          || target.getGoIdeInfo() == null
-          || target.getGoIdeInfo().getLibraryLabels().isEmpty()) {
-        continue;
-      }
-      for (Label label : target.getGoIdeInfo().getLibraryLabels()) {
-        builder.put(label, target.getGoIdeInfo());
-      }
-    }
-    return builder.build();
-  }
-
   @Nullable
   private static File resolveArtifact(
       Project project, BlazeProjectData data, ArtifactLocation artifact) {
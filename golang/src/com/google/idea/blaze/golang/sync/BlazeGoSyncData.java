@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.sync;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
+import com.google.idea.blaze.base.ideinfo.ProtoWrapper;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.SyncData;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.LanguageClass;
+import com.google.idea.blaze.base.model.primitives.RuleType;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Go import path index, built at sync time and serialized along with the sync data.
+ *
+ * <p>Maps each import path to the go target providing it, and each go target to its go sources
+ * (including those of any go_test listing it as a library). Sources are kept as {@link
+ * ArtifactLocation}s, and only resolved to files when a package is first looked up.
+ */
+public final class BlazeGoSyncData implements SyncData<ProjectData.BlazeGoSyncData> {
+  private final ImmutableMap<String, TargetKey> importPathToTarget;
+  private final ImmutableListMultimap<Label, ArtifactLocation> targetToSources;
+
+  private BlazeGoSyncData(
+      ImmutableMap<String, TargetKey> importPathToTarget,
+      ImmutableListMultimap<Label, ArtifactLocation> targetToSources) {
+    this.importPathToTarget = importPathToTarget;
+    this.targetToSources = targetToSources;
+  }
+
+  /** Returns the Go sync data for the given project data, or null if Go isn't active. */
+  @Nullable
+  public static BlazeGoSyncData get(BlazeProjectData projectData) {
+    return projectData.getSyncState().get(BlazeGoSyncData.class);
+  }
+
+  /** Returns the go target providing the given import path, or null if there is none. */
+  @Nullable
+  public TargetKey getTargetForImportPath(String importPath) {
+    return importPathToTarget.get(importPath);
+  }
+
+  public ImmutableMap<String, TargetKey> getImportPathToTarget() {
+    return importPathToTarget;
+  }
+
+  /** Returns all go targets, including those without an import path. */
+  public ImmutableSet<Label> getTargets() {
+    return targetToSources.keySet();
+  }
+
+  /** Returns the go sources of the given target, and of any go_test listing it as a library. */
+  public Collection<ArtifactLocation> getSources(Label label) {
+    return targetToSources.get(label);
+  }
+
+  public static BlazeGoSyncData build(TargetMap targetMap) {
+    Map<String, TargetKey> importPathToTarget = new HashMap<>();
+    ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap = buildLibraryToTestMap(targetMap);
+    ImmutableListMultimap.Builder<Label, ArtifactLocation> targetToSources =
+        ImmutableListMultimap.builder();
+    for (TargetIdeInfo target : targetMap.targets()) {
+      GoIdeInfo goIdeInfo = target.getGoIdeInfo();
+      if (goIdeInfo == null) {
+        continue;
+      }
+      Label label = target.getKey().getLabel();
+      targetToSources.putAll(label, goIdeInfo.getSources());
+      for (GoIdeInfo test : libraryToTestMap.get(label)) {
+        targetToSources.putAll(label, test.getSources());
+      }
+      String importPath = goIdeInfo.getImportPath();
+      if (importPath != null) {
+        // duplicates are possible (e.g., same target with different aspects)
+        // choose the one with the most sources (though they're probably the same)
+        importPathToTarget.merge(
+            importPath,
+            target.getKey(),
+            (first, second) ->
+                targetMap.get(first).getGoIdeInfo().getSources().size()
+                        >= goIdeInfo.getSources().size()
+                    ? first
+                    : second);
+      }
+    }
+    // Targets with multiple aspects would otherwise list the same sources more than once.
+    ImmutableListMultimap<Label, ArtifactLocation> sources = targetToSources.build();
+    ImmutableListMultimap.Builder<Label, ArtifactLocation> dedupedSources =
+        ImmutableListMultimap.builder();
+    for (Label label : sources.keySet()) {
+      dedupedSources.putAll(label, ImmutableSet.copyOf(sources.get(label)));
+    }
+    return new BlazeGoSyncData(ImmutableMap.copyOf(importPathToTarget), dedupedSources.build());
+  }
+
+  private static ImmutableMultimap<Label, GoIdeInfo> buildLibraryToTestMap(TargetMap targetMap) {
+    ImmutableMultimap.Builder<Label, GoIdeInfo> builder = ImmutableMultimap.builder();
+    for (TargetIdeInfo target : targetMap.targets()) {
+      if (!target.getKind().hasLanguage(LanguageClass.GO)
+          || target.getKind().getRuleType() != RuleType.TEST
+          || target.getGoIdeInfo() == null
+          || target.getGoIdeInfo().getLibraryLabels().isEmpty()) {
+        continue;
+      }
+      for (Label label : target.getGoIdeInfo().getLibraryLabels()) {
+        builder.put(label, target.getGoIdeInfo());
+      }
+    }
+    return builder.build();
+  }
+
+  private static BlazeGoSyncData fromProto(ProjectData.BlazeGoSyncData proto) {
+    ImmutableListMultimap.Builder<Label, ArtifactLocation> targetToSources =
+        ImmutableListMultimap.builder();
+    for (ProjectData.BlazeGoSyncData.TargetSources entry : proto.getTargetSourcesList()) {
+      targetToSources.putAll(
+          Label.fromProto(entry.getLabel()),
+          ProtoWrapper.map(entry.getSourcesList(), ArtifactLocation::fromProto));
+    }
+    return new BlazeGoSyncData(
+        ProtoWrapper.map(proto.getImportPathToTargetMap(), s -> s, TargetKey::fromProto),
+        targetToSources.build());
+  }
+
+  @Override
+  public ProjectData.BlazeGoSyncData toProto() {
+    ProjectData.BlazeGoSyncData.Builder builder =
+        ProjectData.BlazeGoSyncData.newBuilder()
+            .putAllImportPathToTarget(
+                ProtoWrapper.map(importPathToTarget, s -> s, TargetKey::toProto));
+    for (Label label : targetToSources.keySet()) {
+      builder.addTargetSources(
+          ProjectData.BlazeGoSyncData.TargetSources.newBuilder()
+              .setLabel(label.toProto())
+              .addAllSources(ProtoWrapper.mapToProtos(targetToSources.get(label))));
+    }
+    return builder.build();
+  }
+
+  @Override
+  public void insert(ProjectData.SyncState.Builder builder) {
+    builder.setBlazeGoSyncData(toProto());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    BlazeGoSyncData that = (BlazeGoSyncData) o;
+    return Objects.equals(importPathToTarget, that.importPathToTarget)
+        && Objects.equals(targetToSources, that.targetToSources);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(importPathToTarget, targetToSources);
+  }
+
+  static class Extractor implements SyncData.Extractor<BlazeGoSyncData> {
+    @Nullable
+    @Override
+    public BlazeGoSyncData extract(ProjectData.SyncState syncState) {
+      return syncState.hasBlazeGoSyncData()
+          ? BlazeGoSyncData.fromProto(syncState.getBlazeGoSyncData())
+          : null;
+    }
+  }
+}
@@ -0,0 +1,699 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+/**
+ * A class-level dependency index for a fast build.
+ *
+ * <p>For each class, records a hash of its ABI (the parts visible to other classes), the source
+ * file it was compiled from, and the classes it references. Initially built from the deploy jar,
+ * then updated with the output of each incremental compilation, so that the sources depending on
+ * a class whose ABI changed can be recompiled along with it.
+ *
+ * <p>Classes are identified by their internal names (e.g. 'com/google/Foo$Bar').
+ */
+final class FastBuildClassIndex {
+
+  private final Map<String, ClassInfo> classes = new HashMap<>();
+  // referenced class -> classes referencing it
+  private final SetMultimap<String, String> dependents = HashMultimap.create();
+
+  private FastBuildClassIndex() {}
+
+  /** Builds an index of all the classes in the given jar. */
+  static FastBuildClassIndex fromJar(File jar) throws IOException {
+    FastBuildClassIndex index = new FastBuildClassIndex();
+    try (ZipFile zipFile = new ZipFile(jar)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+          continue;
+        }
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          index.put(ClassInfo.parse(in));
+        }
+      }
+    }
+    return index;
+  }
+
+  /** The classes changed by an {@link #update}. */
+  static final class Changes {
+    /**
+     * Classes whose ABI changed. That includes classes which were previously compiled from one of
+     * the same source files, but no longer exist.
+     */
+    final ImmutableSet<String> abiChanged;
+
+    /**
+     * Classes whose compile-time constants changed value or were removed. These constants are
+     * inlined into the classes using them, which keep no reference to the declaring class, so
+     * {@link #getDependents} can't find them.
+     */
+    final ImmutableSet<String> constantsChanged;
+
+    private Changes(ImmutableSet<String> abiChanged, ImmutableSet<String> constantsChanged) {
+      this.abiChanged = abiChanged;
+      this.constantsChanged = constantsChanged;
+    }
+  }
+
+  /** Updates the index with newly compiled class files, returning the classes which changed. */
+  synchronized Changes update(Collection<File> classFiles) throws IOException {
+    List<ClassInfo> compiled = new ArrayList<>();
+    for (File classFile : classFiles) {
+      compiled.add(ClassInfo.parse(Files.readAllBytes(classFile.toPath())));
+    }
+    Set<String> compiledNames = new HashSet<>();
+    Set<String> compiledSources = new HashSet<>();
+    for (ClassInfo info : compiled) {
+      compiledNames.add(info.name);
+      if (info.sourcePath != null) {
+        compiledSources.add(info.sourcePath);
+      }
+    }
+
+    Set<String> abiChanged = new HashSet<>();
+    Set<String> constantsChanged = new HashSet<>();
+    for (ClassInfo previous : new ArrayList<>(classes.values())) {
+      if (previous.sourcePath != null
+          && compiledSources.contains(previous.sourcePath)
+          && !compiledNames.contains(previous.name)) {
+        abiChanged.add(previous.name);
+        if (previous.constantsHash != ClassInfo.NO_CONSTANTS) {
+          constantsChanged.add(previous.name);
+        }
+        remove(previous.name);
+      }
+    }
+    for (ClassInfo info : compiled) {
+      ClassInfo previous = classes.get(info.name);
+      if (previous != null && previous.abiHash != info.abiHash) {
+        abiChanged.add(info.name);
+      }
+      // newly added constants can't have been inlined anywhere yet
+      if (previous != null
+          && previous.constantsHash != ClassInfo.NO_CONSTANTS
+          && previous.constantsHash != info.constantsHash) {
+        constantsChanged.add(info.name);
+      }
+      put(info);
+    }
+    return new Changes(ImmutableSet.copyOf(abiChanged), ImmutableSet.copyOf(constantsChanged));
+  }
+
+  /** Returns the classes directly referencing any of the given classes. */
+  synchronized ImmutableSet<String> getDependents(Collection<String> classNames) {
+    ImmutableSet.Builder<String> result = ImmutableSet.builder();
+    for (String className : classNames) {
+      result.addAll(dependents.get(className));
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the paths of the source files the given classes were compiled from, relative to their
+   * source root (e.g. 'com/google/Foo.java').
+   */
+  synchronized ImmutableSet<String> getSourcePaths(Collection<String> classNames) {
+    ImmutableSet.Builder<String> result = ImmutableSet.builder();
+    for (String className : classNames) {
+      ClassInfo info = classes.get(className);
+      if (info != null && info.sourcePath != null) {
+        result.add(info.sourcePath);
+      }
+    }
+    return result.build();
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return classes.size();
+  }
+
+  private void put(ClassInfo info) {
+    remove(info.name);
+    classes.put(info.name, info);
+    for (String referenced : info.referencedClasses) {
+      dependents.put(referenced, info.name);
+    }
+  }
+
+  private void remove(String className) {
+    ClassInfo previous = classes.remove(className);
+    if (previous != null) {
+      for (String referenced : previous.referencedClasses) {
+        dependents.remove(referenced, className);
+      }
+    }
+  }
+
+  /** The information read from a single class file. */
+  @VisibleForTesting
+  static final class ClassInfo {
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+
+    /** The {@link #constantsHash} of a class without any compile-time constants. */
+    static final long NO_CONSTANTS = 0;
+
+    final String name;
+    @Nullable final String sourcePath;
+    final long abiHash;
+    /** A hash of the class's compile-time constant fields and their values. */
+    final long constantsHash;
+    final ImmutableSet<String> referencedClasses;
+
+    private ClassInfo(
+        String name,
+        @Nullable String sourcePath,
+        long abiHash,
+        long constantsHash,
+        ImmutableSet<String> referencedClasses) {
+      this.name = name;
+      this.sourcePath = sourcePath;
+      this.abiHash = abiHash;
+      this.constantsHash = constantsHash;
+      this.referencedClasses = referencedClasses;
+    }
+
+    static ClassInfo parse(byte[] classFile) throws IOException {
+      return parse(new ByteArrayInputStream(classFile));
+    }
+
+    /**
+     * Reads the class file format directly. Only the constant pool, the class header, member
+     * declarations, the SourceFile attribute and the attributes which are part of the ABI are
+     * interpreted; everything else is skipped.
+     */
+    static ClassInfo parse(InputStream classFile) throws IOException {
+      DataInputStream in = new DataInputStream(classFile);
+      if (in.readInt() != 0xCAFEBABE) {
+        throw new IOException("Not a class file");
+      }
+      in.readUnsignedShort(); // minor version
+      in.readUnsignedShort(); // major version
+
+      ConstantPool pool = ConstantPool.read(in);
+      Set<String> referencedClasses = new HashSet<>();
+      pool.addReferencedClasses(referencedClasses);
+
+      Hasher abi = Hashing.murmur3_128().newHasher();
+      int accessFlags = in.readUnsignedShort();
+      String name = pool.className(in.readUnsignedShort());
+      int superClass = in.readUnsignedShort();
+      abi.putInt(accessFlags).putUnencodedChars(name).putByte((byte) 0);
+      if (superClass != 0) {
+        abi.putUnencodedChars(pool.className(superClass));
+      }
+      abi.putByte((byte) 0);
+      int interfaceCount = in.readUnsignedShort();
+      for (int i = 0; i < interfaceCount; i++) {
+        abi.putUnencodedChars(pool.className(in.readUnsignedShort()));
+        abi.putByte((byte) 0);
+      }
+
+      List<String> constants = new ArrayList<>();
+      List<String> fields = readMembers(in, pool, constants, referencedClasses);
+      List<String> methods = readMembers(in, pool, /* constants= */ null, referencedClasses);
+      // member order isn't significant
+      fields.stream().sorted().forEach(f -> abi.putUnencodedChars(f).putByte((byte) 0));
+      abi.putByte((byte) 1);
+      methods.stream().sorted().forEach(m -> abi.putUnencodedChars(m).putByte((byte) 0));
+      abi.putByte((byte) 1);
+
+      String sourceFile = null;
+      List<String> classAttributes = new ArrayList<>();
+      int attributeCount = in.readUnsignedShort();
+      for (int i = 0; i < attributeCount; i++) {
+        String attributeName = pool.utf8(in.readUnsignedShort());
+        int length = in.readInt();
+        if ("SourceFile".equals(attributeName)) {
+          sourceFile = pool.utf8(in.readUnsignedShort());
+          continue;
+        }
+        String attribute = readAbiAttribute(in, attributeName, length, pool, referencedClasses);
+        if (attribute != null) {
+          classAttributes.add(attribute);
+        }
+      }
+      classAttributes.stream().sorted().forEach(a -> abi.putUnencodedChars(a).putByte((byte) 0));
+
+      long constantsHash = NO_CONSTANTS;
+      if (!constants.isEmpty()) {
+        Hasher constantsHasher = Hashing.murmur3_128().newHasher();
+        constants.stream()
+            .sorted()
+            .forEach(c -> constantsHasher.putUnencodedChars(c).putByte((byte) 0));
+        constantsHash = constantsHasher.hash().asLong();
+      }
+
+      referencedClasses.remove(name);
+      return new ClassInfo(
+          name,
+          sourceFile != null ? getSourcePath(name, sourceFile) : null,
+          abi.hash().asLong(),
+          constantsHash,
+          ImmutableSet.copyOf(referencedClasses));
+    }
+
+    /**
+     * Reads the field or method declarations, returning a description of each non-private member.
+     * If {@code constants} is non-null, also adds a description of each compile-time constant
+     * field (including private ones, which are inlined into nested classes) to it.
+     */
+    private static List<String> readMembers(
+        DataInputStream in,
+        ConstantPool pool,
+        @Nullable List<String> constants,
+        Set<String> referencedClasses)
+        throws IOException {
+      List<String> members = new ArrayList<>();
+      int count = in.readUnsignedShort();
+      for (int i = 0; i < count; i++) {
+        int accessFlags = in.readUnsignedShort();
+        String memberName = pool.utf8(in.readUnsignedShort());
+        String descriptor = pool.utf8(in.readUnsignedShort());
+        addDescriptorTypes(descriptor, referencedClasses);
+        Object constantValue = null;
+        List<String> attributes = new ArrayList<>();
+        int attributeCount = in.readUnsignedShort();
+        for (int j = 0; j < attributeCount; j++) {
+          String attributeName = pool.utf8(in.readUnsignedShort());
+          int length = in.readInt();
+          if (constants != null && "ConstantValue".equals(attributeName)) {
+            constantValue = pool.constantValue(in.readUnsignedShort());
+            continue;
+          }
+          String attribute = readAbiAttribute(in, attributeName, length, pool, referencedClasses);
+          if (attribute != null) {
+            attributes.add(attribute);
+          }
+        }
+        // compile-time constants are inlined into referencing classes
+        boolean isConstant =
+            constantValue != null
+                && (accessFlags & (ACC_STATIC | ACC_FINAL)) == (ACC_STATIC | ACC_FINAL);
+        if (isConstant) {
+          constants.add(memberName + descriptor + '=' + constantValue);
+        }
+        if ((accessFlags & ACC_PRIVATE) != 0) {
+          continue;
+        }
+        StringBuilder member =
+            new StringBuilder().append(accessFlags).append(' ').append(memberName);
+        member.append(descriptor);
+        if (isConstant) {
+          member.append('=').append(constantValue);
+        }
+        attributes.stream().sorted().forEach(a -> member.append(' ').append(a));
+        members.add(member.toString());
+      }
+      return members;
+    }
+
+    /**
+     * Reads an attribute which is part of the ABI of a class or member (generic signatures, thrown
+     * exceptions and annotations), returning a description of it with all constants resolved. Any
+     * other attribute is skipped, returning null.
+     */
+    @Nullable
+    private static String readAbiAttribute(
+        DataInputStream in,
+        String attributeName,
+        int length,
+        ConstantPool pool,
+        Set<String> referencedClasses)
+        throws IOException {
+      StringBuilder out = new StringBuilder(attributeName).append(':');
+      switch (attributeName) {
+        case "Signature":
+          out.append(pool.utf8(in.readUnsignedShort()));
+          break;
+        case "Exceptions":
+          int exceptionCount = in.readUnsignedShort();
+          for (int i = 0; i < exceptionCount; i++) {
+            out.append(pool.className(in.readUnsignedShort())).append(',');
+          }
+          break;
+        case "RuntimeVisibleAnnotations":
+        case "RuntimeInvisibleAnnotations":
+          readAnnotations(in, pool, out, referencedClasses);
+          break;
+        case "RuntimeVisibleParameterAnnotations":
+        case "RuntimeInvisibleParameterAnnotations":
+          int parameterCount = in.readUnsignedByte();
+          for (int i = 0; i < parameterCount; i++) {
+            readAnnotations(in, pool, out, referencedClasses);
+            out.append(';');
+          }
+          break;
+        case "RuntimeVisibleTypeAnnotations":
+        case "RuntimeInvisibleTypeAnnotations":
+          int annotationCount = in.readUnsignedShort();
+          for (int i = 0; i < annotationCount; i++) {
+            readTypeAnnotation(in, pool, out, referencedClasses);
+            out.append(',');
+          }
+          break;
+        case "AnnotationDefault":
+          readElementValue(in, pool, out, referencedClasses);
+          break;
+        default:
+          skipFully(in, length);
+          return null;
+      }
+      return out.toString();
+    }
+
+    private static void readAnnotations(
+        DataInputStream in, ConstantPool pool, StringBuilder out, Set<String> referencedClasses)
+        throws IOException {
+      int count = in.readUnsignedShort();
+      for (int i = 0; i < count; i++) {
+        readAnnotation(in, pool, out, referencedClasses);
+        out.append(',');
+      }
+    }
+
+    private static void readAnnotation(
+        DataInputStream in, ConstantPool pool, StringBuilder out, Set<String> referencedClasses)
+        throws IOException {
+      String type = pool.utf8(in.readUnsignedShort());
+      addDescriptorTypes(type, referencedClasses);
+      out.append('@').append(type).append('(');
+      int pairCount = in.readUnsignedShort();
+      for (int i = 0; i < pairCount; i++) {
+        out.append(pool.utf8(in.readUnsignedShort())).append('=');
+        readElementValue(in, pool, out, referencedClasses);
+        out.append(',');
+      }
+      out.append(')');
+    }
+
+    private static void readElementValue(
+        DataInputStream in, ConstantPool pool, StringBuilder out, Set<String> referencedClasses)
+        throws IOException {
+      int tag = in.readUnsignedByte();
+      out.append((char) tag);
+      switch (tag) {
+        case 'B':
+        case 'C':
+        case 'D':
+        case 'F':
+        case 'I':
+        case 'J':
+        case 'S':
+        case 'Z':
+        case 's':
+          out.append(pool.constantValue(in.readUnsignedShort()));
+          break;
+        case 'e':
+          String enumType = pool.utf8(in.readUnsignedShort());
+          addDescriptorTypes(enumType, referencedClasses);
+          out.append(enumType).append('.').append(pool.utf8(in.readUnsignedShort()));
+          break;
+        case 'c':
+          String classInfo = pool.utf8(in.readUnsignedShort());
+          addDescriptorTypes(classInfo, referencedClasses);
+          out.append(classInfo);
+          break;
+        case '@':
+          readAnnotation(in, pool, out, referencedClasses);
+          break;
+        case '[':
+          int valueCount = in.readUnsignedShort();
+          out.append('{');
+          for (int i = 0; i < valueCount; i++) {
+            readElementValue(in, pool, out, referencedClasses);
+            out.append(',');
+          }
+          out.append('}');
+          break;
+        default:
+          throw new IOException("Unknown annotation element tag " + tag);
+      }
+    }
+
+    private static void readTypeAnnotation(
+        DataInputStream in, ConstantPool pool, StringBuilder out, Set<String> referencedClasses)
+        throws IOException {
+      int targetType = in.readUnsignedByte();
+      out.append(targetType).append(':');
+      switch (targetType) {
+        case 0x00: // class or method type parameter
+        case 0x01:
+        case 0x16: // formal parameter
+          out.append(in.readUnsignedByte());
+          break;
+        case 0x10: // supertype
+        case 0x17: // throws clause
+        case 0x42: // catch clause
+        case 0x43: // instanceof, new and method reference expressions
+        case 0x44:
+        case 0x45:
+        case 0x46:
+          out.append(in.readUnsignedShort());
+          break;
+        case 0x11: // type parameter bound
+        case 0x12:
+          out.append(in.readUnsignedByte()).append('.').append(in.readUnsignedByte());
+          break;
+        case 0x13: // field, return type or receiver
+        case 0x14:
+        case 0x15:
+          break;
+        case 0x40: // local variables
+        case 0x41:
+          int tableLength = in.readUnsignedShort();
+          for (int i = 0; i < tableLength; i++) {
+            out.append(in.readUnsignedShort()).append('.');
+            out.append(in.readUnsignedShort()).append('.');
+            out.append(in.readUnsignedShort()).append(',');
+          }
+          break;
+        case 0x47: // casts and type arguments
+        case 0x48:
+        case 0x49:
+        case 0x4A:
+        case 0x4B:
+          out.append(in.readUnsignedShort()).append('.').append(in.readUnsignedByte());
+          break;
+        default:
+          throw new IOException("Unknown type annotation target " + targetType);
+      }
+      int pathLength = in.readUnsignedByte();
+      for (int i = 0; i < pathLength; i++) {
+        out.append('/').append(in.readUnsignedByte()).append('.').append(in.readUnsignedByte());
+      }
+      readAnnotation(in, pool, out, referencedClasses);
+    }
+
+    /** Adds the class names in a field or method descriptor. */
+    private static void addDescriptorTypes(String descriptor, Set<String> referencedClasses) {
+      int start = descriptor.indexOf('L');
+      while (start != -1) {
+        int end = descriptor.indexOf(';', start);
+        if (end == -1) {
+          return;
+        }
+        referencedClasses.add(descriptor.substring(start + 1, end));
+        start = descriptor.indexOf('L', end);
+      }
+    }
+
+    private static String getSourcePath(String className, String sourceFile) {
+      int lastSlash = className.lastIndexOf('/');
+      return lastSlash == -1 ? sourceFile : className.substring(0, lastSlash + 1) + sourceFile;
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+      int skipped = 0;
+      while (skipped < length) {
+        int n = in.skipBytes(length - skipped);
+        if (n <= 0) {
+          throw new IOException("Unexpected end of class file");
+        }
+        skipped += n;
+      }
+    }
+  }
+
+  /** The constant pool of a class file, keeping only the entries needed to build the index. */
+  private static final class ConstantPool {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private final Object[] constants;
+    private final int[] classNameIndices;
+    // the UTF8 entries referenced as field or method descriptors
+    private final List<Integer> descriptorIndices;
+
+    private ConstantPool(
+        Object[] constants, int[] classNameIndices, List<Integer> descriptorIndices) {
+      this.constants = constants;
+      this.classNameIndices = classNameIndices;
+      this.descriptorIndices = descriptorIndices;
+    }
+
+    static ConstantPool read(DataInputStream in) throws IOException {
+      int constantPoolCount = in.readUnsignedShort();
+      Object[] constants = new Object[constantPoolCount];
+      int[] classNameIndices = new int[constantPoolCount];
+      List<Integer> descriptorIndices = new ArrayList<>();
+      for (int i = 1; i < constantPoolCount; i++) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+          case CONSTANT_UTF8:
+            constants[i] = in.readUTF();
+            break;
+          case CONSTANT_INTEGER:
+            constants[i] = in.readInt();
+            break;
+          case CONSTANT_FLOAT:
+            constants[i] = in.readFloat();
+            break;
+          case CONSTANT_LONG:
+            constants[i] = in.readLong();
+            i++;
+            break;
+          case CONSTANT_DOUBLE:
+            constants[i] = in.readDouble();
+            i++;
+            break;
+          case CONSTANT_CLASS:
+            classNameIndices[i] = in.readUnsignedShort();
+            break;
+          case CONSTANT_STRING:
+            constants[i] = new StringConstant(in.readUnsignedShort());
+            break;
+          case CONSTANT_NAME_AND_TYPE:
+            in.readUnsignedShort(); // name
+            descriptorIndices.add(in.readUnsignedShort());
+            break;
+          case CONSTANT_METHOD_TYPE:
+            descriptorIndices.add(in.readUnsignedShort());
+            break;
+          case CONSTANT_MODULE:
+          case CONSTANT_PACKAGE:
+            in.readUnsignedShort();
+            break;
+          case CONSTANT_METHOD_HANDLE:
+            in.readUnsignedByte();
+            in.readUnsignedShort();
+            break;
+          case CONSTANT_FIELDREF:
+          case CONSTANT_METHODREF:
+          case CONSTANT_INTERFACE_METHODREF:
+          case CONSTANT_DYNAMIC:
+          case CONSTANT_INVOKE_DYNAMIC:
+            in.readInt();
+            break;
+          default:
+            throw new IOException("Unknown constant pool tag " + tag);
+        }
+      }
+      return new ConstantPool(constants, classNameIndices, descriptorIndices);
+    }
+
+    String utf8(int index) {
+      return (String) constants[index];
+    }
+
+    String className(int index) {
+      return utf8(classNameIndices[index]);
+    }
+
+    /** Returns a numeric or string constant. */
+    Object constantValue(int index) {
+      Object value = constants[index];
+      return value instanceof StringConstant
+          ? constants[((StringConstant) value).utf8Index]
+          : value;
+    }
+
+    /**
+     * Adds the classes referenced by class entries and by the descriptors of referenced members.
+     * Other UTF8 entries, such as string literals, are ignored.
+     */
+    void addReferencedClasses(Set<String> referencedClasses) {
+      for (int i = 1; i < constants.length; i++) {
+        if (classNameIndices[i] == 0) {
+          continue;
+        }
+        String className = utf8(classNameIndices[i]);
+        if (className.startsWith("[")) {
+          ClassInfo.addDescriptorTypes(className, referencedClasses);
+        } else {
+          referencedClasses.add(className);
+        }
+      }
+      for (int index : descriptorIndices) {
+        ClassInfo.addDescriptorTypes(utf8(index), referencedClasses);
+      }
+    }
+  }
+
+  /** An unresolved CONSTANT_String entry. */
+  private static final class StringConstant {
+    final int utf8Index;
+
+    StringConstant(int utf8Index) {
+      this.utf8Index = utf8Index;
+    }
+  }
+}
@@ -43,9 +43,11 @@ import com.intellij.ide.plugins.IdeaPluginDescriptor;
 import com.intellij.ide.plugins.PluginManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.serviceContainer.NonInjectable;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
@@ -57,10 +59,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
+import javax.annotation.concurrent.GuardedBy;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 
@@ -72,10 +76,32 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
       "com.google.idea.blaze.java.fastbuild.FastBuildJavacImpl";
   private static final Path FAST_BUILD_JAVAC_JAR = Paths.get("lib", "libfast_build_javac.jar");
 
+  /** Each compiler holds a class loader and its open classpath jars, so only keep a few. */
+  private static final int MAX_CACHED_COMPILERS = 4;
+
   private final BlazeProjectDataManager projectDataManager;
   private final Supplier<EventLoggingService> eventLoggerSupplier;
   private final Supplier<File> fastBuildJavacJarSupplier;
 
+  /**
+   * Compilers keyed by their javac jars, least recently used first. Loading javac is slow, and each
+   * compiler caches the opened classpath jars between compilations, so they're reused until the
+   * javac jars change.
+   */
+  @GuardedBy("this")
+  private final Map<ImmutableList<File>, CachedJavac> compilers =
+      new LinkedHashMap<ImmutableList<File>, CachedJavac>(
+          MAX_CACHED_COMPILERS, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ImmutableList<File>, CachedJavac> eldest) {
+          if (size() <= MAX_CACHED_COMPILERS) {
+            return false;
+          }
+          eldest.getValue().close();
+          return true;
+        }
+      };
+
   @NonInjectable
   private FastBuildCompilerFactoryImpl(
       BlazeProjectDataManager projectDataManager,
@@ -91,6 +117,7 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
         BlazeProjectDataManager.getInstance(project),
         EventLoggingService::getInstance,
         FastBuildCompilerFactoryImpl::findFastBuildJavacJar);
+    Disposer.register(project, this::closeCompilers);
   }
 
   static FastBuildCompilerFactoryImpl createForTest(
@@ -111,7 +138,7 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
         projectData.getArtifactLocationDecoder().decodeAll(javaToolchain.javacJars());
     List<File> bootJars =
         projectData.getArtifactLocationDecoder().decodeAll(javaToolchain.bootClasspathJars());
-    Javac javac = createCompiler(javacJars);
+    Javac javac = getCompiler(javacJars);
     return new JavacRunner(
         javac, bootJars, javaToolchain.sourceVersion(), javaToolchain.targetVersion());
   }
@@ -147,15 +174,78 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
         throws FastBuildException;
   }
 
-  private Javac createCompiler(List<File> javacJars) throws FastBuildException {
+  private synchronized Javac getCompiler(List<File> javacJars) throws FastBuildException {
+    ImmutableList<File> key = ImmutableList.copyOf(javacJars);
+    ImmutableList<String> jarState = getFileState(javacJars);
+    CachedJavac cached = compilers.get(key);
+    if (cached != null && cached.jarState.equals(jarState)) {
+      return cached.javac;
+    }
+    if (cached != null) {
+      compilers.remove(key);
+      cached.close();
+    }
+    CachedJavac compiler = createCompiler(javacJars, jarState);
+    compilers.put(key, compiler);
+    return compiler.javac;
+  }
+
+  /** Closes and forgets all cached compilers, releasing their class loaders and open jars. */
+  synchronized void closeCompilers() {
+    compilers.values().forEach(CachedJavac::close);
+    compilers.clear();
+  }
+
+  /** Returns the last modified time and size of each file. */
+  private static ImmutableList<String> getFileState(List<File> files) {
+    return files.stream()
+        .map(f -> f.getPath() + ':' + f.lastModified() + ':' + f.length())
+        .collect(toImmutableList());
+  }
+
+  private static class CachedJavac {
+    private final ImmutableList<String> jarState;
+    private final Javac javac;
+    private final FastBuildJavac javaCompiler;
+    private final URLClassLoader classLoader;
+
+    private CachedJavac(
+        ImmutableList<String> jarState,
+        Javac javac,
+        FastBuildJavac javaCompiler,
+        URLClassLoader classLoader) {
+      this.jarState = jarState;
+      this.javac = javac;
+      this.javaCompiler = javaCompiler;
+      this.classLoader = classLoader;
+    }
+
+    /** Closes the compiler's file manager and class loader, releasing their open jars. */
+    private void close() {
+      try {
+        javaCompiler.close();
+      } catch (RuntimeException e) {
+        logger.warn("Failed to close the javac file manager", e);
+      }
+      try {
+        classLoader.close();
+      } catch (IOException e) {
+        logger.warn("Failed to close the javac class loader", e);
+      }
+    }
+  }
+
+  private CachedJavac createCompiler(List<File> javacJars, ImmutableList<String> jarState)
+      throws FastBuildException {
+    URLClassLoader classLoader = null;
     try {
-      Class<?> javacClass =
-          loadJavacClass(
-              FAST_BUILD_JAVAC_CLASS,
+      classLoader =
+          createJavacClassLoader(
               ImmutableList.<File>builder()
                   .addAll(javacJars)
                   .add(fastBuildJavacJarSupplier.get())
                   .build());
+      Class<?> javacClass = classLoader.loadClass(FAST_BUILD_JAVAC_CLASS);
 
       Constructor<?> createMethod = javacClass.getConstructor();
       Object javacInstance = createMethod.newInstance();
@@ -163,24 +253,33 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
       FastBuildJavac javaCompiler =
           Reflection.newProxy(
               FastBuildJavac.class, new MatchingMethodInvocationHandler(javacClass, javacInstance));
-      return (context, javacArgs, files, writer) -> {
-        Stopwatch timer = Stopwatch.createStarted();
-        Object[] rawOutput = javaCompiler.compile(javacArgs, files);
-        CompilerOutput output = CompilerOutput.decode(rawOutput);
-        processDiagnostics(context, output);
-        boolean result = output.result;
-        Command command =
-            Command.builder()
-                .setExecutable("javac")
-                .setArguments(javacArgs)
-                .setExitCode(result ? 0 : 1)
-                .setSubcommandName("javac")
-                .setDuration(timer.elapsed())
-                .build();
-        eventLoggerSupplier.get().logCommand(getClass(), command);
-        return result;
-      };
+      Javac javac =
+          (context, javacArgs, files, writer) -> {
+            Stopwatch timer = Stopwatch.createStarted();
+            Object[] rawOutput = javaCompiler.compile(javacArgs, files);
+            CompilerOutput output = CompilerOutput.decode(rawOutput);
+            processDiagnostics(context, output);
+            boolean result = output.result;
+            Command command =
+                Command.builder()
+                    .setExecutable("javac")
+                    .setArguments(javacArgs)
+                    .setExitCode(result ? 0 : 1)
+                    .setSubcommandName("javac")
+                    .setDuration(timer.elapsed())
+                    .build();
+            eventLoggerSupplier.get().logCommand(getClass(), command);
+            return result;
+          };
+      return new CachedJavac(jarState, javac, javaCompiler, classLoader);
     } catch (MalformedURLException | ReflectiveOperationException e) {
+      if (classLoader != null) {
+        try {
+          classLoader.close();
+        } catch (IOException closeException) {
+          e.addSuppressed(closeException);
+        }
+      }
       throw new FastBuildIncrementalCompileException(e);
     }
   }
@@ -194,14 +293,13 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
         .toFile();
   }
 
-  private Class<?> loadJavacClass(String javaCompilerClass, List<File> jars)
-      throws MalformedURLException, ClassNotFoundException {
+  private static URLClassLoader createJavacClassLoader(List<File> jars)
+      throws MalformedURLException {
     URL[] urls = new URL[jars.size()];
     for (int i = 0; i < jars.size(); ++i) {
       urls[i] = jars.get(i).toURI().toURL();
     }
-    URLClassLoader urlClassLoader = new URLClassLoader(urls, platformClassLoader());
-    return urlClassLoader.loadClass(javaCompilerClass);
+    return new URLClassLoader(urls, platformClassLoader());
   }
 
   private static ClassLoader platformClassLoader() {
@@ -240,12 +338,18 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
               .add("-target")
               .add(targetVersion)
               .add("-cp")
-              .add(instructions.classpath().stream().map(File::getPath).collect(joining(":")))
+              .add(
+                  instructions.classpath().stream()
+                      .map(File::getPath)
+                      .collect(joining(File.pathSeparator)))
               .add("-g");
       if (!bootClassPathJars.isEmpty()) {
         argsBuilder
             .add("-bootclasspath")
-            .add(bootClassPathJars.stream().map(File::getPath).collect(joining(":")));
+            .add(
+                bootClassPathJars.stream()
+                    .map(File::getPath)
+                    .collect(joining(File.pathSeparator)));
       }
       if (instructions.annotationProcessorClassNames().isEmpty()) {
         // Without this, it will find all the annotation processors in the classpath and run them.
@@ -261,7 +365,7 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
               .add(
                   instructions.annotationProcessorClasspath().stream()
                       .map(File::getPath)
-                      .collect(joining(":")));
+                      .collect(joining(File.pathSeparator)));
         }
       }
       List<String> args = argsBuilder.build();
@@ -40,4 +40,7 @@ interface FastBuildIncrementalCompiler {
    */
   ListenableFuture<BuildOutput> compile(
       BlazeContext context, Label label, FastBuildState buildState, Set<File> modifiedFiles);
+
+  /** Discards any state kept between compilations of the label, once it's no longer built. */
+  void resetBuild(Label label);
 }
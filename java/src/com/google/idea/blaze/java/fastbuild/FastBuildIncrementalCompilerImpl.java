@@ -16,10 +16,14 @@
 package com.google.idea.blaze.java.fastbuild;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.idea.blaze.base.console.BlazeConsoleService;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
@@ -36,19 +40,35 @@ import com.google.idea.blaze.java.fastbuild.FastBuildLogDataScope.FastBuildLogOu
 import com.google.idea.blaze.java.fastbuild.FastBuildState.BuildOutput;
 import com.google.idea.common.util.ConcurrencyUtil;
 import com.intellij.execution.ui.ConsoleViewContentType;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import java.io.File;
+import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalCompiler {
 
+  private static final Logger logger = Logger.getInstance(FastBuildIncrementalCompilerImpl.class);
+
+  private static final long LAST_MODIFIED_TIME_GRANULARITY_MS = 1000;
+
   private final BlazeProjectDataManager projectDataManager;
   private final FastBuildCompilerFactory compilerFactory;
   private final BlazeConsoleService blazeConsoleService;
+  // only kept for labels with an active fast build, see resetBuild
+  private final Map<Label, ClassIndexHolder> classIndices = new ConcurrentHashMap<>();
 
   FastBuildIncrementalCompilerImpl(Project project) {
     this.projectDataManager = BlazeProjectDataManager.getInstance(project);
@@ -56,6 +76,14 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
     this.blazeConsoleService = BlazeConsoleService.getInstance(project);
   }
 
+  @Override
+  public void resetBuild(Label label) {
+    ClassIndexHolder holder = classIndices.remove(label);
+    if (holder != null) {
+      holder.classIndex.cancel(/* mayInterruptIfRunning= */ true);
+    }
+  }
+
   @Override
   public ListenableFuture<BuildOutput> compile(
       BlazeContext context, Label label, FastBuildState buildState, Set<File> modifiedFiles) {
@@ -72,26 +100,32 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
                   getPathsToCompile(context, label, buildOutput.blazeData(), modifiedFiles);
 
               if (!changedSourceInfo.pathsToCompile.isEmpty()) {
-                CompileInstructions instructions =
-                    CompileInstructions.builder()
-                        .outputDirectory(buildState.compilerOutputDirectory())
-                        .classpath(ImmutableList.of(buildOutput.deployJar()))
-                        .filesToCompile(changedSourceInfo.pathsToCompile)
-                        .annotationProcessorClassNames(
-                            changedSourceInfo.annotationProcessorClassNames)
-                        .annotationProcessorClasspath(
-                            changedSourceInfo.annotationProcessorClasspath)
-                        .outputWriter(writer)
-                        .build();
-
-                for (FastBuildCompilationModification modification :
-                    FastBuildCompilationModification.EP_NAME.getExtensions()) {
-                  instructions = modification.modifyInstructions(instructions);
-                }
-
-                compilerFactory
-                    .getCompilerFor(label, buildOutput.blazeData())
-                    .compile(context, instructions);
+                // built in parallel with the first compilation, which doesn't need it
+                ListenableFuture<FastBuildClassIndex> classIndex =
+                    getClassIndex(label, buildOutput);
+                FastBuildCompiler compiler =
+                    compilerFactory.getCompilerFor(label, buildOutput.blazeData());
+
+                long compileStartTime = System.currentTimeMillis();
+                compiler.compile(
+                    context,
+                    createCompileInstructions(
+                        buildState,
+                        buildOutput,
+                        writer,
+                        changedSourceInfo.pathsToCompile,
+                        changedSourceInfo.annotationProcessorClassNames,
+                        changedSourceInfo.annotationProcessorClasspath));
+
+                recompileDependents(
+                    context,
+                    compiler,
+                    buildState,
+                    buildOutput,
+                    writer,
+                    changedSourceInfo,
+                    classIndex,
+                    compileStartTime);
               } else {
                 context.output(new PrintOutput("No modified files to compile."));
               }
@@ -99,6 +133,172 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
             });
   }
 
+  private static CompileInstructions createCompileInstructions(
+      FastBuildState buildState,
+      BuildOutput buildOutput,
+      Writer writer,
+      Set<File> filesToCompile,
+      Set<String> annotationProcessorClassNames,
+      Set<File> annotationProcessorClasspath) {
+    CompileInstructions instructions =
+        CompileInstructions.builder()
+            .outputDirectory(buildState.compilerOutputDirectory())
+            .classpath(ImmutableList.of(buildOutput.deployJar()))
+            .filesToCompile(filesToCompile)
+            .annotationProcessorClassNames(annotationProcessorClassNames)
+            .annotationProcessorClasspath(annotationProcessorClasspath)
+            .outputWriter(writer)
+            .build();
+
+    for (FastBuildCompilationModification modification :
+        FastBuildCompilationModification.EP_NAME.getExtensions()) {
+      instructions = modification.modifyInstructions(instructions);
+    }
+    return instructions;
+  }
+
+  /**
+   * Returns the class index for the given build, starting to build it from the deploy jar if this
+   * is the first incremental compilation since the deploy jar was built.
+   */
+  private ListenableFuture<FastBuildClassIndex> getClassIndex(
+      Label label, BuildOutput buildOutput) {
+    return classIndices.compute(
+            label,
+            (unused, existing) ->
+                existing != null && existing.buildOutput == buildOutput
+                    ? existing
+                    : new ClassIndexHolder(
+                        buildOutput,
+                        ConcurrencyUtil.getAppExecutorService()
+                            .submit(() -> FastBuildClassIndex.fromJar(buildOutput.deployJar()))))
+        .classIndex;
+  }
+
+  /**
+   * Updates the class index with the output of the last compilation, then recompiles the direct
+   * dependents of any class whose ABI changed. Otherwise those dependents would only fail at
+   * runtime, or need a full blaze build of the deploy jar.
+   *
+   * <p>If the value of a compile-time constant changed, all sources are recompiled instead, since
+   * the classes it was inlined into can't be found from the class index.
+   */
+  private void recompileDependents(
+      BlazeContext context,
+      FastBuildCompiler compiler,
+      FastBuildState buildState,
+      BuildOutput buildOutput,
+      Writer writer,
+      ChangedSourceInfo changedSourceInfo,
+      ListenableFuture<FastBuildClassIndex> classIndexFuture,
+      long compileStartTime)
+      throws FastBuildException {
+    Stopwatch timer = Stopwatch.createStarted();
+    FastBuildClassIndex classIndex;
+    FastBuildClassIndex.Changes changes;
+    try {
+      classIndex = classIndexFuture.get();
+      changes =
+          classIndex.update(
+              getClassFilesWrittenSince(buildState.compilerOutputDirectory(), compileStartTime));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FastBuildException(e);
+    } catch (ExecutionException | IOException e) {
+      // fall back to only compiling the modified sources
+      logger.warn("Couldn't update the fast build class index", e);
+      return;
+    }
+
+    Set<File> dependents = new HashSet<>();
+    Set<String> annotationProcessorClassNames = new HashSet<>();
+    ImmutableSet.Builder<File> annotationProcessorClasspath = ImmutableSet.builder();
+    ArtifactLocationDecoder decoder =
+        projectDataManager.getBlazeProjectData().getArtifactLocationDecoder();
+    boolean recompileAll = !changes.constantsChanged.isEmpty();
+    List<File> candidates = new ArrayList<>();
+    if (recompileAll) {
+      candidates.addAll(changedSourceInfo.javaSourceToTarget.keySet());
+    } else {
+      Set<String> dependentSourcePaths =
+          classIndex.getSourcePaths(classIndex.getDependents(changes.abiChanged));
+      ListMultimap<String, File> sourcesByName =
+          dependentSourcePaths.isEmpty()
+              ? ImmutableListMultimap.of()
+              : Multimaps.index(changedSourceInfo.javaSourceToTarget.keySet(), File::getName);
+      for (String sourcePath : dependentSourcePaths) {
+        String suffix = File.separatorChar + sourcePath.replace('/', File.separatorChar);
+        String fileName = sourcePath.substring(sourcePath.lastIndexOf('/') + 1);
+        for (File source : sourcesByName.get(fileName)) {
+          if (source.getPath().endsWith(suffix)) {
+            candidates.add(source);
+          }
+        }
+      }
+    }
+    for (File source : candidates) {
+      if (changedSourceInfo.pathsToCompile.contains(source) || !source.exists()) {
+        continue;
+      }
+      dependents.add(source);
+      JavaInfo javaInfo = changedSourceInfo.javaSourceToTarget.get(source);
+      annotationProcessorClassNames.addAll(javaInfo.annotationProcessorClassNames());
+      for (ArtifactLocation artifactLocation : javaInfo.annotationProcessorClasspath()) {
+        annotationProcessorClasspath.add(decoder.decode(artifactLocation));
+      }
+    }
+    context.output(
+        FastBuildLogOutput.keyValue("abi_changed_classes", changes.abiChanged.toString()));
+    context.output(
+        FastBuildLogOutput.keyValue(
+            "constants_changed_classes", changes.constantsChanged.toString()));
+    context.output(
+        FastBuildLogOutput.keyValue("dependent_source_count", Integer.toString(dependents.size())));
+    if (dependents.isEmpty()) {
+      return;
+    }
+
+    context.output(
+        new StatusOutput(
+            recompileAll
+                ? String.format(
+                    "Recompiling all %d source files, since constants changed value in %s",
+                    dependents.size(), changes.constantsChanged)
+                : String.format(
+                    "Recompiling %d dependent source files of %d classes with changed signatures",
+                    dependents.size(), changes.abiChanged.size())));
+    long dependentsCompileStartTime = System.currentTimeMillis();
+    compiler.compile(
+        context,
+        createCompileInstructions(
+            buildState,
+            buildOutput,
+            writer,
+            dependents,
+            annotationProcessorClassNames,
+            annotationProcessorClasspath.build()));
+    try {
+      classIndex.update(
+          getClassFilesWrittenSince(
+              buildState.compilerOutputDirectory(), dependentsCompileStartTime));
+    } catch (IOException e) {
+      logger.warn("Couldn't update the fast build class index", e);
+    }
+    context.output(FastBuildLogOutput.milliseconds("recompile_dependents_time_ms", timer));
+  }
+
+  private static ImmutableList<File> getClassFilesWrittenSince(File directory, long startTime)
+      throws IOException {
+    // allow for file systems with a coarse last modified time
+    long threshold = startTime - LAST_MODIFIED_TIME_GRANULARITY_MS;
+    try (Stream<Path> files = Files.walk(directory.toPath())) {
+      return files
+          .map(Path::toFile)
+          .filter(f -> f.getName().endsWith(".class") && f.lastModified() >= threshold)
+          .collect(toImmutableList());
+    }
+  }
+
   private ChangedSourceInfo getPathsToCompile(
       BlazeContext context,
       Label label,
@@ -112,6 +312,7 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
     Set<String> annotationProcessorClassNames = new HashSet<>();
     // Use ImmutableSet.Builder because it will preserve the classpath order.
     ImmutableSet.Builder<File> annotationProcessorsClasspath = ImmutableSet.builder();
+    Map<File, JavaInfo> javaSourceToTarget = new HashMap<>();
     Set<Label> seenTargets = new HashSet<>();
     AtomicInteger affectedTargets = new AtomicInteger(0);
     recursivelyAddModifiedJavaSources(
@@ -120,6 +321,7 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
         label,
         seenTargets,
         sourceFiles,
+        javaSourceToTarget,
         annotationProcessorClassNames,
         annotationProcessorsClasspath,
         modifiedSinceBuild,
@@ -130,7 +332,10 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
     context.output(FastBuildLogOutput.keyValue("affected_targets", affectedTargets.toString()));
 
     return new ChangedSourceInfo(
-        sourceFiles, annotationProcessorClassNames, annotationProcessorsClasspath.build());
+        sourceFiles,
+        annotationProcessorClassNames,
+        annotationProcessorsClasspath.build(),
+        javaSourceToTarget);
   }
 
   private void recursivelyAddModifiedJavaSources(
@@ -139,6 +344,7 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
       Label label,
       Set<Label> seenTargets,
       Set<File> sourceFiles,
+      Map<File, JavaInfo> javaSourceToTarget,
       Set<String> annotationProcessorClassNames,
       ImmutableSet.Builder<File> annotationProcessorsClasspath,
       Set<File> modifiedSinceBuild,
@@ -159,9 +365,11 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
     boolean addedSources = false;
     for (ArtifactLocation sourceArtifact : javaInfo.sources()) {
       File sourceFile = artifactLocationDecoder.decode(sourceArtifact);
-      if (sourceFile.getName().endsWith(".java")
-          && modifiedSinceBuild.contains(sourceFile)
-          && sourceFile.exists()) {
+      if (!sourceFile.getName().endsWith(".java")) {
+        continue;
+      }
+      javaSourceToTarget.put(sourceFile, javaInfo);
+      if (modifiedSinceBuild.contains(sourceFile) && sourceFile.exists()) {
         sourceFiles.add(sourceFile);
         addedSources = true;
       }
@@ -185,6 +393,7 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
                     dep,
                     seenTargets,
                     sourceFiles,
+                    javaSourceToTarget,
                     annotationProcessorClassNames,
                     annotationProcessorsClasspath,
                     modifiedSinceBuild,
@@ -216,14 +425,28 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
     final Set<File> pathsToCompile;
     final Set<String> annotationProcessorClassNames;
     final Set<File> annotationProcessorClasspath;
+    /** All java sources in the target's transitive closure, and the targets they belong to. */
+    final Map<File, JavaInfo> javaSourceToTarget;
 
     private ChangedSourceInfo(
         Set<File> pathsToCompile,
         Set<String> annotationProcessorClassNames,
-        Set<File> annotationProcessorClasspath) {
+        Set<File> annotationProcessorClasspath,
+        Map<File, JavaInfo> javaSourceToTarget) {
       this.pathsToCompile = pathsToCompile;
       this.annotationProcessorClassNames = annotationProcessorClassNames;
       this.annotationProcessorClasspath = annotationProcessorClasspath;
+      this.javaSourceToTarget = javaSourceToTarget;
+    }
+  }
+
+  private static class ClassIndexHolder {
+    final BuildOutput buildOutput;
+    final ListenableFuture<FastBuildClassIndex> classIndex;
+
+    ClassIndexHolder(BuildOutput buildOutput, ListenableFuture<FastBuildClassIndex> classIndex) {
+      this.buildOutput = buildOutput;
+      this.classIndex = classIndex;
     }
   }
 }
@@ -39,6 +39,9 @@ interface FastBuildJavac {
   /** Returns an encoded version of CompilerOutput. Call {@link CompilerOutput#decode} to decode. */
   Object[] compile(List<String> args, Collection<File> sources);
 
+  /** Releases the files held open between compilations. */
+  void close();
+
   final class CompilerOutput {
     final boolean result;
     final List<DiagnosticLine> diagnostics;
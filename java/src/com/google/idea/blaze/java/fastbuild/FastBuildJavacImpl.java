@@ -25,8 +25,10 @@ import com.sun.tools.javac.util.JCDiagnostic;
 import com.sun.tools.javac.util.JavacMessages;
 import com.sun.tools.javac.util.Log;
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
@@ -48,13 +50,25 @@ import javax.tools.JavaFileObject;
  */
 public final class FastBuildJavacImpl implements FastBuildJavac {
 
+  /** Options whose values are lists of paths which are read through the file manager. */
+  private static final List<String> PATH_OPTIONS =
+      Arrays.asList("-cp", "-classpath", "-bootclasspath", "-processorpath");
+
+  private final JavacTool javacTool = JavacTool.create();
+
+  /**
+   * The file manager caches the opened classpath jars, so it's shared between compilations until
+   * one of the paths passed to javac changes (for example, when the deploy jar is rebuilt).
+   */
+  private JavacFileManager fileManager;
+
+  private List<String> fileManagerPathState;
+
   @Override
-  public Object[] compile(List<String> args, Collection<File> sources) {
+  public synchronized Object[] compile(List<String> args, Collection<File> sources) {
     Context context = new Context();
     DiagnosticsCollector collector = new DiagnosticsCollector(context);
-    JavacTool javacTool = JavacTool.create();
-    JavacFileManager fileManager =
-        javacTool.getStandardFileManager(collector, Locale.ENGLISH, StandardCharsets.UTF_8);
+    JavacFileManager fileManager = getFileManager(args);
     Iterable<? extends JavaFileObject> filesToCompile =
         fileManager.getJavaFileObjects(sources.toArray(new File[] {}));
     JavacTask task =
@@ -71,6 +85,53 @@ public final class FastBuildJavacImpl implements FastBuildJavac {
     return results.encode();
   }
 
+  @Override
+  public synchronized void close() {
+    closeFileManager();
+  }
+
+  private JavacFileManager getFileManager(List<String> args) {
+    List<String> pathState = getPathState(args);
+    if (fileManager != null && pathState.equals(fileManagerPathState)) {
+      return fileManager;
+    }
+    closeFileManager();
+    fileManager =
+        javacTool.getStandardFileManager(
+            /* diagnosticListener= */ null, Locale.ENGLISH, StandardCharsets.UTF_8);
+    fileManagerPathState = pathState;
+    return fileManager;
+  }
+
+  private void closeFileManager() {
+    if (fileManager == null) {
+      return;
+    }
+    try {
+      fileManager.close();
+    } catch (IOException e) {
+      // the old file manager is discarded either way
+    }
+    fileManager = null;
+    fileManagerPathState = null;
+  }
+
+  /** Returns the path options, along with the last modified time and size of each path. */
+  private static List<String> getPathState(List<String> args) {
+    List<String> state = new ArrayList<>();
+    for (int i = 0; i < args.size() - 1; i++) {
+      if (!PATH_OPTIONS.contains(args.get(i))) {
+        continue;
+      }
+      state.add(args.get(i));
+      for (String path : args.get(i + 1).split(File.pathSeparator)) {
+        File file = new File(path);
+        state.add(path + ':' + file.lastModified() + ':' + file.length());
+      }
+    }
+    return state;
+  }
+
   @Trusted
   private static final class DiagnosticsCollector implements DiagnosticListener<JavaFileObject> {
 
@@ -115,6 +115,7 @@ final class FastBuildServiceImpl implements FastBuildService, ProjectComponent {
   @Override
   public void resetBuild(Label label) {
     FastBuildState build = builds.remove(label);
+    incrementalCompiler.resetBuild(label);
     if (build != null) {
       FileUtil.delete(build.compilerOutputDirectory());
       changedFilesManager.resetBuild(label);
@@ -17,15 +17,21 @@ package com.google.idea.blaze.java.run.coverage;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.intellij.openapi.diagnostic.Logger;
-import gnu.trove.TIntIntHashMap;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 /** Blaze coverage data class. Parsed from LCOV-formatted blaze output. */
 class BlazeCoverageData {
@@ -33,16 +39,63 @@ class BlazeCoverageData {
   private static final Logger logger = Logger.getInstance(BlazeCoverageData.class);
 
   static BlazeCoverageData parse(InputStream inputStream) throws IOException {
-    return LcovParser.parse(inputStream);
+    return parse(inputStream, MoreExecutors.newDirectExecutorService());
+  }
+
+  /**
+   * Parses the LCOV report, splitting it into chunks of whole records which are parsed in parallel
+   * on the given executor.
+   */
+  static BlazeCoverageData parse(InputStream inputStream, ListeningExecutorService executor)
+      throws IOException {
+    return parse(inputStream, executor, LcovParser.CHUNK_SIZE);
+  }
+
+  @VisibleForTesting
+  static BlazeCoverageData parse(
+      InputStream inputStream, ListeningExecutorService executor, int chunkSize)
+      throws IOException {
+    return LcovParser.parse(inputStream, executor, chunkSize);
   }
 
   static class FileData {
     final String source;
-    final TIntIntHashMap lineHits;
+    // distinct line numbers, in ascending order
+    final int[] lines;
+    // the number of hits for each entry in 'lines'
+    final int[] hits;
 
-    private FileData(String source, TIntIntHashMap lineHits) {
+    private FileData(String source, int[] lines, int[] hits) {
       this.source = source;
-      this.lineHits = lineHits;
+      this.lines = lines;
+      this.hits = hits;
+    }
+
+    int maxLineNumber() {
+      return lines[lines.length - 1];
+    }
+
+    /** Combines the hits of two records for the same source file. */
+    private static FileData merge(FileData first, FileData second) {
+      int[] lines = new int[first.lines.length + second.lines.length];
+      int[] hits = new int[lines.length];
+      int i = 0;
+      int j = 0;
+      int size = 0;
+      while (i < first.lines.length || j < second.lines.length) {
+        if (j == second.lines.length
+            || (i < first.lines.length && first.lines[i] < second.lines[j])) {
+          lines[size] = first.lines[i];
+          hits[size++] = first.hits[i++];
+        } else if (i == first.lines.length || second.lines[j] < first.lines[i]) {
+          lines[size] = second.lines[j];
+          hits[size++] = second.hits[j++];
+        } else {
+          lines[size] = first.lines[i];
+          hits[size++] = saturatedAdd(first.hits[i++], second.hits[j++]);
+        }
+      }
+      return new FileData(first.source, Arrays.copyOf(lines, size), Arrays.copyOf(hits, size));
     }
   }
 
@@ -52,48 +105,209 @@ class BlazeCoverageData {
     this.perFileData = perFileData;
   }
 
+  private static int saturatedAdd(int a, int b) {
+    long sum = (long) a + b;
+    return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+  }
+
+  /**
+   * A byte-level LCOV parser. Coverage reports for large test suites can be several GB, so the
+   * report is read in chunks split at record boundaries, and each chunk is parsed independently.
+   */
   private static class LcovParser {
     // there are other valid lcov tracefile prefixes, but they're all ignored here
-    static final String SF = "SF:";
-    static final String DA = "DA:";
-    static final String END_OF_RECORD = "end_of_record";
-
-    private static BlazeCoverageData parse(InputStream inputStream) throws IOException {
-      Map<String, FileData> map = new HashMap<>();
-      BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, UTF_8));
-      String line;
-      while ((line = reader.readLine()) != null) {
-        if (line.startsWith(SF)) {
-          String source = line.substring(SF.length());
-          TIntIntHashMap hits = parseHits(reader);
-          if (!hits.isEmpty()) {
-            map.put(source, new FileData(source, hits));
-          }
+    static final byte[] SF = "SF:".getBytes(UTF_8);
+    static final byte[] DA = "DA:".getBytes(UTF_8);
+    static final byte[] END_OF_RECORD = "end_of_record".getBytes(UTF_8);
+
+    static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    // bounds the amount of the report held in memory at once
+    static final int MAX_PENDING_CHUNKS = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static BlazeCoverageData parse(
+        InputStream inputStream, ListeningExecutorService executor, int chunkSize)
+        throws IOException {
+      List<ListenableFuture<Map<String, FileData>>> chunks = new ArrayList<>();
+      byte[] buffer = new byte[chunkSize];
+      int length = 0;
+      while (true) {
+        int read = inputStream.read(buffer, length, buffer.length - length);
+        if (read == -1) {
+          break;
+        }
+        length += read;
+        if (length < buffer.length) {
+          continue;
+        }
+        int split = lastRecordStart(buffer, length);
+        if (split <= 0) {
+          // a single record larger than the buffer
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          continue;
+        }
+        byte[] chunk = Arrays.copyOf(buffer, split);
+        chunks.add(executor.submit(() -> parseChunk(chunk, chunk.length)));
+        System.arraycopy(buffer, split, buffer, 0, length - split);
+        length -= split;
+        if (chunks.size() > MAX_PENDING_CHUNKS) {
+          getChunk(chunks.get(chunks.size() - MAX_PENDING_CHUNKS - 1));
         }
       }
+      if (length > 0) {
+        byte[] chunk = buffer;
+        int chunkLength = length;
+        chunks.add(executor.submit(() -> parseChunk(chunk, chunkLength)));
+      }
+
+      Map<String, FileData> map = new LinkedHashMap<>();
+      for (ListenableFuture<Map<String, FileData>> chunk : chunks) {
+        getChunk(chunk).forEach((source, data) -> map.merge(source, data, FileData::merge));
+      }
       return new BlazeCoverageData(ImmutableMap.copyOf(map));
     }
 
-    private static TIntIntHashMap parseHits(BufferedReader reader) throws IOException {
-      TIntIntHashMap hits = new TIntIntHashMap();
-      String line;
-      while ((line = reader.readLine()) != null) {
-        if (line.startsWith(END_OF_RECORD)) {
-          return hits;
+    private static Map<String, FileData> getChunk(ListenableFuture<Map<String, FileData>> chunk)
+        throws IOException {
+      try {
+        return chunk.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        chunk.cancel(true);
+        throw new InterruptedIOException("Interrupted while parsing LCOV coverage data");
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      }
+    }
+
+    /** Returns the offset of the last line starting with 'SF:', or -1 if there is none. */
+    private static int lastRecordStart(byte[] data, int length) {
+      for (int i = length - SF.length; i > 0; i--) {
+        if (data[i - 1] == '\n' && startsWith(data, i, length, SF)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private static Map<String, FileData> parseChunk(byte[] data, int length) {
+      Map<String, FileData> map = new LinkedHashMap<>();
+      String source = null;
+      HitsBuilder hits = new HitsBuilder();
+      int pos = 0;
+      while (pos < length) {
+        int eol = pos;
+        while (eol < length && data[eol] != '\n') {
+          eol++;
+        }
+        int end = eol > pos && data[eol - 1] == '\r' ? eol - 1 : eol;
+        if (startsWith(data, pos, end, SF)) {
+          addRecord(map, source, hits);
+          source = new String(data, pos + SF.length, end - pos - SF.length, UTF_8);
+        } else if (source != null && startsWith(data, pos, end, DA)) {
+          parseHits(data, pos + DA.length, end, hits);
+        } else if (startsWith(data, pos, end, END_OF_RECORD)) {
+          addRecord(map, source, hits);
+          source = null;
+        }
+        pos = eol + 1;
+      }
+      addRecord(map, source, hits);
+      return map;
+    }
+
+    private static void addRecord(Map<String, FileData> map, String source, HitsBuilder hits) {
+      if (source != null && !hits.isEmpty()) {
+        map.merge(source, hits.build(source), FileData::merge);
+      }
+      hits.clear();
+    }
+
+    /** Parses 'line,hits[,checksum]', the remainder of a 'DA:' line. */
+    private static void parseHits(byte[] data, int start, int end, HitsBuilder hits) {
+      int pos = start;
+      long line = 0;
+      while (pos < end && isDigit(data[pos]) && line <= Integer.MAX_VALUE) {
+        line = line * 10 + (data[pos++] - '0');
+      }
+      if (pos == start || pos == end || data[pos] != ',' || line > Integer.MAX_VALUE) {
+        logger.warn("Cannot parse LCOV line: DA:" + new String(data, start, end - start, UTF_8));
+        return;
+      }
+      int hitsStart = ++pos;
+      long count = 0;
+      while (pos < end && isDigit(data[pos])) {
+        count = Math.min(count * 10 + (data[pos++] - '0'), Integer.MAX_VALUE);
+      }
+      if (pos == hitsStart || (pos < end && data[pos] != ',')) {
+        logger.warn("Cannot parse LCOV line: DA:" + new String(data, start, end - start, UTF_8));
+        return;
+      }
+      hits.add((int) line, (int) count);
+    }
+
+    private static boolean isDigit(byte b) {
+      return b >= '0' && b <= '9';
+    }
+
+    private static boolean startsWith(byte[] data, int start, int end, byte[] prefix) {
+      if (end - start < prefix.length) {
+        return false;
+      }
+      for (int i = 0; i < prefix.length; i++) {
+        if (data[start + i] != prefix[i]) {
+          return false;
         }
-        if (line.startsWith(DA)) {
-          // DA:line,hits
-          int comma = line.indexOf(',');
-          try {
-            hits.put(
-                Integer.parseInt(line.substring(DA.length(), comma)),
-                Integer.parseInt(line.substring(comma + 1)));
-          } catch (NumberFormatException e) {
-            logger.warn("Cannot parse LCOV line: " + line, e);
-          }
+      }
+      return true;
+    }
+  }
+
+  /** Accumulates the hits for a single record, as (line, hits) pairs packed into longs. */
+  private static class HitsBuilder {
+    private long[] entries = new long[64];
+    private int size = 0;
+    private boolean sorted = true;
+
+    void add(int line, int hits) {
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2);
+      }
+      long entry = ((long) line << 32) | hits;
+      if (size > 0 && entry < entries[size - 1]) {
+        sorted = false;
+      }
+      entries[size++] = entry;
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    void clear() {
+      size = 0;
+      sorted = true;
+    }
+
+    FileData build(String source) {
+      if (!sorted) {
+        Arrays.sort(entries, 0, size);
+      }
+      int[] lines = new int[size];
+      int[] hits = new int[size];
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        int line = (int) (entries[i] >>> 32);
+        int lineHits = (int) entries[i];
+        if (count > 0 && lines[count - 1] == line) {
+          hits[count - 1] = saturatedAdd(hits[count - 1], lineHits);
+        } else {
+          lines[count] = line;
+          hits[count++] = lineHits;
         }
       }
-      return hits;
+      return count == size
+          ? new FileData(source, lines, hits)
+          : new FileData(source, Arrays.copyOf(lines, count), Arrays.copyOf(hits, count));
     }
   }
 }
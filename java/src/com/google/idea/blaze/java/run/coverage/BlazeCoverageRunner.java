@@ -16,7 +16,9 @@
 package com.google.idea.blaze.java.run.coverage;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
@@ -53,7 +55,10 @@ public class BlazeCoverageRunner extends CoverageRunner {
       return null;
     }
     try (FileInputStream stream = new FileInputStream(sessionDataFile)) {
-      return parseCoverage(blazeProjectData.getWorkspacePathResolver(), stream);
+      return parseCoverage(
+          blazeProjectData.getWorkspacePathResolver(),
+          stream,
+          BlazeExecutor.getInstance().getExecutor());
     } catch (IOException e) {
       logger.warn(e);
     }
@@ -63,8 +68,14 @@ public class BlazeCoverageRunner extends CoverageRunner {
   @VisibleForTesting
   static ProjectData parseCoverage(WorkspacePathResolver pathResolver, InputStream stream)
       throws IOException {
+    return parseCoverage(pathResolver, stream, MoreExecutors.newDirectExecutorService());
+  }
+
+  private static ProjectData parseCoverage(
+      WorkspacePathResolver pathResolver, InputStream stream, ListeningExecutorService executor)
+      throws IOException {
     ProjectData data = new ProjectData();
-    BlazeCoverageData blazeData = BlazeCoverageData.parse(stream);
+    BlazeCoverageData blazeData = BlazeCoverageData.parse(stream, executor);
     for (String filePath : blazeData.perFileData.keySet()) {
       File file = pathResolver.resolveToFile(filePath);
       ClassData classData = data.getOrCreateClassData(file.getPath());
@@ -74,21 +85,16 @@ public class BlazeCoverageRunner extends CoverageRunner {
   }
 
   private static LineData[] fromFileData(FileData fileData) {
-    LineData[] lines = new LineData[maxLineNumber(fileData) + 1];
-    fileData.lineHits.forEachEntry(
-        (line, hits) -> {
-          LineData newLine = new LineData(line, null);
-          newLine.setHits(hits);
-          lines[line] = newLine;
-          return true;
-        });
+    LineData[] lines = new LineData[fileData.maxLineNumber() + 1];
+    for (int i = 0; i < fileData.lines.length; i++) {
+      int line = fileData.lines[i];
+      LineData newLine = new LineData(line, null);
+      newLine.setHits(fileData.hits[i]);
+      lines[line] = newLine;
+    }
     return lines;
   }
 
-  private static int maxLineNumber(FileData fileData) {
-    return Ints.max(fileData.lineHits.keys());
-  }
-
   @Override
   public String getPresentableName() {
     return Blaze.defaultBuildSystemName();
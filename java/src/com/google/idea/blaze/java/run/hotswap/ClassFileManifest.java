@@ -16,8 +16,10 @@
 package com.google.idea.blaze.java.run.hotswap;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
@@ -29,15 +31,15 @@ import com.intellij.execution.RunCanceledByUserException;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
 import javax.annotation.Nullable;
 
 /** A manifest of .class file hashes for jars needed at runtime. Used for HotSwapping. */
@@ -54,6 +56,13 @@ public class ClassFileManifest {
     }
   }
 
+  /**
+   * Jar manifests shared between debug sessions, so a new session only needs to read the jars which
+   * changed since the last one. Soft values, as these can be large.
+   */
+  private static final Cache<File, JarManifest> jarManifestCache =
+      CacheBuilder.newBuilder().softValues().build();
+
   // jar file timestamps
   private final ImmutableMap<File, Long> jarFileState;
   // per-jar manifest of .class file hashes
@@ -74,6 +83,10 @@ public class ClassFileManifest {
       if (old == entry.getValue()) {
         continue;
       }
+      if (old == null) {
+        // a jar which wasn't on the runtime classpath can't have loaded classes
+        continue;
+      }
       ImmutableList<String> changedClasses = JarManifest.diff(old, entry.getValue());
       if (!changedClasses.isEmpty()) {
         map.putAll(entry.getKey(), changedClasses);
@@ -87,21 +100,44 @@ public class ClassFileManifest {
       Collection<File> jars, @Nullable ClassFileManifest previousManifest)
       throws ExecutionException {
     try {
+      Stopwatch timer = Stopwatch.createStarted();
       FilesDiff<File, File> diff =
           FilesDiff.diffFileTimestamps(
               previousManifest != null ? previousManifest.jarFileState : null, jars);
+      long diffTimeMs = timer.elapsed(TimeUnit.MILLISECONDS);
 
       ImmutableMap.Builder<File, JarManifest> jarManifests = ImmutableMap.builder();
-      jars.forEach(
-          f -> {
-            if (!diff.getUpdatedFiles().contains(f) && previousManifest != null) {
-              jarManifests.put(f, previousManifest.jarManifests.get(f));
-            }
-          });
-      buildJarManifests(diff.getUpdatedFiles()).stream()
+      List<File> jarsToRead = new ArrayList<>();
+      for (File jar : jars) {
+        JarManifest manifest = null;
+        if (!diff.getUpdatedFiles().contains(jar) && previousManifest != null) {
+          manifest = previousManifest.jarManifests.get(jar);
+        }
+        if (manifest == null) {
+          manifest = getCachedManifest(jar, diff.getNewFileState().get(jar));
+        }
+        if (manifest != null) {
+          jarManifests.put(jar, manifest);
+        } else {
+          jarsToRead.add(jar);
+        }
+      }
+      buildJarManifests(jarsToRead, diff.getNewFileState()).stream()
           .filter(Objects::nonNull)
           .forEach(m -> jarManifests.put(m.jar, m));
-      return new ClassFileManifest(diff.getNewFileState(), jarManifests.build());
+      ClassFileManifest manifest =
+          new ClassFileManifest(diff.getNewFileState(), jarManifests.build());
+      logger.info(
+          String.format(
+              "Built .class file manifest for %d jars in %d ms: "
+                  + "checked timestamps in %d ms, read %d of %d updated jars in %d ms",
+              jars.size(),
+              timer.elapsed(TimeUnit.MILLISECONDS),
+              diffTimeMs,
+              jarsToRead.size(),
+              diff.getUpdatedFiles().size(),
+              timer.elapsed(TimeUnit.MILLISECONDS) - diffTimeMs));
+      return manifest;
     } catch (InterruptedException e) {
       throw new RunCanceledByUserException();
     } catch (java.util.concurrent.ExecutionException e) {
@@ -109,39 +145,66 @@ public class ClassFileManifest {
     }
   }
 
-  private static List<JarManifest> buildJarManifests(Collection<File> jars)
+  private static List<JarManifest> buildJarManifests(
+      Collection<File> jars, ImmutableMap<File, Long> jarFileState)
       throws java.util.concurrent.ExecutionException, InterruptedException {
     BlazeExecutor executor = BlazeExecutor.getInstance();
     return Futures.allAsList(
             jars.stream()
-                .map(f -> executor.submit(() -> JarManifest.build(f)))
+                .map(f -> executor.submit(() -> JarManifest.build(f, jarFileState.get(f))))
                 .collect(Collectors.toList()))
         .get();
   }
 
+  /**
+   * Returns the manifest built for the given jar by an earlier debug session, if the jar hasn't
+   * been modified since.
+   */
+  @Nullable
+  private static JarManifest getCachedManifest(File jar, @Nullable Long timestamp) {
+    JarManifest manifest = jarManifestCache.getIfPresent(jar);
+    return manifest != null && timestamp != null && manifest.timestamp == timestamp
+        ? manifest
+        : null;
+  }
+
   /** .class file manifest for a single jar. */
   private static class JarManifest {
     private final File jar;
+    private final long timestamp;
+    // the CRC-32 of each entry in the low 32 bits, and its uncompressed size in the high 32 bits
     private final ImmutableMap<String, Long> nameToHash;
 
+    /**
+     * Reads the .class file hashes from the jar's central directory, without reading the entries
+     * themselves.
+     */
     @Nullable
-    static JarManifest build(File file) {
+    static JarManifest build(File file, @Nullable Long timestamp) {
+      if (timestamp == null) {
+        return null;
+      }
       try {
-        JarFile jar = new JarFile(file);
-        return new JarManifest(
+        Map<String, Long> nameToHash = new HashMap<>();
+        ZipCentralDirectoryReader.read(
             file,
-            jar.stream()
-                .filter(e -> e.getName().endsWith(".class"))
-                .collect(
-                    toImmutableMap(JarEntry::getName, ZipEntry::getCrc, (first, second) -> first)));
+            (name, crc, size) -> {
+              if (name.endsWith(".class")) {
+                nameToHash.putIfAbsent(name, (size << 32) | (crc & 0xFFFFFFFFL));
+              }
+            });
+        JarManifest manifest = new JarManifest(file, timestamp, ImmutableMap.copyOf(nameToHash));
+        jarManifestCache.put(file, manifest);
+        return manifest;
       } catch (IOException e) {
         logger.warn("Error reading jar file: " + file, e);
         return null;
       }
     }
 
-    private JarManifest(File jar, ImmutableMap<String, Long> nameToHash) {
+    private JarManifest(File jar, long timestamp, ImmutableMap<String, Long> nameToHash) {
       this.jar = jar;
+      this.timestamp = timestamp;
       this.nameToHash = nameToHash;
     }
 
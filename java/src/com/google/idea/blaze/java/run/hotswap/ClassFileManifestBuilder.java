@@ -17,6 +17,7 @@ package com.google.idea.blaze.java.run.hotswap;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.idea.blaze.base.command.BlazeCommandName;
@@ -37,16 +38,20 @@ import com.intellij.debugger.impl.HotSwapProgress;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.RunCanceledByUserException;
 import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 import java.io.File;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
 
 /** Builds a .class file manifest to support hotswapping. */
 public class ClassFileManifestBuilder {
 
+  private static final Logger logger = Logger.getInstance(ClassFileManifestBuilder.class);
+
   /** Used to associate data with an {@link ExecutionEnvironment}. */
   private static final Key<AtomicReference<ClassFileManifest>> MANIFEST_KEY =
       Key.create("blaze.debug.class.manifest");
@@ -95,6 +100,7 @@ public class ClassFileManifestBuilder {
     }
 
     SaveUtil.saveAllFiles();
+    Stopwatch timer = Stopwatch.createStarted();
     try (BuildResultHelper buildResultHelper = BuildResultHelperProvider.create(project)) {
 
       ListenableFuture<BuildResult> buildOperation =
@@ -122,6 +128,7 @@ public class ClassFileManifestBuilder {
       } catch (java.util.concurrent.ExecutionException e) {
         throw new ExecutionException(e);
       }
+      long buildTimeMs = timer.elapsed(TimeUnit.MILLISECONDS);
       ImmutableList<File> jars;
       try {
         jars =
@@ -134,12 +141,29 @@ public class ClassFileManifestBuilder {
       } catch (GetArtifactsException e) {
         throw new ExecutionException("Failed to get debug binary: " + e.getMessage());
       }
+      long collectTimeMs = timer.elapsed(TimeUnit.MILLISECONDS) - buildTimeMs;
+      if (progress != null) {
+        progress.setText("Comparing .class files");
+      }
       ClassFileManifest oldManifest = getManifest(env);
       ClassFileManifest newManifest = ClassFileManifest.build(jars, oldManifest);
+      long manifestTimeMs = timer.elapsed(TimeUnit.MILLISECONDS) - buildTimeMs - collectTimeMs;
       env.getCopyableUserData(MANIFEST_KEY).set(newManifest);
-      return oldManifest != null
-          ? ClassFileManifest.modifiedClasses(oldManifest, newManifest)
-          : null;
+      ClassFileManifest.Diff diff =
+          oldManifest != null ? ClassFileManifest.modifiedClasses(oldManifest, newManifest) : null;
+      logger.info(
+          String.format(
+              "HotSwap manifest: blaze build %d ms, collecting %d jars %d ms, "
+                  + "building manifest %d ms, diffing %d ms",
+              buildTimeMs,
+              jars.size(),
+              collectTimeMs,
+              manifestTimeMs,
+              timer.elapsed(TimeUnit.MILLISECONDS)
+                  - buildTimeMs
+                  - collectTimeMs
+                  - manifestTimeMs));
+      return diff;
     }
   }
 }
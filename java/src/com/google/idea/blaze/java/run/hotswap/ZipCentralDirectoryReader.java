@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.run.hotswap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entries of a zip file from its central directory, without reading or inflating any of
+ * the entry contents. Only the central directory is memory-mapped.
+ */
+final class ZipCentralDirectoryReader {
+
+  /** Receives the central directory entries. */
+  @FunctionalInterface
+  interface EntryConsumer {
+    void accept(String name, int crc, long uncompressedSize);
+  }
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int MAX_TAIL_SIZE =
+      ZIP64_LOCATOR_SIZE + END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE;
+
+  private ZipCentralDirectoryReader() {}
+
+  /** Calls the consumer with each entry in the zip file's central directory. */
+  static void read(File zip, EntryConsumer consumer) throws IOException {
+    try (FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      // the end of central directory record, preceded by the zip64 locator if there is one
+      int tailSize = (int) Math.min(fileSize, MAX_TAIL_SIZE);
+      ByteBuffer tail = readFully(channel, fileSize - tailSize, tailSize);
+      int eocd = findEndOfCentralDirectory(tail);
+      if (eocd == -1) {
+        throw new ZipException("Couldn't find the zip end of central directory record: " + zip);
+      }
+      long entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+      long directorySize = tail.getInt(eocd + 12) & ZIP64_MAGIC;
+      long directoryOffset = tail.getInt(eocd + 16) & ZIP64_MAGIC;
+
+      if (entryCount == 0xFFFF || directorySize == ZIP64_MAGIC || directoryOffset == ZIP64_MAGIC) {
+        int locator = eocd - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+          long zip64Offset = tail.getLong(locator + 8);
+          ByteBuffer zip64 = readFully(channel, zip64Offset, ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+          if (zip64.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+            throw new ZipException("Invalid zip64 end of central directory record: " + zip);
+          }
+          entryCount = zip64.getLong(32);
+          directorySize = zip64.getLong(40);
+          directoryOffset = zip64.getLong(48);
+        }
+      }
+      if (directoryOffset + directorySize > fileSize || directorySize > Integer.MAX_VALUE) {
+        throw new ZipException("Invalid zip central directory: " + zip);
+      }
+
+      MappedByteBuffer directory = channel.map(MapMode.READ_ONLY, directoryOffset, directorySize);
+      directory.order(ByteOrder.LITTLE_ENDIAN);
+      readEntries(zip, directory, entryCount, consumer);
+    }
+  }
+
+  private static void readEntries(
+      File zip, ByteBuffer directory, long entryCount, EntryConsumer consumer) throws IOException {
+    int position = 0;
+    byte[] nameBuffer = new byte[256];
+    for (long i = 0; i < entryCount; i++) {
+      if (position + CENTRAL_HEADER_SIZE > directory.limit()
+          || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid zip central directory header: " + zip);
+      }
+      int crc = directory.getInt(position + 16);
+      long uncompressedSize = directory.getInt(position + 24) & ZIP64_MAGIC;
+      int nameLength = directory.getShort(position + 28) & 0xFFFF;
+      int extraLength = directory.getShort(position + 30) & 0xFFFF;
+      int commentLength = directory.getShort(position + 32) & 0xFFFF;
+      int nameStart = position + CENTRAL_HEADER_SIZE;
+      int extraStart = nameStart + nameLength;
+      position = extraStart + extraLength + commentLength;
+      if (position > directory.limit()) {
+        throw new ZipException("Invalid zip central directory header: " + zip);
+      }
+
+      if (nameBuffer.length < nameLength) {
+        nameBuffer = new byte[nameLength];
+      }
+      for (int j = 0; j < nameLength; j++) {
+        nameBuffer[j] = directory.get(nameStart + j);
+      }
+      String name = new String(nameBuffer, 0, nameLength, UTF_8);
+
+      if (uncompressedSize == ZIP64_MAGIC) {
+        uncompressedSize = readZip64UncompressedSize(directory, extraStart, extraLength);
+      }
+      consumer.accept(name, crc, uncompressedSize);
+    }
+  }
+
+  /** The zip64 extra field lists the uncompressed size first, if it's present. */
+  private static long readZip64UncompressedSize(ByteBuffer directory, int start, int length) {
+    int position = start;
+    while (position + 4 <= start + length) {
+      int id = directory.getShort(position) & 0xFFFF;
+      int size = directory.getShort(position + 2) & 0xFFFF;
+      if (id == ZIP64_EXTRA_FIELD_ID && size >= 8) {
+        return directory.getLong(position + 4);
+      }
+      position += 4 + size;
+    }
+    return ZIP64_MAGIC;
+  }
+
+  private static int findEndOfCentralDirectory(ByteBuffer tail) {
+    for (int i = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+          && i + END_OF_CENTRAL_DIRECTORY_SIZE + (tail.getShort(i + 20) & 0xFFFF)
+              == tail.limit()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int size)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new ZipException("Unexpected end of zip file");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
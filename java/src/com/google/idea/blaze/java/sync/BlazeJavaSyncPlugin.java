@@ -17,6 +17,7 @@ package com.google.idea.blaze.java.sync;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.command.info.BlazeInfo;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
@@ -108,6 +109,7 @@ public class BlazeJavaSyncPlugin implements BlazeSyncPlugin {
       WorkspaceRoot workspaceRoot,
       ProjectViewSet projectViewSet,
       WorkspaceLanguageSettings workspaceLanguageSettings,
+      BlazeInfo blazeInfo,
       BlazeVersionData blazeVersionData,
       @Nullable WorkingSet workingSet,
       ArtifactLocationDecoder artifactLocationDecoder,
@@ -149,12 +151,14 @@ public class BlazeJavaSyncPlugin implements BlazeSyncPlugin {
             javaWorkingSet,
             artifactLocationDecoder,
             previousSyncState);
+    boolean reusePreviousResult = syncMode != SyncMode.FULL && previousSyncState != null;
     BlazeJavaImportResult importResult =
         Scope.push(
             context,
             (childContext) -> {
               childContext.push(new TimingScope("JavaWorkspaceImporter", EventType.Other));
-              return blazeJavaWorkspaceImporter.importWorkspace(childContext);
+              return blazeJavaWorkspaceImporter.importWorkspace(
+                  childContext, syncStateBuilder, reusePreviousResult);
             });
     Glob.GlobSet excludedLibraries =
         new Glob.GlobSet(
@@ -15,8 +15,11 @@
  */
 package com.google.idea.blaze.java.sync.importer;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.stream.Collectors.toList;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -41,6 +44,7 @@ import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.PrintOutput;
 import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.settings.BuildSystem;
+import com.google.idea.blaze.base.sync.PreviousImportCache;
 import com.google.idea.blaze.base.sync.projectview.ImportRoots;
 import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
@@ -55,10 +59,12 @@ import com.google.idea.blaze.java.sync.model.BlazeJavaImportResult;
 import com.google.idea.blaze.java.sync.source.SourceArtifact;
 import com.google.idea.blaze.java.sync.source.SourceDirectoryCalculator;
 import com.google.idea.blaze.java.sync.workingset.JavaWorkingSet;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.project.Project;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +73,14 @@ import javax.annotation.Nullable;
 
 /** Builds a BlazeWorkspace. */
 public final class BlazeJavaWorkspaceImporter {
+  @VisibleForTesting
+  static final BoolExperiment incrementalImportEnabled =
+      new BoolExperiment("blaze.java.incremental.import", true);
+
+  /** The per-target data computed by the last import for a project. */
+  private static final PreviousImportCache<PreviousImport> previousImportCache =
+      new PreviousImportCache<>("blaze.java.previous.import", "Java import data");
+
   private final Project project;
   private final WorkspaceRoot workspaceRoot;
   private final BuildSystem buildSystem;
@@ -81,6 +95,8 @@ public final class BlazeJavaWorkspaceImporter {
   private final List<BlazeJavaSyncAugmenter> augmenters;
   private final ProjectViewSet projectViewSet;
   @Nullable private final SyncState oldSyncState;
+  // the previous import's per-target data, if it can be reused by the current import
+  @Nullable private PreviousImport previousImport;
 
   public BlazeJavaWorkspaceImporter(
       Project project,
@@ -109,10 +125,59 @@ public final class BlazeJavaWorkspaceImporter {
   }
 
   public BlazeJavaImportResult importWorkspace(BlazeContext context) {
+    return importWorkspace(
+        context, /* syncStateBuilder= */ null, /* reusePreviousResult= */ false);
+  }
+
+  public BlazeJavaImportResult importWorkspace(
+      BlazeContext context, @Nullable SyncState.Builder syncStateBuilder) {
+    return importWorkspace(context, syncStateBuilder, /* reusePreviousResult= */ false);
+  }
+
+  /**
+   * Imports the workspace. If a sync state builder is provided, state which can be reused by
+   * subsequent syncs is stored in it.
+   *
+   * @param reusePreviousResult if true, the per-target data computed by this project's previous
+   *     import is reused for targets whose {@link TargetIdeInfo}, sources and jdeps are unchanged.
+   *     The result is identical to a full import.
+   */
+  public BlazeJavaImportResult importWorkspace(
+      BlazeContext context,
+      @Nullable SyncState.Builder syncStateBuilder,
+      boolean reusePreviousResult) {
+    ImmutableList<Object> importSettings =
+        PreviousImportCache.getImportSettings(
+            workspaceRoot,
+            buildSystem,
+            projectViewSet,
+            workspaceLanguageSettings,
+            ImmutableList.copyOf(augmenters));
+    previousImport =
+        previousImportCache.get(
+            project, reusePreviousResult && incrementalImportEnabled.getValue(), importSettings);
+    PreviousImport.Builder nextImport = new PreviousImport.Builder(targetMap);
+
     WorkspaceBuilder workspaceBuilder = new WorkspaceBuilder();
+    int reusedSourceTargets = 0;
     for (TargetIdeInfo target : sourceFilter.sourceTargets) {
-      addTargetAsSource(
-          workspaceBuilder, target, sourceFilter.targetToJavaSources.get(target.getKey()));
+      if (target.getJavaIdeInfo() == null) {
+        continue;
+      }
+      Collection<ArtifactLocation> javaSources =
+          sourceFilter.targetToJavaSources.get(target.getKey());
+      List<String> jdeps = jdepsMap.getDependenciesForTarget(target.getKey());
+      SourceTargetData data =
+          previousImport != null
+              ? previousImport.getSourceTarget(target, javaSources, jdeps)
+              : null;
+      if (data != null) {
+        reusedSourceTargets++;
+      } else {
+        data = computeSourceTargetData(target, javaSources, jdeps);
+      }
+      nextImport.sourceTargets.put(target.getKey(), data);
+      addTargetAsSource(workspaceBuilder, target, data);
     }
 
     SourceDirectoryCalculator sourceDirectoryCalculator = new SourceDirectoryCalculator();
@@ -124,7 +189,9 @@ public final class BlazeJavaWorkspaceImporter {
             artifactLocationDecoder,
             importRoots,
             workspaceBuilder.sourceArtifacts,
-            workspaceBuilder.javaPackageManifests);
+            workspaceBuilder.javaPackageManifests,
+            oldSyncState,
+            syncStateBuilder);
 
     int totalContentEntryCount = 0;
     for (BlazeContentEntry contentEntry : contentEntries) {
@@ -134,7 +201,19 @@ public final class BlazeJavaWorkspaceImporter {
 
     BlazeJavaImportResult.Builder importResultBuilder = BlazeJavaImportResult.builder();
     ImmutableMap<LibraryKey, BlazeJarLibrary> libraries =
-        buildLibraries(context, workspaceBuilder, sourceFilter.libraryTargets, importResultBuilder);
+        buildLibraries(
+            context,
+            workspaceBuilder,
+            sourceFilter.libraryTargets,
+            importResultBuilder,
+            nextImport);
+
+    if (previousImport != null) {
+      context.output(
+          previousImportCache.reuseSummary(reusedSourceTargets, nextImport.sourceTargets.size()));
+    }
+    previousImportCache.put(project, importSettings, nextImport.build());
+    previousImport = null;
 
     duplicateSourceDetector.reportDuplicates(context);
 
@@ -153,7 +232,8 @@ public final class BlazeJavaWorkspaceImporter {
       BlazeContext context,
       WorkspaceBuilder workspaceBuilder,
       List<TargetIdeInfo> libraryTargets,
-      BlazeJavaImportResult.Builder importResultBuilder) {
+      BlazeJavaImportResult.Builder importResultBuilder,
+      PreviousImport.Builder nextImport) {
     // Build library maps
     Multimap<TargetKey, BlazeJarLibrary> targetKeyToLibrary = ArrayListMultimap.create();
     Map<String, BlazeJarLibrary> jdepsPathToLibrary = Maps.newHashMap();
@@ -172,10 +252,15 @@ public final class BlazeJavaWorkspaceImporter {
       if (javaIdeInfo == null) {
         continue;
       }
-      List<LibraryArtifact> allJars = Lists.newArrayList();
-      allJars.addAll(javaIdeInfo.getJars());
-      Collection<BlazeJarLibrary> libraries =
-          allJars.stream().map(jar -> new BlazeJarLibrary(jar, target.getKey())).collect(toList());
+      ImmutableList<BlazeJarLibrary> libraries =
+          previousImport != null ? previousImport.getLibraryTarget(target) : null;
+      if (libraries == null) {
+        libraries =
+            javaIdeInfo.getJars().stream()
+                .map(jar -> new BlazeJarLibrary(jar, target.getKey()))
+                .collect(toImmutableList());
+      }
+      nextImport.libraryTargets.put(target.getKey(), libraries);
 
       targetKeyToLibrary.putAll(target.getKey(), libraries);
       for (BlazeJarLibrary library : libraries) {
@@ -194,7 +279,12 @@ public final class BlazeJavaWorkspaceImporter {
 
     // Collect jars from jdep references
     for (String jdepsPath : workspaceBuilder.jdeps) {
-      ArtifactLocation artifact = ExecutionPathHelper.parse(workspaceRoot, buildSystem, jdepsPath);
+      ArtifactLocation artifact =
+          previousImport != null ? previousImport.jdepsArtifacts.get(jdepsPath) : null;
+      if (artifact == null) {
+        artifact = ExecutionPathHelper.parse(workspaceRoot, buildSystem, jdepsPath);
+      }
+      nextImport.jdepsArtifacts.put(jdepsPath, artifact);
       if (sourceFilter.jdepsPathsForExcludedJars.contains(artifact.getRelativePath())) {
         continue;
       }
@@ -243,22 +333,16 @@ public final class BlazeJavaWorkspaceImporter {
     }
   }
 
+  /** Adds a source target's (possibly reused) data to the workspace. */
   private void addTargetAsSource(
-      WorkspaceBuilder workspaceBuilder,
-      TargetIdeInfo target,
-      Collection<ArtifactLocation> javaSources) {
-    JavaIdeInfo javaIdeInfo = target.getJavaIdeInfo();
-    if (javaIdeInfo == null) {
-      return;
-    }
-
+      WorkspaceBuilder workspaceBuilder, TargetIdeInfo target, SourceTargetData data) {
     TargetKey targetKey = target.getKey();
-    Collection<String> jars = jdepsMap.getDependenciesForTarget(targetKey);
-    if (jars != null) {
-      workspaceBuilder.jdeps.addAll(jars);
+    if (data.jdeps != null) {
+      workspaceBuilder.jdeps.addAll(data.jdeps);
     }
 
-    // Add all deps if this target is in the current working set
+    // Add all deps if this target is in the current working set. This depends on the working set
+    // and on other targets, so is never reused.
     if (workingSet == null || workingSet.isTargetInWorkingSet(target)) {
       // Add self, so we pick up our own gen jars if in working set
       workspaceBuilder.directDeps.add(targetKey);
@@ -278,49 +362,72 @@ public final class BlazeJavaWorkspaceImporter {
       }
     }
 
-    for (ArtifactLocation artifactLocation : javaSources) {
-      if (artifactLocation.isSource()) {
-        duplicateSourceDetector.add(targetKey, artifactLocation);
-        workspaceBuilder.sourceArtifacts.add(new SourceArtifact(targetKey, artifactLocation));
-        workspaceBuilder.addedSourceFiles.add(artifactLocation);
-      }
+    for (ArtifactLocation artifactLocation : data.sources) {
+      duplicateSourceDetector.add(targetKey, artifactLocation);
+      workspaceBuilder.sourceArtifacts.add(new SourceArtifact(targetKey, artifactLocation));
+      workspaceBuilder.addedSourceFiles.add(artifactLocation);
     }
-
-    ArtifactLocation manifest = javaIdeInfo.getPackageManifest();
-    if (manifest != null) {
-      workspaceBuilder.javaPackageManifests.put(targetKey, manifest);
+    if (data.packageManifest != null) {
+      workspaceBuilder.javaPackageManifests.put(targetKey, data.packageManifest);
     }
+    workspaceBuilder.buildOutputJars.addAll(data.buildOutputJars);
+    workspaceBuilder.generatedJarsFromSourceTargets.addAll(data.generatedJars);
+    workspaceBuilder.outputJarsFromSourceTargets.putAll(targetKey, data.outputJars);
+  }
+
+  /**
+   * Computes the data contributed by a source target, which depends only on the target itself,
+   * its sources and jdeps, and the import settings.
+   */
+  private SourceTargetData computeSourceTargetData(
+      TargetIdeInfo target,
+      Collection<ArtifactLocation> javaSources,
+      @Nullable List<String> jdeps) {
+    JavaIdeInfo javaIdeInfo = Preconditions.checkNotNull(target.getJavaIdeInfo());
+    TargetKey targetKey = target.getKey();
+
+    ImmutableList<ArtifactLocation> sources =
+        javaSources.stream().filter(ArtifactLocation::isSource).collect(toImmutableList());
+
+    List<ArtifactLocation> buildOutputJars = Lists.newArrayList();
     for (LibraryArtifact libraryArtifact : javaIdeInfo.getJars()) {
       ArtifactLocation classJar = libraryArtifact.getClassJar();
       if (classJar != null) {
-        workspaceBuilder.buildOutputJars.add(classJar);
+        buildOutputJars.add(classJar);
       }
     }
+
+    List<BlazeJarLibrary> generatedJars = Lists.newArrayList();
     if (augmenters.stream().allMatch(argument -> argument.shouldAttachGenJar(target))) {
-      workspaceBuilder.generatedJarsFromSourceTargets.addAll(
+      generatedJars.addAll(
           javaIdeInfo.getGeneratedJars().stream()
               .map(jar -> new BlazeJarLibrary(jar, targetKey))
               .collect(toList()));
     }
     if (javaIdeInfo.getFilteredGenJar() != null) {
-      workspaceBuilder.generatedJarsFromSourceTargets.add(
-          new BlazeJarLibrary(javaIdeInfo.getFilteredGenJar(), targetKey));
+      generatedJars.add(new BlazeJarLibrary(javaIdeInfo.getFilteredGenJar(), targetKey));
     }
     if (JavaSourceFilter.isJavaProtoTarget(target)) {
       // add generated jars from all proto library targets in the project
       javaIdeInfo.getJars().stream()
           .map(jar -> new BlazeJarLibrary(jar, targetKey))
-          .forEach(workspaceBuilder.generatedJarsFromSourceTargets::add);
+          .forEach(generatedJars::add);
     }
 
+    List<BlazeJarLibrary> outputJars = Lists.newArrayList();
     for (BlazeJavaSyncAugmenter augmenter : augmenters) {
       augmenter.addJarsForSourceTarget(
-          workspaceLanguageSettings,
-          projectViewSet,
-          target,
-          workspaceBuilder.outputJarsFromSourceTargets.get(targetKey),
-          workspaceBuilder.generatedJarsFromSourceTargets);
+          workspaceLanguageSettings, projectViewSet, target, outputJars, generatedJars);
     }
+    return new SourceTargetData(
+        target,
+        javaSources,
+        jdeps,
+        sources,
+        javaIdeInfo.getPackageManifest(),
+        ImmutableList.copyOf(buildOutputJars),
+        ImmutableList.copyOf(generatedJars),
+        ImmutableList.copyOf(outputJars));
   }
 
   @Nullable
@@ -343,6 +450,98 @@ public final class BlazeJavaWorkspaceImporter {
     Map<TargetKey, ArtifactLocation> javaPackageManifests = Maps.newHashMap();
   }
 
+  /** The data contributed to the workspace by a single source target. */
+  private static final class SourceTargetData {
+    private final TargetIdeInfo target;
+    private final Collection<ArtifactLocation> javaSources;
+    @Nullable private final List<String> jdeps;
+    private final ImmutableList<ArtifactLocation> sources;
+    @Nullable private final ArtifactLocation packageManifest;
+    private final ImmutableList<ArtifactLocation> buildOutputJars;
+    private final ImmutableList<BlazeJarLibrary> generatedJars;
+    private final ImmutableList<BlazeJarLibrary> outputJars;
+
+    SourceTargetData(
+        TargetIdeInfo target,
+        Collection<ArtifactLocation> javaSources,
+        @Nullable List<String> jdeps,
+        ImmutableList<ArtifactLocation> sources,
+        @Nullable ArtifactLocation packageManifest,
+        ImmutableList<ArtifactLocation> buildOutputJars,
+        ImmutableList<BlazeJarLibrary> generatedJars,
+        ImmutableList<BlazeJarLibrary> outputJars) {
+      this.target = target;
+      this.javaSources = javaSources;
+      this.jdeps = jdeps;
+      this.sources = sources;
+      this.packageManifest = packageManifest;
+      this.buildOutputJars = buildOutputJars;
+      this.generatedJars = generatedJars;
+      this.outputJars = outputJars;
+    }
+  }
+
+  /** The per-target data computed by an import, which can be reused by the next import. */
+  private static final class PreviousImport {
+    private final TargetMap targetMap;
+    private final ImmutableMap<TargetKey, SourceTargetData> sourceTargets;
+    private final ImmutableMap<TargetKey, ImmutableList<BlazeJarLibrary>> libraryTargets;
+    private final ImmutableMap<String, ArtifactLocation> jdepsArtifacts;
+
+    private PreviousImport(Builder builder) {
+      this.targetMap = builder.targetMap;
+      this.sourceTargets = ImmutableMap.copyOf(builder.sourceTargets);
+      this.libraryTargets = ImmutableMap.copyOf(builder.libraryTargets);
+      this.jdepsArtifacts = ImmutableMap.copyOf(builder.jdepsArtifacts);
+    }
+
+    /** Returns the previous data for a source target, if none of its inputs have changed. */
+    @Nullable
+    SourceTargetData getSourceTarget(
+        TargetIdeInfo target,
+        Collection<ArtifactLocation> javaSources,
+        @Nullable List<String> jdeps) {
+      SourceTargetData data = sourceTargets.get(target.getKey());
+      if (data == null
+          || !isUnchanged(data.target, target)
+          || !isUnchanged(data.javaSources, javaSources)
+          || !isUnchanged(data.jdeps, jdeps)) {
+        return null;
+      }
+      return data;
+    }
+
+    /** Returns the previous libraries for a library target, if the target is unchanged. */
+    @Nullable
+    ImmutableList<BlazeJarLibrary> getLibraryTarget(TargetIdeInfo target) {
+      TargetIdeInfo previousTarget = targetMap.get(target.getKey());
+      if (previousTarget == null || !isUnchanged(previousTarget, target)) {
+        return null;
+      }
+      return libraryTargets.get(target.getKey());
+    }
+
+    private static boolean isUnchanged(@Nullable Object previous, @Nullable Object current) {
+      return previous == current || (previous != null && previous.equals(current));
+    }
+
+    static final class Builder {
+      private final TargetMap targetMap;
+      private final Map<TargetKey, SourceTargetData> sourceTargets = new HashMap<>();
+      private final Map<TargetKey, ImmutableList<BlazeJarLibrary>> libraryTargets =
+          new HashMap<>();
+      private final Map<String, ArtifactLocation> jdepsArtifacts = new HashMap<>();
+
+      Builder(TargetMap targetMap) {
+        this.targetMap = targetMap;
+      }
+
+      PreviousImport build() {
+        return new PreviousImport(this);
+      }
+    }
+  }
+
   /**
    * Uses a filename heuristic to guess the location of a source jar corresponding to the given
    * output jar.
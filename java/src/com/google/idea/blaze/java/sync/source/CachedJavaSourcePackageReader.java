@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.sync.source;
+
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Wraps a {@link JavaPackageReader} for workspace sources, reusing the packages read during the
+ * previous sync for source files whose last modified time and size haven't changed since.
+ *
+ * <p>Safe to call from multiple threads.
+ */
+final class CachedJavaSourcePackageReader extends JavaPackageReader {
+
+  private final JavaPackageReader delegate;
+  @Nullable private final JavaSourcePackageState previousState;
+  private final JavaSourcePackageState.Builder stateBuilder;
+  private final AtomicInteger cachedCount = new AtomicInteger();
+  private final AtomicInteger readCount = new AtomicInteger();
+
+  CachedJavaSourcePackageReader(
+      JavaPackageReader delegate,
+      @Nullable JavaSourcePackageState previousState,
+      JavaSourcePackageState.Builder stateBuilder) {
+    this.delegate = delegate;
+    this.previousState = previousState;
+    this.stateBuilder = stateBuilder;
+  }
+
+  @Override
+  @Nullable
+  String getDeclaredPackageOfJavaFile(
+      BlazeContext context,
+      ArtifactLocationDecoder artifactLocationDecoder,
+      SourceArtifact sourceArtifact) {
+    ArtifactLocation artifactLocation = sourceArtifact.artifactLocation;
+    if (artifactLocation.isGenerated()) {
+      return null;
+    }
+    File sourceFile = artifactLocationDecoder.resolveSource(artifactLocation);
+    if (sourceFile == null) {
+      return null;
+    }
+    FileOperationProvider fileOperationProvider = FileOperationProvider.getInstance();
+    long lastModified = fileOperationProvider.getFileModifiedTime(sourceFile);
+    long size = fileOperationProvider.getFileSize(sourceFile);
+    String relativePath = artifactLocation.getRelativePath();
+
+    JavaSourcePackageState.Entry entry =
+        previousState != null
+            ? previousState.getUpToDateEntry(relativePath, lastModified, size)
+            : null;
+    if (entry != null) {
+      cachedCount.incrementAndGet();
+      stateBuilder.put(relativePath, entry);
+      return entry.packageName;
+    }
+
+    readCount.incrementAndGet();
+    String packageName =
+        delegate.getDeclaredPackageOfJavaFile(context, artifactLocationDecoder, sourceArtifact);
+    // a last modified time of 0 means the file couldn't be accessed, so don't cache the result
+    if (packageName != null && lastModified != 0) {
+      stateBuilder.put(
+          relativePath, new JavaSourcePackageState.Entry(lastModified, size, packageName));
+    }
+    return packageName;
+  }
+
+  /** The number of source files whose package was reused from the previous sync. */
+  int getCachedCount() {
+    return cachedCount.get();
+  }
+
+  /** The number of source files which were read. */
+  int getReadCount() {
+    return readCount.get();
+  }
+}
@@ -15,8 +15,7 @@
  */
 package com.google.idea.blaze.java.sync.source;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
+import com.google.common.annotations.VisibleForTesting;
 import com.google.idea.blaze.base.io.InputStreamProvider;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
@@ -24,14 +23,10 @@ import com.google.idea.blaze.base.scope.output.PrintOutput;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 /** Parse package string directly from java source */
@@ -42,8 +37,7 @@ public class JavaSourcePackageReader extends JavaPackageReader {
     return ServiceManager.getService(JavaSourcePackageReader.class);
   }
 
-  // Package declaration of java-like languages.
-  private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w\\.]+)");
+  private static final int BUFFER_SIZE = 4096;
 
   @Override
   @Nullable
@@ -60,14 +54,9 @@ public class JavaSourcePackageReader extends JavaPackageReader {
       return null;
     }
     try (InputStream javaInputStream = inputStreamProvider.forFile(sourceFile)) {
-      BufferedReader javaReader = new BufferedReader(new InputStreamReader(javaInputStream, UTF_8));
-      String javaLine;
-
-      while ((javaLine = javaReader.readLine()) != null) {
-        Matcher packageMatch = PACKAGE_PATTERN.matcher(javaLine);
-        if (packageMatch.find()) {
-          return packageMatch.group(1);
-        }
+      String packageName = readPackageDeclaration(javaInputStream);
+      if (packageName != null) {
+        return packageName;
       }
       IssueOutput.warn("No package name string found in java source file: " + sourceFile)
           .inFile(sourceFile)
@@ -81,4 +70,121 @@ public class JavaSourcePackageReader extends JavaPackageReader {
       return null;
     }
   }
+
+  /**
+   * Returns the package declared by java-like source code, or null if none is found. Only reads as
+   * far as the package declaration.
+   *
+   * <p>Finds the first line which matches {@code ^\s*package\s+([\w\.]+)}, scanning the raw
+   * bytes rather than decoding lines. This is safe for UTF-8 input, as all the matched characters
+   * are ASCII, and the bytes of multi-byte characters never are.
+   */
+  @VisibleForTesting
+  @Nullable
+  static String readPackageDeclaration(InputStream inputStream) throws IOException {
+    PackageDeclarationScanner scanner = new PackageDeclarationScanner();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = inputStream.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        if (scanner.accept(buffer[i])) {
+          return scanner.getPackageName();
+        }
+      }
+    }
+    return scanner.finish();
+  }
+
+  /** A byte-at-a-time matcher for a package declaration at the start of a line. */
+  private static final class PackageDeclarationScanner {
+    private static final byte[] KEYWORD = {'p', 'a', 'c', 'k', 'a', 'g', 'e'};
+
+    private enum State {
+      LINE_START,
+      KEYWORD,
+      KEYWORD_SEPARATOR,
+      PACKAGE_NAME,
+      SKIP_LINE,
+    }
+
+    private State state = State.LINE_START;
+    private int keywordIndex = 0;
+    private boolean separated = false;
+    private final StringBuilder packageName = new StringBuilder();
+
+    /** Consumes the next byte, returning true once a package name has been matched. */
+    boolean accept(byte b) {
+      if (b == '\n' || b == '\r') {
+        if (state == State.PACKAGE_NAME) {
+          return true;
+        }
+        state = State.LINE_START;
+        return false;
+      }
+      switch (state) {
+        case LINE_START:
+          if (isWhitespace(b)) {
+            return false;
+          }
+          keywordIndex = 0;
+          state = State.KEYWORD;
+          return acceptKeyword(b);
+        case KEYWORD:
+          return acceptKeyword(b);
+        case KEYWORD_SEPARATOR:
+          if (isWhitespace(b)) {
+            separated = true;
+          } else if (separated && isPackageNameChar(b)) {
+            packageName.append((char) b);
+            state = State.PACKAGE_NAME;
+          } else {
+            state = State.SKIP_LINE;
+          }
+          return false;
+        case PACKAGE_NAME:
+          if (isPackageNameChar(b)) {
+            packageName.append((char) b);
+            return false;
+          }
+          return true;
+        case SKIP_LINE:
+          return false;
+      }
+      throw new AssertionError(state);
+    }
+
+    private boolean acceptKeyword(byte b) {
+      if (b != KEYWORD[keywordIndex]) {
+        state = State.SKIP_LINE;
+      } else if (++keywordIndex == KEYWORD.length) {
+        separated = false;
+        state = State.KEYWORD_SEPARATOR;
+      }
+      return false;
+    }
+
+    /** Returns the matched package name at the end of the input, if any. */
+    @Nullable
+    String finish() {
+      return state == State.PACKAGE_NAME ? getPackageName() : null;
+    }
+
+    String getPackageName() {
+      return packageName.toString();
+    }
+
+    /** Matches the regex character class {@code \s}, excluding line terminators. */
+    private static boolean isWhitespace(byte b) {
+      return b == ' ' || b == '\t' || b == 0x0B || b == '\f';
+    }
+
+    /** Matches the regex character class {@code [\w\.]}. */
+    private static boolean isPackageNameChar(byte b) {
+      return (b >= 'a' && b <= 'z')
+          || (b >= 'A' && b <= 'Z')
+          || (b >= '0' && b <= '9')
+          || b == '_'
+          || b == '.';
+    }
+  }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.sync.source;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.model.SyncData;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * The packages declared by workspace java-like source files, serialized along with the sync data.
+ *
+ * <p>Each package is keyed by the workspace-relative path of the source file, along with its last
+ * modified time and size, so that only sources which changed since the last sync need to be read
+ * again. See {@link SourceDirectoryCalculator}.
+ */
+final class JavaSourcePackageState implements SyncData<ProjectData.JavaSourcePackageState> {
+
+  /** The declared package of a single source file. */
+  static final class Entry {
+    final long lastModified;
+    final long size;
+    final String packageName;
+
+    Entry(long lastModified, long size, String packageName) {
+      this.lastModified = lastModified;
+      this.size = size;
+      this.packageName = packageName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry that = (Entry) o;
+      return lastModified == that.lastModified
+          && size == that.size
+          && packageName.equals(that.packageName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(lastModified, size, packageName);
+    }
+  }
+
+  private final ImmutableMap<String, Entry> entries;
+
+  private JavaSourcePackageState(Map<String, Entry> entries) {
+    this.entries = ImmutableMap.copyOf(entries);
+  }
+
+  /**
+   * Returns the cached package of the given source file if it hasn't been modified since the
+   * package was read, otherwise null.
+   */
+  @Nullable
+  Entry getUpToDateEntry(String relativePath, long lastModified, long size) {
+    Entry entry = entries.get(relativePath);
+    return entry != null && entry.lastModified == lastModified && entry.size == size
+        ? entry
+        : null;
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private static JavaSourcePackageState fromProto(ProjectData.JavaSourcePackageState proto) {
+    Interner<String> packageInterner = Interners.newStrongInterner();
+    ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+    for (ProjectData.JavaSourcePackageState.Entry entry : proto.getEntriesList()) {
+      entries.put(
+          entry.getRelativePath(),
+          new Entry(
+              entry.getLastModified(),
+              entry.getSize(),
+              packageInterner.intern(entry.getPackageName())));
+    }
+    return new JavaSourcePackageState(entries.build());
+  }
+
+  @Override
+  public ProjectData.JavaSourcePackageState toProto() {
+    ProjectData.JavaSourcePackageState.Builder builder =
+        ProjectData.JavaSourcePackageState.newBuilder();
+    entries.forEach(
+        (path, entry) ->
+            builder.addEntries(
+                ProjectData.JavaSourcePackageState.Entry.newBuilder()
+                    .setRelativePath(path)
+                    .setLastModified(entry.lastModified)
+                    .setSize(entry.size)
+                    .setPackageName(entry.packageName)));
+    return builder.build();
+  }
+
+  @Override
+  public void insert(ProjectData.SyncState.Builder builder) {
+    builder.setJavaSourcePackageState(toProto());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    JavaSourcePackageState that = (JavaSourcePackageState) o;
+    return Objects.equals(entries, that.entries);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(entries);
+  }
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  /** A thread-safe builder, populated while source files are read in parallel. */
+  static final class Builder {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    void put(String relativePath, Entry entry) {
+      entries.put(relativePath, entry);
+    }
+
+    JavaSourcePackageState build() {
+      return new JavaSourcePackageState(entries);
+    }
+  }
+
+  static class Extractor implements SyncData.Extractor<JavaSourcePackageState> {
+    @Nullable
+    @Override
+    public JavaSourcePackageState extract(ProjectData.SyncState syncState) {
+      return syncState.hasJavaSourcePackageState()
+          ? JavaSourcePackageState.fromProto(syncState.getJavaSourcePackageState())
+          : null;
+    }
+  }
+}
@@ -30,9 +30,9 @@ import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.model.SyncState;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.prefetch.FetchExecutor;
@@ -72,7 +72,7 @@ public final class SourceDirectoryCalculator {
 
   private static final JavaPackageReader generatedFileJavaPackageReader =
       new FilePathJavaPackageReader();
-  private final ListeningExecutorService executorService = MoreExecutors.newDirectExecutorService();
+  private final ListeningExecutorService executorService = FetchExecutor.EXECUTOR;
 
   public ImmutableList<BlazeContentEntry> calculateContentEntries(
       Project project,
@@ -82,6 +82,34 @@ public final class SourceDirectoryCalculator {
       ImportRoots importRoots,
       Collection<SourceArtifact> sources,
       Map<TargetKey, ArtifactLocation> javaPackageManifests) {
+    return calculateContentEntries(
+        project,
+        context,
+        workspaceRoot,
+        artifactLocationDecoder,
+        importRoots,
+        sources,
+        javaPackageManifests,
+        /* previousSyncState= */ null,
+        /* syncStateBuilder= */ null);
+  }
+
+  /**
+   * Calculates the content entries for the given sources.
+   *
+   * <p>If a sync state builder is provided, the packages read from workspace sources are stored in
+   * it, and the packages stored during the previous sync are reused for unchanged source files.
+   */
+  public ImmutableList<BlazeContentEntry> calculateContentEntries(
+      Project project,
+      BlazeContext context,
+      WorkspaceRoot workspaceRoot,
+      ArtifactLocationDecoder artifactLocationDecoder,
+      ImportRoots importRoots,
+      Collection<SourceArtifact> sources,
+      Map<TargetKey, ArtifactLocation> javaPackageManifests,
+      @Nullable SyncState previousSyncState,
+      @Nullable SyncState.Builder syncStateBuilder) {
 
     ManifestFilePackageReader manifestFilePackageReader =
         Scope.push(
@@ -99,10 +127,23 @@ public final class SourceDirectoryCalculator {
               return new ManifestFilePackageReader(manifestMap);
             });
 
+    JavaSourcePackageState.Builder packageStateBuilder = null;
+    CachedJavaSourcePackageReader cachedSourcePackageReader = null;
+    if (syncStateBuilder != null) {
+      JavaSourcePackageState previousPackageState =
+          previousSyncState != null ? previousSyncState.get(JavaSourcePackageState.class) : null;
+      packageStateBuilder = JavaSourcePackageState.builder();
+      cachedSourcePackageReader =
+          new CachedJavaSourcePackageReader(
+              JavaSourcePackageReader.getInstance(), previousPackageState, packageStateBuilder);
+    }
+
     final List<JavaPackageReader> javaPackageReaders =
         Lists.newArrayList(
             manifestFilePackageReader,
-            JavaSourcePackageReader.getInstance(),
+            cachedSourcePackageReader != null
+                ? cachedSourcePackageReader
+                : JavaSourcePackageReader.getInstance(),
             generatedFileJavaPackageReader);
 
     Collection<SourceArtifact> nonGeneratedSources = filterGeneratedArtifacts(sources);
@@ -130,6 +171,16 @@ public final class SourceDirectoryCalculator {
           }
           result.sort(Comparator.comparing(lhs -> lhs.contentRoot));
         });
+
+    if (syncStateBuilder != null && !context.isCancelled()) {
+      syncStateBuilder.put(packageStateBuilder.build());
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "Read the package of %d java sources, reused %d from the previous sync",
+                  cachedSourcePackageReader.getReadCount(),
+                  cachedSourcePackageReader.getCachedCount())));
+    }
     return ImmutableList.copyOf(result);
   }
 
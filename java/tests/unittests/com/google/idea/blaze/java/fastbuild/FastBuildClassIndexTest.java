@@ -0,0 +1,246 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link FastBuildClassIndex}. */
+@RunWith(JUnit4.class)
+public final class FastBuildClassIndexTest {
+
+  private static final String LIBRARY =
+      ""
+          + "package library;\n"
+          + "public class Library {\n"
+          + "  public static final String NAME = \"library\";\n"
+          + "  private static final int PRIVATE_CONSTANT = 1;\n"
+          + "  public static int value() { return 1; }\n"
+          + "  public static class Inner {}\n"
+          + "}\n";
+
+  private static final String CLIENT =
+      ""
+          + "package client;\n"
+          + "public class Client {\n"
+          + "  int get() { return library.Library.value(); }\n"
+          + "}\n";
+
+  private static final String UNRELATED =
+      ""
+          + "package client;\n"
+          + "public class Unrelated {\n"
+          + "  int get() { return 1; }\n"
+          + "}\n";
+
+  private FastBuildClassIndex index;
+
+  @Before
+  public void setUp() throws IOException {
+    Path classes =
+        compile(
+            ImmutableMap.of(
+                "library/Library.java", LIBRARY,
+                "client/Client.java", CLIENT,
+                "client/Unrelated.java", UNRELATED));
+    File jar = Files.createTempFile("deploy", ".jar").toFile();
+    jar.deleteOnExit();
+    writeJar(classes, jar);
+    index = FastBuildClassIndex.fromJar(jar);
+  }
+
+  @Test
+  public void testIndexesAllClasses() {
+    assertThat(index.size()).isEqualTo(4);
+    assertThat(index.getSourcePaths(ImmutableList.of("library/Library$Inner", "client/Client")))
+        .containsExactly("library/Library.java", "client/Client.java");
+    assertThat(index.getDependents(ImmutableList.of("library/Library"))).contains("client/Client");
+    assertThat(index.getDependents(ImmutableList.of("library/Library")))
+        .doesNotContain("client/Unrelated");
+  }
+
+  @Test
+  public void testImplementationChangeDoesNotChangeAbi() throws IOException {
+    String library = LIBRARY.replace("return 1;", "return 2 + 3;");
+
+    assertThat(updateWith("library/Library.java", library)).isEmpty();
+  }
+
+  @Test
+  public void testPrivateMemberDoesNotChangeAbi() throws IOException {
+    String library =
+        LIBRARY.replace("public static class", "private void foo() {}\n  public static class");
+
+    assertThat(updateWith("library/Library.java", library)).isEmpty();
+  }
+
+  @Test
+  public void testSignatureChangeChangesAbi() throws IOException {
+    String library = LIBRARY.replace("public static int value()", "public static long value()");
+
+    ImmutableSet<String> changed = updateWith("library/Library.java", library);
+
+    assertThat(changed).containsExactly("library/Library");
+    // nested classes reference their outer class, so the library source is a dependent too
+    assertThat(index.getSourcePaths(index.getDependents(changed)))
+        .containsExactly("client/Client.java", "library/Library.java");
+  }
+
+  @Test
+  public void testGenericSignatureChangeChangesAbi() throws IOException {
+    String library = LIBRARY.replace("class Inner {}", "class Inner<T> {}");
+
+    assertThat(updateWith("library/Library.java", library))
+        .containsExactly("library/Library$Inner");
+  }
+
+  @Test
+  public void testThrowsClauseChangeChangesAbi() throws IOException {
+    String library = LIBRARY.replace("value() {", "value() throws java.io.IOException {");
+
+    assertThat(updateWith("library/Library.java", library)).containsExactly("library/Library");
+  }
+
+  @Test
+  public void testAnnotationChangeChangesAbi() throws IOException {
+    String library =
+        LIBRARY.replace("public static int value()", "@Deprecated public static int value()");
+
+    assertThat(updateWith("library/Library.java", library)).containsExactly("library/Library");
+  }
+
+  @Test
+  public void testStringLiteralIsNotADependency() throws IOException {
+    String unrelated = UNRELATED.replace("return 1;", "return \"Llibrary/Library;\".length();");
+
+    assertThat(updateWith("client/Unrelated.java", unrelated)).isEmpty();
+    assertThat(index.getDependents(ImmutableList.of("library/Library")))
+        .doesNotContain("client/Unrelated");
+  }
+
+  @Test
+  public void testRemovedClassChangesAbi() throws IOException {
+    String library = LIBRARY.replace("  public static class Inner {}\n", "");
+
+    assertThat(updateWith("library/Library.java", library))
+        .containsExactly("library/Library$Inner");
+    assertThat(index.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void testConstantValueChangeIsReported() throws IOException {
+    String library = LIBRARY.replace("\"library\";", "\"renamed\";");
+
+    FastBuildClassIndex.Changes changes = update("library/Library.java", library);
+
+    assertThat(changes.abiChanged).containsExactly("library/Library");
+    assertThat(changes.constantsChanged).containsExactly("library/Library");
+  }
+
+  @Test
+  public void testPrivateConstantValueChangeIsReported() throws IOException {
+    String library = LIBRARY.replace("PRIVATE_CONSTANT = 1;", "PRIVATE_CONSTANT = 2;");
+
+    FastBuildClassIndex.Changes changes = update("library/Library.java", library);
+
+    assertThat(changes.abiChanged).isEmpty();
+    assertThat(changes.constantsChanged).containsExactly("library/Library");
+  }
+
+  @Test
+  public void testNewConstantIsNotReported() throws IOException {
+    String library = LIBRARY.replace("class Inner {}", "class Inner { static final int A = 1; }");
+
+    FastBuildClassIndex.Changes changes = update("library/Library.java", library);
+
+    assertThat(changes.abiChanged).containsExactly("library/Library$Inner");
+    assertThat(changes.constantsChanged).isEmpty();
+  }
+
+  @Test
+  public void testUpdatesDependencies() throws IOException {
+    String client = CLIENT.replace("library.Library.value()", "2");
+
+    assertThat(updateWith("client/Client.java", client)).isEmpty();
+    assertThat(index.getDependents(ImmutableList.of("library/Library")))
+        .doesNotContain("client/Client");
+  }
+
+  private ImmutableSet<String> updateWith(String path, String source) throws IOException {
+    return update(path, source).abiChanged;
+  }
+
+  private FastBuildClassIndex.Changes update(String path, String source) throws IOException {
+    Path classes = compile(ImmutableMap.of(path, source));
+    List<File> classFiles = new ArrayList<>();
+    try (Stream<Path> files = Files.walk(classes)) {
+      files.filter(p -> p.toString().endsWith(".class")).forEach(p -> classFiles.add(p.toFile()));
+    }
+    return index.update(classFiles);
+  }
+
+  private static Path compile(Map<String, String> sources) throws IOException {
+    Path sourceRoot = Files.createTempDirectory("sources");
+    Path outputDirectory = Files.createTempDirectory("classes");
+    List<String> args = new ArrayList<>();
+    args.add("-d");
+    args.add(outputDirectory.toString());
+    for (Map.Entry<String, String> source : sources.entrySet()) {
+      Path file = sourceRoot.resolve(source.getKey());
+      Files.createDirectories(file.getParent());
+      Files.write(file, source.getValue().getBytes(UTF_8));
+      args.add(file.toString());
+    }
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    int result = javac.run(null, null, null, args.toArray(new String[0]));
+    assertThat(result).isEqualTo(0);
+    return outputDirectory;
+  }
+
+  private static void writeJar(Path classes, File jar) throws IOException {
+    try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        Stream<Path> files = Files.walk(classes)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (file.toString().endsWith(".class")) {
+          out.putNextEntry(new JarEntry(classes.relativize(file).toString()));
+          out.write(Files.readAllBytes(file));
+          out.closeEntry();
+        }
+      }
+    }
+  }
+}
@@ -35,6 +35,7 @@ import com.google.idea.blaze.java.fastbuild.FastBuildBlazeData.JavaInfo;
 import com.google.idea.blaze.java.fastbuild.FastBuildBlazeData.JavaToolchainInfo;
 import com.google.idea.blaze.java.fastbuild.FastBuildCompiler.CompileInstructions;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -43,6 +44,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -78,7 +82,7 @@ public final class FastBuildCompilerFactoryImplTest {
           /* targetVersion= */ "8");
   private static final JavaInfo JAVA_LIBRARY_WITHOUT_SOURCES = JavaInfo.builder().build();
 
-  private FastBuildCompilerFactory compilerFactory;
+  private FastBuildCompilerFactoryImpl compilerFactory;
 
   @BeforeClass
   public static void verifyJars() {
@@ -101,6 +105,11 @@ public final class FastBuildCompilerFactoryImplTest {
         FastBuildCompilerFactoryImpl.createForTest(projectDataManager, FAST_BUILD_JAVAC_JAR);
   }
 
+  @After
+  public void tearDown() {
+    compilerFactory.closeCompilers();
+  }
+
   @Test
   public void testNoJavaToolchain() {
     Map<Label, FastBuildBlazeData> blazeData = new HashMap<>();
@@ -334,6 +343,74 @@ public final class FastBuildCompilerFactoryImplTest {
     }
   }
 
+  @Test
+  public void testCompilerReusedAcrossClasspathJarChanges() throws IOException, FastBuildException {
+    byte[] firstLibrary = compileLibraryClass("first");
+    byte[] secondLibrary = compileLibraryClass("secondMethod");
+    File libraryJar = Files.createTempFile("library", ".jar").toFile();
+    libraryJar.deleteOnExit();
+
+    writeLibraryJar(libraryJar, firstLibrary);
+    StringWriter javacOutput = new StringWriter();
+    try {
+      compile(callLibraryMethod("first"), javacOutput, libraryJar);
+    } catch (FastBuildIncrementalCompileException e) {
+      throw new AssertionError("Compilation failed:\n" + javacOutput, e);
+    }
+
+    // the classpath jar is rebuilt in place, so cached jar contents mustn't be used
+    writeLibraryJar(libraryJar, secondLibrary);
+    libraryJar.setLastModified(libraryJar.lastModified() + 10_000);
+    javacOutput = new StringWriter();
+    try {
+      compile(callLibraryMethod("secondMethod"), javacOutput, libraryJar);
+    } catch (FastBuildIncrementalCompileException e) {
+      throw new AssertionError("Compilation failed:\n" + javacOutput, e);
+    }
+  }
+
+  private byte[] compileLibraryClass(String methodName) throws IOException, FastBuildException {
+    String java =
+        ""
+            + "package library;\n"
+            + "\n"
+            + "public final class Library {\n"
+            + "  public static void "
+            + methodName
+            + "() {}\n"
+            + "}\n";
+    StringWriter javacOutput = new StringWriter();
+    CompileInstructions instructions = createCompileInstructions(java, javacOutput).build();
+    try {
+      getCompiler().compile(createBlazeContext(javacOutput), instructions);
+    } catch (FastBuildIncrementalCompileException e) {
+      throw new AssertionError("Compilation failed:\n" + javacOutput, e);
+    }
+    return Files.readAllBytes(
+        instructions.outputDirectory().toPath().resolve("library/Library.class"));
+  }
+
+  private static void writeLibraryJar(File jar, byte[] libraryClass) throws IOException {
+    try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+      out.putNextEntry(new JarEntry("library/Library.class"));
+      out.write(libraryClass);
+      out.closeEntry();
+    }
+  }
+
+  private static String callLibraryMethod(String methodName) {
+    return ""
+        + "package com.google.idea.blaze.java.fastbuild;\n"
+        + "\n"
+        + "final class Main {\n"
+        + "  private static void main(String[] args) {\n"
+        + "    library.Library."
+        + methodName
+        + "();\n"
+        + "  }\n"
+        + "}\n";
+  }
+
   private void compile(String source, Writer javacOutput, File... classpath)
       throws IOException, FastBuildException {
     getCompiler()
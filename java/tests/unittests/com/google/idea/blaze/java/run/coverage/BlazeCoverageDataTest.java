@@ -19,14 +19,16 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.idea.blaze.java.run.coverage.BlazeCoverageData.FileData;
-import gnu.trove.TIntIntHashMap;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.function.Function;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -56,11 +58,11 @@ public class BlazeCoverageDataTest {
 
     FileData fileData = data.perFileData.get("path/to/file.txt");
     assertThat(fileData.source).isEqualTo("path/to/file.txt");
-    assertThat(toMap(fileData.lineHits)).containsExactly(4, 0, 8, 0, 9, 1, 23, 3);
+    assertThat(toMap(fileData)).containsExactly(4, 0, 8, 0, 9, 1, 23, 3);
 
     fileData = data.perFileData.get("path/to/another/file.txt");
     assertThat(fileData.source).isEqualTo("path/to/another/file.txt");
-    assertThat(toMap(fileData.lineHits)).containsExactly(1, 1, 2, 2, 5, 0, 123, 1);
+    assertThat(toMap(fileData)).containsExactly(1, 1, 2, 2, 5, 0, 123, 1);
   }
 
   @Test
@@ -81,10 +83,77 @@ public class BlazeCoverageDataTest {
     assertThat(data.perFileData.keySet()).containsExactly("path/to/another/file.txt");
   }
 
-  private static ImmutableMap<Integer, Integer> toMap(TIntIntHashMap troveMap) {
-    return Arrays.stream(troveMap.keys())
-        .boxed()
-        .collect(ImmutableMap.toImmutableMap(Function.identity(), troveMap::get));
+  @Test
+  public void testLinesSortedAndMerged() throws IOException {
+    BlazeCoverageData data =
+        BlazeCoverageData.parse(
+            inputStream(
+                "SF:path/to/file.txt",
+                "DA:9,1",
+                "DA:4,0",
+                "DA:23,3,checksum",
+                "end_of_record",
+                "SF:path/to/file.txt",
+                "DA:4,2",
+                "DA:10,1",
+                "end_of_record"));
+
+    FileData fileData = data.perFileData.get("path/to/file.txt");
+    assertThat(fileData.lines).asList().containsExactly(4, 9, 10, 23).inOrder();
+    assertThat(fileData.hits).asList().containsExactly(2, 1, 1, 3).inOrder();
+  }
+
+  @Test
+  public void testMalformedLinesIgnored() throws IOException {
+    BlazeCoverageData data =
+        BlazeCoverageData.parse(
+            inputStream(
+                "SF:path/to/file.txt\r",
+                "DA:1,1\r",
+                "DA:x,1",
+                "DA:2",
+                "DA:3,",
+                "DA:99999999999,1",
+                "end_of_record\r"));
+    assertThat(toMap(data.perFileData.get("path/to/file.txt"))).containsExactly(1, 1);
+  }
+
+  @Test
+  public void testParseInParallelChunks() throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int file = 0; file < 200; file++) {
+      lines.add("SF:path/to/file" + file + ".txt");
+      for (int line = 1; line <= file % 20 + 1; line++) {
+        lines.add("DA:" + line + "," + (file * line));
+      }
+      lines.add("end_of_record");
+    }
+    String[] report = lines.toArray(new String[0]);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      BlazeCoverageData expected = BlazeCoverageData.parse(inputStream(report));
+      BlazeCoverageData actual =
+          BlazeCoverageData.parse(
+              inputStream(report), MoreExecutors.listeningDecorator(executor), 64);
+
+      assertThat(actual.perFileData.keySet())
+          .containsExactlyElementsIn(expected.perFileData.keySet())
+          .inOrder();
+      for (String source : expected.perFileData.keySet()) {
+        assertThat(toMap(actual.perFileData.get(source)))
+            .isEqualTo(toMap(expected.perFileData.get(source)));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static ImmutableMap<Integer, Integer> toMap(FileData fileData) {
+    ImmutableMap.Builder<Integer, Integer> map = ImmutableMap.builder();
+    for (int i = 0; i < fileData.lines.length; i++) {
+      map.put(fileData.lines[i], fileData.hits[i]);
+    }
+    return map.build();
   }
 
   private static InputStream inputStream(String... lines) {
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.run.hotswap;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ZipCentralDirectoryReader}. */
+@RunWith(JUnit4.class)
+public final class ZipCentralDirectoryReaderTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testMatchesZipFile() throws IOException {
+    File zip =
+        writeZip(
+            "test.jar",
+            null,
+            ImmutableMap.of(
+                "com/example/Foo.class", "foo contents",
+                "com/example/Foo$Inner.class", "inner contents",
+                "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"));
+
+    assertThat(readEntries(zip)).isEqualTo(readEntriesWithZipFile(zip));
+  }
+
+  @Test
+  public void testStoredEntries() throws IOException {
+    File zip = folder.newFile("stored.jar");
+    byte[] contents = "stored contents".getBytes(UTF_8);
+    CRC32 crc = new CRC32();
+    crc.update(contents);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      ZipEntry entry = new ZipEntry("Stored.class");
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(contents.length);
+      entry.setCrc(crc.getValue());
+      out.putNextEntry(entry);
+      out.write(contents);
+      out.closeEntry();
+    }
+
+    assertThat(readEntries(zip))
+        .containsExactly("Stored.class", crc.getValue() + ":" + contents.length);
+  }
+
+  @Test
+  public void testArchiveComment() throws IOException {
+    File zip =
+        writeZip(
+            "comment.jar",
+            "a comment containing PK\u0005\u0006 in it",
+            ImmutableMap.of("Foo.class", "foo contents"));
+
+    assertThat(readEntries(zip)).isEqualTo(readEntriesWithZipFile(zip));
+  }
+
+  @Test
+  public void testEmptyArchive() throws IOException {
+    File zip = writeZip("empty.jar", null, ImmutableMap.of());
+
+    assertThat(readEntries(zip)).isEmpty();
+  }
+
+  @Test
+  public void testNotAZipFile() throws IOException {
+    File file = folder.newFile("not_a_zip.jar");
+    Files.write(file.toPath(), "not a zip file".getBytes(UTF_8));
+
+    try {
+      readEntries(file);
+      fail("Should have thrown ZipException");
+    } catch (ZipException expected) {
+      // expected
+    }
+  }
+
+  private File writeZip(String name, String comment, Map<String, String> entries)
+      throws IOException {
+    File zip = folder.newFile(name);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      if (comment != null) {
+        out.setComment(comment);
+      }
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        out.putNextEntry(new ZipEntry(entry.getKey()));
+        out.write(entry.getValue().getBytes(UTF_8));
+        out.closeEntry();
+      }
+    }
+    return zip;
+  }
+
+  private static Map<String, String> readEntries(File zip) throws IOException {
+    Map<String, String> entries = new HashMap<>();
+    ZipCentralDirectoryReader.read(
+        zip,
+        (name, crc, size) -> entries.put(name, Integer.toUnsignedLong(crc) + ":" + size));
+    return entries;
+  }
+
+  private static Map<String, String> readEntriesWithZipFile(File zip) throws IOException {
+    Map<String, String> entries = new HashMap<>();
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      Enumeration<? extends ZipEntry> e = zipFile.entries();
+      while (e.hasMoreElements()) {
+        ZipEntry entry = e.nextElement();
+        entries.put(entry.getName(), entry.getCrc() + ":" + entry.getSize());
+      }
+    }
+    return entries;
+  }
+}
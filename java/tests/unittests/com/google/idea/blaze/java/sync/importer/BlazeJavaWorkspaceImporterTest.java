@@ -60,7 +60,9 @@ import com.google.idea.blaze.base.projectview.section.sections.ImportTargetOutpu
 import com.google.idea.blaze.base.projectview.section.sections.TestSourceSection;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.ErrorCollector;
+import com.google.idea.blaze.base.scope.OutputSink.Propagation;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
+import com.google.idea.blaze.base.scope.output.PrintOutput;
 import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.settings.BlazeImportSettings;
 import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
@@ -90,6 +92,7 @@ import com.google.idea.common.experiments.MockExperimentService;
 import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
 import com.intellij.openapi.project.Project;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -226,6 +229,15 @@ public class BlazeJavaWorkspaceImporterTest extends BlazeTestCase {
 
   private BlazeJavaImportResult importWorkspace(
       WorkspaceRoot workspaceRoot, TargetMapBuilder targetMapBuilder, ProjectView projectView) {
+    return importWorkspace(
+        workspaceRoot, targetMapBuilder, projectView, /* reusePreviousResult= */ false);
+  }
+
+  private BlazeJavaImportResult importWorkspace(
+      WorkspaceRoot workspaceRoot,
+      TargetMapBuilder targetMapBuilder,
+      ProjectView projectView,
+      boolean reusePreviousResult) {
 
     ProjectViewSet projectViewSet = ProjectViewSet.builder().add(projectView).build();
 
@@ -246,7 +258,8 @@ public class BlazeJavaWorkspaceImporterTest extends BlazeTestCase {
             FAKE_ARTIFACT_DECODER,
             null);
 
-    return blazeWorkspaceImporter.importWorkspace(context);
+    return blazeWorkspaceImporter.importWorkspace(
+        context, /* syncStateBuilder= */ null, reusePreviousResult);
   }
 
   /** Ensure an empty response results in an empty import result. */
@@ -1633,6 +1646,86 @@ public class BlazeJavaWorkspaceImporterTest extends BlazeTestCase {
         .containsExactly("source.jar", "generated.jar");
   }
 
+  @Test
+  public void testIncrementalImport_matchesFullImport() {
+    ProjectView projectView =
+        ProjectView.builder()
+            .add(
+                ListSection.builder(DirectorySection.KEY)
+                    .add(DirectoryEntry.include(new WorkspacePath("java/apps/example"))))
+            .build();
+    TargetKey exampleKey =
+        TargetKey.forPlainTarget(Label.create("//java/apps/example:example_debug"));
+    jdepsMap.put(exampleKey, Lists.newArrayList(jdepsPath("thirdparty/a.jar")));
+    importWorkspace(
+        workspaceRoot,
+        targetMapForJdepsSuite()
+            .addTarget(otherSourceTarget("Other.java"))
+            .addTarget(thirdPartyLibrary("d.jar")),
+        projectView,
+        /* reusePreviousResult= */ false);
+
+    // change one source target, its jdeps and one library target
+    jdepsMap.put(
+        TargetKey.forPlainTarget(Label.create("//java/apps/example:other")),
+        Lists.newArrayList(
+            jdepsPath("thirdparty/d2.jar"), jdepsPath("thirdparty/unknown-hjar.jar")));
+    TargetMapBuilder changedTargets =
+        targetMapForJdepsSuite()
+            .addTarget(otherSourceTarget("Other2.java"))
+            .addTarget(thirdPartyLibrary("d2.jar"));
+    List<String> logMessages = new ArrayList<>();
+    context.addOutputSink(
+        PrintOutput.class,
+        output -> {
+          logMessages.add(output.getText());
+          return Propagation.Continue;
+        });
+    BlazeJavaImportResult incremental =
+        importWorkspace(
+            workspaceRoot, changedTargets, projectView, /* reusePreviousResult= */ true);
+    assertThat(logMessages).contains("Reused Java import data for 1 of 2 targets");
+    BlazeJavaImportResult full =
+        importWorkspace(
+            workspaceRoot, changedTargets, projectView, /* reusePreviousResult= */ false);
+
+    errorCollector.assertNoIssues();
+    assertThat(incremental).isEqualTo(full);
+    assertThat(incremental.libraries.keySet())
+        .containsExactlyElementsIn(full.libraries.keySet())
+        .inOrder();
+    assertThat(incremental.javaSourceFiles).contains(source("java/apps/example/Other2.java"));
+    assertThat(findLibrary(incremental.libraries, "d2.jar")).isNotNull();
+  }
+
+  private static TargetIdeInfo.Builder otherSourceTarget(String fileName) {
+    return TargetIdeInfo.builder()
+        .setLabel("//java/apps/example:other")
+        .setBuildFile(source("java/apps/example/BUILD"))
+        .setKind("java_library")
+        .addSource(source("java/apps/example/" + fileName))
+        .addDependency("//thirdparty/d:d")
+        .setJavaInfo(
+            JavaIdeInfo.builder()
+                .addJar(
+                    LibraryArtifact.builder()
+                        .setInterfaceJar(gen("java/apps/example/other-ijar.jar"))
+                        .setClassJar(gen("java/apps/example/other.jar"))));
+  }
+
+  private static TargetIdeInfo.Builder thirdPartyLibrary(String jarName) {
+    return TargetIdeInfo.builder()
+        .setLabel("//thirdparty/d:d")
+        .setKind("java_library")
+        .setBuildFile(source("third_party/d/BUILD"))
+        .setJavaInfo(
+            JavaIdeInfo.builder()
+                .addJar(
+                    LibraryArtifact.builder()
+                        .setInterfaceJar(gen("thirdparty/" + jarName))
+                        .setClassJar(gen("thirdparty/" + jarName))));
+  }
+
   /* Utility methods */
 
   private static String libraryFileName(BlazeJarLibrary library) {
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.sync.source;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link JavaSourcePackageReader}. */
+@RunWith(JUnit4.class)
+public class JavaSourcePackageReaderTest {
+
+  @Test
+  public void testSimplePackageDeclaration() throws IOException {
+    assertThat(readPackage("package com.google.foo;\npublic class Bla {}"))
+        .isEqualTo("com.google.foo");
+  }
+
+  @Test
+  public void testPackageDeclarationAfterHeader() throws IOException {
+    String source =
+        "/*\n"
+            + " * Copyright (c) – 2021\n"
+            + " */\n"
+            + "\r\n"
+            + "  \t package   com.google.foo_bar.baz2 ;\n"
+            + "import java.util.List;\n";
+    assertThat(readPackage(source)).isEqualTo("com.google.foo_bar.baz2");
+  }
+
+  @Test
+  public void testKotlinPackageDeclarationWithoutSemicolon() throws IOException {
+    assertThat(readPackage("@file:JvmName(\"Foo\")\npackage com.google.foo"))
+        .isEqualTo("com.google.foo");
+  }
+
+  @Test
+  public void testPackageDeclarationMustStartLine() throws IOException {
+    String source =
+        "// package com.google.comment;\n"
+            + "packages com.google.wrong;\n"
+            + "package\n"
+            + "com.google.nextline;\n"
+            + "package com.google.foo;\n";
+    assertThat(readPackage(source)).isEqualTo("com.google.foo");
+  }
+
+  @Test
+  public void testNoPackageDeclaration() throws IOException {
+    assertThat(readPackage("public class Bla {}\n")).isNull();
+    assertThat(readPackage("")).isNull();
+  }
+
+  @Test
+  public void testPackageDeclarationAfterLongHeader() throws IOException {
+    String header = "// " + Strings.repeat("x", 5000) + "\n";
+    assertThat(readPackage(header + "package com.google.foo;")).isEqualTo("com.google.foo");
+  }
+
+  @Nullable
+  private static String readPackage(String source) throws IOException {
+    return JavaSourcePackageReader.readPackageDeclaration(
+        new ByteArrayInputStream(source.getBytes(UTF_8)));
+  }
+}
@@ -33,6 +33,7 @@ import com.google.idea.blaze.base.io.FileOperationProvider;
 import com.google.idea.blaze.base.io.InputStreamProvider;
 import com.google.idea.blaze.base.io.MockInputStreamProvider;
 import com.google.idea.blaze.base.model.RemoteOutputArtifacts;
+import com.google.idea.blaze.base.model.SyncState;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
@@ -57,6 +58,7 @@ import com.google.idea.common.experiments.MockExperimentService;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -69,6 +71,7 @@ public class SourceDirectoryCalculatorTest extends BlazeTestCase {
   private static final Label LABEL = Label.create("//fake:label");
 
   private MockInputStreamProvider mockInputStreamProvider;
+  private MockFileOperationProvider fileOperationProvider;
   private SourceDirectoryCalculator sourceDirectoryCalculator;
 
   private final BlazeContext context = new BlazeContext();
@@ -92,7 +95,8 @@ public class SourceDirectoryCalculatorTest extends BlazeTestCase {
     applicationServices.register(InputStreamProvider.class, mockInputStreamProvider);
     applicationServices.register(JavaSourcePackageReader.class, new JavaSourcePackageReader());
     applicationServices.register(PackageManifestReader.class, new PackageManifestReader());
-    applicationServices.register(FileOperationProvider.class, new MockFileOperationProvider());
+    fileOperationProvider = new MockFileOperationProvider();
+    applicationServices.register(FileOperationProvider.class, fileOperationProvider);
 
     context.addOutputSink(IssueOutput.class, issues);
     sourceDirectoryCalculator = new SourceDirectoryCalculator();
@@ -1157,6 +1161,87 @@ public class SourceDirectoryCalculatorTest extends BlazeTestCase {
                 .build());
   }
 
+  @Test
+  public void testPackageReusedFromPreviousSyncForUnmodifiedSource() {
+    mockInputStreamProvider.addFile(
+        "/root/java/com/google/Bla.java", "package com.google;\n public class Bla {}");
+    SyncState previousSyncState = calculateSyncStateForSingleSource("java/com/google/Bla.java");
+    assertThat(previousSyncState.get(JavaSourcePackageState.class).size()).isEqualTo(1);
+
+    // the file contents aren't read again, because the file hasn't been modified
+    mockInputStreamProvider.addFile(
+        "/root/java/com/google/Bla.java", "package com.google.other;\n public class Bla {}");
+    SyncState.Builder syncStateBuilder = new SyncState.Builder();
+    ImmutableList<BlazeContentEntry> result =
+        calculateContentEntriesForSingleSource(
+            "java/com/google/Bla.java", previousSyncState, syncStateBuilder);
+
+    assertThat(result)
+        .containsExactly(
+            BlazeContentEntry.builder("/root/java/com/google")
+                .addSource(
+                    BlazeSourceDirectory.builder("/root/java/com/google")
+                        .setPackagePrefix("com.google")
+                        .build())
+                .build());
+    assertThat(syncStateBuilder.build().get(JavaSourcePackageState.class))
+        .isEqualTo(previousSyncState.get(JavaSourcePackageState.class));
+    issues.assertNoIssues();
+  }
+
+  @Test
+  public void testPackageReadAgainForModifiedSource() {
+    mockInputStreamProvider.addFile(
+        "/root/java/com/google/Bla.java", "package com.google;\n public class Bla {}");
+    SyncState previousSyncState = calculateSyncStateForSingleSource("java/com/google/Bla.java");
+
+    mockInputStreamProvider.addFile(
+        "/root/java/com/google/Bla.java", "package com.google.other;\n public class Bla {}");
+    fileOperationProvider.modifiedTime = 2;
+    ImmutableList<BlazeContentEntry> result =
+        calculateContentEntriesForSingleSource(
+            "java/com/google/Bla.java", previousSyncState, new SyncState.Builder());
+
+    assertThat(result)
+        .containsExactly(
+            BlazeContentEntry.builder("/root/java/com/google")
+                .addSource(
+                    BlazeSourceDirectory.builder("/root/java/com/google")
+                        .setPackagePrefix("com.google.other")
+                        .build())
+                .build());
+    issues.assertNoIssues();
+  }
+
+  private SyncState calculateSyncStateForSingleSource(String relativePath) {
+    SyncState.Builder syncStateBuilder = new SyncState.Builder();
+    calculateContentEntriesForSingleSource(relativePath, null, syncStateBuilder);
+    return syncStateBuilder.build();
+  }
+
+  private ImmutableList<BlazeContentEntry> calculateContentEntriesForSingleSource(
+      String relativePath,
+      @Nullable SyncState previousSyncState,
+      SyncState.Builder syncStateBuilder) {
+    List<SourceArtifact> sourceArtifacts =
+        ImmutableList.of(
+            SourceArtifact.builder(TargetKey.forPlainTarget(LABEL))
+                .setArtifactLocation(
+                    ArtifactLocation.builder().setRelativePath(relativePath).setIsSource(true))
+                .build());
+    return sourceDirectoryCalculator.calculateContentEntries(
+        project,
+        context,
+        workspaceRoot,
+        decoder,
+        buildImportRoots(
+            ImmutableList.of(new WorkspacePath("java/com/google")), ImmutableList.of()),
+        sourceArtifacts,
+        NO_MANIFESTS,
+        previousSyncState,
+        syncStateBuilder);
+  }
+
   private ImportRoots buildImportRoots(
       ImmutableList<WorkspacePath> roots, ImmutableList<WorkspacePath> excluded) {
     ImportRoots.Builder builder = ImportRoots.builder(workspaceRoot, BuildSystem.Blaze);
@@ -1217,9 +1302,11 @@ public class SourceDirectoryCalculatorTest extends BlazeTestCase {
   }
 
   static class MockFileOperationProvider extends FileOperationProvider {
+    long modifiedTime = 1;
+
     @Override
     public long getFileModifiedTime(File file) {
-      return 1;
+      return modifiedTime;
     }
   }
 }